@@ -0,0 +1,68 @@
+package no.shhsoft.jdbc;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+/**
+ * Leaves only <code>getConnection()</code> for subclasses to implement.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+abstract class AbstractDataSource
+implements DataSource {
+
+    private static final Logger LOG = Logger.getLogger(AbstractDataSource.class.getName());
+
+    @Override
+    public Connection getConnection(final String username, final String pwd)
+    throws SQLException {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public PrintWriter getLogWriter()
+    throws SQLException {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public int getLoginTimeout()
+    throws SQLException {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public void setLogWriter(final PrintWriter out)
+    throws SQLException {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public void setLoginTimeout(final int seconds)
+    throws SQLException {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface)
+    throws SQLException {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface)
+    throws SQLException {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public Logger getParentLogger()
+    throws SQLFeatureNotSupportedException {
+        return LOG.getParent();
+    }
+
+}
@@ -7,13 +7,16 @@ import java.util.Date;
 import java.util.List;
 
 /**
+ * Sets parameters from objects, looking at the type of each object every time.  When the
+ * types are known up front, <code>ParameterBinder</code> is faster.
+ *
  * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
  */
 public final class ArgPreparedStatementSetter
 implements PreparedStatementSetter {
 
     private final Object[] objects;
-    private int index;
+    private final int startIndex;
 
     private void stmtSet(final int i, final PreparedStatement stmt, final Object object)
     throws SQLException {
@@ -47,7 +50,7 @@ implements PreparedStatementSetter {
 
     public ArgPreparedStatementSetter(final int startIndex, final Object... objects) {
         this.objects = objects;
-        this.index = startIndex;
+        this.startIndex = startIndex;
     }
 
     public ArgPreparedStatementSetter(final Object... objects) {
@@ -65,6 +68,7 @@ implements PreparedStatementSetter {
     @Override
     public void setParameters(final PreparedStatement stmt)
     throws SQLException {
+        int index = startIndex;
         for (final Object object : objects) {
             stmtSet(index++, stmt, object);
         }
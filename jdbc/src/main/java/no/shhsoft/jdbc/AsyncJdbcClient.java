@@ -0,0 +1,141 @@
+package no.shhsoft.jdbc;
+
+import no.shhsoft.utils.UncheckedInterruptedException;
+import no.shhsoft.validation.Validate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs <code>JdbcClient</code> operations in the background, returning
+ * <code>CompletableFuture</code>s.  At most <code>maxConcurrency</code> operations run at
+ * once, while the rest wait in memory.  On JDKs that have virtual threads, each operation
+ * gets a virtual thread of its own.  Otherwise a fixed pool of
+ * <code>maxConcurrency</code> daemon threads is used.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class AsyncJdbcClient
+implements AutoCloseable {
+
+    private static final int DEFAULT_MAX_CONCURRENCY = 16;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private final JdbcClient client;
+    private final ExecutorService executor;
+    /* Only used with virtual threads.  The fixed pool limits concurrency by itself. */
+    private final Semaphore permits;
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (final NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService createPlatformThreadExecutor(final int numThreads) {
+        return Executors.newFixedThreadPool(numThreads, runnable -> {
+            final Thread thread = new Thread(runnable, "async-jdbc-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param preferVirtualThreads whether to use virtual threads if the JDK has them.
+     */
+    public AsyncJdbcClient(final JdbcClient client, final int maxConcurrency, final boolean preferVirtualThreads) {
+        Validate.isTrue(maxConcurrency > 0, "maxConcurrency must be positive");
+        this.client = client;
+        final ExecutorService virtualThreadExecutor = preferVirtualThreads ? createVirtualThreadExecutor() : null;
+        if (virtualThreadExecutor != null) {
+            executor = virtualThreadExecutor;
+            permits = new Semaphore(maxConcurrency, true);
+        } else {
+            executor = createPlatformThreadExecutor(maxConcurrency);
+            permits = null;
+        }
+    }
+
+    public AsyncJdbcClient(final JdbcClient client, final int maxConcurrency) {
+        this(client, maxConcurrency, true);
+    }
+
+    /**
+     * Limits concurrency to the <code>maxActive</code> of the data source, so that
+     * operations never have to wait for a connection.
+     */
+    public AsyncJdbcClient(final PoolingDataSource dataSource) {
+        this(new JdbcClient(dataSource), dataSource.getMaxActive() > 0 ? dataSource.getMaxActive() : DEFAULT_MAX_CONCURRENCY);
+    }
+
+    private <T> T withPermit(final Supplier<T> work) {
+        try {
+            permits.acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedInterruptedException(e);
+        }
+        try {
+            return work.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(final Supplier<T> work) {
+        if (permits != null) {
+            return CompletableFuture.supplyAsync(() -> withPermit(work), executor);
+        }
+        return CompletableFuture.supplyAsync(work, executor);
+    }
+
+    public boolean isUsingVirtualThreads() {
+        return permits != null;
+    }
+
+    public CompletableFuture<Object> executeQueryWithSetter(final String preparedSql, final PreparedStatementSetter setter, final ResultSetHandler handler) {
+        return submit(() -> client.executeQuery(preparedSql, setter, handler));
+    }
+
+    public CompletableFuture<Object> executeQuery(final String preparedSql, final ResultSetHandler handler, final Object... args) {
+        return submit(() -> client.executeQuery(preparedSql, handler, args));
+    }
+
+    public <T> CompletableFuture<List<T>> queryForListWithSetter(final String preparedSql, final PreparedStatementSetter setter, final RowMapper<T> mapper) {
+        return submit(() -> client.queryForListWithSetter(preparedSql, setter, mapper));
+    }
+
+    public <T> CompletableFuture<List<T>> queryForList(final String preparedSql, final RowMapper<T> mapper, final Object... args) {
+        return submit(() -> client.queryForList(preparedSql, mapper, args));
+    }
+
+    public CompletableFuture<Integer> executeUpdate(final String preparedSql, final PreparedStatementSetter setter) {
+        return submit(() -> client.executeUpdate(preparedSql, setter));
+    }
+
+    public CompletableFuture<Integer> executeUpdate(final String preparedSql, final Object... args) {
+        return submit(() -> client.executeUpdate(preparedSql, args));
+    }
+
+    public CompletableFuture<Object> executeTransaction(final ConnectionUser connUser) {
+        return submit(() -> client.executeTransaction(connUser));
+    }
+
+    /**
+     * Lets operations already submitted finish, but accepts no new ones.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+}
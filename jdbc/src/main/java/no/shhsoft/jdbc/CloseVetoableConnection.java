@@ -4,8 +4,14 @@ import java.sql.*;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Wraps a <code>Connection</code> to let a <code>CloseVetoer</code> decide what happens
+ * on <code>close</code>.  Optionally keeps an LRU cache of prepared statements, keyed by
+ * SQL, result set type and concurrency, so that closing a prepared statement makes it
+ * available for the next <code>prepareStatement</code> of the same SQL.
+ *
  * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
  */
 public final class CloseVetoableConnection
@@ -13,10 +19,47 @@ implements Connection {
 
     private final Connection wrappedConnection;
     private final CloseVetoer closeVetoer;
+    private final StatementCache statementCache;
+    private final LongAdder statementCacheHits;
+    private final LongAdder statementCacheMisses;
 
     public CloseVetoableConnection(final Connection wrappedConnection, final CloseVetoer closeVetoer) {
+        this(wrappedConnection, closeVetoer, 0);
+    }
+
+    /**
+     * @param statementCacheSize the maximum number of idle prepared statements to keep,
+     *                           or 0 for no caching.
+     */
+    public CloseVetoableConnection(final Connection wrappedConnection, final CloseVetoer closeVetoer, final int statementCacheSize) {
+        this(wrappedConnection, closeVetoer, statementCacheSize, new LongAdder(), new LongAdder());
+    }
+
+    CloseVetoableConnection(final Connection wrappedConnection, final CloseVetoer closeVetoer, final int statementCacheSize,
+                            final LongAdder statementCacheHits, final LongAdder statementCacheMisses) {
         this.wrappedConnection = wrappedConnection;
         this.closeVetoer = closeVetoer;
+        this.statementCacheHits = statementCacheHits;
+        this.statementCacheMisses = statementCacheMisses;
+        this.statementCache = statementCacheSize > 0
+                              ? new StatementCache(wrappedConnection, statementCacheSize, statementCacheHits, statementCacheMisses)
+                              : null;
+    }
+
+    /**
+     * @return the number of prepared statements taken from the cache.  Connections
+     *         created by a <code>PoolingDataSource</code> share this count.
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    /**
+     * @return the number of prepared statements created because none were cached.
+     *         Connections created by a <code>PoolingDataSource</code> share this count.
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
     }
 
     @Override
@@ -35,6 +78,9 @@ implements Connection {
 
     public void forceClose()
     throws SQLException {
+        if (statementCache != null) {
+            statementCache.close();
+        }
         wrappedConnection.close();
     }
 
@@ -197,6 +243,9 @@ implements Connection {
     @Override
     public PreparedStatement prepareStatement(final String sql)
     throws SQLException {
+        if (statementCache != null) {
+            return statementCache.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        }
         return wrappedConnection.prepareStatement(sql);
     }
 
@@ -221,6 +270,9 @@ implements Connection {
     @Override
     public PreparedStatement prepareStatement(final String sql, final int resultSetType, final int resultSetConcurrency)
     throws SQLException {
+        if (statementCache != null) {
+            return statementCache.prepareStatement(sql, resultSetType, resultSetConcurrency);
+        }
         return wrappedConnection.prepareStatement(sql, resultSetType, resultSetConcurrency);
     }
 
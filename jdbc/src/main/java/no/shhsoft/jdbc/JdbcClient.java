@@ -1,10 +1,20 @@
 package no.shhsoft.jdbc;
 
+import no.shhsoft.validation.Validate;
+
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -15,13 +25,74 @@ public final class JdbcClient {
 
     private static final Logger LOG = Logger.getLogger(JdbcClient.class.getName());
     private DataSource dataSource;
+    private DataSource readDataSource;
     private boolean logQueries;
+    private int fetchSize;
+    private QueryResultCache resultCache;
+
+    private static final class RowSpliterator<T>
+    extends Spliterators.AbstractSpliterator<T> {
+
+        private final String preparedSql;
+        private final Connection conn;
+        private final PreparedStatement stmt;
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+        private boolean closed;
+
+        RowSpliterator(final String preparedSql, final Connection conn, final PreparedStatement stmt, final ResultSet rs,
+                       final RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED);
+            this.preparedSql = preparedSql;
+            this.conn = conn;
+            this.stmt = stmt;
+            this.rs = rs;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            final T row;
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                row = mapper.mapRow(rs);
+            } catch (final SQLException e) {
+                close();
+                throw new UncheckedSqlException("Error for query `" + preparedSql + "'", e);
+            } catch (final RuntimeException e) {
+                close();
+                throw e;
+            }
+            action.accept(row);
+            return true;
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            JdbcUtils.close(conn, stmt, rs);
+        }
+
+    }
 
     private Connection getConnection()
     throws SQLException {
         return dataSource.getConnection();
     }
 
+    private Connection getReadConnection()
+    throws SQLException {
+        return readDataSource != null ? readDataSource.getConnection() : getConnection();
+    }
+
     private void rollbackAfterException(final Connection conn) {
         if (conn == null) {
             return;
@@ -37,10 +108,32 @@ public final class JdbcClient {
         setDataSource(dataSource);
     }
 
+    /**
+     * @param readDataSource used for queries, while <code>dataSource</code> is used for
+     *                       updates and transactions.  Typically the read view of a
+     *                       <code>RoutingDataSource</code>.
+     */
+    public JdbcClient(final DataSource dataSource, final DataSource readDataSource) {
+        setDataSource(dataSource);
+        setReadDataSource(readDataSource);
+    }
+
+    public JdbcClient(final RoutingDataSource routingDataSource) {
+        this(routingDataSource, routingDataSource.getReadDataSource());
+    }
+
     public void setDataSource(final DataSource dataSource) {
         this.dataSource = dataSource;
     }
 
+    /**
+     * @param readDataSource where to get connections for queries, or <code>null</code> to
+     *                       use the main data source.
+     */
+    public void setReadDataSource(final DataSource readDataSource) {
+        this.readDataSource = readDataSource;
+    }
+
     public Object executeQuery(final String preparedSql, final PreparedStatementSetter setter, final ResultSetHandler handler) {
         if (logQueries) {
             LOG.info("executeQuery: " + preparedSql);
@@ -49,7 +142,7 @@ public final class JdbcClient {
         PreparedStatement stmt = null;
         ResultSet rs = null;
         try {
-            conn = getConnection();
+            conn = getReadConnection();
             stmt = conn.prepareStatement(preparedSql);
             if (setter != null) {
                 setter.setParameters(stmt);
@@ -68,10 +161,18 @@ public final class JdbcClient {
     }
 
     public Object executeQuery(final String preparedSql, final ResultSetHandler handler) {
-        return executeQuery(preparedSql, null, handler);
+        return executeQuery(preparedSql, handler, new Object[0]);
     }
 
+    /**
+     * Like the other <code>executeQuery</code>s, but the result may come from the result
+     * cache, if one is set.
+     */
     public Object executeQuery(final String preparedSql, final ResultSetHandler handler, final Object... args) {
+        if (resultCache != null) {
+            return resultCache.get(QueryResultCache.CallKind.EXECUTE_QUERY, handler, preparedSql, args,
+                                   () -> executeQuery(preparedSql, new ArgPreparedStatementSetter(args), handler));
+        }
         return executeQuery(preparedSql, new ArgPreparedStatementSetter(args), handler);
     }
 
@@ -92,6 +193,9 @@ public final class JdbcClient {
             throw new UncheckedSqlException("Error for update `" + preparedSql + "'", e);
         } finally {
             JdbcUtils.close(conn, stmt);
+            if (resultCache != null) {
+                resultCache.invalidate(preparedSql);
+            }
         }
     }
 
@@ -103,6 +207,191 @@ public final class JdbcClient {
         return executeUpdate(preparedSql, new ArgPreparedStatementSetter(args));
     }
 
+    /**
+     * Runs a query with a forward-only, read-only cursor, and maps each row as the
+     * returned stream is consumed.  The connection is held until the last row is read or
+     * the stream is closed, so the stream should be closed, e.g. using
+     * try-with-resources, in case it is not consumed to the end.  Rows are fetched from
+     * the database in chunks of the fetch size, so large results need not fit in memory.
+     * Note that some drivers, such as PostgreSQL's, only honour the fetch size when
+     * auto-commit is off.
+     */
+    public <T> Stream<T> queryForStreamWithSetter(final String preparedSql, final PreparedStatementSetter setter, final RowMapper<T> mapper) {
+        if (logQueries) {
+            LOG.info("queryForStream: " + preparedSql);
+        }
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = getReadConnection();
+            stmt = conn.prepareStatement(preparedSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (fetchSize > 0) {
+                stmt.setFetchSize(fetchSize);
+            }
+            if (setter != null) {
+                setter.setParameters(stmt);
+            }
+            rs = stmt.executeQuery();
+        } catch (final SQLException e) {
+            JdbcUtils.close(conn, stmt, rs);
+            throw new UncheckedSqlException("Error for query `" + preparedSql + "'", e);
+        } catch (final RuntimeException e) {
+            JdbcUtils.close(conn, stmt, rs);
+            throw e;
+        }
+        final RowSpliterator<T> spliterator = new RowSpliterator<>(preparedSql, conn, stmt, rs, mapper);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    public <T> Stream<T> queryForStream(final String preparedSql, final RowMapper<T> mapper, final Object... args) {
+        return queryForStreamWithSetter(preparedSql, new ArgPreparedStatementSetter(args), mapper);
+    }
+
+    /**
+     * Like <code>queryForStreamWithSetter</code>, but passes each row to the given consumer, and
+     * returns when all rows are consumed.
+     */
+    public <T> void queryForEach(final String preparedSql, final PreparedStatementSetter setter, final RowMapper<T> mapper,
+                                 final Consumer<? super T> consumer) {
+        try (final Stream<T> stream = queryForStreamWithSetter(preparedSql, setter, mapper)) {
+            stream.forEach(consumer);
+        }
+    }
+
+    public <T> List<T> queryForListWithSetter(final String preparedSql, final PreparedStatementSetter setter, final RowMapper<T> mapper) {
+        final List<T> list = new ArrayList<>();
+        queryForEach(preparedSql, setter, mapper, list::add);
+        return list;
+    }
+
+    /**
+     * Like <code>queryForListWithSetter</code>, but the result may come from the result
+     * cache, if one is set.  In that case, the list returned is unmodifiable.
+     */
+    public <T> List<T> queryForList(final String preparedSql, final RowMapper<T> mapper, final Object... args) {
+        if (resultCache != null) {
+            return resultCache.get(QueryResultCache.CallKind.QUERY_FOR_LIST, mapper, preparedSql, args,
+                                   () -> Collections.unmodifiableList(queryForListWithSetter(preparedSql, new ArgPreparedStatementSetter(args), mapper)));
+        }
+        return queryForListWithSetter(preparedSql, new ArgPreparedStatementSetter(args), mapper);
+    }
+
+    /**
+     * Runs the same SQL once for each setter, using a single connection and statement.
+     * Rows are sent to the database in batches of <code>batchSize</code>.
+     *
+     * @param transactionPerBatch whether to commit each batch as a transaction of its
+     *                            own.  If a batch fails, it is rolled back, while
+     *                            earlier batches stay committed.  If
+     *                            <code>false</code>, the connection's auto-commit
+     *                            setting is used as is.
+     * @return the update count of each row, in the order of the setters.
+     */
+    public int[] executeBatch(final String preparedSql, final Iterable<? extends PreparedStatementSetter> setters,
+                              final int batchSize, final boolean transactionPerBatch) {
+        Validate.isTrue(batchSize > 0, "batchSize must be positive");
+        if (logQueries) {
+            LOG.info("executeBatch: " + preparedSql);
+        }
+        boolean setAutoCommitToTrueAtEnd = false;
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        try {
+            conn = getConnection();
+            if (transactionPerBatch && conn.getAutoCommit()) {
+                setAutoCommitToTrueAtEnd = true;
+                conn.setAutoCommit(false);
+            }
+            stmt = conn.prepareStatement(preparedSql);
+            final List<int[]> counts = new ArrayList<>();
+            int numInBatch = 0;
+            for (final PreparedStatementSetter setter : setters) {
+                if (setter != null) {
+                    setter.setParameters(stmt);
+                }
+                stmt.addBatch();
+                if (++numInBatch == batchSize) {
+                    counts.add(executeBatch(conn, stmt, transactionPerBatch));
+                    numInBatch = 0;
+                }
+            }
+            if (numInBatch > 0) {
+                counts.add(executeBatch(conn, stmt, transactionPerBatch));
+            }
+            return concatenate(counts);
+        } catch (final SQLException e) {
+            if (transactionPerBatch) {
+                rollbackAfterException(conn);
+            }
+            throw new UncheckedSqlException("Error for batch `" + preparedSql + "'", e);
+        } catch (final RuntimeException e) {
+            if (transactionPerBatch) {
+                rollbackAfterException(conn);
+            }
+            throw e;
+        } finally {
+            if (setAutoCommitToTrueAtEnd) {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (final SQLException e) {
+                    LOG.log(Level.WARNING, "Resetting auto-commit flag failed", e);
+                }
+            }
+            JdbcUtils.close(conn, stmt);
+            if (resultCache != null) {
+                resultCache.invalidate(preparedSql);
+            }
+        }
+    }
+
+    public int[] executeBatch(final String preparedSql, final Iterable<? extends PreparedStatementSetter> setters, final int batchSize) {
+        return executeBatch(preparedSql, setters, batchSize, false);
+    }
+
+    /**
+     * Like <code>executeBatch</code> with setters, but with the arguments of each row
+     * given as for <code>executeUpdate</code>.
+     */
+    public int[] executeBatch(final String preparedSql, final List<Object[]> rows, final int batchSize,
+                              final boolean transactionPerBatch) {
+        final List<PreparedStatementSetter> setters = new ArrayList<>(rows.size());
+        for (final Object[] row : rows) {
+            setters.add(new ArgPreparedStatementSetter(row));
+        }
+        return executeBatch(preparedSql, setters, batchSize, transactionPerBatch);
+    }
+
+    public int[] executeBatch(final String preparedSql, final List<Object[]> rows, final int batchSize) {
+        return executeBatch(preparedSql, rows, batchSize, false);
+    }
+
+    private static int[] executeBatch(final Connection conn, final PreparedStatement stmt, final boolean commit)
+    throws SQLException {
+        final int[] counts = stmt.executeBatch();
+        if (commit) {
+            conn.commit();
+        }
+        return counts;
+    }
+
+    private static int[] concatenate(final List<int[]> arrays) {
+        if (arrays.size() == 1) {
+            return arrays.get(0);
+        }
+        int length = 0;
+        for (final int[] array : arrays) {
+            length += array.length;
+        }
+        final int[] result = new int[length];
+        int pos = 0;
+        for (final int[] array : arrays) {
+            System.arraycopy(array, 0, result, pos, array.length);
+            pos += array.length;
+        }
+        return result;
+    }
+
     public Object executeTransaction(final ConnectionUser connUser) {
         boolean setAutoCommitToTrueAtEnd = false;
         Connection conn = null;
@@ -133,6 +422,10 @@ public final class JdbcClient {
                 }
             }
             JdbcUtils.close(conn);
+            if (resultCache != null) {
+                /* No telling what tables were touched. */
+                resultCache.clear();
+            }
         }
     }
 
@@ -140,4 +433,31 @@ public final class JdbcClient {
         this.logQueries = logQueries;
     }
 
+    /**
+     * @param fetchSize the number of rows to fetch from the database at a time by
+     *                  <code>queryForStream</code> and friends, or 0 for the driver's
+     *                  default.
+     */
+    public void setFetchSize(final int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * @param resultCache used by the <code>executeQuery</code> and
+     *                    <code>queryForList</code> variants taking plain arguments, and
+     *                    invalidated by updates, batches and transactions.  May be shared
+     *                    by clients of the same database.  <code>null</code> to not cache.
+     */
+    public void setResultCache(final QueryResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
 }
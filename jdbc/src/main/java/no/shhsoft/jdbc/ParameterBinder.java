@@ -0,0 +1,196 @@
+package no.shhsoft.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Sets prepared statement parameters of types given once, up front.  Unlike
+ * <code>ArgPreparedStatementSetter</code>, the right <code>setXxx</code> method for each
+ * parameter is found when the binder is created, not every time the statement runs, and
+ * <code>null</code> values are bound with the SQL type of the parameter.  A binder holds
+ * no values, so a single instance may be shared by all threads running the same SQL.
+ * <p>
+ * Supported types are the primitives and their wrappers, <code>CharSequence</code>s,
+ * <code>Date</code>s and <code>byte[]</code>.  Values may be given as objects to
+ * <code>bind</code> and <code>setter</code>, or, without boxing, through the typed
+ * <code>setXxx</code> methods of a <code>Bindings</code> from <code>newBindings</code>.
+ * </p>
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class ParameterBinder {
+
+    private final int[] kinds;
+
+    /**
+     * Parameter values for one execution of the statement, held without boxing.  Set all
+     * parameters, using 1-based indexes like <code>PreparedStatement</code>, then pass this
+     * as the <code>PreparedStatementSetter</code>.  May be refilled and reused, e.g. for
+     * each row of a batch, but is not thread safe.
+     */
+    public final class Bindings
+    implements PreparedStatementSetter {
+
+        private final long[] primitives = new long[kinds.length];
+        private final Object[] objects = new Object[kinds.length];
+        private final boolean[] nulls = new boolean[kinds.length];
+        private final boolean[] set = new boolean[kinds.length];
+
+        Bindings() {
+        }
+
+        private int checkIndex(final int index) {
+            if (index < 1 || index > kinds.length) {
+                throw new IllegalArgumentException("Parameter index " + index + " out of range 1.." + kinds.length);
+            }
+            return index - 1;
+        }
+
+        private int slot(final int index, final int kind) {
+            final int q = checkIndex(index);
+            if (kinds[q] != kind) {
+                throw new IllegalArgumentException("Parameter " + index + " is " + ValueKind.getName(kinds[q])
+                                                   + ", not " + ValueKind.getName(kind));
+            }
+            nulls[q] = false;
+            set[q] = true;
+            return q;
+        }
+
+        public Bindings setInt(final int index, final int value) {
+            primitives[slot(index, ValueKind.INT)] = value;
+            return this;
+        }
+
+        public Bindings setLong(final int index, final long value) {
+            primitives[slot(index, ValueKind.LONG)] = value;
+            return this;
+        }
+
+        public Bindings setShort(final int index, final short value) {
+            primitives[slot(index, ValueKind.SHORT)] = value;
+            return this;
+        }
+
+        public Bindings setByte(final int index, final byte value) {
+            primitives[slot(index, ValueKind.BYTE)] = value;
+            return this;
+        }
+
+        public Bindings setBoolean(final int index, final boolean value) {
+            primitives[slot(index, ValueKind.BOOLEAN)] = value ? 1L : 0L;
+            return this;
+        }
+
+        public Bindings setDouble(final int index, final double value) {
+            primitives[slot(index, ValueKind.DOUBLE)] = ValueKind.toSlot(value);
+            return this;
+        }
+
+        public Bindings setFloat(final int index, final float value) {
+            primitives[slot(index, ValueKind.FLOAT)] = ValueKind.toSlot(value);
+            return this;
+        }
+
+        public Bindings setString(final int index, final CharSequence value) {
+            objects[slot(index, ValueKind.STRING)] = value;
+            return this;
+        }
+
+        public Bindings setDate(final int index, final Date value) {
+            objects[slot(index, ValueKind.DATE)] = value;
+            return this;
+        }
+
+        public Bindings setBytes(final int index, final byte[] value) {
+            objects[slot(index, ValueKind.BYTES)] = value;
+            return this;
+        }
+
+        public Bindings setNull(final int index) {
+            final int q = checkIndex(index);
+            objects[q] = null;
+            nulls[q] = true;
+            set[q] = true;
+            return this;
+        }
+
+        /**
+         * Forgets all values, so that leaving a parameter unset is detected.
+         */
+        public Bindings clear() {
+            Arrays.fill(objects, null);
+            Arrays.fill(set, false);
+            return this;
+        }
+
+        @Override
+        public void setParameters(final PreparedStatement stmt)
+        throws SQLException {
+            for (int q = 0; q < kinds.length; q++) {
+                if (!set[q]) {
+                    throw new IllegalStateException("Parameter " + (q + 1) + " not set");
+                }
+                if (nulls[q]) {
+                    ValueKind.bindNull(stmt, q + 1, kinds[q]);
+                } else if (ValueKind.isPrimitive(kinds[q])) {
+                    ValueKind.bindPrimitive(stmt, q + 1, kinds[q], primitives[q]);
+                } else {
+                    ValueKind.bindObject(stmt, q + 1, kinds[q], objects[q]);
+                }
+            }
+        }
+
+    }
+
+    private ParameterBinder(final Class<?>... types) {
+        kinds = ValueKind.of(types);
+    }
+
+    /**
+     * @param types the type of each parameter, in order.
+     */
+    public static ParameterBinder forTypes(final Class<?>... types) {
+        return new ParameterBinder(types);
+    }
+
+    private void checkNumValues(final Object[] values) {
+        if (values.length != kinds.length) {
+            throw new IllegalArgumentException("Expected " + kinds.length + " values, got " + values.length);
+        }
+    }
+
+    public int getNumParameters() {
+        return kinds.length;
+    }
+
+    /**
+     * @return a new, empty set of parameter values for binding without boxing.
+     */
+    public Bindings newBindings() {
+        return new Bindings();
+    }
+
+    /**
+     * Sets the parameters of the statement, starting at parameter index 1.
+     */
+    public void bind(final PreparedStatement stmt, final Object... values)
+    throws SQLException {
+        checkNumValues(values);
+        for (int q = 0; q < kinds.length; q++) {
+            ValueKind.bindObject(stmt, q + 1, kinds[q], values[q]);
+        }
+    }
+
+    /**
+     * @return a setter that may be passed to <code>JdbcClient</code>, binding the given
+     *         values.
+     */
+    public PreparedStatementSetter setter(final Object... values) {
+        checkNumValues(values);
+        return stmt -> bind(stmt, values);
+    }
+
+}
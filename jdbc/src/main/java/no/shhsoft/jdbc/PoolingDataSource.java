@@ -1,28 +1,39 @@
 package no.shhsoft.jdbc;
 
-import no.shhsoft.utils.AbstractPool;
+import no.shhsoft.utils.AbstractConcurrentPool;
 
 import javax.sql.DataSource;
 import java.io.PrintWriter;
 import java.sql.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Logger;
 
 /**
+ * A pool of JDBC connections.  Call <code>startMaintenance</code> to have connections
+ * created ahead of use, retired after <code>maxIdleTimeMs</code> or
+ * <code>maxLifetimeMs</code>, and, with <code>checkValidityWhenIdle</code>, checked in the
+ * background rather than when handed out.  With <code>statementCacheSize</code> above 0,
+ * each connection keeps that many prepared statements for reuse.
+ *
  * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
  */
 public final class PoolingDataSource
-extends AbstractPool<CloseVetoableConnection>
+extends AbstractConcurrentPool<CloseVetoableConnection>
 implements DataSource, CloseVetoer {
 
     private static final Logger LOG = Logger.getLogger(PoolingDataSource.class.getName());
-    private String driverClassName;
-    private String url;
-    private String userName;
-    private String password;
-    private String validityCheckStatement = "SELECT 1";
-    private boolean defaultAutoCommit = true;
-    private boolean defaultReadOnly = false;
-    private int defaultTransactionIsolation = -1;
+    /* Written under the monitor, but read without it by threads allocating connections. */
+    private volatile String driverClassName;
+    private volatile String url;
+    private volatile String userName;
+    private volatile String password;
+    private volatile String validityCheckStatement = "SELECT 1";
+    private volatile boolean defaultAutoCommit = true;
+    private volatile boolean defaultReadOnly = false;
+    private volatile int defaultTransactionIsolation = -1;
+    private volatile int statementCacheSize = 0;
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
 
     private void assertNoLiveConnections() {
         if (getNumLive() > 0) {
@@ -41,7 +52,7 @@ implements DataSource, CloseVetoer {
         LOG.info("Creating new database connection for " + getUrl());
         try {
             final Connection connection = DriverManager.getConnection(getUrl(), getUserName(), getPassword());
-            return new CloseVetoableConnection(connection, this);
+            return new CloseVetoableConnection(connection, this, getStatementCacheSize(), statementCacheHits, statementCacheMisses);
         } catch (final SQLException e) {
             throw new UncheckedSqlException("Error creating JDBC connection for " + getUrl(), e);
         }
@@ -49,7 +60,7 @@ implements DataSource, CloseVetoer {
 
     @Override
     protected void destroy(final CloseVetoableConnection connection) {
-        LOG.info("Destroying bad database connection for " + getUrl());
+        LOG.info("Destroying database connection for " + getUrl());
         try {
             connection.forceClose();
         } catch (final Throwable t) {
@@ -229,4 +240,42 @@ implements DataSource, CloseVetoer {
         return defaultTransactionIsolation;
     }
 
+    /**
+     * @param statementCacheSize the maximum number of idle prepared statements kept per
+     *                           connection, or 0 for no caching.
+     */
+    public synchronized void setStatementCacheSize(final int statementCacheSize) {
+        assertNoLiveConnections();
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    /**
+     * Checks an idle connection in place, without allocating it, so the check never waits
+     * for a busy pool, and does not show in the allocation metrics.  When no connection is
+     * live, one is opened to be checked.  When all are in use, the pool is taken to be
+     * healthy.
+     *
+     * @return whether the checked connection, if any, could be had and passed the validity
+     *         check.
+     */
+    public boolean isHealthy() {
+        try {
+            return checkIdleValidity();
+        } catch (final RuntimeException e) {
+            return false;
+        }
+    }
+
 }
@@ -0,0 +1,325 @@
+package no.shhsoft.jdbc;
+
+import no.shhsoft.time.SystemTimeProvider;
+import no.shhsoft.time.TimeProvider;
+import no.shhsoft.utils.LruCacheMap;
+import no.shhsoft.utils.cache.Clearable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Caches query results for <code>JdbcClient</code>, keyed by SQL, arguments, the kind of
+ * call, and the handler or row mapper that built the result.  Handlers and mappers are
+ * compared by identity, so use shared instances, not lambdas capturing call-specific
+ * values, for results to be found again.  Entries
+ * live for at most <code>timeToLiveMs</code>, and the least recently used are dropped when
+ * there are more than <code>maxSize</code>.  When a <code>JdbcClient</code> using the cache
+ * updates a table, all entries for queries that read from the table are removed.  Updates
+ * done elsewhere are only seen when entries time out.
+ * <p>
+ * Table names are found by a simple scan of the SQL, looking for names following
+ * <code>FROM</code>, <code>JOIN</code>, <code>INTO</code>, <code>UPDATE</code> and
+ * <code>TABLE</code>.  Schema prefixes are ignored.  Updates in which no table is found,
+ * and all transactions, clear the entire cache.  If cacheable tables are given, only
+ * queries reading nothing but those tables are cached.
+ * <p>
+ * Cached results are shared, so they must not be modified.  Register with
+ * <code>CacheManager</code> to have the cache cleared along with the others.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class QueryResultCache
+implements Clearable {
+
+    private static final Set<String> TABLE_KEYWORDS = new HashSet<>(Arrays.asList("FROM", "JOIN", "INTO", "UPDATE", "TABLE"));
+    private static final Set<String> NON_ALIASES = new HashSet<>(Arrays.asList(
+        "WHERE", "GROUP", "ORDER", "HAVING", "JOIN", "INNER", "LEFT", "RIGHT", "FULL", "OUTER", "CROSS", "NATURAL",
+        "ON", "USING", "UNION", "EXCEPT", "INTERSECT", "MINUS", "LIMIT", "OFFSET", "FETCH", "FOR", "WINDOW", "SET",
+        "VALUES", "SELECT", "RETURNING"));
+    private final TimeProvider timeProvider;
+    private final long timeToLiveMs;
+    private final LruCacheMap<Key, Entry> map;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile Set<String> cacheableTables = Collections.emptySet();
+
+    /**
+     * The kind of <code>JdbcClient</code> call a result was made for.
+     */
+    enum CallKind {
+        EXECUTE_QUERY,
+        QUERY_FOR_LIST
+    }
+
+    private static final class Key {
+
+        private final CallKind kind;
+        private final Object resultBuilder;
+        private final String sql;
+        private final Object[] args;
+        private final int hashCode;
+
+        Key(final CallKind kind, final Object resultBuilder, final String sql, final Object[] args) {
+            this.kind = kind;
+            this.resultBuilder = resultBuilder;
+            this.sql = sql;
+            this.args = args.clone();
+            this.hashCode = ((kind.hashCode() * 31 + System.identityHashCode(resultBuilder)) * 31 + sql.hashCode()) * 31
+                            + Arrays.deepHashCode(this.args);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return hashCode == other.hashCode && kind == other.kind && resultBuilder == other.resultBuilder
+                   && sql.equals(other.sql) && Arrays.deepEquals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final Object value;
+        private final long expiresAtMs;
+        private final Set<String> tables;
+
+        Entry(final Object value, final long expiresAtMs, final Set<String> tables) {
+            this.value = value;
+            this.expiresAtMs = expiresAtMs;
+            this.tables = tables;
+        }
+
+    }
+
+    public QueryResultCache(final int maxSize, final long timeToLiveMs, final TimeProvider timeProvider) {
+        this.map = new LruCacheMap<>(maxSize);
+        this.timeToLiveMs = timeToLiveMs;
+        this.timeProvider = timeProvider;
+    }
+
+    public QueryResultCache(final int maxSize, final long timeToLiveMs) {
+        this(maxSize, timeToLiveMs, SystemTimeProvider.getInstance());
+    }
+
+    private static boolean isIdentifierStart(final char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isIdentifierPart(final char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    /* Splits into upper case names, possibly dotted, and single punctuation characters.
+     * Skips literals and comments. */
+    private static List<String> tokenize(final String sql) {
+        final List<String> tokens = new ArrayList<>();
+        final int length = sql.length();
+        int q = 0;
+        while (q < length) {
+            final char c = sql.charAt(q);
+            if (c == '\'') {
+                final int end = sql.indexOf('\'', q + 1);
+                q = end < 0 ? length : end + 1;
+            } else if (c == '-' && q + 1 < length && sql.charAt(q + 1) == '-') {
+                final int end = sql.indexOf('\n', q);
+                q = end < 0 ? length : end + 1;
+            } else if (c == '/' && q + 1 < length && sql.charAt(q + 1) == '*') {
+                final int end = sql.indexOf("*/", q + 2);
+                q = end < 0 ? length : end + 2;
+            } else if (isIdentifierStart(c) || c == '"') {
+                final StringBuilder sb = new StringBuilder();
+                for (;;) {
+                    if (q < length && sql.charAt(q) == '"') {
+                        final int end = sql.indexOf('"', q + 1);
+                        sb.append(sql, q + 1, end < 0 ? length : end);
+                        q = end < 0 ? length : end + 1;
+                    } else {
+                        while (q < length && isIdentifierPart(sql.charAt(q))) {
+                            sb.append(sql.charAt(q++));
+                        }
+                    }
+                    if (q + 1 < length && sql.charAt(q) == '.' && (isIdentifierStart(sql.charAt(q + 1)) || sql.charAt(q + 1) == '"')) {
+                        sb.append('.');
+                        ++q;
+                    } else {
+                        break;
+                    }
+                }
+                tokens.add(sb.toString().toUpperCase());
+            } else if (Character.isWhitespace(c)) {
+                ++q;
+            } else {
+                tokens.add(String.valueOf(c));
+                ++q;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isName(final String token) {
+        return isIdentifierStart(token.charAt(0)) || token.length() > 1;
+    }
+
+    private static String withoutSchema(final String name) {
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * @return the upper case names of the tables the SQL refers to, or an empty set if
+     *         none are found.
+     */
+    static Set<String> findTables(final String sql) {
+        final Set<String> tables = new HashSet<>();
+        final List<String> tokens = tokenize(sql);
+        for (int q = 0; q < tokens.size() - 1; q++) {
+            final String keyword = tokens.get(q);
+            if (!TABLE_KEYWORDS.contains(keyword)) {
+                continue;
+            }
+            int pos = q + 1;
+            while (pos < tokens.size() && isName(tokens.get(pos)) && !NON_ALIASES.contains(tokens.get(pos))) {
+                tables.add(withoutSchema(tokens.get(pos++)));
+                if (!"FROM".equals(keyword)) {
+                    break;
+                }
+                /* Skip alias, and continue if comma separated list. */
+                if (pos < tokens.size() && "AS".equals(tokens.get(pos))) {
+                    ++pos;
+                }
+                if (pos < tokens.size() && isName(tokens.get(pos)) && !NON_ALIASES.contains(tokens.get(pos))) {
+                    ++pos;
+                }
+                if (pos < tokens.size() && ",".equals(tokens.get(pos))) {
+                    ++pos;
+                } else {
+                    break;
+                }
+            }
+        }
+        return tables;
+    }
+
+    private boolean isCacheable(final Set<String> tables) {
+        final Set<String> cacheable = cacheableTables;
+        return cacheable.isEmpty() || (!tables.isEmpty() && cacheable.containsAll(tables));
+    }
+
+    /**
+     * @param resultBuilder the handler or row mapper <code>query</code> uses.
+     * @return the cached result of the query, or the result of <code>query</code>, which
+     *         is then cached if appropriate.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(final CallKind kind, final Object resultBuilder, final String sql, final Object[] args, final Supplier<T> query) {
+        final Key key = new Key(kind, resultBuilder, sql, args);
+        synchronized (map) {
+            final Entry entry = map.get(key);
+            if (entry != null) {
+                if (entry.expiresAtMs > timeProvider.currentTimeMillis()) {
+                    hits.increment();
+                    return (T) entry.value;
+                }
+                map.remove(key);
+            }
+        }
+        misses.increment();
+        final Set<String> tables = findTables(sql);
+        if (!isCacheable(tables)) {
+            return query.get();
+        }
+        final long invalidationsBefore = invalidations.get();
+        final T value = query.get();
+        synchronized (map) {
+            /* Do not cache what may have been read before an invalidation took effect. */
+            if (invalidations.get() == invalidationsBefore) {
+                map.put(key, new Entry(value, timeProvider.currentTimeMillis() + timeToLiveMs, tables));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Removes entries for queries reading any of the tables written to by the given SQL,
+     * or all entries if no tables are found.
+     */
+    public void invalidate(final String updateSql) {
+        final Set<String> tables = findTables(updateSql);
+        if (tables.isEmpty()) {
+            clear();
+            return;
+        }
+        synchronized (map) {
+            invalidations.incrementAndGet();
+            final Iterator<Map.Entry<Key, Entry>> iterator = map.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Set<String> entryTables = iterator.next().getValue().tables;
+                if (entryTables.isEmpty() || !Collections.disjoint(entryTables, tables)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (map) {
+            invalidations.incrementAndGet();
+            map.clear();
+        }
+    }
+
+    /**
+     * @param tables the only tables queries may read to be cached, or none to cache all
+     *               queries.  Case insensitive.
+     */
+    public void setCacheableTables(final String... tables) {
+        final Set<String> set = new HashSet<>();
+        for (final String table : tables) {
+            set.add(withoutSchema(table.toUpperCase()));
+        }
+        cacheableTables = set;
+    }
+
+    public int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        final long numHits = getHits();
+        final long total = numHits + getMisses();
+        return total == 0L ? 0.0 : (double) numHits / total;
+    }
+
+}
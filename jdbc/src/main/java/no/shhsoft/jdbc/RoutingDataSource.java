@@ -0,0 +1,261 @@
+package no.shhsoft.jdbc;
+
+import no.shhsoft.thread.DaemonThread;
+import no.shhsoft.time.SystemTimeProvider;
+import no.shhsoft.time.TimeProvider;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Routes connections between a primary database and its read replicas, each with a pool
+ * of its own.  <code>getConnection</code> always gives a primary connection, while
+ * <code>getReadDataSource</code> gives a view that hands out replica connections.  Give
+ * both to a <code>JdbcClient</code> to have queries go to the replicas, and updates and
+ * transactions to the primary.  Remember that replicas may lag behind the primary.
+ * <p>
+ * A replica that fails to give a connection is ejected for <code>ejectionTimeMs</code>,
+ * while one that merely times out waiting for a free pooled connection is skipped.
+ * After <code>startHealthChecks</code>, a background thread also ejects replicas that fail
+ * a validity check, and lets them back in as soon as they pass.  When no replica is
+ * available, reads go to the primary.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class RoutingDataSource
+extends AbstractDataSource {
+
+    private static final Logger LOG = Logger.getLogger(RoutingDataSource.class.getName());
+    private final PoolingDataSource primary;
+    private final Replica[] replicas;
+    private final TimeProvider timeProvider;
+    private final DataSource readDataSource = new ReadDataSource();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private volatile ReplicaSelection replicaSelection = ReplicaSelection.ROUND_ROBIN;
+    private volatile long ejectionTimeMs = 30L * 1000L;
+    private volatile long healthCheckIntervalMs = 5L * 1000L;
+    private volatile boolean fallbackToPrimary = true;
+    private HealthCheckThread healthCheckThread;
+
+    public enum ReplicaSelection {
+        /** Use the replicas in turn. */
+        ROUND_ROBIN,
+        /** Use the replica with the fewest connections lent out. */
+        LEAST_ACTIVE
+    }
+
+    private static final class Replica {
+
+        private final PoolingDataSource dataSource;
+        private volatile long ejectedUntilMs;
+
+        Replica(final PoolingDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        boolean isAvailable(final long now) {
+            return now >= ejectedUntilMs;
+        }
+
+    }
+
+    private final class ReadDataSource
+    extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection()
+        throws SQLException {
+            return getReadConnection();
+        }
+
+    }
+
+    private final class HealthCheckThread
+    extends DaemonThread {
+
+        @Override
+        public void run() {
+            while (!shouldStop()) {
+                checkHealth();
+                try {
+                    Thread.sleep(healthCheckIntervalMs);
+                } catch (final InterruptedException e) {
+                    /* Probably stopped.  Checked by the loop. */
+                }
+            }
+        }
+
+    }
+
+    public RoutingDataSource(final PoolingDataSource primary, final List<PoolingDataSource> replicas, final TimeProvider timeProvider) {
+        this.primary = primary;
+        this.replicas = new Replica[replicas.size()];
+        for (int q = 0; q < this.replicas.length; q++) {
+            this.replicas[q] = new Replica(replicas.get(q));
+        }
+        this.timeProvider = timeProvider;
+    }
+
+    public RoutingDataSource(final PoolingDataSource primary, final List<PoolingDataSource> replicas) {
+        this(primary, replicas, SystemTimeProvider.getInstance());
+    }
+
+    private void eject(final Replica replica, final Throwable reason) {
+        final long now = timeProvider.currentTimeMillis();
+        if (replica.isAvailable(now)) {
+            LOG.log(Level.WARNING, "Ejecting replica " + replica.dataSource.getUrl(), reason);
+        }
+        replica.ejectedUntilMs = now + ejectionTimeMs;
+    }
+
+    private List<Replica> orderCandidates() {
+        final long now = timeProvider.currentTimeMillis();
+        final List<Replica> candidates = new ArrayList<>(replicas.length);
+        final int start = replicas.length == 0 ? 0 : Math.floorMod(nextReplica.getAndIncrement(), replicas.length);
+        for (int q = 0; q < replicas.length; q++) {
+            final Replica replica = replicas[(start + q) % replicas.length];
+            if (replica.isAvailable(now)) {
+                candidates.add(replica);
+            }
+        }
+        if (replicaSelection == ReplicaSelection.LEAST_ACTIVE) {
+            /* Stable sort, so ties are broken round-robin. */
+            candidates.sort((replica1, replica2) -> Integer.compare(replica1.dataSource.getNumActive(),
+                                                                    replica2.dataSource.getNumActive()));
+        }
+        return candidates;
+    }
+
+    /**
+     * @return a connection to a replica, or to the primary if no replica is available
+     *         and <code>fallbackToPrimary</code> is set.
+     */
+    public Connection getReadConnection()
+    throws SQLException {
+        NoSuchElementException busy = null;
+        for (final Replica replica : orderCandidates()) {
+            try {
+                return replica.dataSource.getConnection();
+            } catch (final SQLException | UncheckedSqlException e) {
+                eject(replica, e);
+            } catch (final NoSuchElementException e) {
+                /* Timed out waiting for a free connection.  The replica is busy, not down. */
+                busy = e;
+            }
+        }
+        if (!fallbackToPrimary) {
+            if (busy != null) {
+                throw busy;
+            }
+            throw new UncheckedSqlException("No replica available");
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection()
+    throws SQLException {
+        return primary.getConnection();
+    }
+
+    /**
+     * @return a <code>DataSource</code> whose <code>getConnection</code> is
+     *         <code>getReadConnection</code> of this.
+     */
+    public DataSource getReadDataSource() {
+        return readDataSource;
+    }
+
+    public PoolingDataSource getPrimary() {
+        return primary;
+    }
+
+    /**
+     * Checks the validity of a connection to each replica, ejecting those that fail,
+     * and letting those that pass back in.
+     */
+    public void checkHealth() {
+        for (final Replica replica : replicas) {
+            try {
+                if (replica.dataSource.isHealthy()) {
+                    replica.ejectedUntilMs = 0L;
+                } else {
+                    eject(replica, null);
+                }
+            } catch (final RuntimeException e) {
+                eject(replica, e);
+            }
+        }
+    }
+
+    public synchronized void startHealthChecks() {
+        if (healthCheckThread != null) {
+            return;
+        }
+        healthCheckThread = new HealthCheckThread();
+        healthCheckThread.setName("replica-health-check");
+        healthCheckThread.start();
+    }
+
+    public synchronized void stopHealthChecks() {
+        if (healthCheckThread == null) {
+            return;
+        }
+        healthCheckThread.stop();
+        healthCheckThread = null;
+    }
+
+    /**
+     * @return the number of replicas not currently ejected.
+     */
+    public int getNumAvailableReplicas() {
+        final long now = timeProvider.currentTimeMillis();
+        int num = 0;
+        for (final Replica replica : replicas) {
+            if (replica.isAvailable(now)) {
+                ++num;
+            }
+        }
+        return num;
+    }
+
+    public void setReplicaSelection(final ReplicaSelection replicaSelection) {
+        this.replicaSelection = replicaSelection;
+    }
+
+    public ReplicaSelection getReplicaSelection() {
+        return replicaSelection;
+    }
+
+    public void setEjectionTimeMs(final long ejectionTimeMs) {
+        this.ejectionTimeMs = ejectionTimeMs;
+    }
+
+    public long getEjectionTimeMs() {
+        return ejectionTimeMs;
+    }
+
+    public void setHealthCheckIntervalMs(final long healthCheckIntervalMs) {
+        this.healthCheckIntervalMs = healthCheckIntervalMs;
+    }
+
+    public long getHealthCheckIntervalMs() {
+        return healthCheckIntervalMs;
+    }
+
+    public void setFallbackToPrimary(final boolean fallbackToPrimary) {
+        this.fallbackToPrimary = fallbackToPrimary;
+    }
+
+    public boolean isFallbackToPrimary() {
+        return fallbackToPrimary;
+    }
+
+}
@@ -0,0 +1,17 @@
+package no.shhsoft.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Turns the current row of a <code>ResultSet</code> into an object.  Must not move the
+ * cursor.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public interface RowMapper<T> {
+
+    T mapRow(ResultSet rs)
+    throws SQLException;
+
+}
@@ -0,0 +1,61 @@
+package no.shhsoft.jdbc;
+
+import java.util.Date;
+
+/**
+ * <code>RowMapper</code>s for common column types.  Like <code>ParameterBinder</code>,
+ * the typed mappers pick the right <code>getXxx</code> method for each column once, when
+ * created.  SQL <code>NULL</code> becomes <code>null</code>, except in the primitive
+ * columns of <code>TypedRow</code>s.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class RowMappers {
+
+    public static final RowMapper<Integer> INTEGER = rs -> (Integer) ValueKind.readBoxed(rs, 1, ValueKind.INT);
+    public static final RowMapper<Long> LONG = rs -> (Long) ValueKind.readBoxed(rs, 1, ValueKind.LONG);
+    public static final RowMapper<String> STRING = rs -> rs.getString(1);
+    public static final RowMapper<Date> DATE = rs -> (Date) ValueKind.readObject(rs, 1, ValueKind.DATE);
+
+    private RowMappers() {
+        /* not to be instantiated. */
+    }
+
+    /**
+     * @param types the type of each column, in order.  The types of
+     *              <code>ParameterBinder</code> are supported.
+     * @return a mapper giving the columns of a row as an array, with primitives boxed.
+     */
+    public static RowMapper<Object[]> forTypes(final Class<?>... types) {
+        final int[] kinds = ValueKind.of(types);
+        return rs -> {
+            final Object[] row = new Object[kinds.length];
+            for (int q = 0; q < kinds.length; q++) {
+                row[q] = ValueKind.readBoxed(rs, q + 1, kinds[q]);
+            }
+            return row;
+        };
+    }
+
+    /**
+     * Like <code>forTypes</code>, but primitive columns are read with the primitive
+     * <code>getXxx</code> methods, and kept unboxed in the returned rows.  Wrapper and
+     * primitive types are treated the same.
+     */
+    public static RowMapper<TypedRow> typedRows(final Class<?>... types) {
+        final int[] kinds = ValueKind.of(types);
+        return rs -> {
+            final TypedRow row = new TypedRow(kinds);
+            for (int q = 0; q < kinds.length; q++) {
+                if (ValueKind.isPrimitive(kinds[q])) {
+                    final long value = ValueKind.readPrimitive(rs, q + 1, kinds[q]);
+                    row.setPrimitive(q, value, rs.wasNull());
+                } else {
+                    row.setObject(q, ValueKind.readObject(rs, q + 1, kinds[q]));
+                }
+            }
+            return row;
+        };
+    }
+
+}
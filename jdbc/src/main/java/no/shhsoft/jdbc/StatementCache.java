@@ -0,0 +1,144 @@
+package no.shhsoft.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps closed <code>PreparedStatement</code>s of a single connection, so that they may
+ * be used again when the same SQL is prepared.  Statements handed out are wrapped so
+ * that <code>close</code> clears their parameters and batch and returns them here.  Only
+ * statements not in use are kept, and the least recently used is closed when the cache
+ * is full.  The fetch size and maximum number of rows are reset on return, while other
+ * settings, such as the query timeout, are not.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+final class StatementCache {
+
+    private final Connection connection;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final Map<Key, PreparedStatement> idle;
+    private boolean closed;
+
+    static final class Key {
+
+        private final String sql;
+        private final int resultSetType;
+        private final int resultSetConcurrency;
+
+        Key(final String sql, final int resultSetType, final int resultSetConcurrency) {
+            this.sql = sql;
+            this.resultSetType = resultSetType;
+            this.resultSetConcurrency = resultSetConcurrency;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return resultSetType == other.resultSetType && resultSetConcurrency == other.resultSetConcurrency
+                   && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return (sql.hashCode() * 31 + resultSetType) * 31 + resultSetConcurrency;
+        }
+
+    }
+
+    StatementCache(final Connection connection, final int maxSize, final LongAdder hits, final LongAdder misses) {
+        this.connection = connection;
+        this.hits = hits;
+        this.misses = misses;
+        this.idle = new LinkedHashMap<>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() <= maxSize) {
+                    return false;
+                }
+                JdbcUtils.close(eldest.getValue());
+                return true;
+            }
+
+        };
+    }
+
+    private synchronized PreparedStatement takeIdle(final Key key) {
+        return closed ? null : idle.remove(key);
+    }
+
+    void giveBack(final Key key, final PreparedStatement statement) {
+        try {
+            if (!statement.isClosed()) {
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.clearWarnings();
+                statement.setFetchSize(0);
+                statement.setMaxRows(0);
+                synchronized (this) {
+                    if (!closed) {
+                        final PreparedStatement previous = idle.put(key, statement);
+                        if (previous != null) {
+                            /* The same SQL was in use twice at once.  Keep one of them. */
+                            JdbcUtils.close(previous);
+                        }
+                        return;
+                    }
+                }
+            }
+        } catch (final SQLException e) {
+            /* Not reusable.  Closed below. */
+        }
+        JdbcUtils.close(statement);
+    }
+
+    PreparedStatement prepareStatement(final String sql, final int resultSetType, final int resultSetConcurrency)
+    throws SQLException {
+        final Key key = new Key(sql, resultSetType, resultSetConcurrency);
+        PreparedStatement statement = takeIdle(key);
+        if (statement != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            statement = connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+        }
+        return new CachedPreparedStatement(this, key, statement);
+    }
+
+    /**
+     * Closes all idle statements, and makes statements in use get closed when they are
+     * returned.
+     */
+    void close() {
+        final List<PreparedStatement> statements;
+        synchronized (this) {
+            closed = true;
+            statements = new ArrayList<>(idle.values());
+            idle.clear();
+        }
+        for (final PreparedStatement statement : statements) {
+            JdbcUtils.close(statement);
+        }
+    }
+
+    synchronized int size() {
+        return idle.size();
+    }
+
+}
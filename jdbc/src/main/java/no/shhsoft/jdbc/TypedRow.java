@@ -0,0 +1,101 @@
+package no.shhsoft.jdbc;
+
+import java.util.Date;
+
+/**
+ * A row read by <code>RowMappers.typedRows</code>, with primitive columns held without
+ * boxing.  Columns are numbered from 1, like in <code>ResultSet</code>, and must be read
+ * with the accessor matching the type given when the mapper was created.  Primitive
+ * accessors give 0 or <code>false</code> for SQL <code>NULL</code>; use
+ * <code>isNull</code> to tell.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class TypedRow {
+
+    private final int[] kinds;
+    private final long[] primitives;
+    private final Object[] objects;
+    private final boolean[] nulls;
+
+    TypedRow(final int[] kinds) {
+        this.kinds = kinds;
+        primitives = new long[kinds.length];
+        objects = new Object[kinds.length];
+        nulls = new boolean[kinds.length];
+    }
+
+    void setPrimitive(final int q, final long value, final boolean isNull) {
+        primitives[q] = value;
+        nulls[q] = isNull;
+    }
+
+    void setObject(final int q, final Object value) {
+        objects[q] = value;
+        nulls[q] = value == null;
+    }
+
+    private int slot(final int column, final int kind) {
+        if (column < 1 || column > kinds.length) {
+            throw new IllegalArgumentException("Column " + column + " out of range 1.." + kinds.length);
+        }
+        final int q = column - 1;
+        if (kinds[q] != kind) {
+            throw new IllegalArgumentException("Column " + column + " is " + ValueKind.getName(kinds[q])
+                                               + ", not " + ValueKind.getName(kind));
+        }
+        return q;
+    }
+
+    public int getNumColumns() {
+        return kinds.length;
+    }
+
+    public boolean isNull(final int column) {
+        if (column < 1 || column > kinds.length) {
+            throw new IllegalArgumentException("Column " + column + " out of range 1.." + kinds.length);
+        }
+        return nulls[column - 1];
+    }
+
+    public int getInt(final int column) {
+        return (int) primitives[slot(column, ValueKind.INT)];
+    }
+
+    public long getLong(final int column) {
+        return primitives[slot(column, ValueKind.LONG)];
+    }
+
+    public short getShort(final int column) {
+        return (short) primitives[slot(column, ValueKind.SHORT)];
+    }
+
+    public byte getByte(final int column) {
+        return (byte) primitives[slot(column, ValueKind.BYTE)];
+    }
+
+    public boolean getBoolean(final int column) {
+        return primitives[slot(column, ValueKind.BOOLEAN)] != 0L;
+    }
+
+    public double getDouble(final int column) {
+        return ValueKind.doubleFromSlot(primitives[slot(column, ValueKind.DOUBLE)]);
+    }
+
+    public float getFloat(final int column) {
+        return (float) ValueKind.doubleFromSlot(primitives[slot(column, ValueKind.FLOAT)]);
+    }
+
+    public String getString(final int column) {
+        return (String) objects[slot(column, ValueKind.STRING)];
+    }
+
+    public Date getDate(final int column) {
+        return (Date) objects[slot(column, ValueKind.DATE)];
+    }
+
+    public byte[] getBytes(final int column) {
+        return (byte[]) objects[slot(column, ValueKind.BYTES)];
+    }
+
+}
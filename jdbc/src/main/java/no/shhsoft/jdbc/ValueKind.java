@@ -0,0 +1,233 @@
+package no.shhsoft.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
+
+/**
+ * The value types known to <code>ParameterBinder</code>, <code>RowMappers</code> and
+ * <code>TypedRow</code>, resolved once from a <code>Class</code> so that binding and
+ * reading is a <code>switch</code> on an <code>int</code>.  Primitive values are held in
+ * <code>long</code> slots, and all others in <code>Object</code> slots.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+final class ValueKind {
+
+    static final int INT = 0;
+    static final int LONG = 1;
+    static final int SHORT = 2;
+    static final int BYTE = 3;
+    static final int BOOLEAN = 4;
+    static final int DOUBLE = 5;
+    static final int FLOAT = 6;
+    static final int STRING = 7;
+    static final int DATE = 8;
+    static final int BYTES = 9;
+    private static final String[] NAMES = { "int", "long", "short", "byte", "boolean", "double", "float", "String", "Date", "byte[]" };
+    private static final int[] SQL_TYPES = {
+        Types.INTEGER, Types.BIGINT, Types.SMALLINT, Types.TINYINT, Types.BOOLEAN, Types.DOUBLE, Types.REAL,
+        Types.VARCHAR, Types.TIMESTAMP, Types.VARBINARY,
+    };
+
+    private ValueKind() {
+        /* not to be instantiated. */
+    }
+
+    static int of(final Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return INT;
+        } else if (type == long.class || type == Long.class) {
+            return LONG;
+        } else if (type == short.class || type == Short.class) {
+            return SHORT;
+        } else if (type == byte.class || type == Byte.class) {
+            return BYTE;
+        } else if (type == boolean.class || type == Boolean.class) {
+            return BOOLEAN;
+        } else if (type == double.class || type == Double.class) {
+            return DOUBLE;
+        } else if (type == float.class || type == Float.class) {
+            return FLOAT;
+        } else if (CharSequence.class.isAssignableFrom(type)) {
+            return STRING;
+        } else if (Date.class.isAssignableFrom(type)) {
+            return DATE;
+        } else if (type == byte[].class) {
+            return BYTES;
+        }
+        throw new RuntimeException("Unhandled type: " + type.getName());
+    }
+
+    static int[] of(final Class<?>... types) {
+        final int[] kinds = new int[types.length];
+        for (int q = 0; q < types.length; q++) {
+            kinds[q] = of(types[q]);
+        }
+        return kinds;
+    }
+
+    static String getName(final int kind) {
+        return NAMES[kind];
+    }
+
+    static boolean isPrimitive(final int kind) {
+        return kind <= FLOAT;
+    }
+
+    static long toSlot(final double value) {
+        return Double.doubleToRawLongBits(value);
+    }
+
+    static double doubleFromSlot(final long slot) {
+        return Double.longBitsToDouble(slot);
+    }
+
+    /**
+     * Binds a primitive value held in a <code>long</code> slot.
+     */
+    static void bindPrimitive(final PreparedStatement stmt, final int index, final int kind, final long slot)
+    throws SQLException {
+        switch (kind) {
+            case INT:
+                stmt.setInt(index, (int) slot);
+                break;
+            case LONG:
+                stmt.setLong(index, slot);
+                break;
+            case SHORT:
+                stmt.setShort(index, (short) slot);
+                break;
+            case BYTE:
+                stmt.setByte(index, (byte) slot);
+                break;
+            case BOOLEAN:
+                stmt.setBoolean(index, slot != 0L);
+                break;
+            case DOUBLE:
+                stmt.setDouble(index, doubleFromSlot(slot));
+                break;
+            case FLOAT:
+                stmt.setFloat(index, (float) doubleFromSlot(slot));
+                break;
+            default:
+                throw new RuntimeException("Unhandled type: " + getName(kind));
+        }
+    }
+
+    /**
+     * Binds a value of any kind, given as an object, using <code>setNull</code> with the
+     * SQL type of the kind for <code>null</code>.
+     */
+    static void bindObject(final PreparedStatement stmt, final int index, final int kind, final Object value)
+    throws SQLException {
+        if (value == null) {
+            stmt.setNull(index, SQL_TYPES[kind]);
+            return;
+        }
+        switch (kind) {
+            case BOOLEAN:
+                stmt.setBoolean(index, (Boolean) value);
+                break;
+            case DOUBLE:
+            case FLOAT:
+                bindPrimitive(stmt, index, kind, toSlot(((Number) value).doubleValue()));
+                break;
+            case STRING:
+                stmt.setString(index, value.toString());
+                break;
+            case DATE:
+                stmt.setTimestamp(index, new Timestamp(((Date) value).getTime()));
+                break;
+            case BYTES:
+                stmt.setBytes(index, (byte[]) value);
+                break;
+            default:
+                bindPrimitive(stmt, index, kind, ((Number) value).longValue());
+        }
+    }
+
+    static void bindNull(final PreparedStatement stmt, final int index, final int kind)
+    throws SQLException {
+        stmt.setNull(index, SQL_TYPES[kind]);
+    }
+
+    /**
+     * Reads a primitive column into a <code>long</code> slot.  Check
+     * <code>rs.wasNull()</code> afterwards.
+     */
+    static long readPrimitive(final ResultSet rs, final int index, final int kind)
+    throws SQLException {
+        switch (kind) {
+            case INT:
+                return rs.getInt(index);
+            case LONG:
+                return rs.getLong(index);
+            case SHORT:
+                return rs.getShort(index);
+            case BYTE:
+                return rs.getByte(index);
+            case BOOLEAN:
+                return rs.getBoolean(index) ? 1L : 0L;
+            case DOUBLE:
+                return toSlot(rs.getDouble(index));
+            case FLOAT:
+                return toSlot(rs.getFloat(index));
+            default:
+                throw new RuntimeException("Unhandled type: " + getName(kind));
+        }
+    }
+
+    /**
+     * Reads a non-primitive column.
+     */
+    static Object readObject(final ResultSet rs, final int index, final int kind)
+    throws SQLException {
+        switch (kind) {
+            case STRING:
+                return rs.getString(index);
+            case DATE:
+                final Timestamp timestamp = rs.getTimestamp(index);
+                return timestamp == null ? null : new Date(timestamp.getTime());
+            case BYTES:
+                return rs.getBytes(index);
+            default:
+                throw new RuntimeException("Unhandled type: " + getName(kind));
+        }
+    }
+
+    /**
+     * Reads a column of any kind as an object, boxing primitives, and giving
+     * <code>null</code> for SQL <code>NULL</code>.
+     */
+    static Object readBoxed(final ResultSet rs, final int index, final int kind)
+    throws SQLException {
+        if (!isPrimitive(kind)) {
+            return readObject(rs, index, kind);
+        }
+        final long slot = readPrimitive(rs, index, kind);
+        if (rs.wasNull()) {
+            return null;
+        }
+        switch (kind) {
+            case INT:
+                return (int) slot;
+            case LONG:
+                return slot;
+            case SHORT:
+                return (short) slot;
+            case BYTE:
+                return (byte) slot;
+            case BOOLEAN:
+                return slot != 0L;
+            case DOUBLE:
+                return doubleFromSlot(slot);
+            default:
+                return (float) doubleFromSlot(slot);
+        }
+    }
+
+}
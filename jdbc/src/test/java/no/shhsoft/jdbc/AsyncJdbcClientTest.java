@@ -0,0 +1,67 @@
+package no.shhsoft.jdbc;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class AsyncJdbcClientTest
+extends AbstractJdbcTestBase {
+
+    private static final String TABLE_NAME = AsyncJdbcClientTest.class.getName().replaceAll(".*\\.", "");
+
+    @BeforeClass
+    public static void createTable() {
+        getJdbcClient1().executeUpdate("CREATE TABLE " + TABLE_NAME + "(id INTEGER PRIMARY KEY)");
+    }
+
+    @Test
+    public void shouldRunOperationsWithBoundedConcurrency() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        try (final AsyncJdbcClient client = new AsyncJdbcClient(getJdbcClient1(), 3)) {
+            final List<CompletableFuture<Object>> futures = new ArrayList<>();
+            for (int q = 0; q < 30; q++) {
+                final int id = q;
+                futures.add(client.executeTransaction(conn -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try (final PreparedStatement stmt = conn.prepareStatement("INSERT INTO " + TABLE_NAME + " (id) VALUES (?)")) {
+                        Thread.sleep(5L);
+                        stmt.setInt(1, id);
+                        return stmt.executeUpdate();
+                    } catch (final InterruptedException e) {
+                        throw new RuntimeException(e);
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                }));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            assertTrue(maxRunning.get() <= 3);
+            final List<Integer> ids = client.queryForList("SELECT id FROM " + TABLE_NAME + " WHERE id < ?", rs -> rs.getInt(1), 100).join();
+            assertEquals(30, ids.size());
+        }
+    }
+
+    @Test
+    public void shouldCompleteExceptionallyOnSqlErrors() {
+        try (final AsyncJdbcClient client = new AsyncJdbcClient(getJdbcClient1(), 1, false)) {
+            assertFalse(client.isUsingVirtualThreads());
+            client.executeUpdate("INSERT INTO nonexisting_table (id) VALUES (?)", 1).join();
+            fail("Expected exception");
+        } catch (final CompletionException e) {
+            assertTrue(e.getCause() instanceof UncheckedSqlException);
+        }
+    }
+
+}
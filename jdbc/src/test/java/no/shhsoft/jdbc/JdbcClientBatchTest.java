@@ -0,0 +1,67 @@
+package no.shhsoft.jdbc;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class JdbcClientBatchTest
+extends AbstractJdbcTestBase {
+
+    private static final String TABLE_NAME = JdbcClientBatchTest.class.getName().replaceAll(".*\\.", "");
+
+    @BeforeClass
+    public static void createTable() {
+        getJdbcClient1().executeUpdate("CREATE TABLE " + TABLE_NAME + "(id INTEGER PRIMARY KEY, name VARCHAR(80))");
+    }
+
+    private static long countRows(final int fromId, final int toId) {
+        return (Long) getJdbcClient1().executeQuery("SELECT COUNT(*) FROM " + TABLE_NAME + " WHERE id >= ? AND id < ?", rs -> {
+            assertTrue(rs.next());
+            return rs.getLong(1);
+        }, fromId, toId);
+    }
+
+    private static List<Object[]> rows(final int fromId, final int toId) {
+        final List<Object[]> rows = new ArrayList<>();
+        for (int id = fromId; id < toId; id++) {
+            rows.add(new Object[] { id, "name " + id });
+        }
+        return rows;
+    }
+
+    @Test
+    public void shouldInsertAllRowsInChunks() {
+        final int[] counts = getJdbcClient1().executeBatch("INSERT INTO " + TABLE_NAME + " (id, name) VALUES (?, ?)", rows(0, 25), 10);
+        assertEquals(25, counts.length);
+        for (final int count : counts) {
+            assertEquals(1, count);
+        }
+        assertEquals(25L, countRows(0, 25));
+        final int[] updated = getJdbcClient1().executeBatch("UPDATE " + TABLE_NAME + " SET name = ? WHERE id < ?",
+                                                            Arrays.asList(new ArgPreparedStatementSetter("x", 5),
+                                                                          new ArgPreparedStatementSetter("y", 100)), 10, true);
+        assertArrayEquals(new int[] { 5, 25 }, updated);
+    }
+
+    @Test
+    public void shouldKeepEarlierChunksWhenLaterChunkFailsInTransactions() {
+        final List<Object[]> rows = rows(100, 120);
+        rows.add(new Object[] { 100, "duplicate" });
+        try {
+            getJdbcClient1().executeBatch("INSERT INTO " + TABLE_NAME + " (id, name) VALUES (?, ?)", rows, 10, true);
+            fail("Expected exception");
+        } catch (final UncheckedSqlException e) {
+            assertTrue(e.getMessage().contains("batch"));
+        }
+        assertEquals(20L, countRows(100, 200));
+    }
+
+}
@@ -0,0 +1,88 @@
+package no.shhsoft.jdbc;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class JdbcClientStreamTest
+extends AbstractJdbcTestBase {
+
+    private static final String TABLE_NAME = JdbcClientStreamTest.class.getName().replaceAll(".*\\.", "");
+    private static final int NUM_ROWS = 1000;
+    private static final RowMapper<String> NAME_MAPPER = rs -> rs.getString("name");
+
+    @BeforeClass
+    public static void createTable() {
+        getJdbcClient1().executeUpdate("CREATE TABLE " + TABLE_NAME + "(id INTEGER PRIMARY KEY, name VARCHAR(80))");
+        final List<Object[]> rows = new ArrayList<>();
+        for (int id = 0; id < NUM_ROWS; id++) {
+            rows.add(new Object[] { id, "name " + id });
+        }
+        getJdbcClient1().executeBatch("INSERT INTO " + TABLE_NAME + " (id, name) VALUES (?, ?)", rows, 100);
+    }
+
+    private static int getNumActiveConnections() {
+        return ((PoolingDataSource) getDataSource1()).getNumActive();
+    }
+
+    private static JdbcClient createClient() {
+        final JdbcClient client = new JdbcClient(getDataSource1());
+        client.setFetchSize(10);
+        return client;
+    }
+
+    @Test
+    public void shouldStreamAllRowsAndReleaseConnection() {
+        final List<String> names;
+        try (final Stream<String> stream = createClient().queryForStream("SELECT name FROM " + TABLE_NAME + " ORDER BY id", NAME_MAPPER)) {
+            names = stream.collect(Collectors.toList());
+        }
+        assertEquals(NUM_ROWS, names.size());
+        assertEquals("name 999", names.get(NUM_ROWS - 1));
+        assertEquals(0, getNumActiveConnections());
+    }
+
+    @Test
+    public void shouldReleaseConnectionWhenClosedEarly() {
+        try (final Stream<String> stream = createClient().queryForStream("SELECT name FROM " + TABLE_NAME + " WHERE id >= ? ORDER BY id",
+                                                                          NAME_MAPPER, 10)) {
+            assertEquals("name 10", stream.findFirst().orElse(null));
+        }
+        assertEquals(0, getNumActiveConnections());
+    }
+
+    @Test
+    public void shouldMapRowsToList() {
+        final List<Integer> ids = createClient().queryForList("SELECT id FROM " + TABLE_NAME + " WHERE id < ? ORDER BY id",
+                                                              rs -> rs.getInt(1), 3);
+        assertEquals(List.of(0, 1, 2), ids);
+    }
+
+    @Test
+    public void shouldMapRowsToListWithSetterLambda() {
+        final List<Integer> ids = createClient().queryForListWithSetter("SELECT id FROM " + TABLE_NAME + " WHERE id < ? ORDER BY id",
+                                                                        stmt -> stmt.setInt(1, 2), rs -> rs.getInt(1));
+        assertEquals(List.of(0, 1), ids);
+    }
+
+    @Test
+    public void shouldReleaseConnectionWhenMappingFails() {
+        try {
+            createClient().queryForEach("SELECT name FROM " + TABLE_NAME, null, rs -> rs.getString("nonexisting"), name -> { });
+            fail("Expected exception");
+        } catch (final UncheckedSqlException e) {
+            assertTrue(e.getMessage().contains("SELECT name"));
+        }
+        assertEquals(0, getNumActiveConnections());
+    }
+
+}
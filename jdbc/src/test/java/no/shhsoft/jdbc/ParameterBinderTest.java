@@ -0,0 +1,99 @@
+package no.shhsoft.jdbc;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class ParameterBinderTest
+extends AbstractJdbcTestBase {
+
+    private static final String TABLE_NAME = ParameterBinderTest.class.getName().replaceAll(".*\\.", "");
+    private static final ParameterBinder INSERT_BINDER = ParameterBinder.forTypes(int.class, long.class, String.class, Date.class);
+    private static final String INSERT_SQL = "INSERT INTO " + TABLE_NAME + " (id, amount, name, created) VALUES (?, ?, ?, ?)";
+
+    @BeforeClass
+    public static void createTable() {
+        getJdbcClient1().executeUpdate("CREATE TABLE " + TABLE_NAME + "(id INTEGER PRIMARY KEY, amount BIGINT, name VARCHAR(80), created TIMESTAMP)");
+    }
+
+    @Test
+    public void shouldBindAndReadTypedValues() {
+        final Date now = new Date();
+        getJdbcClient1().executeUpdate(INSERT_SQL, INSERT_BINDER.setter(1, Long.MAX_VALUE, "foo", now));
+        getJdbcClient1().executeUpdate(INSERT_SQL, INSERT_BINDER.setter(2, null, null, null));
+        final List<Object[]> rows = getJdbcClient1().queryForListWithSetter("SELECT id, amount, name, created FROM " + TABLE_NAME + " WHERE id <= ? ORDER BY id",
+                                                                            ParameterBinder.forTypes(Integer.class).setter(2),
+                                                                            RowMappers.forTypes(Integer.class, Long.class, String.class, Date.class));
+        assertEquals(2, rows.size());
+        assertArrayEquals(new Object[] { 1, Long.MAX_VALUE, "foo", now }, rows.get(0));
+        assertArrayEquals(new Object[] { 2, null, null, null }, rows.get(1));
+        assertEquals(Long.valueOf(Long.MAX_VALUE), getJdbcClient1().queryForList("SELECT amount FROM " + TABLE_NAME + " WHERE id = ?",
+                                                                                 RowMappers.LONG, 1).get(0));
+    }
+
+    @Test
+    public void shouldBindAndReadWithoutBoxing() {
+        final Date now = new Date();
+        final ParameterBinder.Bindings bindings = INSERT_BINDER.newBindings();
+        bindings.setInt(1, 20).setLong(2, -5L).setString(3, "typed").setDate(4, now);
+        getJdbcClient1().executeUpdate(INSERT_SQL, bindings);
+        bindings.clear().setInt(1, 21).setNull(2).setNull(3).setNull(4);
+        getJdbcClient1().executeUpdate(INSERT_SQL, bindings);
+        final List<TypedRow> rows = getJdbcClient1().queryForListWithSetter("SELECT id, amount, name, created FROM " + TABLE_NAME
+                                                                            + " WHERE id >= ? AND id <= ? ORDER BY id",
+                                                                            ParameterBinder.forTypes(int.class, int.class).newBindings().setInt(1, 20).setInt(2, 21),
+                                                                            RowMappers.typedRows(int.class, long.class, String.class, Date.class));
+        assertEquals(2, rows.size());
+        assertEquals(20, rows.get(0).getInt(1));
+        assertEquals(-5L, rows.get(0).getLong(2));
+        assertEquals("typed", rows.get(0).getString(3));
+        assertEquals(now, rows.get(0).getDate(4));
+        assertFalse(rows.get(0).isNull(2));
+        assertEquals(0L, rows.get(1).getLong(2));
+        assertTrue(rows.get(1).isNull(2));
+        assertNull(rows.get(1).getString(3));
+    }
+
+    @Test
+    public void shouldRejectMismatchingOrMissingBindings() {
+        final ParameterBinder.Bindings bindings = INSERT_BINDER.newBindings();
+        try {
+            bindings.setLong(1, 1L);
+            fail("Expected exception was not thrown.");
+        } catch (final IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("int"));
+        }
+        bindings.setInt(1, 30);
+        try {
+            getJdbcClient1().executeUpdate(INSERT_SQL, bindings);
+            fail("Expected exception was not thrown.");
+        } catch (final IllegalStateException e) {
+            assertTrue(e.getMessage().contains("Parameter 2"));
+        }
+    }
+
+    @Test
+    public void shouldReuseSetters() {
+        final PreparedStatementSetter setter = new ArgPreparedStatementSetter(new Object[] { 10, 1L, "bar", new Date() });
+        assertEquals(1, getJdbcClient1().executeUpdate(INSERT_SQL, setter));
+        assertEquals(1, getJdbcClient1().executeUpdate("DELETE FROM " + TABLE_NAME + " WHERE id = ? AND amount = ? AND name = ? AND created = ?", setter));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectWrongNumberOfValues() {
+        INSERT_BINDER.setter(1, 2L);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void shouldRejectUnknownTypes() {
+        ParameterBinder.forTypes(Object.class);
+    }
+
+}
@@ -0,0 +1,100 @@
+package no.shhsoft.jdbc;
+
+import no.shhsoft.time.TestTimeProvider;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class QueryResultCacheTest
+extends AbstractJdbcTestBase {
+
+    private static final String TABLE_NAME = QueryResultCacheTest.class.getName().replaceAll(".*\\.", "");
+    private static final String OTHER_TABLE_NAME = TABLE_NAME + "Other";
+
+    @BeforeClass
+    public static void createTables() {
+        getJdbcClient1().executeUpdate("CREATE TABLE " + TABLE_NAME + "(id INTEGER PRIMARY KEY, name VARCHAR(80))");
+        getJdbcClient1().executeUpdate("CREATE TABLE " + OTHER_TABLE_NAME + "(id INTEGER PRIMARY KEY)");
+    }
+
+    private static void assertTables(final String sql, final String... tables) {
+        assertEquals(new HashSet<>(Arrays.asList(tables)), QueryResultCache.findTables(sql));
+    }
+
+    @Test
+    public void shouldFindTables() {
+        assertTables("SELECT a.x FROM foo a, public.bar AS b JOIN \"Baz\" ON a.id = b.id WHERE x = 'FROM fake'", "FOO", "BAR", "BAZ");
+        assertTables("SELECT * FROM (SELECT id FROM inner_table) t", "INNER_TABLE");
+        assertTables("INSERT INTO foo (id) SELECT id FROM bar -- FROM comment", "FOO", "BAR");
+        assertTables("UPDATE foo SET x = 1", "FOO");
+        assertTables("DELETE FROM foo WHERE id = ?", "FOO");
+        assertTables("TRUNCATE TABLE foo", "FOO");
+        assertTables("SELECT 1");
+    }
+
+    @Test
+    public void shouldCacheUntilTableIsUpdated() {
+        final JdbcClient client = new JdbcClient(getDataSource1());
+        final QueryResultCache cache = new QueryResultCache(100, 60000L);
+        client.setResultCache(cache);
+        final String sql = "SELECT name FROM " + TABLE_NAME + " WHERE id = ?";
+        client.executeUpdate("INSERT INTO " + TABLE_NAME + " (id, name) VALUES (?, ?)", 1, "first");
+        assertEquals(List.of("first"), client.queryForList(sql, RowMappers.STRING, 1));
+        assertEquals(List.of("first"), client.queryForList(sql, RowMappers.STRING, 1));
+        assertEquals(1L, cache.getHits());
+        new JdbcClient(getDataSource1()).executeUpdate("UPDATE " + TABLE_NAME + " SET name = ?", "uncached");
+        assertEquals(List.of("first"), client.queryForList(sql, RowMappers.STRING, 1));
+        client.executeUpdate("INSERT INTO " + OTHER_TABLE_NAME + " (id) VALUES (?)", 1);
+        assertEquals(List.of("first"), client.queryForList(sql, RowMappers.STRING, 1));
+        client.executeUpdate("UPDATE " + TABLE_NAME + " SET name = ? WHERE id = ?", "second", 1);
+        assertEquals(List.of("second"), client.queryForList(sql, RowMappers.STRING, 1));
+        assertEquals(0.6, cache.getHitRate(), 0.0001);
+        client.executeTransaction(conn -> null);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldKeepResultsOfDifferentMappersApart() {
+        final JdbcClient client = new JdbcClient(getDataSource1());
+        final QueryResultCache cache = new QueryResultCache(100, 60000L);
+        client.setResultCache(cache);
+        final String sql = "SELECT id FROM " + TABLE_NAME + " WHERE id = ?";
+        client.executeUpdate("INSERT INTO " + TABLE_NAME + " (id, name) VALUES (?, ?)", 2, "mapped");
+        final RowMapper<String> prefixed = rs -> "id" + rs.getInt(1);
+        assertEquals(List.of(2), client.queryForList(sql, RowMappers.INTEGER, 2));
+        assertEquals(List.of("id2"), client.queryForList(sql, prefixed, 2));
+        assertEquals(2, client.executeQuery(sql, ResultSetHandler.SINGLE_INTEGER_RESULT_SET_HANDLER, 2));
+        assertEquals(0L, cache.getHits());
+        assertEquals(List.of(2), client.queryForList(sql, RowMappers.INTEGER, 2));
+        assertEquals(List.of("id2"), client.queryForList(sql, prefixed, 2));
+        assertEquals(2L, cache.getHits());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldExpireAndOnlyCacheGivenTables() {
+        final TestTimeProvider timeProvider = new TestTimeProvider();
+        final QueryResultCache cache = new QueryResultCache(100, 1000L, timeProvider);
+        cache.setCacheableTables(TABLE_NAME.toLowerCase());
+        final JdbcClient client = new JdbcClient(getDataSource1());
+        client.setResultCache(cache);
+        client.executeQuery("SELECT COUNT(*) FROM " + TABLE_NAME, ResultSetHandler.SINGLE_INTEGER_RESULT_SET_HANDLER);
+        client.executeQuery("SELECT COUNT(*) FROM " + OTHER_TABLE_NAME, ResultSetHandler.SINGLE_INTEGER_RESULT_SET_HANDLER);
+        assertEquals(1, cache.size());
+        client.executeQuery("SELECT COUNT(*) FROM " + TABLE_NAME, ResultSetHandler.SINGLE_INTEGER_RESULT_SET_HANDLER);
+        assertEquals(1L, cache.getHits());
+        timeProvider.add(1000L);
+        client.executeQuery("SELECT COUNT(*) FROM " + TABLE_NAME, ResultSetHandler.SINGLE_INTEGER_RESULT_SET_HANDLER);
+        assertEquals(1L, cache.getHits());
+        assertEquals(3L, cache.getMisses());
+    }
+
+}
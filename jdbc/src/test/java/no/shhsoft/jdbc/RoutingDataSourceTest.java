@@ -0,0 +1,162 @@
+package no.shhsoft.jdbc;
+
+import no.shhsoft.time.TestTimeProvider;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class RoutingDataSourceTest {
+
+    private static PoolingDataSource primary;
+    private static PoolingDataSource replica1;
+    private static PoolingDataSource replica2;
+
+    private static PoolingDataSource createDataSource(final String url) {
+        final PoolingDataSource ds = new PoolingDataSource();
+        ds.setUserName("sa");
+        ds.setPassword("");
+        ds.setDriverClassName("org.hsqldb.jdbcDriver");
+        ds.setUrl(url);
+        ds.setValidityCheckStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+        return ds;
+    }
+
+    private static PoolingDataSource createNode(final String name) {
+        final PoolingDataSource ds = createDataSource("jdbc:hsqldb:mem:routing-" + name);
+        final JdbcClient client = new JdbcClient(ds);
+        client.executeUpdate("CREATE TABLE node (name VARCHAR(80))");
+        client.executeUpdate("INSERT INTO node (name) VALUES (?)", name);
+        return ds;
+    }
+
+    private static PoolingDataSource createMissingNode() {
+        return createDataSource("jdbc:hsqldb:mem:routing-missing;ifexists=true");
+    }
+
+    @BeforeClass
+    public static void createNodes() {
+        primary = createNode("primary");
+        replica1 = createNode("replica1");
+        replica2 = createNode("replica2");
+    }
+
+    private static String readNodeName(final JdbcClient client) {
+        return client.queryForList("SELECT name FROM node", RowMappers.STRING).get(0);
+    }
+
+    @Test
+    public void shouldSpreadReadsOverReplicasAndWriteToPrimary() {
+        final JdbcClient client = new JdbcClient(new RoutingDataSource(primary, Arrays.asList(replica1, replica2)));
+        final Set<String> names = new HashSet<>();
+        for (int q = 0; q < 4; q++) {
+            names.add(readNodeName(client));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("replica1", "replica2")), names);
+        client.executeUpdate("CREATE TABLE written (id INTEGER)");
+        client.executeUpdate("INSERT INTO written (id) VALUES (?)", 1);
+        assertEquals(1, new JdbcClient(primary).executeQuery("SELECT COUNT(*) FROM written", ResultSetHandler.SINGLE_INTEGER_RESULT_SET_HANDLER));
+        assertEquals("primary", client.executeTransaction(conn -> new JdbcClient(primary).queryForList("SELECT name FROM node", RowMappers.STRING).get(0)));
+    }
+
+    @Test
+    public void shouldPreferLeastActiveReplica()
+    throws SQLException {
+        final RoutingDataSource routing = new RoutingDataSource(primary, Arrays.asList(replica1, replica2));
+        routing.setReplicaSelection(RoutingDataSource.ReplicaSelection.LEAST_ACTIVE);
+        final JdbcClient client = new JdbcClient(routing);
+        try (final Connection busy = replica1.getConnection()) {
+            assertNotNull(busy);
+            for (int q = 0; q < 3; q++) {
+                assertEquals("replica2", readNodeName(client));
+            }
+        }
+    }
+
+    @Test
+    public void shouldEjectFailingReplica() {
+        final RoutingDataSource routing = new RoutingDataSource(primary, Arrays.asList(createMissingNode(), replica1));
+        final JdbcClient client = new JdbcClient(routing);
+        for (int q = 0; q < 3; q++) {
+            assertEquals("replica1", readNodeName(client));
+        }
+        assertEquals(1, routing.getNumAvailableReplicas());
+        routing.checkHealth();
+        assertEquals(1, routing.getNumAvailableReplicas());
+    }
+
+    @Test
+    public void shouldLetEjectedReplicaBackAfterEjectionTime() {
+        final TestTimeProvider timeProvider = new TestTimeProvider();
+        final RoutingDataSource routing = new RoutingDataSource(primary, Arrays.asList(createMissingNode(), replica1), timeProvider);
+        routing.setEjectionTimeMs(1000L);
+        final JdbcClient client = new JdbcClient(routing);
+        assertEquals("replica1", readNodeName(client));
+        assertEquals("replica1", readNodeName(client));
+        assertEquals(1, routing.getNumAvailableReplicas());
+        timeProvider.add(999L);
+        assertEquals(1, routing.getNumAvailableReplicas());
+        timeProvider.add(1L);
+        assertEquals(2, routing.getNumAvailableReplicas());
+    }
+
+    @Test
+    public void shouldSkipBusyReplicaWithoutEjectingIt()
+    throws SQLException {
+        final PoolingDataSource busyReplica = createDataSource("jdbc:hsqldb:mem:routing-replica1");
+        busyReplica.setMaxActive(1);
+        busyReplica.setMaxWaitTimeMs(10L);
+        final RoutingDataSource routing = new RoutingDataSource(primary, Arrays.asList(busyReplica, replica2));
+        final JdbcClient client = new JdbcClient(routing);
+        try (final Connection busy = busyReplica.getConnection()) {
+            assertNotNull(busy);
+            for (int q = 0; q < 3; q++) {
+                assertEquals("replica2", readNodeName(client));
+            }
+            assertEquals(2, routing.getNumAvailableReplicas());
+            assertTrue(busyReplica.isHealthy());
+            assertEquals(1, busyReplica.getNumActive());
+        }
+        final Set<String> names = new HashSet<>();
+        for (int q = 0; q < 4; q++) {
+            names.add(readNodeName(client));
+        }
+        assertTrue(names.contains("replica1"));
+    }
+
+    @Test
+    public void shouldCheckHealthWithoutAllocating() {
+        final PoolingDataSource ds = createDataSource("jdbc:hsqldb:mem:routing-replica2");
+        assertTrue(ds.isHealthy());
+        assertEquals(1, ds.getNumIdle());
+        assertEquals(0L, ds.getLeaseTimes().getCount());
+        assertFalse(createMissingNode().isHealthy());
+    }
+
+    @Test
+    public void shouldFallBackToPrimaryWhenNoReplicaIsAvailable() {
+        final List<PoolingDataSource> replicas = Collections.singletonList(createMissingNode());
+        final RoutingDataSource routing = new RoutingDataSource(primary, replicas);
+        final JdbcClient client = new JdbcClient(routing);
+        assertEquals("primary", readNodeName(client));
+        routing.setFallbackToPrimary(false);
+        try {
+            readNodeName(client);
+            fail("Expected exception");
+        } catch (final UncheckedSqlException e) {
+            assertTrue(e.getMessage().contains("No replica"));
+        }
+    }
+
+}
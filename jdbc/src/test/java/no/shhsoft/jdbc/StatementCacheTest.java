@@ -0,0 +1,97 @@
+package no.shhsoft.jdbc;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class StatementCacheTest {
+
+    private static final String SQL1 = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS WHERE USER_NAME = ?";
+    private static final String SQL2 = "SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS";
+
+    private static PoolingDataSource createDataSource(final int statementCacheSize) {
+        final PoolingDataSource ds = new PoolingDataSource();
+        ds.setUserName("sa");
+        ds.setPassword("");
+        ds.setDriverClassName("org.hsqldb.jdbcDriver");
+        ds.setUrl("jdbc:hsqldb:mem:statement-cache");
+        ds.setValidityCheckStatement(null);
+        ds.setStatementCacheSize(statementCacheSize);
+        return ds;
+    }
+
+    private static long countUsers(final JdbcClient client, final String userName) {
+        return (Long) client.executeQuery(SQL1, rs -> {
+            assertTrue(rs.next());
+            return rs.getLong(1);
+        }, userName);
+    }
+
+    @Test
+    public void shouldReusePreparedStatementsThroughJdbcClient() {
+        final PoolingDataSource ds = createDataSource(10);
+        final JdbcClient client = new JdbcClient(ds);
+        assertEquals(1L, countUsers(client, "SA"));
+        assertEquals(0L, countUsers(client, "nobody"));
+        assertEquals(1L, countUsers(client, "SA"));
+        assertEquals(1L, ds.getStatementCacheMisses());
+        assertEquals(2L, ds.getStatementCacheHits());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed()
+    throws SQLException {
+        final PoolingDataSource ds = createDataSource(1);
+        try (final Connection conn = ds.getConnection()) {
+            final PreparedStatement stmt1 = conn.prepareStatement(SQL1);
+            final PreparedStatement stmt2 = conn.prepareStatement(SQL2);
+            stmt1.close();
+            stmt2.close();
+            assertTrue(stmt1.isClosed());
+            conn.prepareStatement(SQL1).close();
+            conn.prepareStatement(SQL2, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY).close();
+        }
+        assertEquals(0L, ds.getStatementCacheHits());
+        assertEquals(4L, ds.getStatementCacheMisses());
+    }
+
+    @Test
+    public void shouldNotShareStatementsInUse()
+    throws SQLException {
+        final PoolingDataSource ds = createDataSource(10);
+        try (final Connection conn = ds.getConnection()) {
+            final PreparedStatement stmt1 = conn.prepareStatement(SQL1);
+            final PreparedStatement stmt2 = conn.prepareStatement(SQL1);
+            assertNotSame(stmt1.unwrap(PreparedStatement.class), stmt2.unwrap(PreparedStatement.class));
+            stmt1.close();
+            stmt2.close();
+            try {
+                stmt1.executeQuery();
+                fail("Expected exception");
+            } catch (final SQLException e) {
+                assertTrue(e.getMessage().contains("closed"));
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotCacheByDefault()
+    throws SQLException {
+        final PoolingDataSource ds = createDataSource(0);
+        try (final Connection conn = ds.getConnection()) {
+            conn.prepareStatement(SQL2).close();
+            conn.prepareStatement(SQL2).close();
+        }
+        assertEquals(0L, ds.getStatementCacheHits());
+        assertEquals(0L, ds.getStatementCacheMisses());
+    }
+
+}
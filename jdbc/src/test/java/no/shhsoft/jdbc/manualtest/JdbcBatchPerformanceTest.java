@@ -0,0 +1,71 @@
+package no.shhsoft.jdbc.manualtest;
+
+import no.shhsoft.jdbc.JdbcClient;
+import no.shhsoft.jdbc.PoolingDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares inserting rows one <code>executeUpdate</code> at a time with
+ * <code>executeBatch</code>, against an in-memory HSQLDB.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class JdbcBatchPerformanceTest {
+
+    private static final int NUM_ROWS = 100000;
+    private static final String INSERT_SQL = "INSERT INTO batch_test (id, name, amount) VALUES (?, ?, ?)";
+
+    private JdbcBatchPerformanceTest() {
+    }
+
+    private static JdbcClient createClient() {
+        final PoolingDataSource ds = new PoolingDataSource();
+        ds.setUserName("sa");
+        ds.setPassword("");
+        ds.setDriverClassName("org.hsqldb.jdbcDriver");
+        ds.setUrl("jdbc:hsqldb:mem:batch-performance");
+        ds.setValidityCheckStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+        final JdbcClient client = new JdbcClient(ds);
+        client.executeUpdate("CREATE TABLE batch_test (id INTEGER PRIMARY KEY, name VARCHAR(80), amount BIGINT)");
+        return client;
+    }
+
+    private static void truncate(final JdbcClient client) {
+        client.executeUpdate("DELETE FROM batch_test");
+    }
+
+    private static void report(final String what, final long startNanos) {
+        final long ms = (System.nanoTime() - startNanos) / 1000000L;
+        System.out.println(what + ": " + ms + " ms, " + (NUM_ROWS * 1000L / Math.max(1L, ms)) + " rows/s");
+    }
+
+    public static void main(final String[] args) {
+        final JdbcClient client = createClient();
+        final List<Object[]> rows = new ArrayList<>(NUM_ROWS);
+        for (int q = 0; q < NUM_ROWS; q++) {
+            rows.add(new Object[] { q, "name " + q, (long) q * 17L });
+        }
+        for (int round = 0; round < 3; round++) {
+            truncate(client);
+            long start = System.nanoTime();
+            for (final Object[] row : rows) {
+                client.executeUpdate(INSERT_SQL, row);
+            }
+            report("executeUpdate per row", start);
+            for (final int batchSize : new int[] { 100, 1000 }) {
+                truncate(client);
+                start = System.nanoTime();
+                client.executeBatch(INSERT_SQL, rows, batchSize);
+                report("executeBatch, batch size " + batchSize, start);
+                truncate(client);
+                start = System.nanoTime();
+                client.executeBatch(INSERT_SQL, rows, batchSize, true);
+                report("executeBatch, batch size " + batchSize + ", transaction per batch", start);
+            }
+            System.out.println();
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package no.shhsoft.json;
+
+import no.shhsoft.json.model.JsonNumber;
+import no.shhsoft.json.model.JsonValue;
+
+import java.io.Closeable;
+
+/**
+ * Pull-style reader that reports a JSON document as a sequence of {@link JsonEvent}s,
+ * reading its input incrementally.  Not thread safe.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public interface JsonEventReader
+extends Closeable {
+
+    /**
+     * Advances to the next event.
+     *
+     * @return the next event, or <code>null</code> at the end of the input.
+     */
+    JsonEvent next();
+
+    JsonEvent getCurrentEvent();
+
+    /**
+     * @return the number of objects and arrays enclosing the current position.
+     */
+    int getDepth();
+
+    /**
+     * @return the field name or string value of the current event.
+     */
+    String getString();
+
+    /**
+     * Tells whether the field name or string value of the current event equals the given
+     * string.  Unlike comparing the result of <code>getString</code>, this usually does not
+     * create a <code>String</code>.
+     */
+    boolean stringEquals(String s);
+
+    JsonNumber getNumber();
+
+    long getLong();
+
+    double getDouble();
+
+    boolean getBoolean();
+
+    /**
+     * @return the current scalar value as a model object.
+     */
+    JsonValue getValue();
+
+    /**
+     * Reads the complete value starting at the current event, building a tree of model
+     * objects for objects and arrays.  When done, the current event is the last event of
+     * the value.
+     */
+    JsonValue readValue();
+
+    /**
+     * Like <code>readValue</code>, but builds immutable <code>CompactJsonObject</code>s
+     * and <code>CompactJsonArray</code>s, without creating any intermediate collections.
+     */
+    JsonValue readCompactValue();
+
+    /**
+     * Skips the value starting at the current event.  For <code>BEGIN_OBJECT</code> and
+     * <code>BEGIN_ARRAY</code> the reader advances to the matching end event.  For other
+     * events this method does nothing.
+     */
+    void skipValue();
+
+    @Override
+    void close();
+
+}
@@ -1,9 +1,40 @@
 package no.shhsoft.json;
 
 import no.shhsoft.json.model.JsonContainer;
+import no.shhsoft.utils.StringUtils;
+import no.shhsoft.utils.UncheckedIoException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 
 public interface JsonGenerator {
 
     String generate(JsonContainer objectOrArray);
 
+    /**
+     * Writes the generated text to the given writer, which is flushed but not closed.
+     */
+    default void generate(final JsonContainer objectOrArray, final Writer writer) {
+        try {
+            writer.write(generate(objectOrArray));
+            writer.flush();
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        }
+    }
+
+    /**
+     * Writes the generated text UTF-8 encoded to the given stream, which is flushed but
+     * not closed.
+     */
+    default void generate(final JsonContainer objectOrArray, final OutputStream out) {
+        try {
+            out.write(StringUtils.getBytesUtf8(generate(objectOrArray)));
+            out.flush();
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        }
+    }
+
 }
@@ -2,8 +2,78 @@ package no.shhsoft.json;
 
 import no.shhsoft.json.model.JsonContainer;
 
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
 public interface JsonParser {
 
     JsonContainer parse(String s);
 
+    /**
+     * Parses a document read incrementally from the given <code>Reader</code>.  The
+     * <code>Reader</code> is not closed.
+     */
+    JsonContainer parse(Reader reader);
+
+    /**
+     * Parses an UTF-8 encoded document read incrementally from the given
+     * <code>InputStream</code>.  The stream is not closed.
+     */
+    JsonContainer parse(InputStream in);
+
+    /**
+     * Parses an UTF-8 encoded document without decoding it to characters first.
+     */
+    JsonContainer parse(byte[] utf8);
+
+    /**
+     * Parses the remaining bytes of an UTF-8 encoded buffer without decoding it to
+     * characters first.
+     */
+    JsonContainer parse(ByteBuffer utf8);
+
+    /**
+     * Makes object member names share <code>String</code> instances through the given
+     * interner, which may be shared between parsers.  Off by default.
+     *
+     * @param keyInterner the interner to use, or <code>null</code> to turn interning off.
+     */
+    void setKeyInterner(JsonStringInterner keyInterner);
+
+    /**
+     * Like <code>setKeyInterner</code>, but for string values.  Use an interner with a
+     * small maximum length, to only deduplicate short values, such as enumeration-like
+     * ones.
+     */
+    void setValueInterner(JsonStringInterner valueInterner);
+
+    /**
+     * Makes the parser build immutable <code>CompactJsonObject</code>s and
+     * <code>CompactJsonArray</code>s rather than <code>JsonObject</code>s and
+     * <code>JsonArray</code>s.  Off by default.
+     */
+    void setCompact(boolean compact);
+
+    /**
+     * Makes the parser only index the document, and postpone parsing of each object and
+     * array until its contents are accessed.  Useful when only a small part of a large
+     * document is needed.  The resulting tree is immutable, keeps the entire document in
+     * memory for as long as any part of it is reachable, and reports syntax errors within
+     * a container when that container is first accessed.  A <code>byte[]</code> given to
+     * <code>parse</code> is used as is, and must not be modified afterwards.  Documents
+     * read from a <code>Reader</code> or a <code>String</code> are encoded to UTF-8 first.
+     * Off by default.
+     */
+    void setLazy(boolean lazy);
+
+    /**
+     * Makes the parser only build the parts of documents selected by the given
+     * projection, skipping the rest of the input without creating objects for it.  Takes
+     * precedence over <code>setLazy</code>.  Off by default.
+     *
+     * @param projection the parts to keep, or <code>null</code> to keep everything.
+     */
+    void setProjection(JsonProjection projection);
+
 }
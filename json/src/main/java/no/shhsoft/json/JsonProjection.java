@@ -0,0 +1,273 @@
+package no.shhsoft.json;
+
+import no.shhsoft.json.model.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Selects parts of JSON documents while they are read, skipping everything else without
+ * building any model objects for it.  Paths use a subset of the JSONPath syntax:
+ * <code>$</code> for the root, followed by any number of <code>.name</code>,
+ * <code>['name']</code>, <code>[index]</code>, <code>.*</code> or <code>[*]</code>.
+ * For example, <code>$.items[*].id</code> and <code>$.meta.total</code>.
+ * <p>
+ * The result is a pruned copy of the document, in which objects and arrays on the way to
+ * a selected value keep only the selected members and elements.  Arrays are thus
+ * compacted, so elements may get other indexes than in the original document.  Values
+ * that are scalars where a path expects an object or array are left out.  Immutable and
+ * thread safe.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class JsonProjection {
+
+    private final Node root;
+
+    private static final class Node {
+
+        private boolean whole;
+        private Map<String, Node> memberMap = new LinkedHashMap<>();
+        private Map<Integer, Node> elementMap = new TreeMap<>();
+        private Node wildcard;
+        private String[] names;
+        private Node[] members;
+        private int[] indexes;
+        private Node[] elements;
+
+        Node member(final String name) {
+            return memberMap.computeIfAbsent(name, key -> new Node());
+        }
+
+        Node element(final int index) {
+            return elementMap.computeIfAbsent(index, key -> new Node());
+        }
+
+        Node wildcard() {
+            if (wildcard == null) {
+                wildcard = new Node();
+            }
+            return wildcard;
+        }
+
+        void merge(final Node other) {
+            whole |= other.whole;
+            for (final Map.Entry<String, Node> entry : other.memberMap.entrySet()) {
+                member(entry.getKey()).merge(entry.getValue());
+            }
+            for (final Map.Entry<Integer, Node> entry : other.elementMap.entrySet()) {
+                element(entry.getKey()).merge(entry.getValue());
+            }
+            if (other.wildcard != null) {
+                wildcard().merge(other.wildcard);
+            }
+        }
+
+        /**
+         * Makes named members and indexed elements include whatever the wildcard selects,
+         * and turns the maps into arrays for lookup while reading.
+         */
+        void freeze() {
+            if (wildcard != null) {
+                for (final Node node : memberMap.values()) {
+                    node.merge(wildcard);
+                }
+                for (final Node node : elementMap.values()) {
+                    node.merge(wildcard);
+                }
+                wildcard.freeze();
+            }
+            names = memberMap.keySet().toArray(new String[0]);
+            members = memberMap.values().toArray(new Node[0]);
+            indexes = new int[elementMap.size()];
+            elements = new Node[indexes.length];
+            int q = 0;
+            for (final Map.Entry<Integer, Node> entry : elementMap.entrySet()) {
+                indexes[q] = entry.getKey();
+                elements[q] = entry.getValue();
+                entry.getValue().freeze();
+                ++q;
+            }
+            for (final Node node : members) {
+                node.freeze();
+            }
+            memberMap = null;
+            elementMap = null;
+        }
+
+        Node findMember(final JsonEventReader reader) {
+            for (int q = 0; q < names.length; q++) {
+                if (reader.stringEquals(names[q])) {
+                    return members[q];
+                }
+            }
+            return wildcard;
+        }
+
+        Node findElement(final int index) {
+            for (int q = 0; q < indexes.length; q++) {
+                if (indexes[q] == index) {
+                    return elements[q];
+                }
+            }
+            return wildcard;
+        }
+
+    }
+
+    private JsonProjection(final Node root) {
+        this.root = root;
+    }
+
+    /**
+     * @param paths the paths of the values to select.  If one path is a prefix of another,
+     *              the entire value at the shorter path is selected.
+     */
+    public static JsonProjection compile(final String... paths) {
+        final Node root = new Node();
+        for (final String path : paths) {
+            addPath(root, path);
+        }
+        root.freeze();
+        return new JsonProjection(root);
+    }
+
+    private static JsonException invalidPath(final String path) {
+        return new JsonException("Invalid path `" + path + "'");
+    }
+
+    private static void addPath(final Node root, final String path) {
+        if (!path.startsWith("$")) {
+            throw invalidPath(path);
+        }
+        Node node = root;
+        int idx = 1;
+        while (idx < path.length()) {
+            final char c = path.charAt(idx);
+            if (c == '.') {
+                ++idx;
+                if (idx < path.length() && path.charAt(idx) == '*') {
+                    node = node.wildcard();
+                    ++idx;
+                    continue;
+                }
+                final int start = idx;
+                while (idx < path.length() && path.charAt(idx) != '.' && path.charAt(idx) != '[') {
+                    ++idx;
+                }
+                if (idx == start) {
+                    throw invalidPath(path);
+                }
+                node = node.member(path.substring(start, idx));
+            } else if (c == '[') {
+                ++idx;
+                if (idx >= path.length()) {
+                    throw invalidPath(path);
+                }
+                final char first = path.charAt(idx);
+                final int end;
+                if (first == '\'' || first == '"') {
+                    final int endQuote = path.indexOf(first, idx + 1);
+                    if (endQuote < 0) {
+                        throw invalidPath(path);
+                    }
+                    node = node.member(path.substring(idx + 1, endQuote));
+                    end = endQuote + 1;
+                } else {
+                    end = path.indexOf(']', idx);
+                    if (end < 0) {
+                        throw invalidPath(path);
+                    }
+                    final String selector = path.substring(idx, end);
+                    if (selector.equals("*")) {
+                        node = node.wildcard();
+                    } else {
+                        try {
+                            node = node.element(Integer.parseInt(selector));
+                        } catch (final NumberFormatException e) {
+                            throw invalidPath(path);
+                        }
+                    }
+                }
+                if (end >= path.length() || path.charAt(end) != ']') {
+                    throw invalidPath(path);
+                }
+                idx = end + 1;
+            } else {
+                throw invalidPath(path);
+            }
+        }
+        node.whole = true;
+    }
+
+    /**
+     * Reads the value starting at the current event, keeping only the selected parts.
+     * When done, the current event is the last event of the value.
+     *
+     * @return the pruned value, or <code>null</code> if the value is a scalar and not
+     *         selected itself.
+     */
+    public JsonValue read(final JsonEventReader reader) {
+        return read(reader, root, false);
+    }
+
+    /**
+     * Like <code>read</code>, but builds immutable <code>CompactJsonObject</code>s and
+     * <code>CompactJsonArray</code>s.
+     */
+    public JsonValue readCompact(final JsonEventReader reader) {
+        return read(reader, root, true);
+    }
+
+    private static JsonValue read(final JsonEventReader reader, final Node node, final boolean compact) {
+        if (node.whole) {
+            return compact ? reader.readCompactValue() : reader.readValue();
+        }
+        final JsonEvent event = reader.getCurrentEvent();
+        if (event == JsonEvent.BEGIN_OBJECT) {
+            return readObject(reader, node, compact);
+        }
+        if (event == JsonEvent.BEGIN_ARRAY) {
+            return readArray(reader, node, compact);
+        }
+        return null;
+    }
+
+    private static JsonValue readObject(final JsonEventReader reader, final Node node, final boolean compact) {
+        final JsonObject object = new JsonObject();
+        while (reader.next() != JsonEvent.END_OBJECT) {
+            final Node member = node.findMember(reader);
+            if (member == null) {
+                reader.next();
+                reader.skipValue();
+                continue;
+            }
+            final String name = reader.getString();
+            reader.next();
+            final JsonValue value = read(reader, member, compact);
+            if (value != null) {
+                object.put(name, value);
+            }
+        }
+        return compact ? CompactJsonObject.copyOf(object) : object;
+    }
+
+    private static JsonValue readArray(final JsonEventReader reader, final Node node, final boolean compact) {
+        final JsonArray array = new JsonArray();
+        int index = 0;
+        while (reader.next() != JsonEvent.END_ARRAY) {
+            final Node element = node.findElement(index++);
+            if (element == null) {
+                reader.skipValue();
+                continue;
+            }
+            final JsonValue value = read(reader, element, compact);
+            if (value != null) {
+                array.add(value);
+            }
+        }
+        return compact ? CompactJsonArray.copyOf(array) : array;
+    }
+
+}
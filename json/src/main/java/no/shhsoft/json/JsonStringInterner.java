@@ -0,0 +1,195 @@
+package no.shhsoft.json;
+
+import no.shhsoft.utils.cache.Clearable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded table of strings used by the parsers to let identical object member names,
+ * and optionally short string values, share a single <code>String</code> instance.
+ * Lookups may be done directly on the input characters or bytes, so no new
+ * <code>String</code> is created for strings already in the table.
+ *
+ * <p>Each string may live in one of two neighbouring slots.  When both are taken, a new
+ * string pushes out the oldest one.  Memory use is thus bounded by the capacity and the
+ * maximum string length, and stays low even if the input contains lots of different
+ * strings.  May be shared between parsers in different threads.</p>
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class JsonStringInterner
+implements Clearable {
+
+    /** Rough size of a <code>String</code> object and the header of its backing array. */
+    private static final int STRING_OVERHEAD = 24 + 16;
+    private final String[] table;
+    private final int shift;
+    private final int maxLength;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     * @param capacity the number of slots, rounded up to a power of two.
+     * @param maxLength strings longer than this are never interned.
+     */
+    public JsonStringInterner(final int capacity, final int maxLength) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2");
+        }
+        final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        table = new String[size];
+        shift = Integer.numberOfLeadingZeros(size) + 1;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @return the first of the two slots, which is always even.
+     */
+    private int slot(final int hash) {
+        /* Fibonacci hashing, since String hash codes of short strings differ mostly in the low bits. */
+        return ((hash * 0x9e3779b9) >>> shift) & ~1;
+    }
+
+    private static boolean matches(final String entry, final char[] chars, final int offset, final int length) {
+        if (entry == null || entry.length() != length) {
+            return false;
+        }
+        for (int q = 0; q < length; q++) {
+            if (entry.charAt(q) != chars[offset + q]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(final String entry, final byte[] bytes, final int offset, final int length) {
+        if (entry == null || entry.length() != length) {
+            return false;
+        }
+        for (int q = 0; q < length; q++) {
+            if (entry.charAt(q) != bytes[offset + q]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(final String entry, final CharSequence s) {
+        return entry != null && entry.length() == s.length() && (entry == s || entry.contentEquals(s));
+    }
+
+    private static long estimateSize(final int length) {
+        /* Assumes compact strings with one byte per character, and 8 byte alignment. */
+        return STRING_OVERHEAD + ((length + 7) & ~7);
+    }
+
+    private String hit(final String s) {
+        hits.increment();
+        bytesSaved.add(estimateSize(s.length()));
+        return s;
+    }
+
+    private String miss(final int slot, final String s) {
+        misses.increment();
+        if (table[slot] != null) {
+            table[slot + 1] = table[slot];
+        }
+        table[slot] = s;
+        return s;
+    }
+
+    public String intern(final CharSequence s) {
+        final int length = s.length();
+        if (length > maxLength) {
+            return s.toString();
+        }
+        final int hash = s instanceof String ? s.hashCode() : hash(s, length);
+        final int slot = slot(hash);
+        String entry = table[slot];
+        if (matches(entry, s) || matches(entry = table[slot + 1], s)) {
+            return hit(entry);
+        }
+        return miss(slot, s.toString());
+    }
+
+    private static int hash(final CharSequence s, final int length) {
+        int hash = 0;
+        for (int q = 0; q < length; q++) {
+            hash = 31 * hash + s.charAt(q);
+        }
+        return hash;
+    }
+
+    public String intern(final char[] chars, final int offset, final int length) {
+        if (length > maxLength) {
+            return new String(chars, offset, length);
+        }
+        int hash = 0;
+        for (int q = 0; q < length; q++) {
+            hash = 31 * hash + chars[offset + q];
+        }
+        final int slot = slot(hash);
+        String entry = table[slot];
+        if (matches(entry, chars, offset, length) || matches(entry = table[slot + 1], chars, offset, length)) {
+            return hit(entry);
+        }
+        return miss(slot, new String(chars, offset, length));
+    }
+
+    /**
+     * Interns a string given as ASCII bytes, which must all be in the range 0 to 127.
+     */
+    public String internAscii(final byte[] bytes, final int offset, final int length) {
+        if (length > maxLength) {
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+        int hash = 0;
+        for (int q = 0; q < length; q++) {
+            hash = 31 * hash + bytes[offset + q];
+        }
+        final int slot = slot(hash);
+        String entry = table[slot];
+        if (matches(entry, bytes, offset, length) || matches(entry = table[slot + 1], bytes, offset, length)) {
+            return hit(entry);
+        }
+        return miss(slot, new String(bytes, offset, length, StandardCharsets.ISO_8859_1));
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return a rough estimate of the heap saved by returning existing strings rather
+     *         than new ones, as long as the returned strings are kept.
+     */
+    public long getEstimatedBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    @Override
+    public void clear() {
+        for (int q = 0; q < table.length; q++) {
+            table[q] = null;
+        }
+        hits.reset();
+        misses.reset();
+        bytesSaved.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHits() + ", misses=" + getMisses() + ", estimatedBytesSaved=" + getEstimatedBytesSaved();
+    }
+
+}
@@ -0,0 +1,59 @@
+package no.shhsoft.json;
+
+import no.shhsoft.json.model.JsonValue;
+
+import java.io.Closeable;
+import java.io.Flushable;
+
+/**
+ * Low-level writer that emits a JSON document piece by piece, the counterpart of
+ * {@link JsonEventReader}.  Output is written through a buffer directly to the
+ * underlying target, so the complete document is never held in memory.  Not thread
+ * safe.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public interface JsonWriter
+extends Flushable, Closeable {
+
+    JsonWriter beginObject();
+
+    JsonWriter endObject();
+
+    JsonWriter beginArray();
+
+    JsonWriter endArray();
+
+    /**
+     * Writes the name of the next object member.  Must be followed by a value.
+     */
+    JsonWriter name(String name);
+
+    /**
+     * @param value the string to write, or <code>null</code> to write <code>null</code>.
+     */
+    JsonWriter value(String value);
+
+    JsonWriter value(long value);
+
+    JsonWriter value(double value);
+
+    JsonWriter value(boolean value);
+
+    JsonWriter nullValue();
+
+    /**
+     * Writes the given value, including any nested objects and arrays.
+     */
+    JsonWriter value(JsonValue value);
+
+    @Override
+    void flush();
+
+    /**
+     * Flushes and closes the underlying target.
+     */
+    @Override
+    void close();
+
+}
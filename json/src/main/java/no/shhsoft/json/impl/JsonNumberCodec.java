@@ -0,0 +1,450 @@
+package no.shhsoft.json.impl;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses and formats JSON numbers without going through intermediate strings.
+ * Integers are parsed exactly into <code>long</code>s, covering the full 64-bit range.
+ * Decimals are parsed using exact floating point arithmetic when the significand and
+ * exponent are small enough for the result to be correctly rounded, falling back to
+ * <code>Double.parseDouble</code> otherwise.  Doubles in the range where
+ * <code>Double.toString</code> uses plain notation are formatted as the shortest
+ * decimal that reads back as the same value.
+ *
+ * <p>The parse methods keep their result in the instance, which is thus not thread
+ * safe.  The format methods are static.</p>
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class JsonNumberCodec {
+
+    public static final int MAX_LONG_LENGTH = 20;
+    public static final int MAX_DOUBLE_LENGTH = 24;
+    /** Significant digits that always fit in a positive <code>long</code>. */
+    private static final int MAX_SIGNIFICANT_DIGITS = 18;
+    /** Largest power of ten that is exactly representable as a double. */
+    private static final int MAX_EXACT_POW10 = 22;
+    private static final long MAX_EXACT_SIGNIFICAND = 1L << 53;
+    private static final int MAX_FRACTION_DIGITS = 17;
+    private static final double MIN_PLAIN = 1e-3;
+    private static final double MAX_PLAIN = 1e7;
+    private static final int MAX_EXPONENT = 100000;
+    private static final byte[] LONG_MIN_VALUE = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+    private static final double[] DOUBLE_POW10 = new double[MAX_EXACT_POW10 + 1];
+    private static final long[] LONG_POW10 = new long[MAX_SIGNIFICANT_DIGITS + 1];
+    private boolean isLong;
+    private long longValue;
+    private double doubleValue;
+
+    static {
+        double d = 1.0;
+        for (int q = 0; q < DOUBLE_POW10.length; q++) {
+            DOUBLE_POW10[q] = d;
+            d *= 10.0;
+        }
+        long l = 1L;
+        for (int q = 0; q < LONG_POW10.length; q++) {
+            LONG_POW10[q] = l;
+            l *= 10L;
+        }
+    }
+
+    private static NumberFormatException invalid(final String s) {
+        return new NumberFormatException("Invalid number `" + s + "'");
+    }
+
+    private void setLong(final long value) {
+        isLong = true;
+        longValue = value;
+        doubleValue = value;
+    }
+
+    private void setDouble(final double value) {
+        isLong = false;
+        doubleValue = value;
+        longValue = (long) value;
+    }
+
+    /**
+     * Computes the double value of a significand of at most <code>MAX_SIGNIFICANT_DIGITS</code>
+     * digits and a decimal exponent, if it can be done exactly.
+     *
+     * @return <code>false</code> if the slow path must be used.
+     */
+    private boolean setExactDouble(final boolean negative, final long significand, final boolean truncated, final int exp10) {
+        if (significand == 0L) {
+            setDouble(negative ? -0.0 : 0.0);
+            return true;
+        }
+        if (truncated || significand > MAX_EXACT_SIGNIFICAND || exp10 < -MAX_EXACT_POW10 || exp10 > MAX_EXACT_POW10) {
+            return false;
+        }
+        final double d = exp10 < 0 ? significand / DOUBLE_POW10[-exp10] : significand * DOUBLE_POW10[exp10];
+        setDouble(negative ? -d : d);
+        return true;
+    }
+
+    /*
+     * The byte and char versions of the parse methods are duplicates.  Don't want an
+     * accessor abstraction on the hot path.
+     */
+
+    /**
+     * Parses the number that occupies all of the given range of ASCII bytes.
+     *
+     * @throws NumberFormatException if the range is not a valid number.
+     */
+    public void parse(final byte[] buff, final int start, final int end) {
+        int idx = start;
+        final boolean negative = idx < end && buff[idx] == '-';
+        if (negative) {
+            ++idx;
+        }
+        long significand = 0L;
+        int numSignificant = 0;
+        boolean truncated = false;
+        boolean anyDigits = false;
+        boolean isReal = false;
+        int exp10 = 0;
+        int c;
+        while (idx < end && (c = buff[idx]) >= '0' && c <= '9') {
+            anyDigits = true;
+            if (numSignificant < MAX_SIGNIFICANT_DIGITS) {
+                significand = significand * 10 + (c - '0');
+                if (significand != 0L) {
+                    ++numSignificant;
+                }
+            } else {
+                truncated |= c != '0';
+                ++exp10;
+            }
+            ++idx;
+        }
+        if (idx < end && buff[idx] == '.') {
+            isReal = true;
+            ++idx;
+            while (idx < end && (c = buff[idx]) >= '0' && c <= '9') {
+                anyDigits = true;
+                if (numSignificant < MAX_SIGNIFICANT_DIGITS) {
+                    significand = significand * 10 + (c - '0');
+                    if (significand != 0L) {
+                        ++numSignificant;
+                    }
+                    --exp10;
+                } else {
+                    truncated |= c != '0';
+                }
+                ++idx;
+            }
+        }
+        if (!anyDigits) {
+            throw invalid(new String(buff, start, end - start, StandardCharsets.ISO_8859_1));
+        }
+        if (idx < end && (buff[idx] == 'e' || buff[idx] == 'E')) {
+            isReal = true;
+            ++idx;
+            boolean negativeExp = false;
+            if (idx < end && (buff[idx] == '-' || buff[idx] == '+')) {
+                negativeExp = buff[idx] == '-';
+                ++idx;
+            }
+            final int expStart = idx;
+            int exp = 0;
+            while (idx < end && (c = buff[idx]) >= '0' && c <= '9') {
+                if (exp < MAX_EXPONENT) {
+                    exp = exp * 10 + (c - '0');
+                }
+                ++idx;
+            }
+            if (idx == expStart) {
+                throw invalid(new String(buff, start, end - start, StandardCharsets.ISO_8859_1));
+            }
+            exp10 += negativeExp ? -exp : exp;
+        }
+        if (idx != end) {
+            throw invalid(new String(buff, start, end - start, StandardCharsets.ISO_8859_1));
+        }
+        if (!isReal && !truncated && exp10 == 0) {
+            setLong(negative ? -significand : significand);
+            return;
+        }
+        if (!isReal && parseLongExact(buff, start, end)) {
+            return;
+        }
+        if (!setExactDouble(negative, significand, truncated, exp10)) {
+            setDouble(Double.parseDouble(new String(buff, start, end - start, StandardCharsets.ISO_8859_1)));
+        }
+    }
+
+    /**
+     * Handles integers with more digits than the fast path takes.
+     *
+     * @return <code>false</code> if the value does not fit in a <code>long</code>.
+     */
+    private boolean parseLongExact(final byte[] buff, final int start, final int end) {
+        final boolean negative = buff[start] == '-';
+        /* Accumulate as a negative number, to be able to represent Long.MIN_VALUE. */
+        long value = 0L;
+        for (int q = negative ? start + 1 : start; q < end; q++) {
+            final int digit = buff[q] - '0';
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                return false;
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            if (value == Long.MIN_VALUE) {
+                return false;
+            }
+            value = -value;
+        }
+        setLong(value);
+        return true;
+    }
+
+    /**
+     * Parses the number that occupies all of the given range of characters.
+     *
+     * @throws NumberFormatException if the range is not a valid number.
+     */
+    public void parse(final char[] buff, final int start, final int end) {
+        int idx = start;
+        final boolean negative = idx < end && buff[idx] == '-';
+        if (negative) {
+            ++idx;
+        }
+        long significand = 0L;
+        int numSignificant = 0;
+        boolean truncated = false;
+        boolean anyDigits = false;
+        boolean isReal = false;
+        int exp10 = 0;
+        int c;
+        while (idx < end && (c = buff[idx]) >= '0' && c <= '9') {
+            anyDigits = true;
+            if (numSignificant < MAX_SIGNIFICANT_DIGITS) {
+                significand = significand * 10 + (c - '0');
+                if (significand != 0L) {
+                    ++numSignificant;
+                }
+            } else {
+                truncated |= c != '0';
+                ++exp10;
+            }
+            ++idx;
+        }
+        if (idx < end && buff[idx] == '.') {
+            isReal = true;
+            ++idx;
+            while (idx < end && (c = buff[idx]) >= '0' && c <= '9') {
+                anyDigits = true;
+                if (numSignificant < MAX_SIGNIFICANT_DIGITS) {
+                    significand = significand * 10 + (c - '0');
+                    if (significand != 0L) {
+                        ++numSignificant;
+                    }
+                    --exp10;
+                } else {
+                    truncated |= c != '0';
+                }
+                ++idx;
+            }
+        }
+        if (!anyDigits) {
+            throw invalid(new String(buff, start, end - start));
+        }
+        if (idx < end && (buff[idx] == 'e' || buff[idx] == 'E')) {
+            isReal = true;
+            ++idx;
+            boolean negativeExp = false;
+            if (idx < end && (buff[idx] == '-' || buff[idx] == '+')) {
+                negativeExp = buff[idx] == '-';
+                ++idx;
+            }
+            final int expStart = idx;
+            int exp = 0;
+            while (idx < end && (c = buff[idx]) >= '0' && c <= '9') {
+                if (exp < MAX_EXPONENT) {
+                    exp = exp * 10 + (c - '0');
+                }
+                ++idx;
+            }
+            if (idx == expStart) {
+                throw invalid(new String(buff, start, end - start));
+            }
+            exp10 += negativeExp ? -exp : exp;
+        }
+        if (idx != end) {
+            throw invalid(new String(buff, start, end - start));
+        }
+        if (!isReal && !truncated && exp10 == 0) {
+            setLong(negative ? -significand : significand);
+            return;
+        }
+        if (!isReal && parseLongExact(buff, start, end)) {
+            return;
+        }
+        if (!setExactDouble(negative, significand, truncated, exp10)) {
+            setDouble(Double.parseDouble(new String(buff, start, end - start)));
+        }
+    }
+
+    private boolean parseLongExact(final char[] buff, final int start, final int end) {
+        final boolean negative = buff[start] == '-';
+        long value = 0L;
+        for (int q = negative ? start + 1 : start; q < end; q++) {
+            final int digit = buff[q] - '0';
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                return false;
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            if (value == Long.MIN_VALUE) {
+                return false;
+            }
+            value = -value;
+        }
+        setLong(value);
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the last parsed number was an integer that fits in a
+     *         <code>long</code>.
+     */
+    public boolean isLong() {
+        return isLong;
+    }
+
+    public long getLong() {
+        return longValue;
+    }
+
+    public double getDouble() {
+        return doubleValue;
+    }
+
+    private static int numDigits(final long positive) {
+        int n = 1;
+        while (n < LONG_POW10.length && positive >= LONG_POW10[n]) {
+            ++n;
+        }
+        return n;
+    }
+
+    private static int writeDigits(final long positive, final int numDigits, final byte[] buff, final int offset) {
+        long value = positive;
+        for (int q = offset + numDigits - 1; q >= offset; q--) {
+            buff[q] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + numDigits;
+    }
+
+    /**
+     * Writes the decimal representation of the given value as ASCII.  At most
+     * <code>MAX_LONG_LENGTH</code> bytes are written.
+     *
+     * @return the index following the last byte written.
+     */
+    public static int formatLong(final long value, final byte[] buff, final int offset) {
+        if (value == Long.MIN_VALUE) {
+            System.arraycopy(LONG_MIN_VALUE, 0, buff, offset, LONG_MIN_VALUE.length);
+            return offset + LONG_MIN_VALUE.length;
+        }
+        int idx = offset;
+        long positive = value;
+        if (value < 0) {
+            buff[idx++] = '-';
+            positive = -value;
+        }
+        return writeDigits(positive, numDigits(positive), buff, idx);
+    }
+
+    /**
+     * Finds the smallest number of fraction digits that represents the given positive value
+     * exactly, when using plain notation.
+     *
+     * @return the number of fraction digits, or <code>-1</code> if <code>Double.toString</code>
+     *         must be used.
+     */
+    private static int fractionDigits(final double abs) {
+        if (abs == 0.0) {
+            return 0;
+        }
+        if (!(abs >= MIN_PLAIN && abs < MAX_PLAIN)) {
+            return -1;
+        }
+        for (int q = 0; q <= MAX_FRACTION_DIGITS; q++) {
+            final double scaled = abs * DOUBLE_POW10[q];
+            if (scaled >= MAX_EXACT_SIGNIFICAND) {
+                return -1;
+            }
+            /* Both operands are exact, so the division is correctly rounded, just like parsing. */
+            if (Math.round(scaled) / DOUBLE_POW10[q] == abs) {
+                return q;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the given value as ASCII, using the same notation as <code>Double.toString</code>.
+     * At most <code>MAX_DOUBLE_LENGTH</code> bytes are written.
+     *
+     * @return the index following the last byte written.
+     */
+    public static int formatDouble(final double value, final byte[] buff, final int offset) {
+        final double abs = Math.abs(value);
+        final int numFractionDigits = fractionDigits(abs);
+        if (numFractionDigits < 0) {
+            final String s = Double.toString(value);
+            for (int q = 0; q < s.length(); q++) {
+                buff[offset + q] = (byte) s.charAt(q);
+            }
+            return offset + s.length();
+        }
+        int idx = offset;
+        if (Double.doubleToRawLongBits(value) < 0) {
+            buff[idx++] = '-';
+        }
+        final long scaled = Math.round(abs * DOUBLE_POW10[numFractionDigits]);
+        final long integerPart = scaled / LONG_POW10[numFractionDigits];
+        idx = writeDigits(integerPart, numDigits(integerPart), buff, idx);
+        buff[idx++] = '.';
+        if (numFractionDigits == 0) {
+            buff[idx++] = '0';
+            return idx;
+        }
+        return writeDigits(scaled % LONG_POW10[numFractionDigits], numFractionDigits, buff, idx);
+    }
+
+    /**
+     * Appends the given value, formatted as by <code>formatDouble</code>.
+     */
+    public static void appendDouble(final StringBuilder sb, final double value) {
+        final double abs = Math.abs(value);
+        final int numFractionDigits = fractionDigits(abs);
+        if (numFractionDigits < 0) {
+            sb.append(value);
+            return;
+        }
+        if (Double.doubleToRawLongBits(value) < 0) {
+            sb.append('-');
+        }
+        final long scaled = Math.round(abs * DOUBLE_POW10[numFractionDigits]);
+        sb.append(scaled / LONG_POW10[numFractionDigits]);
+        sb.append('.');
+        if (numFractionDigits == 0) {
+            sb.append('0');
+            return;
+        }
+        final long fraction = scaled % LONG_POW10[numFractionDigits];
+        for (int q = numDigits(fraction); q < numFractionDigits; q++) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+
+}
@@ -4,6 +4,7 @@ import no.shhsoft.json.JsonException;
 import no.shhsoft.json.JsonGenerator;
 import no.shhsoft.json.model.*;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -64,7 +65,7 @@ implements JsonGenerator {
         }
     }
 
-    private void encodeObject(final int indentLevel, final StringBuilder sb, final JsonObject object) {
+    private void encodeObject(final int indentLevel, final StringBuilder sb, final Map<String, JsonValue> object) {
         sb.append(decorateOperator('{'));
         breakLine(indentLevel + 1, sb);
         boolean needComma = false;
@@ -83,7 +84,7 @@ implements JsonGenerator {
         sb.append(decorateOperator('}'));
     }
 
-    private void encodeArray(final int indentLevel, final StringBuilder sb, final JsonArray array) {
+    private void encodeArray(final int indentLevel, final StringBuilder sb, final List<JsonValue> array) {
         sb.append(decorateOperator('['));
         breakLine(indentLevel + 1, sb);
         boolean needComma = false;
@@ -100,11 +101,12 @@ implements JsonGenerator {
         sb.append(decorateOperator(']'));
     }
 
+    @SuppressWarnings("unchecked")
     private void encodeContainer(final int indentLevel, final StringBuilder sb, final JsonContainer container) {
-        if (container instanceof JsonObject) {
-            encodeObject(indentLevel, sb, (JsonObject) container);
-        } else if (container instanceof JsonArray) {
-            encodeArray(indentLevel, sb, (JsonArray) container);
+        if (container instanceof Map) {
+            encodeObject(indentLevel, sb, (Map<String, JsonValue>) container);
+        } else if (container instanceof List) {
+            encodeArray(indentLevel, sb, (List<JsonValue>) container);
         } else {
             throw new JsonException("Unhandled JsonContainer type: " + container.getClass().toString());
         }
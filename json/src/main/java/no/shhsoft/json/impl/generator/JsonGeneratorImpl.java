@@ -2,9 +2,13 @@ package no.shhsoft.json.impl.generator;
 
 import no.shhsoft.json.JsonException;
 import no.shhsoft.json.JsonGenerator;
+import no.shhsoft.json.impl.JsonNumberCodec;
 import no.shhsoft.json.model.*;
 import no.shhsoft.utils.StringUtils;
 
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -13,6 +17,9 @@ import java.util.Map;
 public final class JsonGeneratorImpl
 implements JsonGenerator {
 
+    /* One writer per thread, reset onto each new target, so its buffer is allocated once. */
+    private static final ThreadLocal<JsonWriterImpl> WRITERS = ThreadLocal.withInitial(JsonWriterImpl::new);
+
     static String toJsonString(final String s) {
         if (s == null) {
             return "null";
@@ -48,7 +55,7 @@ implements JsonGenerator {
         if (number instanceof JsonLong) {
             sb.append(number.getValueAsLong());
         } else if (number instanceof JsonDouble) {
-            sb.append(number.getValueAsDouble());
+            JsonNumberCodec.appendDouble(sb, number.getValueAsDouble());
         } else {
             throw new JsonException("Unhandled JsonNumber type: " + number.getClass().getName());
         }
@@ -76,7 +83,7 @@ implements JsonGenerator {
         }
     }
 
-    private static void encodeObject(final StringBuilder sb, final JsonObject object) {
+    private static void encodeObject(final StringBuilder sb, final Map<String, JsonValue> object) {
         sb.append('{');
         boolean needComma = false;
         for (final Map.Entry<String, JsonValue> entry : object.entrySet()) {
@@ -92,7 +99,7 @@ implements JsonGenerator {
         sb.append('}');
     }
 
-    private static void encodeArray(final StringBuilder sb, final JsonArray array) {
+    private static void encodeArray(final StringBuilder sb, final List<JsonValue> array) {
         sb.append('[');
         boolean needComma = false;
         for (final JsonValue value : array) {
@@ -106,11 +113,12 @@ implements JsonGenerator {
         sb.append(']');
     }
 
+    @SuppressWarnings("unchecked")
     private static void encodeContainer(final StringBuilder sb, final JsonContainer container) {
-        if (container instanceof JsonObject) {
-            encodeObject(sb, (JsonObject) container);
-        } else if (container instanceof JsonArray) {
-            encodeArray(sb, (JsonArray) container);
+        if (container instanceof Map) {
+            encodeObject(sb, (Map<String, JsonValue>) container);
+        } else if (container instanceof List) {
+            encodeArray(sb, (List<JsonValue>) container);
         } else {
             throw new JsonException("Unhandled JsonContainer type: " + container.getClass().toString());
         }
@@ -123,4 +131,29 @@ implements JsonGenerator {
         return sb.toString();
     }
 
+    @Override
+    public void generate(final JsonContainer objectOrArray, final Writer writer) {
+        generate(objectOrArray, null, writer);
+    }
+
+    @Override
+    public void generate(final JsonContainer objectOrArray, final OutputStream out) {
+        generate(objectOrArray, out, null);
+    }
+
+    private static void generate(final JsonContainer objectOrArray, final OutputStream out, final Writer writer) {
+        if (!(objectOrArray instanceof Map) && !(objectOrArray instanceof List)) {
+            throw new JsonException("Unhandled JsonContainer type: " + objectOrArray.getClass().toString());
+        }
+        final JsonWriterImpl jsonWriter = WRITERS.get();
+        jsonWriter.reset(out, writer);
+        try {
+            jsonWriter.value(objectOrArray);
+            jsonWriter.flush();
+        } finally {
+            /* Do not keep the target reachable from the thread. */
+            jsonWriter.reset(null, null);
+        }
+    }
+
 }
@@ -0,0 +1,421 @@
+package no.shhsoft.json.impl.generator;
+
+import no.shhsoft.json.JsonException;
+import no.shhsoft.json.JsonWriter;
+import no.shhsoft.json.impl.JsonNumberCodec;
+import no.shhsoft.json.model.*;
+import no.shhsoft.utils.UncheckedIoException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes JSON to an <code>OutputStream</code> or a <code>Writer</code> through a fixed
+ * size buffer.  Produces the same output as <code>JsonGeneratorImpl</code>.  Since all
+ * non-ASCII characters are escaped, the output is pure ASCII, and thus also valid UTF-8.
+ * A writer may be <code>reset</code> onto a new target to reuse its buffer.  Not thread
+ * safe.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class JsonWriterImpl
+implements JsonWriter {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    /** Longest output for a single character: a backslash, a <code>u</code> and four hex digits. */
+    private static final int MAX_ESCAPED_LENGTH = 6;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte IN_OBJECT = 1;
+    private static final byte IN_ARRAY = 2;
+    private OutputStream out;
+    private Writer writer;
+    private final byte[] buff;
+    private char[] chars;
+    /** Used for numbers if the main buffer is too small to hold them. */
+    private final byte[] numberBuff = new byte[JsonNumberCodec.MAX_DOUBLE_LENGTH];
+    private int idx;
+    private byte[] containers = new byte[32];
+    private int depth;
+    private boolean needComma;
+    private boolean afterName;
+    private boolean done;
+
+    private JsonWriterImpl(final OutputStream out, final Writer writer, final int bufferSize) {
+        if (bufferSize < MAX_ESCAPED_LENGTH) {
+            throw new IllegalArgumentException("Buffer size must be at least " + MAX_ESCAPED_LENGTH);
+        }
+        this.out = out;
+        this.writer = writer;
+        buff = new byte[bufferSize];
+    }
+
+    public JsonWriterImpl(final OutputStream out, final int bufferSize) {
+        this(out, null, bufferSize);
+    }
+
+    public JsonWriterImpl(final OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public JsonWriterImpl(final Writer writer, final int bufferSize) {
+        this(null, writer, bufferSize);
+    }
+
+    public JsonWriterImpl(final Writer writer) {
+        this(writer, DEFAULT_BUFFER_SIZE);
+    }
+
+    /* Without a target, for reuse through reset. */
+    JsonWriterImpl() {
+        this(null, null, DEFAULT_BUFFER_SIZE);
+    }
+
+    void reset(final OutputStream newOut, final Writer newWriter) {
+        out = newOut;
+        writer = newWriter;
+        idx = 0;
+        depth = 0;
+        needComma = false;
+        afterName = false;
+        done = false;
+    }
+
+    /**
+     * Starts a new document on the given stream, keeping the buffer.  Anything not
+     * flushed to the previous target is discarded.
+     */
+    public void reset(final OutputStream newOut) {
+        reset(newOut, null);
+    }
+
+    /**
+     * Starts a new document on the given writer, keeping the buffer.  Anything not
+     * flushed to the previous target is discarded.
+     */
+    public void reset(final Writer newWriter) {
+        reset(null, newWriter);
+    }
+
+    /**
+     * Ends a complete top-level value with a line break, after which another top-level
+     * value may be written, as in newline-delimited JSON.
+     */
+    public JsonWriterImpl newLine() {
+        if (!done || depth != 0) {
+            throw new JsonException("Line break only allowed after a complete top-level value.");
+        }
+        writeByte('\n');
+        done = false;
+        needComma = false;
+        return this;
+    }
+
+    private void flushBuffer() {
+        if (idx == 0) {
+            return;
+        }
+        try {
+            if (out != null) {
+                out.write(buff, 0, idx);
+            } else {
+                if (chars == null) {
+                    chars = new char[buff.length];
+                }
+                for (int q = 0; q < idx; q++) {
+                    chars[q] = (char) buff[q];
+                }
+                writer.write(chars, 0, idx);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        }
+        idx = 0;
+    }
+
+    private void writeByte(final int b) {
+        if (idx == buff.length) {
+            flushBuffer();
+        }
+        buff[idx++] = (byte) b;
+    }
+
+    private void writeAscii(final String s) {
+        final int len = s.length();
+        for (int q = 0; q < len; q++) {
+            writeByte(s.charAt(q));
+        }
+    }
+
+    private void writeBytes(final byte[] bytes, final int len) {
+        for (int q = 0; q < len; q++) {
+            writeByte(bytes[q]);
+        }
+    }
+
+    private void writeEscapedString(final String s) {
+        writeByte('"');
+        final int len = s.length();
+        for (int q = 0; q < len; q++) {
+            if (buff.length - idx < MAX_ESCAPED_LENGTH) {
+                flushBuffer();
+            }
+            final char c = s.charAt(q);
+            if (c >= 0x20 && c < 0x7f && c != '"' && c != '\\') {
+                buff[idx++] = (byte) c;
+                continue;
+            }
+            buff[idx++] = '\\';
+            switch (c) {
+                case '\r':
+                    buff[idx++] = 'r';
+                    break;
+                case '\n':
+                    buff[idx++] = 'n';
+                    break;
+                case '\t':
+                    buff[idx++] = 't';
+                    break;
+                case '\f':
+                    buff[idx++] = 'f';
+                    break;
+                case '\b':
+                    buff[idx++] = 'b';
+                    break;
+                case '"':
+                case '\\':
+                    buff[idx++] = (byte) c;
+                    break;
+                default:
+                    buff[idx++] = 'u';
+                    buff[idx++] = HEX_DIGITS[(c >> 12) & 0xf];
+                    buff[idx++] = HEX_DIGITS[(c >> 8) & 0xf];
+                    buff[idx++] = HEX_DIGITS[(c >> 4) & 0xf];
+                    buff[idx++] = HEX_DIGITS[c & 0xf];
+            }
+        }
+        writeByte('"');
+    }
+
+    private void beforeValue() {
+        if (depth == 0) {
+            if (done) {
+                throw new JsonException("Only one top-level value allowed.");
+            }
+            return;
+        }
+        if (containers[depth - 1] == IN_OBJECT) {
+            if (!afterName) {
+                throw new JsonException("Expected object member name before value.");
+            }
+            afterName = false;
+            return;
+        }
+        if (needComma) {
+            writeByte(',');
+        }
+    }
+
+    private void afterValue() {
+        needComma = true;
+        if (depth == 0) {
+            done = true;
+        }
+    }
+
+    private void push(final byte container) {
+        if (depth == containers.length) {
+            final byte[] tmp = new byte[containers.length * 2];
+            System.arraycopy(containers, 0, tmp, 0, depth);
+            containers = tmp;
+        }
+        containers[depth++] = container;
+        needComma = false;
+    }
+
+    private void pop(final byte container) {
+        if (depth == 0 || containers[depth - 1] != container || afterName) {
+            throw new JsonException("Unexpected end of " + (container == IN_OBJECT ? "object." : "array."));
+        }
+        --depth;
+    }
+
+    private void writeObject(final Map<String, JsonValue> object) {
+        beginObject();
+        for (final Map.Entry<String, JsonValue> entry : object.entrySet()) {
+            name(entry.getKey());
+            value(entry.getValue());
+        }
+        endObject();
+    }
+
+    private void writeArray(final List<JsonValue> array) {
+        beginArray();
+        for (final JsonValue value : array) {
+            value(value);
+        }
+        endArray();
+    }
+
+    @Override
+    public JsonWriter beginObject() {
+        beforeValue();
+        writeByte('{');
+        push(IN_OBJECT);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() {
+        pop(IN_OBJECT);
+        writeByte('}');
+        afterValue();
+        return this;
+    }
+
+    @Override
+    public JsonWriter beginArray() {
+        beforeValue();
+        writeByte('[');
+        push(IN_ARRAY);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() {
+        pop(IN_ARRAY);
+        writeByte(']');
+        afterValue();
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(final String name) {
+        if (depth == 0 || containers[depth - 1] != IN_OBJECT || afterName) {
+            throw new JsonException("Object member name not expected here.");
+        }
+        if (needComma) {
+            writeByte(',');
+        }
+        if (name == null) {
+            writeAscii("null");
+        } else {
+            writeEscapedString(name);
+        }
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(final String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeEscapedString(value);
+        afterValue();
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(final long value) {
+        beforeValue();
+        if (buff.length - idx < JsonNumberCodec.MAX_LONG_LENGTH) {
+            flushBuffer();
+        }
+        if (buff.length < JsonNumberCodec.MAX_LONG_LENGTH) {
+            writeBytes(numberBuff, JsonNumberCodec.formatLong(value, numberBuff, 0));
+        } else {
+            idx = JsonNumberCodec.formatLong(value, buff, idx);
+        }
+        afterValue();
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(final double value) {
+        beforeValue();
+        if (buff.length - idx < JsonNumberCodec.MAX_DOUBLE_LENGTH) {
+            flushBuffer();
+        }
+        if (buff.length < JsonNumberCodec.MAX_DOUBLE_LENGTH) {
+            writeBytes(numberBuff, JsonNumberCodec.formatDouble(value, numberBuff, 0));
+        } else {
+            idx = JsonNumberCodec.formatDouble(value, buff, idx);
+        }
+        afterValue();
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(final boolean value) {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        afterValue();
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() {
+        beforeValue();
+        writeAscii("null");
+        afterValue();
+        return this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public JsonWriter value(final JsonValue value) {
+        if (value instanceof Map) {
+            writeObject((Map<String, JsonValue>) value);
+        } else if (value instanceof List) {
+            writeArray((List<JsonValue>) value);
+        } else if (value instanceof JsonLong) {
+            value(((JsonLong) value).getValueAsLong());
+        } else if (value instanceof JsonDouble) {
+            value(((JsonDouble) value).getValueAsDouble());
+        } else if (value instanceof JsonBoolean) {
+            value(((JsonBoolean) value).getValue());
+        } else if (value instanceof JsonString) {
+            value(((JsonString) value).getValue());
+        } else if (value instanceof JsonNull) {
+            nullValue();
+        } else {
+            throw new JsonException("Unhandled JsonValue type: " + value.getClass().getName());
+        }
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        flushBuffer();
+        try {
+            if (out != null) {
+                out.flush();
+            } else {
+                writer.flush();
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        flushBuffer();
+        try {
+            if (out != null) {
+                out.close();
+            } else {
+                writer.close();
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        }
+    }
+
+}
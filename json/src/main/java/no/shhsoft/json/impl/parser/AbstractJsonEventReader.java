@@ -0,0 +1,460 @@
+package no.shhsoft.json.impl.parser;
+
+import no.shhsoft.json.JsonEvent;
+import no.shhsoft.json.JsonEventReader;
+import no.shhsoft.json.JsonException;
+import no.shhsoft.json.JsonStringInterner;
+import no.shhsoft.json.model.*;
+
+/**
+ * Keeps track of the JSON grammar for event readers.  Subclasses do the actual scanning
+ * of the input.  Not thread safe.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+abstract class AbstractJsonEventReader
+implements JsonEventReader {
+
+    static final int EOF = -1;
+    private static final byte IN_OBJECT = 1;
+    private static final byte IN_ARRAY = 2;
+    private byte[] containers = new byte[32];
+    private int depth;
+    private State state = State.START;
+    private JsonEvent currentEvent;
+    private String currentString;
+    private boolean currentNumberIsLong;
+    private long currentLong;
+    private double currentDouble;
+    private JsonStringInterner keyInterner;
+    private JsonStringInterner valueInterner;
+    /* Members of the compact containers being read, shared by all nesting levels. */
+    private String[] keyStack;
+    private JsonValue[] valueStack;
+    private int stackTop;
+
+    private enum State {
+        START, OBJECT_START, ARRAY_START, AFTER_VALUE, END
+    }
+
+    /**
+     * Skips any whitespace, and returns the next character without consuming it.
+     *
+     * @return the next non-whitespace character, or <code>EOF</code>.
+     */
+    protected abstract int peekSignificantChar();
+
+    /**
+     * Consumes the character last returned by <code>peekSignificantChar</code>.
+     */
+    protected abstract void skipChar();
+
+    /**
+     * Consumes a string, starting at the opening quote.  The contents must be made
+     * available through <code>decodeString</code> until the next call to this method.
+     */
+    protected abstract void scanString();
+
+    protected abstract String decodeString();
+
+    /**
+     * Like <code>decodeString</code>, but returns a string from the given interner.
+     * Subclasses should override this to look up the scanned input without decoding it.
+     */
+    protected String internString(final JsonStringInterner interner) {
+        return interner.intern(decodeString());
+    }
+
+    /**
+     * Tells whether the contents of the last scanned string equals the given string.
+     * Subclasses should override this to compare without decoding.
+     */
+    protected boolean scannedStringEquals(final String s) {
+        return decodeString().equals(s);
+    }
+
+    /**
+     * Consumes a number, reporting it using one of the <code>setNumber</code> methods.
+     */
+    protected abstract void scanNumber();
+
+    /**
+     * Consumes the given literal, failing if the input does not match.
+     */
+    protected abstract void scanLiteral(String literal);
+
+    protected abstract void closeInput();
+
+    /**
+     * Called at the start of each <code>next</code>.  The contents of the previously scanned
+     * string need not be kept after this point.
+     */
+    protected void beforeNext() {
+        /* Subclasses may override */
+    }
+
+    protected final void setNumber(final long value) {
+        currentNumberIsLong = true;
+        currentLong = value;
+        currentDouble = value;
+    }
+
+    protected final void setNumber(final double value) {
+        currentNumberIsLong = false;
+        currentDouble = value;
+        currentLong = (long) value;
+    }
+
+    protected final void error(final String message) {
+        throw new JsonException(message);
+    }
+
+    private void push(final byte container) {
+        if (depth == containers.length) {
+            final byte[] tmp = new byte[containers.length * 2];
+            System.arraycopy(containers, 0, tmp, 0, depth);
+            containers = tmp;
+        }
+        containers[depth++] = container;
+    }
+
+    private JsonEvent endContainer(final JsonEvent event) {
+        skipChar();
+        --depth;
+        state = depth == 0 ? State.END : State.AFTER_VALUE;
+        return event;
+    }
+
+    private JsonEvent scalar(final JsonEvent event) {
+        state = depth == 0 ? State.END : State.AFTER_VALUE;
+        return event;
+    }
+
+    private JsonEvent readValueStart(final int c) {
+        switch (c) {
+            case '{':
+                skipChar();
+                push(IN_OBJECT);
+                state = State.OBJECT_START;
+                return JsonEvent.BEGIN_OBJECT;
+            case '[':
+                skipChar();
+                push(IN_ARRAY);
+                state = State.ARRAY_START;
+                return JsonEvent.BEGIN_ARRAY;
+            case '"':
+                scanString();
+                return scalar(JsonEvent.VALUE_STRING);
+            case 't':
+                scanLiteral("true");
+                return scalar(JsonEvent.VALUE_TRUE);
+            case 'f':
+                scanLiteral("false");
+                return scalar(JsonEvent.VALUE_FALSE);
+            case 'n':
+                scanLiteral("null");
+                return scalar(JsonEvent.VALUE_NULL);
+            case EOF:
+                error("Unexpected end of input.");
+                return null;
+            default:
+                if (c == '-' || c == '.' || (c >= '0' && c <= '9')) {
+                    scanNumber();
+                    return scalar(JsonEvent.VALUE_NUMBER);
+                }
+                error("Unexpected character `" + (char) c + "'");
+                return null;
+        }
+    }
+
+    private JsonEvent readFieldName(final int c) {
+        if (c != '"') {
+            if (c == EOF) {
+                error("Unexpected end of input.");
+            }
+            error("Expected string for object member name.");
+        }
+        scanString();
+        if (peekSignificantChar() != ':') {
+            error("Expected `:' after object member name");
+        }
+        skipChar();
+        state = State.AFTER_VALUE;
+        return JsonEvent.FIELD_NAME;
+    }
+
+    private JsonEvent internalNext() {
+        final int c = peekSignificantChar();
+        switch (state) {
+            case START:
+                if (c == EOF) {
+                    state = State.END;
+                    return null;
+                }
+                return readValueStart(c);
+            case OBJECT_START:
+                if (c == '}') {
+                    return endContainer(JsonEvent.END_OBJECT);
+                }
+                return readFieldName(c);
+            case ARRAY_START:
+                if (c == ']') {
+                    return endContainer(JsonEvent.END_ARRAY);
+                }
+                return readValueStart(c);
+            case AFTER_VALUE:
+                if (currentEvent == JsonEvent.FIELD_NAME) {
+                    return readValueStart(c);
+                }
+                if (containers[depth - 1] == IN_OBJECT) {
+                    if (c == '}') {
+                        return endContainer(JsonEvent.END_OBJECT);
+                    }
+                    if (c != ',') {
+                        error(c == EOF ? "Unexpected end of input." : "Unexpected character `" + (char) c + "'");
+                    }
+                    skipChar();
+                    return readFieldName(peekSignificantChar());
+                }
+                if (c == ']') {
+                    return endContainer(JsonEvent.END_ARRAY);
+                }
+                if (c != ',') {
+                    error(c == EOF ? "Unexpected end of input." : "Unexpected character `" + (char) c + "'");
+                }
+                skipChar();
+                return readValueStart(peekSignificantChar());
+            case END:
+                if (c != EOF) {
+                    error("Unexpected character `" + (char) c + "' after end of value.");
+                }
+                return null;
+            default:
+                throw new RuntimeException("Unhandled state " + state);
+        }
+    }
+
+    @Override
+    public final JsonEvent next() {
+        beforeNext();
+        currentString = null;
+        currentEvent = internalNext();
+        return currentEvent;
+    }
+
+    @Override
+    public final JsonEvent getCurrentEvent() {
+        return currentEvent;
+    }
+
+    @Override
+    public final int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public final String getString() {
+        if (currentEvent != JsonEvent.VALUE_STRING && currentEvent != JsonEvent.FIELD_NAME) {
+            throw new JsonException("Current event " + currentEvent + " is not a string.");
+        }
+        if (currentString == null) {
+            final JsonStringInterner interner = currentEvent == JsonEvent.FIELD_NAME ? keyInterner : valueInterner;
+            currentString = interner != null ? internString(interner) : decodeString();
+        }
+        return currentString;
+    }
+
+    @Override
+    public final boolean stringEquals(final String s) {
+        if (currentEvent != JsonEvent.VALUE_STRING && currentEvent != JsonEvent.FIELD_NAME) {
+            throw new JsonException("Current event " + currentEvent + " is not a string.");
+        }
+        if (currentString != null) {
+            return currentString.equals(s);
+        }
+        return scannedStringEquals(s);
+    }
+
+    /**
+     * @param keyInterner interner for object member names, or <code>null</code>.
+     */
+    public final void setKeyInterner(final JsonStringInterner keyInterner) {
+        this.keyInterner = keyInterner;
+    }
+
+    /**
+     * @param valueInterner interner for string values, or <code>null</code>.
+     */
+    public final void setValueInterner(final JsonStringInterner valueInterner) {
+        this.valueInterner = valueInterner;
+    }
+
+    @Override
+    public final JsonNumber getNumber() {
+        assertNumber();
+        if (currentNumberIsLong) {
+            return JsonLong.get(currentLong);
+        }
+        return JsonDouble.get(currentDouble);
+    }
+
+    @Override
+    public final long getLong() {
+        assertNumber();
+        return currentLong;
+    }
+
+    @Override
+    public final double getDouble() {
+        assertNumber();
+        return currentDouble;
+    }
+
+    private void assertNumber() {
+        if (currentEvent != JsonEvent.VALUE_NUMBER) {
+            throw new JsonException("Current event " + currentEvent + " is not a number.");
+        }
+    }
+
+    @Override
+    public final boolean getBoolean() {
+        if (currentEvent == JsonEvent.VALUE_TRUE) {
+            return true;
+        }
+        if (currentEvent == JsonEvent.VALUE_FALSE) {
+            return false;
+        }
+        throw new JsonException("Current event " + currentEvent + " is not a boolean.");
+    }
+
+    @Override
+    public final JsonValue getValue() {
+        if (currentEvent == null) {
+            throw new JsonException("No current event.");
+        }
+        switch (currentEvent) {
+            case VALUE_STRING:
+                return new JsonString(getString());
+            case VALUE_NUMBER:
+                return getNumber();
+            case VALUE_TRUE:
+                return JsonBoolean.TRUE;
+            case VALUE_FALSE:
+                return JsonBoolean.FALSE;
+            case VALUE_NULL:
+                return JsonNull.NULL;
+            default:
+                throw new JsonException("Current event " + currentEvent + " is not a scalar value.");
+        }
+    }
+
+    private JsonObject readObject() {
+        final JsonObject object = new JsonObject();
+        while (next() != JsonEvent.END_OBJECT) {
+            final String name = getString();
+            next();
+            object.put(name, readValue());
+        }
+        return object;
+    }
+
+    private JsonArray readArray() {
+        final JsonArray array = new JsonArray();
+        while (next() != JsonEvent.END_ARRAY) {
+            array.add(readValue());
+        }
+        return array;
+    }
+
+    @Override
+    public final JsonValue readValue() {
+        if (currentEvent == JsonEvent.BEGIN_OBJECT) {
+            return readObject();
+        }
+        if (currentEvent == JsonEvent.BEGIN_ARRAY) {
+            return readArray();
+        }
+        return getValue();
+    }
+
+    private void pushMember(final String key, final JsonValue value) {
+        if (keyStack == null) {
+            keyStack = new String[64];
+            valueStack = new JsonValue[64];
+        } else if (stackTop == keyStack.length) {
+            final String[] tmpKeys = new String[keyStack.length * 2];
+            final JsonValue[] tmpValues = new JsonValue[valueStack.length * 2];
+            System.arraycopy(keyStack, 0, tmpKeys, 0, stackTop);
+            System.arraycopy(valueStack, 0, tmpValues, 0, stackTop);
+            keyStack = tmpKeys;
+            valueStack = tmpValues;
+        }
+        keyStack[stackTop] = key;
+        valueStack[stackTop] = value;
+        ++stackTop;
+    }
+
+    private void popMembers(final int base) {
+        for (int q = base; q < stackTop; q++) {
+            keyStack[q] = null;
+            valueStack[q] = null;
+        }
+        stackTop = base;
+    }
+
+    private CompactJsonObject readCompactObject() {
+        final int base = stackTop;
+        while (next() != JsonEvent.END_OBJECT) {
+            final String name = getString();
+            next();
+            pushMember(name, readCompactValue());
+        }
+        if (base == stackTop) {
+            return CompactJsonObject.EMPTY;
+        }
+        final CompactJsonObject object = CompactJsonObject.create(keyStack, valueStack, base, stackTop - base);
+        popMembers(base);
+        return object;
+    }
+
+    private CompactJsonArray readCompactArray() {
+        final int base = stackTop;
+        while (next() != JsonEvent.END_ARRAY) {
+            pushMember(null, readCompactValue());
+        }
+        if (base == stackTop) {
+            return CompactJsonArray.EMPTY;
+        }
+        final CompactJsonArray array = CompactJsonArray.create(valueStack, base, stackTop - base);
+        popMembers(base);
+        return array;
+    }
+
+    @Override
+    public final JsonValue readCompactValue() {
+        if (currentEvent == JsonEvent.BEGIN_OBJECT) {
+            return readCompactObject();
+        }
+        if (currentEvent == JsonEvent.BEGIN_ARRAY) {
+            return readCompactArray();
+        }
+        return getValue();
+    }
+
+    @Override
+    public final void skipValue() {
+        if (currentEvent != JsonEvent.BEGIN_OBJECT && currentEvent != JsonEvent.BEGIN_ARRAY) {
+            return;
+        }
+        final int targetDepth = depth - 1;
+        while (depth > targetDepth) {
+            next();
+        }
+    }
+
+    @Override
+    public final void close() {
+        closeInput();
+    }
+
+}
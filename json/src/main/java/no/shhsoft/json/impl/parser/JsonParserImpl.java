@@ -2,7 +2,18 @@ package no.shhsoft.json.impl.parser;
 
 import no.shhsoft.json.JsonException;
 import no.shhsoft.json.JsonParser;
+import no.shhsoft.json.JsonProjection;
+import no.shhsoft.json.JsonStringInterner;
 import no.shhsoft.json.model.*;
+import no.shhsoft.utils.IoUtils;
+import no.shhsoft.utils.UncheckedIoException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
@@ -10,6 +21,12 @@ import no.shhsoft.json.model.*;
 public final class JsonParserImpl
 implements JsonParser {
 
+    private JsonStringInterner keyInterner;
+    private JsonStringInterner valueInterner;
+    private boolean compact;
+    private boolean lazy;
+    private JsonProjection projection;
+
     private static Token nextExistingToken(final JsonTokenizer tokenizer) {
         final Token token = tokenizer.nextToken();
         if (token == null) {
@@ -26,7 +43,7 @@ implements JsonParser {
         return token;
     }
 
-    private static JsonObject parseObject(final JsonTokenizer tokenizer) {
+    private JsonObject parseObject(final JsonTokenizer tokenizer) {
         final JsonObject object = new JsonObject();
         for (;;) {
             Token token = nextExistingToken(tokenizer);
@@ -40,7 +57,10 @@ implements JsonParser {
             if (!(nameValue instanceof JsonString)) {
                 throw new JsonException("Expected string value token for object member name.");
             }
-            final String name = ((JsonString) nameValue).getValue();
+            String name = ((JsonString) nameValue).getValue();
+            if (keyInterner != null) {
+                name = keyInterner.intern(name);
+            }
             token = nextExistingToken(tokenizer);
             if (token != Token.COLON) {
                 throw new JsonException("Expected `:' after object member name");
@@ -58,7 +78,7 @@ implements JsonParser {
         return object;
     }
 
-    private static JsonArray parseArray(final JsonTokenizer tokenizer) {
+    private JsonArray parseArray(final JsonTokenizer tokenizer) {
         final JsonArray array = new JsonArray();
         for (;;) {
             if (peekNextExistingToken(tokenizer) == Token.END_ARRAY) {
@@ -79,10 +99,14 @@ implements JsonParser {
         return array;
     }
 
-    private static JsonValue parseValue(final JsonTokenizer tokenizer) {
+    private JsonValue parseValue(final JsonTokenizer tokenizer) {
         final Token token = tokenizer.nextToken();
         if (token.getType() == TokenType.VALUE) {
-            return token.getValue();
+            final JsonValue value = token.getValue();
+            if (valueInterner != null && value instanceof JsonString) {
+                return new JsonString(valueInterner.intern(((JsonString) value).getValue()));
+            }
+            return value;
         }
         if (token == Token.BEGIN_OBJECT) {
             return parseObject(tokenizer);
@@ -94,6 +118,12 @@ implements JsonParser {
 
     @Override
     public JsonContainer parse(final String s) {
+        if (lazy && projection == null) {
+            return parseLazy(s.getBytes(StandardCharsets.UTF_8));
+        }
+        if (compact || projection != null) {
+            return parse(new ReaderJsonEventReader(new StringReader(s)));
+        }
         final JsonTokenizer tokenizer = new JsonTokenizer(s);
         final JsonValue value = parseValue(tokenizer);
         if (value == null) {
@@ -105,4 +135,103 @@ implements JsonParser {
         return (JsonContainer) value;
     }
 
+    private JsonContainer parse(final AbstractJsonEventReader eventReader) {
+        eventReader.setKeyInterner(keyInterner);
+        eventReader.setValueInterner(valueInterner);
+        if (eventReader.next() == null) {
+            throw new JsonException("There's nothing to parse.");
+        }
+        final JsonValue value;
+        if (projection != null) {
+            value = compact ? projection.readCompact(eventReader) : projection.read(eventReader);
+        } else {
+            value = compact ? eventReader.readCompactValue() : eventReader.readValue();
+        }
+        if (!(value instanceof JsonContainer)) {
+            throw new JsonException("Text must contain either an object or an array.");
+        }
+        return (JsonContainer) value;
+    }
+
+    private static String readAll(final Reader reader) {
+        final StringBuilder sb = new StringBuilder();
+        final char[] buff = new char[8192];
+        try {
+            for (;;) {
+                final int numRead = reader.read(buff);
+                if (numRead < 0) {
+                    break;
+                }
+                sb.append(buff, 0, numRead);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        }
+        return sb.toString();
+    }
+
+    private JsonContainer parseLazy(final byte[] utf8) {
+        return LazyJsonDocument.parse(utf8, 0, utf8.length, keyInterner, valueInterner);
+    }
+
+    @Override
+    public JsonContainer parse(final Reader reader) {
+        if (lazy && projection == null) {
+            return parse(readAll(reader));
+        }
+        return parse(new ReaderJsonEventReader(reader));
+    }
+
+    @Override
+    public JsonContainer parse(final InputStream in) {
+        if (lazy && projection == null) {
+            return parseLazy(IoUtils.read(in));
+        }
+        return parse(new Utf8JsonEventReader(in));
+    }
+
+    @Override
+    public JsonContainer parse(final byte[] utf8) {
+        if (lazy && projection == null) {
+            return parseLazy(utf8);
+        }
+        return parse(new Utf8JsonEventReader(utf8));
+    }
+
+    @Override
+    public JsonContainer parse(final ByteBuffer utf8) {
+        if (lazy && projection == null) {
+            /* Copy, since the lazy tree keeps the bytes, and callers may reuse their buffers. */
+            final byte[] bytes = new byte[utf8.remaining()];
+            utf8.get(bytes);
+            return parseLazy(bytes);
+        }
+        return parse(Utf8JsonEventReader.create(utf8));
+    }
+
+    @Override
+    public void setKeyInterner(final JsonStringInterner keyInterner) {
+        this.keyInterner = keyInterner;
+    }
+
+    @Override
+    public void setValueInterner(final JsonStringInterner valueInterner) {
+        this.valueInterner = valueInterner;
+    }
+
+    @Override
+    public void setCompact(final boolean compact) {
+        this.compact = compact;
+    }
+
+    @Override
+    public void setLazy(final boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    @Override
+    public void setProjection(final JsonProjection projection) {
+        this.projection = projection;
+    }
+
 }
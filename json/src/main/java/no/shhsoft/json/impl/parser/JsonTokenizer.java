@@ -1,6 +1,7 @@
 package no.shhsoft.json.impl.parser;
 
 import no.shhsoft.json.JsonException;
+import no.shhsoft.json.impl.JsonNumberCodec;
 import no.shhsoft.json.model.JsonDouble;
 import no.shhsoft.json.model.JsonLong;
 import no.shhsoft.json.model.JsonNumber;
@@ -17,6 +18,7 @@ final class JsonTokenizer {
     private static final char EOF = Character.MIN_VALUE;
     private boolean allowComments = false;
     private final char[] chars;
+    private final JsonNumberCodec numberCodec = new JsonNumberCodec();
     private int idx;
     private Token nextToken;
 
@@ -92,61 +94,24 @@ final class JsonTokenizer {
         return sb.toString();
     }
 
+    private static boolean isNumberChar(final char c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+    }
+
     private JsonNumber scanNumber() {
-        double number = 0.0;
-        double divider = 0.1;
-        boolean dotSeen = false;
-        boolean isReal = false;
-        boolean isNegative = false;
-        if (currChar() == '-') {
-            isNegative = true;
+        final int start = idx;
+        while (isNumberChar(currChar())) {
             nextChar();
         }
-        char c;
-        while ((c = currChar()) != EOF) {
-            if (c == '.') {
-                dotSeen = true;
-                isReal = true;
-            } else if (c == 'e' || c == 'E') {
-                isReal = true;
-                c = nextChar();
-                if (c == EOF) {
-                    error("Dangling exponential character when parsing number.");
-                }
-                double sign = 1.0;
-                if (c == '-') {
-                    sign = -1.0;
-                    c = nextChar();
-                    if (c == EOF) {
-                        error("Dangling negative exponential character when parsing number.");
-                    }
-                }
-                final double exp = scanNumber().getValueAsDouble();
-                number = number * Math.pow(10.0, sign * exp);
-                break;
-            } else if (c >= '0' && c <= '9') {
-                final double digit = c - '0';
-                if (dotSeen) {
-                    number += digit * divider;
-                    divider /= 10.0;
-                } else {
-                    number = number * 10.0 + digit;
-                }
-            } else {
-                break;
-            }
-            nextChar();
-        }
-        if (!isReal && (number > Integer.MAX_VALUE || number < Integer.MIN_VALUE)) {
-            isReal = true;
-        }
-        if (isNegative) {
-            number = -number;
+        try {
+            numberCodec.parse(chars, start, idx);
+        } catch (final NumberFormatException e) {
+            error("Invalid number `" + new String(chars, start, idx - start) + "'");
         }
-        if (isReal) {
-            return new JsonDouble(number);
+        if (numberCodec.isLong()) {
+            return JsonLong.get(numberCodec.getLong());
         }
-        return JsonLong.get((int) number);
+        return new JsonDouble(numberCodec.getDouble());
     }
 
     private char scan4DigitHexChar() {
@@ -0,0 +1,56 @@
+package no.shhsoft.json.impl.parser;
+
+import no.shhsoft.json.model.CompactJsonArray;
+import no.shhsoft.json.model.JsonContainer;
+import no.shhsoft.json.model.JsonValue;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Immutable JSON array that is not parsed until one of its elements is asked for.
+ * Nested objects and arrays are themselves lazy.  Equal to any <code>List</code> with the
+ * same elements.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class LazyJsonArray
+extends AbstractList<JsonValue>
+implements JsonContainer, RandomAccess {
+
+    private final LazyJsonDocument document;
+    private final int container;
+    private volatile CompactJsonArray array;
+
+    LazyJsonArray(final LazyJsonDocument document, final int container) {
+        this.document = document;
+        this.container = container;
+    }
+
+    private CompactJsonArray getArray() {
+        CompactJsonArray result = array;
+        if (result == null) {
+            result = document.materializeArray(container);
+            array = result;
+        }
+        return result;
+    }
+
+    /**
+     * Tells whether the elements of this array have been parsed.
+     */
+    public boolean isMaterialized() {
+        return array != null;
+    }
+
+    @Override
+    public JsonValue get(final int index) {
+        return getArray().get(index);
+    }
+
+    @Override
+    public int size() {
+        return getArray().size();
+    }
+
+}
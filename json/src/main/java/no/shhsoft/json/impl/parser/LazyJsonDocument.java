@@ -0,0 +1,342 @@
+package no.shhsoft.json.impl.parser;
+
+import no.shhsoft.json.JsonException;
+import no.shhsoft.json.JsonStringInterner;
+import no.shhsoft.json.impl.JsonNumberCodec;
+import no.shhsoft.json.model.*;
+
+/**
+ * UTF-8 encoded document with an index of where each object and array starts and ends.
+ * Building the index is a single pass that only looks at quotes, backslashes and
+ * brackets.  Containers are parsed one level at a time, when first accessed through a
+ * <code>LazyJsonObject</code> or <code>LazyJsonArray</code>, so errors in a part of the
+ * document are not reported until that part is accessed.  The document bytes are kept
+ * for as long as any part of the tree is reachable.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+final class LazyJsonDocument {
+
+    private final byte[] buff;
+    private final int limit;
+    private final JsonStringInterner keyInterner;
+    private final JsonStringInterner valueInterner;
+    /* Per container, in order of appearance: start, end, and the number of the next container not inside it. */
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int[] nexts = new int[16];
+    private int numContainers;
+    private final Utf8StringDecoder stringDecoder = new Utf8StringDecoder();
+    private final JsonNumberCodec numberCodec = new JsonNumberCodec();
+    private String[] scratchKeys = new String[16];
+    private JsonValue[] scratchValues = new JsonValue[16];
+    private int idx;
+    private boolean stringHasEscapes;
+    private boolean stringIsAscii;
+
+    private LazyJsonDocument(final byte[] buff, final int offset, final int length,
+                             final JsonStringInterner keyInterner, final JsonStringInterner valueInterner) {
+        this.buff = buff;
+        this.limit = offset + length;
+        this.keyInterner = keyInterner;
+        this.valueInterner = valueInterner;
+        buildIndex(offset);
+    }
+
+    /**
+     * Indexes the given document, which must be kept unchanged for as long as the returned
+     * tree is in use.
+     */
+    static JsonContainer parse(final byte[] utf8, final int offset, final int length,
+                               final JsonStringInterner keyInterner, final JsonStringInterner valueInterner) {
+        final LazyJsonDocument document = new LazyJsonDocument(utf8, offset, length, keyInterner, valueInterner);
+        if (document.numContainers == 0) {
+            throw new JsonException("Text must contain either an object or an array.");
+        }
+        return document.getContainer(0);
+    }
+
+    private static boolean isWhitespace(final int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private void addContainer(final int start) {
+        if (numContainers == starts.length) {
+            final int newLength = starts.length * 2;
+            final int[] tmpStarts = new int[newLength];
+            final int[] tmpEnds = new int[newLength];
+            final int[] tmpNexts = new int[newLength];
+            System.arraycopy(starts, 0, tmpStarts, 0, numContainers);
+            System.arraycopy(ends, 0, tmpEnds, 0, numContainers);
+            System.arraycopy(nexts, 0, tmpNexts, 0, numContainers);
+            starts = tmpStarts;
+            ends = tmpEnds;
+            nexts = tmpNexts;
+        }
+        starts[numContainers++] = start;
+    }
+
+    private void buildIndex(final int offset) {
+        int q = offset;
+        while (q < limit && isWhitespace(buff[q])) {
+            ++q;
+        }
+        if (q == limit) {
+            throw new JsonException("There's nothing to parse.");
+        }
+        if (buff[q] != '{' && buff[q] != '[') {
+            throw new JsonException("Text must contain either an object or an array.");
+        }
+        int[] open = new int[32];
+        int depth = 0;
+        for (; q < limit; q++) {
+            final byte b = buff[q];
+            if (b == '"') {
+                if (depth == 0) {
+                    break;
+                }
+                for (++q; q < limit && buff[q] != '"'; q++) {
+                    if (buff[q] == '\\') {
+                        ++q;
+                    }
+                }
+                if (q >= limit) {
+                    throw new JsonException("End of input in the middle of a string.");
+                }
+            } else if (b == '{' || b == '[') {
+                if (depth == open.length) {
+                    final int[] tmp = new int[open.length * 2];
+                    System.arraycopy(open, 0, tmp, 0, depth);
+                    open = tmp;
+                }
+                open[depth++] = numContainers;
+                addContainer(q);
+            } else if (b == '}' || b == ']') {
+                if (depth == 0) {
+                    throw new JsonException("Unexpected character `" + (char) b + "' after end of value.");
+                }
+                final int container = open[--depth];
+                if (buff[starts[container]] != (b == '}' ? '{' : '[')) {
+                    throw new JsonException("Unexpected character `" + (char) b + "'");
+                }
+                ends[container] = q;
+                nexts[container] = numContainers;
+                if (depth == 0) {
+                    ++q;
+                    break;
+                }
+            } else if (depth == 0 && !isWhitespace(b)) {
+                break;
+            }
+        }
+        if (depth > 0) {
+            throw new JsonException("Unexpected end of input.");
+        }
+        for (; q < limit; q++) {
+            if (!isWhitespace(buff[q])) {
+                throw new JsonException("Unexpected character `" + (char) buff[q] + "' after end of value.");
+            }
+        }
+    }
+
+    private JsonContainer getContainer(final int container) {
+        if (buff[starts[container]] == '{') {
+            return new LazyJsonObject(this, container);
+        }
+        return new LazyJsonArray(this, container);
+    }
+
+    private int skipWhitespace() {
+        while (idx < limit && isWhitespace(buff[idx])) {
+            ++idx;
+        }
+        return idx < limit ? buff[idx] : -1;
+    }
+
+    private void expect(final char c) {
+        if (skipWhitespace() != c) {
+            throw new JsonException("Expected `" + c + "'");
+        }
+        ++idx;
+    }
+
+    /**
+     * Finds the end of the string starting at <code>idx</code>.
+     *
+     * @return the index of the first byte of the contents.
+     */
+    private int scanString() {
+        final int start = ++idx;
+        stringHasEscapes = false;
+        stringIsAscii = true;
+        for (;;) {
+            final byte b = buff[idx];
+            if (b == '"') {
+                break;
+            }
+            if (b == '\\') {
+                stringHasEscapes = true;
+                ++idx;
+            } else if (b < 0) {
+                stringIsAscii = false;
+            } else if (b == '\r' || b == '\n') {
+                throw new JsonException("Multi-line strings not supported.");
+            }
+            ++idx;
+        }
+        return start;
+    }
+
+    private String readString(final JsonStringInterner interner) {
+        final int start = scanString();
+        final int end = idx++;
+        if (interner != null) {
+            return stringDecoder.intern(interner, buff, start, end, stringHasEscapes, stringIsAscii);
+        }
+        return stringDecoder.decode(buff, start, end, stringHasEscapes, stringIsAscii);
+    }
+
+    private void expectLiteral(final String literal) {
+        for (int q = 0; q < literal.length(); q++) {
+            if (idx >= limit || buff[idx++] != literal.charAt(q)) {
+                throw new JsonException("Unexpected literal value. Expected `" + literal + "'");
+            }
+        }
+    }
+
+    private JsonValue readNumber() {
+        final int start = idx;
+        while (idx < limit) {
+            final int c = buff[idx];
+            if (!((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')) {
+                break;
+            }
+            ++idx;
+        }
+        try {
+            numberCodec.parse(buff, start, idx);
+        } catch (final NumberFormatException e) {
+            throw new JsonException(e.getMessage());
+        }
+        if (numberCodec.isLong()) {
+            return JsonLong.get(numberCodec.getLong());
+        }
+        return new JsonDouble(numberCodec.getDouble());
+    }
+
+    /**
+     * Reads the value at <code>idx</code>.  Containers are skipped, and returned as lazy
+     * containers.
+     *
+     * @param nextContainer the number of the next container in the document.
+     */
+    private JsonValue readValue(final int nextContainer) {
+        final int c = skipWhitespace();
+        switch (c) {
+            case '{':
+            case '[':
+                idx = ends[nextContainer] + 1;
+                return getContainer(nextContainer);
+            case '"':
+                return new JsonString(readString(valueInterner));
+            case 't':
+                expectLiteral("true");
+                return JsonBoolean.TRUE;
+            case 'f':
+                expectLiteral("false");
+                return JsonBoolean.FALSE;
+            case 'n':
+                expectLiteral("null");
+                return JsonNull.NULL;
+            case -1:
+                throw new JsonException("Unexpected end of input.");
+            default:
+                if (c == '-' || c == '.' || (c >= '0' && c <= '9')) {
+                    return readNumber();
+                }
+                throw new JsonException("Unexpected character `" + (char) c + "'");
+        }
+    }
+
+    private void addMember(final int numMembers, final String key, final JsonValue value) {
+        if (numMembers == scratchValues.length) {
+            final String[] tmpKeys = new String[numMembers * 2];
+            final JsonValue[] tmpValues = new JsonValue[numMembers * 2];
+            System.arraycopy(scratchKeys, 0, tmpKeys, 0, numMembers);
+            System.arraycopy(scratchValues, 0, tmpValues, 0, numMembers);
+            scratchKeys = tmpKeys;
+            scratchValues = tmpValues;
+        }
+        scratchKeys[numMembers] = key;
+        scratchValues[numMembers] = value;
+    }
+
+    private void clearMembers(final int numMembers) {
+        for (int q = 0; q < numMembers; q++) {
+            scratchKeys[q] = null;
+            scratchValues[q] = null;
+        }
+    }
+
+    private boolean hasMoreMembers(final char end) {
+        final int c = skipWhitespace();
+        ++idx;
+        if (c == end) {
+            return false;
+        }
+        if (c != ',') {
+            throw new JsonException(c < 0 ? "Unexpected end of input." : "Unexpected character `" + (char) c + "'");
+        }
+        return true;
+    }
+
+    /**
+     * Parses the members of the given object, without going into nested containers.
+     */
+    synchronized CompactJsonObject materializeObject(final int container) {
+        idx = starts[container] + 1;
+        int nextContainer = container + 1;
+        int numMembers = 0;
+        if (skipWhitespace() == '}') {
+            return CompactJsonObject.EMPTY;
+        }
+        do {
+            if (skipWhitespace() != '"') {
+                throw new JsonException("Expected string for object member name.");
+            }
+            final String key = readString(keyInterner);
+            expect(':');
+            final JsonValue value = readValue(nextContainer);
+            if (value instanceof LazyJsonObject || value instanceof LazyJsonArray) {
+                nextContainer = nexts[nextContainer];
+            }
+            addMember(numMembers++, key, value);
+        } while (hasMoreMembers('}'));
+        final CompactJsonObject object = CompactJsonObject.create(scratchKeys, scratchValues, 0, numMembers);
+        clearMembers(numMembers);
+        return object;
+    }
+
+    /**
+     * Parses the elements of the given array, without going into nested containers.
+     */
+    synchronized CompactJsonArray materializeArray(final int container) {
+        idx = starts[container] + 1;
+        int nextContainer = container + 1;
+        int numMembers = 0;
+        if (skipWhitespace() == ']') {
+            return CompactJsonArray.EMPTY;
+        }
+        do {
+            final JsonValue value = readValue(nextContainer);
+            if (value instanceof LazyJsonObject || value instanceof LazyJsonArray) {
+                nextContainer = nexts[nextContainer];
+            }
+            addMember(numMembers++, null, value);
+        } while (hasMoreMembers(']'));
+        final CompactJsonArray array = CompactJsonArray.create(scratchValues, 0, numMembers);
+        clearMembers(numMembers);
+        return array;
+    }
+
+}
@@ -0,0 +1,66 @@
+package no.shhsoft.json.impl.parser;
+
+import no.shhsoft.json.model.CompactJsonObject;
+import no.shhsoft.json.model.JsonContainer;
+import no.shhsoft.json.model.JsonValue;
+
+import java.util.AbstractMap;
+import java.util.Set;
+
+/**
+ * Immutable JSON object that is not parsed until one of its members is asked for.
+ * Nested objects and arrays are themselves lazy.  Equal to any <code>Map</code> with the
+ * same members.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class LazyJsonObject
+extends AbstractMap<String, JsonValue>
+implements JsonContainer {
+
+    private final LazyJsonDocument document;
+    private final int container;
+    private volatile CompactJsonObject object;
+
+    LazyJsonObject(final LazyJsonDocument document, final int container) {
+        this.document = document;
+        this.container = container;
+    }
+
+    private CompactJsonObject getObject() {
+        CompactJsonObject result = object;
+        if (result == null) {
+            result = document.materializeObject(container);
+            object = result;
+        }
+        return result;
+    }
+
+    /**
+     * Tells whether the members of this object have been parsed.
+     */
+    public boolean isMaterialized() {
+        return object != null;
+    }
+
+    @Override
+    public JsonValue get(final Object key) {
+        return getObject().get(key);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return getObject().containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return getObject().size();
+    }
+
+    @Override
+    public Set<Entry<String, JsonValue>> entrySet() {
+        return getObject().entrySet();
+    }
+
+}
@@ -0,0 +1,232 @@
+package no.shhsoft.json.impl.parser;
+
+import no.shhsoft.json.JsonStringInterner;
+import no.shhsoft.json.impl.JsonNumberCodec;
+import no.shhsoft.utils.HexUtils;
+import no.shhsoft.utils.UncheckedIoException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Event reader that reads characters incrementally from a <code>Reader</code>, using a
+ * fixed size buffer.  Memory use is independent of the size of the document, except for
+ * the longest single string in it.  Not thread safe.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class ReaderJsonEventReader
+extends AbstractJsonEventReader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private final Reader reader;
+    private final char[] buff;
+    private int buffLen;
+    private int idx;
+    private final StringBuilder stringBuilder = new StringBuilder();
+    private final JsonNumberCodec numberCodec = new JsonNumberCodec();
+    private char[] numberChars = new char[32];
+
+    private boolean fill() {
+        if (buffLen < 0) {
+            return false;
+        }
+        try {
+            int n;
+            do {
+                n = reader.read(buff, 0, buff.length);
+            } while (n == 0);
+            idx = 0;
+            buffLen = n;
+            return n > 0;
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        }
+    }
+
+    private int peekChar() {
+        if (idx >= buffLen && !fill()) {
+            return EOF;
+        }
+        return buff[idx];
+    }
+
+    private int nextChar() {
+        if (idx >= buffLen && !fill()) {
+            return EOF;
+        }
+        return buff[idx++];
+    }
+
+    private char nextExistingChar() {
+        final int c = nextChar();
+        if (c == EOF) {
+            error("Unexpected end of input.");
+        }
+        return (char) c;
+    }
+
+    private char scan4DigitHexChar() {
+        int value = 0;
+        for (int q = 4 - 1; q >= 0; q--) {
+            value = value * 16 + HexUtils.parseHexDigit(nextExistingChar());
+        }
+        return (char) value;
+    }
+
+    public ReaderJsonEventReader(final Reader reader, final int bufferSize) {
+        this.reader = reader;
+        buff = new char[bufferSize];
+    }
+
+    public ReaderJsonEventReader(final Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ReaderJsonEventReader(final InputStream in) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected int peekSignificantChar() {
+        for (;;) {
+            while (idx < buffLen) {
+                final char c = buff[idx];
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    return c;
+                }
+                ++idx;
+            }
+            if (!fill()) {
+                return EOF;
+            }
+        }
+    }
+
+    @Override
+    protected void skipChar() {
+        ++idx;
+    }
+
+    @Override
+    protected void scanString() {
+        stringBuilder.setLength(0);
+        ++idx;
+        for (;;) {
+            final int start = idx;
+            while (idx < buffLen) {
+                final char c = buff[idx];
+                if (c == '"' || c == '\\' || c == '\r' || c == '\n') {
+                    break;
+                }
+                ++idx;
+            }
+            stringBuilder.append(buff, start, idx - start);
+            if (idx >= buffLen) {
+                if (!fill()) {
+                    error("End of input in the middle of a string.");
+                }
+                continue;
+            }
+            final char c = buff[idx++];
+            if (c == '"') {
+                return;
+            }
+            if (c == '\r' || c == '\n') {
+                error("Multi-line strings not supported.");
+            }
+            final char escaped = nextExistingChar();
+            switch (escaped) {
+                case 'r':
+                    stringBuilder.append('\r');
+                    break;
+                case 'n':
+                    stringBuilder.append('\n');
+                    break;
+                case 'b':
+                    stringBuilder.append('\b');
+                    break;
+                case 't':
+                    stringBuilder.append('\t');
+                    break;
+                case 'f':
+                    stringBuilder.append('\f');
+                    break;
+                case 'u':
+                    stringBuilder.append(scan4DigitHexChar());
+                    break;
+                default:
+                    stringBuilder.append(escaped);
+            }
+        }
+    }
+
+    @Override
+    protected String decodeString() {
+        return stringBuilder.toString();
+    }
+
+    @Override
+    protected String internString(final JsonStringInterner interner) {
+        return interner.intern(stringBuilder);
+    }
+
+    @Override
+    protected boolean scannedStringEquals(final String s) {
+        return s.contentEquals(stringBuilder);
+    }
+
+    @Override
+    protected void scanNumber() {
+        int numChars = 0;
+        for (;;) {
+            final int c = peekChar();
+            if (!((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')) {
+                break;
+            }
+            if (numChars == numberChars.length) {
+                final char[] tmp = new char[numberChars.length * 2];
+                System.arraycopy(numberChars, 0, tmp, 0, numChars);
+                numberChars = tmp;
+            }
+            numberChars[numChars++] = (char) c;
+            ++idx;
+        }
+        try {
+            numberCodec.parse(numberChars, 0, numChars);
+        } catch (final NumberFormatException e) {
+            error("Invalid number `" + new String(numberChars, 0, numChars) + "'");
+        }
+        if (numberCodec.isLong()) {
+            setNumber(numberCodec.getLong());
+        } else {
+            setNumber(numberCodec.getDouble());
+        }
+    }
+
+    @Override
+    protected void scanLiteral(final String literal) {
+        for (int q = 0; q < literal.length(); q++) {
+            if (nextChar() != literal.charAt(q)) {
+                error("Unexpected literal value. Expected `" + literal + "'");
+            }
+        }
+        final int c = peekChar();
+        if (c != EOF && Character.isLetter((char) c)) {
+            error("Unexpected literal value. Expected `" + literal + "'");
+        }
+    }
+
+    @Override
+    protected void closeInput() {
+        try {
+            reader.close();
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        }
+    }
+
+}
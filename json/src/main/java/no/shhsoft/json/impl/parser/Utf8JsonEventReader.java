@@ -0,0 +1,274 @@
+package no.shhsoft.json.impl.parser;
+
+import no.shhsoft.json.JsonStringInterner;
+import no.shhsoft.json.impl.JsonNumberCodec;
+import no.shhsoft.utils.UncheckedIoException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Event reader that works directly on UTF-8 encoded bytes, without decoding the input to
+ * characters first.  Strings are only located while scanning, and decoded when actually
+ * asked for.  Input may be a byte array, a <code>ByteBuffer</code>, or an
+ * <code>InputStream</code> read incrementally through a buffer that only grows to hold
+ * the longest single string or number.  Not thread safe.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class Utf8JsonEventReader
+extends AbstractJsonEventReader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private final InputStream in;
+    private final ByteBuffer byteBuffer;
+    private final JsonNumberCodec numberCodec = new JsonNumberCodec();
+    private byte[] buff;
+    private int idx;
+    private int limit;
+    private boolean eof;
+    /** Start of bytes that must be kept in the buffer when refilling, or -1. */
+    private int pinned = -1;
+    private int stringStart;
+    private int stringEnd;
+    private boolean stringHasEscapes;
+    private boolean stringIsAscii;
+    private final Utf8StringDecoder stringDecoder = new Utf8StringDecoder();
+
+    private Utf8JsonEventReader(final InputStream in, final ByteBuffer byteBuffer, final byte[] buff, final int offset, final int length) {
+        this.in = in;
+        this.byteBuffer = byteBuffer;
+        this.buff = buff;
+        this.idx = offset;
+        this.limit = offset + length;
+        this.eof = in == null && byteBuffer == null;
+    }
+
+    public Utf8JsonEventReader(final byte[] utf8, final int offset, final int length) {
+        this(null, null, utf8, offset, length);
+    }
+
+    public Utf8JsonEventReader(final byte[] utf8) {
+        this(utf8, 0, utf8.length);
+    }
+
+    public Utf8JsonEventReader(final InputStream in, final int bufferSize) {
+        this(in, null, new byte[bufferSize], 0, 0);
+    }
+
+    public Utf8JsonEventReader(final InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Reads the remaining bytes of the given buffer, advancing its position as the input is
+     * consumed.  Heap buffers are read in place.
+     */
+    public static Utf8JsonEventReader create(final ByteBuffer utf8) {
+        if (utf8.hasArray()) {
+            final int offset = utf8.arrayOffset() + utf8.position();
+            final int length = utf8.remaining();
+            utf8.position(utf8.limit());
+            return new Utf8JsonEventReader(utf8.array(), offset, length);
+        }
+        return new Utf8JsonEventReader(null, utf8, new byte[Math.min(DEFAULT_BUFFER_SIZE, Math.max(utf8.remaining(), 1))], 0, 0);
+    }
+
+    private boolean fill() {
+        if (eof) {
+            return false;
+        }
+        final int keepFrom = pinned >= 0 ? pinned : idx;
+        final int numToKeep = limit - keepFrom;
+        if (numToKeep == buff.length) {
+            final byte[] tmp = new byte[buff.length * 2];
+            System.arraycopy(buff, keepFrom, tmp, 0, numToKeep);
+            buff = tmp;
+        } else if (numToKeep > 0) {
+            System.arraycopy(buff, keepFrom, buff, 0, numToKeep);
+        }
+        idx -= keepFrom;
+        limit = numToKeep;
+        if (pinned >= 0) {
+            stringStart -= pinned;
+            stringEnd -= pinned;
+            pinned = 0;
+        }
+        final int n = readInput(limit, buff.length - limit);
+        if (n <= 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    private int readInput(final int offset, final int maxBytes) {
+        if (byteBuffer != null) {
+            final int n = Math.min(maxBytes, byteBuffer.remaining());
+            byteBuffer.get(buff, offset, n);
+            return n;
+        }
+        try {
+            int n;
+            do {
+                n = in.read(buff, offset, maxBytes);
+            } while (n == 0);
+            return n;
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        }
+    }
+
+    private int peekByte() {
+        if (idx >= limit && !fill()) {
+            return EOF;
+        }
+        return buff[idx] & 0xff;
+    }
+
+    private int nextByte() {
+        if (idx >= limit && !fill()) {
+            return EOF;
+        }
+        return buff[idx++] & 0xff;
+    }
+
+    @Override
+    protected void beforeNext() {
+        pinned = -1;
+    }
+
+    @Override
+    protected int peekSignificantChar() {
+        for (;;) {
+            while (idx < limit) {
+                final byte b = buff[idx];
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                    return b & 0xff;
+                }
+                ++idx;
+            }
+            if (!fill()) {
+                return EOF;
+            }
+        }
+    }
+
+    @Override
+    protected void skipChar() {
+        ++idx;
+    }
+
+    @Override
+    protected void scanString() {
+        ++idx;
+        pinned = idx;
+        stringStart = idx;
+        stringHasEscapes = false;
+        stringIsAscii = true;
+        for (;;) {
+            while (idx < limit) {
+                final byte b = buff[idx];
+                if (b == '"') {
+                    stringEnd = idx++;
+                    return;
+                }
+                if (b == '\\') {
+                    stringHasEscapes = true;
+                    ++idx;
+                    if (idx >= limit && !fill()) {
+                        break;
+                    }
+                } else if (b < 0) {
+                    stringIsAscii = false;
+                } else if (b == '\r' || b == '\n') {
+                    error("Multi-line strings not supported.");
+                }
+                ++idx;
+            }
+            if (!fill()) {
+                error("End of input in the middle of a string.");
+            }
+        }
+    }
+
+
+    @Override
+    protected String decodeString() {
+        return stringDecoder.decode(buff, stringStart, stringEnd, stringHasEscapes, stringIsAscii);
+    }
+
+    @Override
+    protected String internString(final JsonStringInterner interner) {
+        return stringDecoder.intern(interner, buff, stringStart, stringEnd, stringHasEscapes, stringIsAscii);
+    }
+
+    @Override
+    protected boolean scannedStringEquals(final String s) {
+        if (stringHasEscapes || !stringIsAscii) {
+            return super.scannedStringEquals(s);
+        }
+        final int length = stringEnd - stringStart;
+        if (length != s.length()) {
+            return false;
+        }
+        for (int q = 0; q < length; q++) {
+            if (buff[stringStart + q] != s.charAt(q)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void scanNumber() {
+        pinned = idx;
+        for (;;) {
+            final int c = peekByte();
+            if (!((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')) {
+                break;
+            }
+            ++idx;
+        }
+        /* The buffer may have been compacted while scanning, moving the pinned start. */
+        final int numberStart = pinned;
+        try {
+            numberCodec.parse(buff, numberStart, idx);
+        } catch (final NumberFormatException e) {
+            error("Invalid number `" + new String(buff, numberStart, idx - numberStart, StandardCharsets.ISO_8859_1) + "'");
+        }
+        if (numberCodec.isLong()) {
+            setNumber(numberCodec.getLong());
+        } else {
+            setNumber(numberCodec.getDouble());
+        }
+    }
+
+    @Override
+    protected void scanLiteral(final String literal) {
+        for (int q = 0; q < literal.length(); q++) {
+            if (nextByte() != literal.charAt(q)) {
+                error("Unexpected literal value. Expected `" + literal + "'");
+            }
+        }
+        final int c = peekByte();
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+            error("Unexpected literal value. Expected `" + literal + "'");
+        }
+    }
+
+    @Override
+    protected void closeInput() {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (final IOException e) {
+                throw new UncheckedIoException(e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package no.shhsoft.json.impl.parser;
+
+import no.shhsoft.json.JsonException;
+import no.shhsoft.json.JsonStringInterner;
+import no.shhsoft.utils.HexUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes the contents of JSON strings given as ranges of UTF-8 bytes, between but not
+ * including the quotes.  Keeps a buffer for strings with escapes, and is thus not thread
+ * safe.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+final class Utf8StringDecoder {
+
+    private static final char REPLACEMENT_CHAR = '\ufffd';
+    private char[] chars = new char[64];
+    private byte[] buff;
+    private int decodeIdx;
+    private int stringEnd;
+
+    private void ensureCharsCapacity(final int n) {
+        if (n > chars.length) {
+            chars = new char[Math.max(n, chars.length * 2)];
+        }
+    }
+
+    private int scan4DigitHex(final int from) {
+        if (from + 4 > stringEnd) {
+            throw new JsonException("Unexpected end of input.");
+        }
+        int value = 0;
+        for (int q = 0; q < 4; q++) {
+            value = value * 16 + HexUtils.parseHexDigit((char) (buff[from + q] & 0xff));
+        }
+        return value;
+    }
+
+    private String decodeEscapedString(final int stringStart) {
+        ensureCharsCapacity(stringEnd - stringStart);
+        int numChars = 0;
+        decodeIdx = stringStart;
+        while (decodeIdx < stringEnd) {
+            final int b = buff[decodeIdx++];
+            if (b == '\\') {
+                final int escaped = buff[decodeIdx++];
+                switch (escaped) {
+                    case 'r':
+                        chars[numChars++] = '\r';
+                        break;
+                    case 'n':
+                        chars[numChars++] = '\n';
+                        break;
+                    case 'b':
+                        chars[numChars++] = '\b';
+                        break;
+                    case 't':
+                        chars[numChars++] = '\t';
+                        break;
+                    case 'f':
+                        chars[numChars++] = '\f';
+                        break;
+                    case 'u':
+                        chars[numChars++] = (char) scan4DigitHex(decodeIdx);
+                        decodeIdx += 4;
+                        break;
+                    default:
+                        if (escaped < 0) {
+                            /* Escaped non-ASCII character.  Decode it as if there were no backslash. */
+                            numChars += decodeMultiByte(escaped, numChars);
+                        } else {
+                            chars[numChars++] = (char) escaped;
+                        }
+                }
+            } else if (b >= 0) {
+                chars[numChars++] = (char) b;
+            } else {
+                numChars += decodeMultiByte(b, numChars);
+            }
+        }
+        buff = null;
+        return new String(chars, 0, numChars);
+    }
+
+    /**
+     * Decodes a multi-byte UTF-8 sequence starting with the given byte into
+     * <code>chars</code>, advancing <code>decodeIdx</code> past the continuation bytes.
+     *
+     * @return the number of chars produced.
+     */
+    private int decodeMultiByte(final int b0, final int charIdx) {
+        final int numContinuation;
+        int codePoint;
+        if ((b0 & 0xe0) == 0xc0) {
+            numContinuation = 1;
+            codePoint = b0 & 0x1f;
+        } else if ((b0 & 0xf0) == 0xe0) {
+            numContinuation = 2;
+            codePoint = b0 & 0x0f;
+        } else if ((b0 & 0xf8) == 0xf0) {
+            numContinuation = 3;
+            codePoint = b0 & 0x07;
+        } else {
+            chars[charIdx] = REPLACEMENT_CHAR;
+            return 1;
+        }
+        for (int q = 0; q < numContinuation; q++) {
+            if (decodeIdx >= stringEnd || (buff[decodeIdx] & 0xc0) != 0x80) {
+                chars[charIdx] = REPLACEMENT_CHAR;
+                return 1;
+            }
+            codePoint = (codePoint << 6) | (buff[decodeIdx++] & 0x3f);
+        }
+        if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            chars[charIdx] = Character.highSurrogate(codePoint);
+            chars[charIdx + 1] = Character.lowSurrogate(codePoint);
+            return 2;
+        }
+        chars[charIdx] = (char) codePoint;
+        return 1;
+    }
+
+    /**
+     * @param hasEscapes whether the range contains any backslashes.
+     * @param isAscii whether all bytes in the range are ASCII.
+     */
+    String decode(final byte[] bytes, final int start, final int end, final boolean hasEscapes, final boolean isAscii) {
+        if (hasEscapes) {
+            buff = bytes;
+            stringEnd = end;
+            return decodeEscapedString(start);
+        }
+        if (isAscii) {
+            /* Latin-1 decoding is a plain copy for ASCII, and gives a compact String. */
+            return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    String intern(final JsonStringInterner interner, final byte[] bytes, final int start, final int end,
+                  final boolean hasEscapes, final boolean isAscii) {
+        if (!hasEscapes && isAscii) {
+            return interner.internAscii(bytes, start, end - start);
+        }
+        return interner.intern(decode(bytes, start, end, hasEscapes, isAscii));
+    }
+
+}
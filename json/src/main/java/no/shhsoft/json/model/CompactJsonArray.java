@@ -0,0 +1,56 @@
+package no.shhsoft.json.model;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * Immutable alternative to <code>JsonArray</code>, backed by an exactly sized array.
+ * Equal to any <code>List</code> with the same elements, including <code>JsonArray</code>.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class CompactJsonArray
+extends AbstractList<JsonValue>
+implements JsonContainer, RandomAccess {
+
+    public static final CompactJsonArray EMPTY = new CompactJsonArray(new JsonValue[0]);
+    private final JsonValue[] values;
+
+    private CompactJsonArray(final JsonValue[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Creates an array from the given range of values, which is copied.
+     */
+    public static CompactJsonArray create(final JsonValue[] values, final int offset, final int length) {
+        if (length == 0) {
+            return EMPTY;
+        }
+        final JsonValue[] copy = new JsonValue[length];
+        System.arraycopy(values, offset, copy, 0, length);
+        return new CompactJsonArray(copy);
+    }
+
+    /**
+     * Creates a shallow copy of the given collection.
+     */
+    public static CompactJsonArray copyOf(final Collection<? extends JsonValue> collection) {
+        if (collection.isEmpty()) {
+            return EMPTY;
+        }
+        return new CompactJsonArray(collection.toArray(new JsonValue[0]));
+    }
+
+    @Override
+    public JsonValue get(final int index) {
+        return values[index];
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+}
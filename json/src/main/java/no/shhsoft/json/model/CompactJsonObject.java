@@ -0,0 +1,261 @@
+package no.shhsoft.json.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable alternative to <code>JsonObject</code>, for documents that are read a lot and
+ * kept in memory for a long time.  Member names and values are kept in two parallel
+ * arrays, in document order.  Small objects are searched linearly.  Larger objects get a
+ * hash index of plain <code>int</code>s, built the first time the object is accessed.
+ * Equal to any <code>Map</code> with the same members, including <code>JsonObject</code>.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class CompactJsonObject
+extends AbstractMap<String, JsonValue>
+implements JsonContainer {
+
+    private static final int LINEAR_SEARCH_LIMIT = 8;
+    private static final String[] NO_KEYS = new String[0];
+    private static final JsonValue[] NO_VALUES = new JsonValue[0];
+    public static final CompactJsonObject EMPTY = new CompactJsonObject(NO_KEYS, NO_VALUES);
+    private final String[] keys;
+    private final JsonValue[] values;
+    /** Number of members after removing duplicate names.  Only used with an index. */
+    private int size;
+    private volatile int[] index;
+    private Set<Map.Entry<String, JsonValue>> entrySet;
+
+    private CompactJsonObject(final String[] keys, final JsonValue[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    private static int hash(final Object key) {
+        final int hash = Objects.hashCode(key);
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Builds the index, and removes duplicate names, letting the last value win while
+     * keeping the position of the first, like a <code>Map</code> would.
+     */
+    private synchronized int[] buildIndex() {
+        if (index != null) {
+            return index;
+        }
+        final int[] table = new int[Integer.highestOneBit(keys.length * 2 - 1) << 1];
+        final int mask = table.length - 1;
+        int numUnique = 0;
+        for (int q = 0; q < keys.length; q++) {
+            final String key = keys[q];
+            int slot = hash(key) & mask;
+            for (;;) {
+                final int pos = table[slot] - 1;
+                if (pos < 0) {
+                    keys[numUnique] = key;
+                    values[numUnique] = values[q];
+                    table[slot] = ++numUnique;
+                    break;
+                }
+                if (Objects.equals(keys[pos], key)) {
+                    values[pos] = values[q];
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        for (int q = numUnique; q < keys.length; q++) {
+            keys[q] = null;
+            values[q] = null;
+        }
+        size = numUnique;
+        index = table;
+        return table;
+    }
+
+    /**
+     * Must be called before looking at the arrays, to make sure any duplicates are gone.
+     *
+     * @return the index, or <code>null</code> if the object is small enough to search.
+     */
+    private int[] getIndex() {
+        if (keys.length <= LINEAR_SEARCH_LIMIT) {
+            return null;
+        }
+        final int[] table = index;
+        return table != null ? table : buildIndex();
+    }
+
+    private int indexOf(final Object key) {
+        final int[] table = getIndex();
+        if (table == null) {
+            for (int q = 0; q < keys.length; q++) {
+                final String k = keys[q];
+                if (k == key || (k != null && k.equals(key))) {
+                    return q;
+                }
+            }
+            return -1;
+        }
+        final int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        for (;;) {
+            final int pos = table[slot] - 1;
+            if (pos < 0) {
+                return -1;
+            }
+            if (Objects.equals(keys[pos], key)) {
+                return pos;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static CompactJsonObject createSmall(final String[] keys, final JsonValue[] values) {
+        int numUnique = keys.length;
+        for (int q = 1; q < numUnique; q++) {
+            for (int w = 0; w < q; w++) {
+                if (Objects.equals(keys[w], keys[q])) {
+                    values[w] = values[q];
+                    System.arraycopy(keys, q + 1, keys, q, numUnique - q - 1);
+                    System.arraycopy(values, q + 1, values, q, numUnique - q - 1);
+                    --numUnique;
+                    --q;
+                    break;
+                }
+            }
+        }
+        if (numUnique == keys.length) {
+            return new CompactJsonObject(keys, values);
+        }
+        final String[] uniqueKeys = new String[numUnique];
+        final JsonValue[] uniqueValues = new JsonValue[numUnique];
+        System.arraycopy(keys, 0, uniqueKeys, 0, numUnique);
+        System.arraycopy(values, 0, uniqueValues, 0, numUnique);
+        return new CompactJsonObject(uniqueKeys, uniqueValues);
+    }
+
+    /**
+     * Creates an object from the given ranges of parallel arrays, which are copied.  If
+     * a name occurs more than once, the last value is used.
+     */
+    public static CompactJsonObject create(final String[] keys, final JsonValue[] values, final int offset, final int length) {
+        if (length == 0) {
+            return EMPTY;
+        }
+        final String[] keysCopy = new String[length];
+        final JsonValue[] valuesCopy = new JsonValue[length];
+        System.arraycopy(keys, offset, keysCopy, 0, length);
+        System.arraycopy(values, offset, valuesCopy, 0, length);
+        if (length <= LINEAR_SEARCH_LIMIT) {
+            return createSmall(keysCopy, valuesCopy);
+        }
+        return new CompactJsonObject(keysCopy, valuesCopy);
+    }
+
+    /**
+     * Creates a shallow copy of the given map.
+     */
+    public static CompactJsonObject copyOf(final Map<String, ? extends JsonValue> map) {
+        final String[] keys = new String[map.size()];
+        final JsonValue[] values = new JsonValue[keys.length];
+        int q = 0;
+        for (final Map.Entry<String, ? extends JsonValue> entry : map.entrySet()) {
+            keys[q] = entry.getKey();
+            values[q] = entry.getValue();
+            ++q;
+        }
+        return create(keys, values, 0, q);
+    }
+
+    @Override
+    public int size() {
+        return getIndex() == null ? keys.length : size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    @Override
+    public JsonValue get(final Object key) {
+        final int pos = indexOf(key);
+        return pos < 0 ? null : values[pos];
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @return the name of the member at the given position, in document order.
+     */
+    public String getKey(final int pos) {
+        if (pos < 0 || pos >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + size());
+        }
+        return keys[pos];
+    }
+
+    /**
+     * @return the value of the member at the given position, in document order.
+     */
+    public JsonValue getValue(final int pos) {
+        if (pos < 0 || pos >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + size());
+        }
+        return values[pos];
+    }
+
+    @Override
+    public Set<Map.Entry<String, JsonValue>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private final class EntrySet
+    extends AbstractSet<Map.Entry<String, JsonValue>> {
+
+        @Override
+        public Iterator<Map.Entry<String, JsonValue>> iterator() {
+            final int numEntries = size();
+            return new Iterator<Map.Entry<String, JsonValue>>() {
+
+                private int pos;
+
+                @Override
+                public boolean hasNext() {
+                    return pos < numEntries;
+                }
+
+                @Override
+                public Map.Entry<String, JsonValue> next() {
+                    if (pos >= numEntries) {
+                        throw new NoSuchElementException();
+                    }
+                    final int q = pos++;
+                    return new AbstractMap.SimpleImmutableEntry<>(keys[q], values[q]);
+                }
+
+            };
+        }
+
+        @Override
+        public int size() {
+            return CompactJsonObject.this.size();
+        }
+
+    }
+
+}
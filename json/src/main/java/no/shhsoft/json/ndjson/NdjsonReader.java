@@ -0,0 +1,146 @@
+package no.shhsoft.json.ndjson;
+
+import no.shhsoft.json.JsonException;
+import no.shhsoft.json.JsonParser;
+import no.shhsoft.json.impl.parser.JsonParserImpl;
+import no.shhsoft.json.model.JsonContainer;
+import no.shhsoft.utils.UncheckedIoException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads newline-delimited JSON, with one object or array per line, from an UTF-8 encoded
+ * stream.  Empty lines are ignored.  Each record is parsed directly from the read
+ * buffer, without creating a <code>String</code> for the line.  Not thread safe.  See
+ * {@link ParallelNdjsonReader} for parsing large files using several threads.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class NdjsonReader
+implements Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private final InputStream in;
+    private final JsonParser parser;
+    private byte[] buff;
+    private int idx;
+    private int limit;
+    private boolean eof;
+    private long lineNumber;
+
+    public NdjsonReader(final InputStream in, final JsonParser parser) {
+        this.in = in;
+        this.parser = parser;
+        this.buff = new byte[DEFAULT_BUFFER_SIZE];
+    }
+
+    public NdjsonReader(final InputStream in) {
+        this(in, new JsonParserImpl());
+    }
+
+    static boolean isBlank(final byte[] bytes, final int start, final int end) {
+        for (int q = start; q < end; q++) {
+            final byte b = bytes[q];
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int indexOfNewline(final byte[] bytes, final int start, final int end) {
+        for (int q = start; q < end; q++) {
+            if (bytes[q] == '\n') {
+                return q;
+            }
+        }
+        return -1;
+    }
+
+    static JsonContainer parseRecord(final JsonParser parser, final byte[] bytes, final int start, final int end,
+                                     final String location) {
+        try {
+            return parser.parse(ByteBuffer.wrap(bytes, start, end - start));
+        } catch (final JsonException e) {
+            throw new JsonException("Error in record at " + location + ": " + e.getMessage(), e);
+        }
+    }
+
+    private boolean fill() {
+        if (eof) {
+            return false;
+        }
+        if (idx > 0) {
+            System.arraycopy(buff, idx, buff, 0, limit - idx);
+            limit -= idx;
+            idx = 0;
+        } else if (limit == buff.length) {
+            final byte[] tmp = new byte[buff.length * 2];
+            System.arraycopy(buff, 0, tmp, 0, limit);
+            buff = tmp;
+        }
+        final int numRead;
+        try {
+            numRead = in.read(buff, limit, buff.length - limit);
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        }
+        if (numRead < 0) {
+            eof = true;
+            return false;
+        }
+        limit += numRead;
+        return true;
+    }
+
+    /**
+     * @return the next record, or <code>null</code> at the end of the input.
+     */
+    public JsonContainer read() {
+        int searchFrom = idx;
+        for (;;) {
+            final int newline = indexOfNewline(buff, searchFrom, limit);
+            final int end;
+            if (newline >= 0) {
+                end = newline;
+            } else {
+                final int numSearched = limit - idx;
+                if (fill()) {
+                    searchFrom = idx + numSearched;
+                    continue;
+                }
+                if (idx == limit) {
+                    return null;
+                }
+                end = limit;
+            }
+            final int start = idx;
+            idx = newline >= 0 ? newline + 1 : limit;
+            searchFrom = idx;
+            ++lineNumber;
+            if (!isBlank(buff, start, end)) {
+                return parseRecord(parser, buff, start, end, "line " + lineNumber);
+            }
+        }
+    }
+
+    /**
+     * @return the number of the line of the last record returned by <code>read</code>.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() {
+        try {
+            in.close();
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        }
+    }
+
+}
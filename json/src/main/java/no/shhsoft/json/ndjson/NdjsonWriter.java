@@ -0,0 +1,47 @@
+package no.shhsoft.json.ndjson;
+
+import no.shhsoft.json.impl.generator.JsonWriterImpl;
+import no.shhsoft.json.model.JsonContainer;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.OutputStream;
+
+/**
+ * Writes newline-delimited JSON, with one object or array per line, UTF-8 encoded to a
+ * stream.  Records are written through a single <code>JsonWriterImpl</code>, whose buffer
+ * is written to the stream when full, on <code>flush</code> and on <code>close</code>.
+ * Not thread safe.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class NdjsonWriter
+implements Flushable, Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private final JsonWriterImpl jsonWriter;
+
+    public NdjsonWriter(final OutputStream out, final int bufferSize) {
+        jsonWriter = new JsonWriterImpl(out, bufferSize);
+    }
+
+    public NdjsonWriter(final OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public void write(final JsonContainer record) {
+        jsonWriter.value(record);
+        jsonWriter.newLine();
+    }
+
+    @Override
+    public void flush() {
+        jsonWriter.flush();
+    }
+
+    @Override
+    public void close() {
+        jsonWriter.close();
+    }
+
+}
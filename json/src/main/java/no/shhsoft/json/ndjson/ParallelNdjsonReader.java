@@ -0,0 +1,309 @@
+package no.shhsoft.json.ndjson;
+
+import no.shhsoft.json.JsonParser;
+import no.shhsoft.json.impl.parser.JsonParserImpl;
+import no.shhsoft.json.model.JsonContainer;
+import no.shhsoft.utils.UncheckedIoException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Parses newline-delimited JSON in parallel.  The input is split into chunks of whole
+ * lines, which are parsed by a pool of threads.  The parser is shared by all threads,
+ * so it must not be reconfigured while reading.
+ * <p>
+ * When ordered, which is the default, records are handed to the consumer in input
+ * order, from the calling thread.  When not ordered, records are handed to the consumer
+ * from the parsing threads as soon as they are ready, so the consumer must be thread
+ * safe.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class ParallelNdjsonReader {
+
+    private static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    private static final long MAX_MAPPING_SIZE = 1024L * 1024L * 1024L;
+    private final JsonParser parser;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private boolean ordered = true;
+    private boolean memoryMapped;
+
+    public ParallelNdjsonReader(final JsonParser parser) {
+        this.parser = parser;
+    }
+
+    public ParallelNdjsonReader() {
+        this(new JsonParserImpl());
+    }
+
+    public void setNumThreads(final int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Need at least one thread.");
+        }
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * @param chunkSize the approximate number of bytes of input given to each parsing task.
+     */
+    public void setChunkSize(final int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive.");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public void setOrdered(final boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    /**
+     * Makes <code>read(File, ...)</code> map the file into memory rather than reading it
+     * through a stream.  Off by default.
+     */
+    public void setMemoryMapped(final boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    private final class Chunk {
+
+        private final byte[] bytes;
+        private final int length;
+        private final long offset;
+
+        Chunk(final byte[] bytes, final int length, final long offset) {
+            this.bytes = bytes;
+            this.length = length;
+            this.offset = offset;
+        }
+
+        List<JsonContainer> parse() {
+            final List<JsonContainer> records = new ArrayList<>();
+            int start = 0;
+            while (start < length) {
+                int end = NdjsonReader.indexOfNewline(bytes, start, length);
+                if (end < 0) {
+                    end = length;
+                }
+                if (!NdjsonReader.isBlank(bytes, start, end)) {
+                    records.add(NdjsonReader.parseRecord(parser, bytes, start, end, "byte offset " + (offset + start)));
+                }
+                start = end + 1;
+            }
+            return records;
+        }
+
+    }
+
+    /**
+     * Keeps a limited number of chunks in progress, and hands over the results.
+     */
+    private final class Dispatcher {
+
+        private final ExecutorService executor;
+        private final Consumer<? super JsonContainer> consumer;
+        private final Deque<Future<List<JsonContainer>>> inProgress = new ArrayDeque<>();
+
+        Dispatcher(final Consumer<? super JsonContainer> consumer) {
+            this.consumer = consumer;
+            executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+                final Thread thread = new Thread(runnable, "ndjson-parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        void submit(final Chunk chunk) {
+            if (inProgress.size() >= 2 * numThreads) {
+                completeOldest();
+            }
+            if (ordered) {
+                inProgress.add(executor.submit(chunk::parse));
+            } else {
+                inProgress.add(executor.submit(() -> {
+                    chunk.parse().forEach(consumer);
+                    return null;
+                }));
+            }
+        }
+
+        private void completeOldest() {
+            final List<JsonContainer> records;
+            try {
+                records = inProgress.removeFirst().get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            }
+            if (records != null) {
+                records.forEach(consumer);
+            }
+        }
+
+        void finish() {
+            while (!inProgress.isEmpty()) {
+                completeOldest();
+            }
+        }
+
+        void shutdown() {
+            for (final Future<List<JsonContainer>> future : inProgress) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+        }
+
+    }
+
+    /**
+     * Reads all records from the given stream, which is not closed.
+     */
+    public void read(final InputStream in, final Consumer<? super JsonContainer> consumer) {
+        final Dispatcher dispatcher = new Dispatcher(consumer);
+        try {
+            byte[] carry = new byte[0];
+            int carryLength = 0;
+            long offset = 0L;
+            boolean eof = false;
+            while (!eof) {
+                final byte[] bytes = new byte[Math.max(chunkSize, carryLength * 2)];
+                System.arraycopy(carry, 0, bytes, 0, carryLength);
+                int length = carryLength;
+                while (length < bytes.length) {
+                    final int numRead = in.read(bytes, length, bytes.length - length);
+                    if (numRead < 0) {
+                        eof = true;
+                        break;
+                    }
+                    length += numRead;
+                }
+                int end = length;
+                if (!eof) {
+                    while (end > 0 && bytes[end - 1] != '\n') {
+                        --end;
+                    }
+                    if (end == 0) {
+                        /* No complete line yet.  Read on with a larger buffer. */
+                        carry = bytes;
+                        carryLength = length;
+                        continue;
+                    }
+                }
+                carryLength = length - end;
+                carry = new byte[carryLength];
+                System.arraycopy(bytes, end, carry, 0, carryLength);
+                dispatcher.submit(new Chunk(bytes, end, offset));
+                offset += end;
+            }
+            dispatcher.finish();
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    /**
+     * Reads all records from the given file, memory mapping it if requested.
+     */
+    public void read(final File file, final Consumer<? super JsonContainer> consumer) {
+        if (!memoryMapped) {
+            try (final InputStream in = new FileInputStream(file)) {
+                read(in, consumer);
+            } catch (final IOException e) {
+                throw new UncheckedIoException(e);
+            }
+            return;
+        }
+        final Dispatcher dispatcher = new Dispatcher(consumer);
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            long mappingStart = 0L;
+            while (mappingStart < size) {
+                final long mappingSize = Math.min(MAX_MAPPING_SIZE, size - mappingStart);
+                final MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, mappingStart, mappingSize);
+                final boolean isLast = mappingStart + mappingSize == size;
+                int chunkStart = 0;
+                while (chunkStart < mappingSize) {
+                    int chunkEnd = (int) Math.min(mappingSize, (long) chunkStart + chunkSize);
+                    if (chunkEnd < mappingSize || !isLast) {
+                        final int chunkLimit = chunkEnd;
+                        chunkEnd = afterLastNewline(mapping, chunkStart, chunkLimit);
+                        if (chunkEnd < 0) {
+                            chunkEnd = afterFirstNewline(mapping, chunkLimit, (int) mappingSize);
+                        }
+                        if (chunkEnd < 0) {
+                            if (isLast) {
+                                chunkEnd = (int) mappingSize;
+                            } else if (chunkStart == 0) {
+                                throw new UncheckedIoException("Line too long at byte offset " + mappingStart);
+                            } else {
+                                /* The line continues past this mapping.  Map again from its start. */
+                                break;
+                            }
+                        }
+                    }
+                    final byte[] bytes = new byte[chunkEnd - chunkStart];
+                    final ByteBuffer slice = mapping.duplicate();
+                    slice.position(chunkStart);
+                    slice.get(bytes);
+                    dispatcher.submit(new Chunk(bytes, bytes.length, mappingStart + chunkStart));
+                    chunkStart = chunkEnd;
+                }
+                mappingStart += chunkStart;
+            }
+            dispatcher.finish();
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    /**
+     * @return the index after the last newline in the given range, or -1 if none.
+     */
+    private static int afterLastNewline(final ByteBuffer buffer, final int from, final int to) {
+        for (int q = to - 1; q >= from; q--) {
+            if (buffer.get(q) == '\n') {
+                return q + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index after the first newline in the given range, or -1 if none.
+     */
+    private static int afterFirstNewline(final ByteBuffer buffer, final int from, final int to) {
+        for (int q = from; q < to; q++) {
+            if (buffer.get(q) == '\n') {
+                return q + 1;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -1,18 +1,23 @@
 package no.shhsoft.json.utils;
 
+import no.shhsoft.json.JsonEventReader;
+import no.shhsoft.json.JsonException;
 import no.shhsoft.json.JsonGenerator;
 import no.shhsoft.json.JsonParser;
 import no.shhsoft.json.impl.generator.JsonGeneratorImpl;
 import no.shhsoft.json.impl.parser.JsonParserImpl;
+import no.shhsoft.json.impl.parser.Utf8JsonEventReader;
 import no.shhsoft.json.model.JsonContainer;
+import no.shhsoft.json.model.JsonValue;
 import no.shhsoft.utils.IoUtils;
 import no.shhsoft.utils.StringUtils;
 import no.shhsoft.utils.UncheckedIoException;
 import no.shhsoft.utils.UnknownEnumConstantException;
 import no.shhsoft.web.utils.HttpAuthorization;
 
-import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -29,7 +34,11 @@ public final class JsonHttp {
     private static final int DEFAULT_TIMEOUT_MS = 10 * 1000;
     private static final Logger LOG = Logger.getLogger(JsonHttp.class.getName());
     private static final JsonGenerator JSON_GENERATOR = new JsonGeneratorImpl();
-    private static final JsonParser JSON_PARSER = new JsonParserImpl();
+    private static final JsonParser LAZY_JSON_PARSER = new JsonParserImpl();
+
+    static {
+        LAZY_JSON_PARSER.setLazy(true);
+    }
 
     private JsonHttp() {
     }
@@ -47,7 +56,25 @@ public final class JsonHttp {
     }
 
     public static JsonContainer get(final URL url, final Map<String, String> headerOverrides, final HttpAuthorization authorization) {
-        return sendRequest(Method.GET, url, headerOverrides, authorization, null, DEFAULT_TIMEOUT_MS, true);
+        return sendRequest(Method.GET, url, headerOverrides, authorization, null, DEFAULT_TIMEOUT_MS, true, false);
+    }
+
+    /**
+     * Like <code>get</code>, but parses the response lazily, so that only the parts of it
+     * that are actually accessed are turned into objects.
+     *
+     * @see JsonParser#setLazy(boolean)
+     */
+    public static JsonContainer getLazy(final String url, final HttpAuthorization authorization) {
+        return getLazy(toUrl(url), authorization);
+    }
+
+    public static JsonContainer getLazy(final URL url, final HttpAuthorization authorization) {
+        return getLazy(url, null, authorization);
+    }
+
+    public static JsonContainer getLazy(final URL url, final Map<String, String> headerOverrides, final HttpAuthorization authorization) {
+        return sendRequest(Method.GET, url, headerOverrides, authorization, null, DEFAULT_TIMEOUT_MS, true, true);
     }
 
     public static JsonContainer post(final String url, final HttpAuthorization authorization, final JsonContainer json) {
@@ -59,7 +86,7 @@ public final class JsonHttp {
     }
 
     public static JsonContainer post(final URL url, final Map<String, String> headerOverrides, final HttpAuthorization authorization, final JsonContainer json) {
-        return sendRequest(Method.POST, url, headerOverrides, authorization, json, DEFAULT_TIMEOUT_MS, false);
+        return sendRequest(Method.POST, url, headerOverrides, authorization, json, DEFAULT_TIMEOUT_MS, false, false);
     }
 
     public static JsonContainer put(final String url, final HttpAuthorization authorization, final JsonContainer json) {
@@ -71,7 +98,7 @@ public final class JsonHttp {
     }
 
     public static JsonContainer put(final URL url, final Map<String, String> headerOverrides, final HttpAuthorization authorization, final JsonContainer json) {
-        return sendRequest(Method.PUT, url, headerOverrides, authorization, json, DEFAULT_TIMEOUT_MS, false);
+        return sendRequest(Method.PUT, url, headerOverrides, authorization, json, DEFAULT_TIMEOUT_MS, false, false);
     }
 
     public static JsonContainer patch(final String url, final HttpAuthorization authorization, final JsonContainer json) {
@@ -83,7 +110,7 @@ public final class JsonHttp {
     }
 
     public static JsonContainer patch(final URL url, final Map<String, String> headerOverrides, final HttpAuthorization authorization, final JsonContainer json) {
-        return sendRequest(Method.PATCH, url, headerOverrides, authorization, json, DEFAULT_TIMEOUT_MS, false);
+        return sendRequest(Method.PATCH, url, headerOverrides, authorization, json, DEFAULT_TIMEOUT_MS, false, false);
     }
 
     public static JsonContainer delete(final String url, final HttpAuthorization authorization) {
@@ -95,11 +122,12 @@ public final class JsonHttp {
     }
 
     public static JsonContainer delete(final URL url, final Map<String, String> headerOverrides, final HttpAuthorization authorization) {
-        return sendRequest(Method.DELETE, url, headerOverrides, authorization, null, DEFAULT_TIMEOUT_MS, false);
+        return sendRequest(Method.DELETE, url, headerOverrides, authorization, null, DEFAULT_TIMEOUT_MS, false, false);
     }
 
     private static JsonContainer sendRequest(final Method method, final URL url, final Map<String, String> headerOverrides,
-                                             final HttpAuthorization authorization, final JsonContainer json, final int timeoutMs, final boolean returnNullFor404) {
+                                             final HttpAuthorization authorization, final JsonContainer json, final int timeoutMs, final boolean returnNullFor404,
+                                             final boolean lazy) {
         final String methodString = toMethodString(method);
         try {
             final URLConnection tmpConn = url.openConnection();
@@ -129,10 +157,9 @@ public final class JsonHttp {
             conn.setDoInput(true);
             if (json != null) {
                 conn.setDoOutput(true);
-                final BufferedOutputStream out = new BufferedOutputStream(conn.getOutputStream());
-                out.write(StringUtils.getBytesUtf8(JSON_GENERATOR.generate(json)));
-                out.flush();
-                out.close();
+                try (final OutputStream out = conn.getOutputStream()) {
+                    JSON_GENERATOR.generate(json, out);
+                }
             } else {
                 conn.setDoOutput(false);
             }
@@ -144,13 +171,43 @@ public final class JsonHttp {
                 final String result = StringUtils.newStringUtf8(IoUtils.read(conn.getErrorStream()));
                 throw new UncheckedIoException("Response code: " + responseCode + ". Expected 200. Response:\n" + result);
             }
-            final String result = StringUtils.newStringUtf8(IoUtils.read(conn.getInputStream()));
-            return StringUtils.isBlank(result) ? null : JSON_PARSER.parse(result);
+            if (lazy) {
+                return readResponseLazily(conn.getInputStream());
+            }
+            return readResponse(conn.getInputStream());
         } catch (final IOException e) {
             throw new UncheckedIoException(e);
         }
     }
 
+    private static JsonContainer readResponse(final InputStream in) {
+        try (final JsonEventReader eventReader = new Utf8JsonEventReader(in)) {
+            if (eventReader.next() == null) {
+                return null;
+            }
+            final JsonValue value = eventReader.readValue();
+            if (!(value instanceof JsonContainer)) {
+                throw new JsonException("Text must contain either an object or an array.");
+            }
+            return (JsonContainer) value;
+        }
+    }
+
+    private static JsonContainer readResponseLazily(final InputStream in) {
+        final byte[] bytes;
+        try (in) {
+            bytes = IoUtils.read(in);
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        }
+        for (final byte b : bytes) {
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return LAZY_JSON_PARSER.parse(bytes);
+            }
+        }
+        return null;
+    }
+
     private static String toMethodString(final Method method) {
         switch (method) {
             case GET:
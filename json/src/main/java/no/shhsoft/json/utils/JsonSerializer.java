@@ -1,21 +1,116 @@
 package no.shhsoft.json.utils;
 
+import no.shhsoft.json.JsonWriter;
 import no.shhsoft.json.model.*;
 import no.shhsoft.utils.ReflectionUtils;
 import no.shhsoft.validation.Validate;
 
 import java.beans.Transient;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
+ * Turns beans into JSON, using the values of their public getters.  Collections and
+ * arrays become JSON arrays, and maps become JSON objects.  The getters of each class are
+ * looked up once, and cached for as long as the class is loaded.
+ *
  * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
  */
 public final class JsonSerializer {
 
+    private static final int KIND_OBJECT = 0;
+    private static final int KIND_LONG = 1;
+    private static final int KIND_DOUBLE = 2;
+    private static final int KIND_BOOLEAN = 3;
+    private static final ClassValue<Property[]> BEAN_PLANS = new ClassValue<>() {
+        @Override
+        protected Property[] computeValue(final Class<?> type) {
+            return createBeanPlan(type);
+        }
+    };
+
     private JsonSerializer() {
     }
 
+    private static final class Property {
+
+        private final String name;
+        private final int kind;
+        /* Typed (Object)Object, (Object)long, (Object)double or (Object)boolean, depending on kind. */
+        private final MethodHandle getter;
+
+        Property(final String name, final int kind, final MethodHandle getter) {
+            this.name = name;
+            this.kind = kind;
+            this.getter = getter;
+        }
+
+    }
+
+    private static Property createProperty(final String name, final Method method) {
+        MethodHandle getter;
+        try {
+            getter = MethodHandles.publicLookup().unreflect(method);
+        } catch (final IllegalAccessException e) {
+            /* Public method of a non-public class. */
+            try {
+                method.setAccessible(true);
+                getter = MethodHandles.lookup().unreflect(method);
+            } catch (final IllegalAccessException | RuntimeException e2) {
+                throw new RuntimeException("Unable to access getter " + method, e2);
+            }
+        }
+        final Class<?> type = method.getReturnType();
+        final int kind;
+        final Class<?> handleType;
+        if (type == int.class || type == long.class || type == short.class || type == byte.class) {
+            kind = KIND_LONG;
+            handleType = long.class;
+        } else if (type == double.class || type == float.class) {
+            kind = KIND_DOUBLE;
+            handleType = double.class;
+        } else if (type == boolean.class) {
+            kind = KIND_BOOLEAN;
+            handleType = boolean.class;
+        } else {
+            kind = KIND_OBJECT;
+            handleType = Object.class;
+        }
+        return new Property(name, kind, getter.asType(MethodType.methodType(handleType, Object.class)));
+    }
+
+    private static Property[] createBeanPlan(final Class<?> type) {
+        final Map<String, Property> properties = new LinkedHashMap<>();
+        for (final Method method : ReflectionUtils.findAllGetters(type)) {
+            if (method.getAnnotation(Transient.class) != null) {
+                continue;
+            }
+            final String propertyName = ReflectionUtils.getPropertyNameFromGetterMethodName(method.getName());
+            if (properties.containsKey(propertyName)) {
+                continue;
+            }
+            /* Prefer getX over isX, like ReflectionUtils.callGetter does. */
+            properties.put(propertyName, createProperty(propertyName, ReflectionUtils.findGetter(type, propertyName)));
+        }
+        return properties.values().toArray(new Property[0]);
+    }
+
+    private static RuntimeException getterFailed(final Property property, final Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new RuntimeException("Getter for `" + property.name + "' failed", t);
+    }
+
     public static JsonContainer toJsonContainer(final Object value) {
         Validate.notNull(value);
         final JsonValue jsonValue = toJson(value);
@@ -25,32 +120,50 @@ public final class JsonSerializer {
         return (JsonContainer) jsonValue;
     }
 
+    /**
+     * Writes the given value directly to a streaming writer, without building a tree of
+     * model objects first.  The writer is not flushed.
+     */
+    public static void write(final Object value, final JsonWriter writer) {
+        Validate.notNull(writer);
+        writeValue(value, writer);
+    }
+
     private static JsonValue toJsonObject(final Object value) {
-        if (value == null) {
-            return JsonNull.get();
-        }
         final JsonObject jsonObject = new JsonObject();
-        for (final Method getter : ReflectionUtils.findAllGetters(value.getClass())) {
-            if (getter.getAnnotation(Transient.class) != null) {
-                continue;
-            }
-            final String propertyName = ReflectionUtils.getPropertyNameFromGetterMethodName(getter.getName());
-            final Object propertyValue;
+        for (final Property property : BEAN_PLANS.get(value.getClass())) {
+            final JsonValue jsonValue;
             try {
-                propertyValue = ReflectionUtils.callGetter(value, propertyName);
-            } catch (final Exception e) {
-                throw new RuntimeException(e);
+                switch (property.kind) {
+                    case KIND_LONG:
+                        jsonValue = JsonLong.get((long) property.getter.invokeExact(value));
+                        break;
+                    case KIND_DOUBLE:
+                        jsonValue = JsonDouble.get((double) property.getter.invokeExact(value));
+                        break;
+                    case KIND_BOOLEAN:
+                        jsonValue = JsonBoolean.get((boolean) property.getter.invokeExact(value));
+                        break;
+                    default:
+                        jsonValue = toJson((Object) property.getter.invokeExact(value));
+                }
+            } catch (final Throwable t) {
+                throw getterFailed(property, t);
             }
-            final JsonValue jsonValue = toJson(propertyValue);
-            jsonObject.put(propertyName, jsonValue);
+            jsonObject.put(property.name, jsonValue);
         }
         return jsonObject;
     }
 
     private static JsonValue toJsonArray(final Object[] values) {
-        if (values == null) {
-            return JsonNull.get();
+        final JsonArray jsonArray = new JsonArray();
+        for (final Object value : values) {
+            jsonArray.add(toJson(value));
         }
+        return jsonArray;
+    }
+
+    private static JsonValue toJsonArray(final Collection<?> values) {
         final JsonArray jsonArray = new JsonArray();
         for (final Object value : values) {
             jsonArray.add(toJson(value));
@@ -58,6 +171,52 @@ public final class JsonSerializer {
         return jsonArray;
     }
 
+    private static JsonValue toJsonObject(final Map<?, ?> map) {
+        final JsonObject jsonObject = new JsonObject();
+        for (final Map.Entry<?, ?> entry : map.entrySet()) {
+            jsonObject.put(String.valueOf(entry.getKey()), toJson(entry.getValue()));
+        }
+        return jsonObject;
+    }
+
+    private static JsonValue toJsonArrayFromPrimitives(final Object array) {
+        final JsonArray jsonArray = new JsonArray();
+        if (array instanceof int[]) {
+            for (final int value : (int[]) array) {
+                jsonArray.add(JsonLong.get(value));
+            }
+        } else if (array instanceof long[]) {
+            for (final long value : (long[]) array) {
+                jsonArray.add(JsonLong.get(value));
+            }
+        } else if (array instanceof double[]) {
+            for (final double value : (double[]) array) {
+                jsonArray.add(JsonDouble.get(value));
+            }
+        } else if (array instanceof boolean[]) {
+            for (final boolean value : (boolean[]) array) {
+                jsonArray.add(JsonBoolean.get(value));
+            }
+        } else if (array instanceof float[]) {
+            for (final float value : (float[]) array) {
+                jsonArray.add(JsonDouble.get(value));
+            }
+        } else if (array instanceof short[]) {
+            for (final short value : (short[]) array) {
+                jsonArray.add(JsonLong.get(value));
+            }
+        } else if (array instanceof byte[]) {
+            for (final byte value : (byte[]) array) {
+                jsonArray.add(JsonLong.get(value));
+            }
+        } else if (array instanceof char[]) {
+            for (final char value : (char[]) array) {
+                jsonArray.add(JsonString.get(String.valueOf(value)));
+            }
+        }
+        return jsonArray;
+    }
+
     private static JsonValue toJson(final Object value) {
         if (value == null) {
             return JsonNull.get();
@@ -73,13 +232,131 @@ public final class JsonSerializer {
             return JsonDouble.get((Double) value);
         } else if (value instanceof Float) {
             return JsonDouble.get((Float) value);
+        } else if (value instanceof Short || value instanceof Byte) {
+            return JsonLong.get(((Number) value).longValue());
+        } else if (value instanceof Character || value instanceof Enum<?>) {
+            return JsonString.get(value.toString());
         } else if (value instanceof Date) {
             return JsonString.get((Date) value);
-        } else if (value.getClass().isArray()) {
+        } else if (value instanceof JsonValue) {
+            return (JsonValue) value;
+        } else if (value instanceof Object[]) {
             return toJsonArray((Object[]) value);
+        } else if (value.getClass().isArray()) {
+            return toJsonArrayFromPrimitives(value);
+        } else if (value instanceof Collection<?>) {
+            return toJsonArray((Collection<?>) value);
+        } else if (value instanceof Map<?, ?>) {
+            return toJsonObject((Map<?, ?>) value);
         } else {
             return toJsonObject(value);
         }
     }
 
+    private static void writeObject(final Object value, final JsonWriter writer) {
+        writer.beginObject();
+        for (final Property property : BEAN_PLANS.get(value.getClass())) {
+            writer.name(property.name);
+            try {
+                switch (property.kind) {
+                    case KIND_LONG:
+                        writer.value((long) property.getter.invokeExact(value));
+                        break;
+                    case KIND_DOUBLE:
+                        writer.value((double) property.getter.invokeExact(value));
+                        break;
+                    case KIND_BOOLEAN:
+                        writer.value((boolean) property.getter.invokeExact(value));
+                        break;
+                    default:
+                        writeValue((Object) property.getter.invokeExact(value), writer);
+                }
+            } catch (final Throwable t) {
+                throw getterFailed(property, t);
+            }
+        }
+        writer.endObject();
+    }
+
+    private static void writePrimitiveArray(final Object array, final JsonWriter writer) {
+        writer.beginArray();
+        if (array instanceof int[]) {
+            for (final int value : (int[]) array) {
+                writer.value(value);
+            }
+        } else if (array instanceof long[]) {
+            for (final long value : (long[]) array) {
+                writer.value(value);
+            }
+        } else if (array instanceof double[]) {
+            for (final double value : (double[]) array) {
+                writer.value(value);
+            }
+        } else if (array instanceof boolean[]) {
+            for (final boolean value : (boolean[]) array) {
+                writer.value(value);
+            }
+        } else if (array instanceof float[]) {
+            for (final float value : (float[]) array) {
+                writer.value(value);
+            }
+        } else if (array instanceof short[]) {
+            for (final short value : (short[]) array) {
+                writer.value(value);
+            }
+        } else if (array instanceof byte[]) {
+            for (final byte value : (byte[]) array) {
+                writer.value(value);
+            }
+        } else if (array instanceof char[]) {
+            for (final char value : (char[]) array) {
+                writer.value(String.valueOf(value));
+            }
+        }
+        writer.endArray();
+    }
+
+    private static void writeValue(final Object value, final JsonWriter writer) {
+        if (value == null) {
+            writer.nullValue();
+        } else if (value instanceof String) {
+            writer.value((String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            writer.value(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            writer.value(((Boolean) value).booleanValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            writer.value(((Number) value).doubleValue());
+        } else if (value instanceof Character || value instanceof Enum<?>) {
+            writer.value(value.toString());
+        } else if (value instanceof Date) {
+            writer.value(JsonUtils.toTimestamp((Date) value));
+        } else if (value instanceof JsonValue) {
+            writer.value((JsonValue) value);
+        } else if (value instanceof Object[]) {
+            writer.beginArray();
+            for (final Object element : (Object[]) value) {
+                writeValue(element, writer);
+            }
+            writer.endArray();
+        } else if (value.getClass().isArray()) {
+            writePrimitiveArray(value, writer);
+        } else if (value instanceof Collection<?>) {
+            writer.beginArray();
+            for (final Object element : (Collection<?>) value) {
+                writeValue(element, writer);
+            }
+            writer.endArray();
+        } else if (value instanceof Map<?, ?>) {
+            writer.beginObject();
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writer.name(String.valueOf(entry.getKey()));
+                writeValue(entry.getValue(), writer);
+            }
+            writer.endObject();
+        } else {
+            writeObject(value, writer);
+        }
+    }
+
 }
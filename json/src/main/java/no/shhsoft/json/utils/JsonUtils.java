@@ -5,6 +5,8 @@ import no.shhsoft.json.model.*;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 
 /**
@@ -32,24 +34,94 @@ public final class JsonUtils {
     private JsonUtils() {
     }
 
+    /**
+     * Objects that are not <code>JsonObject</code>s, such as
+     * <code>CompactJsonObject</code>s and lazily parsed objects, are copied into a new
+     * <code>JsonObject</code>, without copying the members.  Use
+     * <code>asJsonObjectMap</code> to avoid the copy.
+     */
     public static JsonObject asJsonObject(final JsonValue value) {
+        final Map<String, JsonValue> map = asJsonObjectMap(value);
+        if (map == null || map instanceof JsonObject) {
+            return (JsonObject) map;
+        }
+        final JsonObject object = new JsonObject();
+        object.putAll(map);
+        return object;
+    }
+
+    /**
+     * Arrays that are not <code>JsonArray</code>s, such as <code>CompactJsonArray</code>s
+     * and lazily parsed arrays, are copied into a new <code>JsonArray</code>, without
+     * copying the elements.  Use <code>asJsonArrayList</code> to avoid the copy.
+     */
+    public static JsonArray asJsonArray(final JsonValue value) {
+        final List<JsonValue> list = asJsonArrayList(value);
+        if (list == null || list instanceof JsonArray) {
+            return (JsonArray) list;
+        }
+        final JsonArray array = new JsonArray();
+        array.addAll(list);
+        return array;
+    }
+
+    /**
+     * Like <code>asJsonObject</code>, but also accepts other kinds of objects, such as
+     * <code>CompactJsonObject</code>s and lazily parsed objects.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, JsonValue> asJsonObjectMap(final JsonValue value) {
         if (value == null || value instanceof JsonNull) {
             return null;
         }
-        if (!(value instanceof JsonObject)) {
-            throw new RuntimeException("JsonValue is not a JsonObject");
+        if (value instanceof Map) {
+            return (Map<String, JsonValue>) value;
         }
-        return (JsonObject) value;
+        throw new RuntimeException("JsonValue is not a JsonObject");
     }
 
-    public static JsonArray asJsonArray(final JsonValue value) {
+    /**
+     * Like <code>asJsonArray</code>, but also accepts other kinds of arrays, such as
+     * <code>CompactJsonArray</code>s and lazily parsed arrays.
+     */
+    @SuppressWarnings("unchecked")
+    public static List<JsonValue> asJsonArrayList(final JsonValue value) {
         if (value == null || value instanceof JsonNull) {
             return null;
         }
-        if (!(value instanceof JsonArray)) {
-            throw new RuntimeException("JsonValue is not a JsonArray");
+        if (value instanceof List) {
+            return (List<JsonValue>) value;
         }
-        return (JsonArray) value;
+        throw new RuntimeException("JsonValue is not a JsonArray");
+    }
+
+    /**
+     * Makes a deep copy of the given value, using <code>CompactJsonObject</code> and
+     * <code>CompactJsonArray</code> for all objects and arrays.  Scalar values are
+     * immutable, and thus shared with the original.
+     */
+    public static JsonValue toCompact(final JsonValue value) {
+        if (value instanceof Map) {
+            final Map<String, JsonValue> object = asJsonObjectMap(value);
+            final String[] keys = new String[object.size()];
+            final JsonValue[] values = new JsonValue[keys.length];
+            int q = 0;
+            for (final Map.Entry<String, JsonValue> entry : object.entrySet()) {
+                keys[q] = entry.getKey();
+                values[q] = toCompact(entry.getValue());
+                ++q;
+            }
+            return CompactJsonObject.create(keys, values, 0, q);
+        }
+        if (value instanceof List) {
+            final List<JsonValue> array = asJsonArrayList(value);
+            final JsonValue[] values = new JsonValue[array.size()];
+            for (int q = 0; q < values.length; q++) {
+                values[q] = toCompact(array.get(q));
+            }
+            return CompactJsonArray.create(values, 0, values.length);
+        }
+        return value;
     }
 
     public static String asString(final JsonValue value) {
@@ -93,55 +165,71 @@ public final class JsonUtils {
     }
 
     public static JsonValue objectLookup(final JsonValue value, final Object key) {
-        return asJsonObject(value).get(key);
+        return asJsonObjectMap(value).get(key);
     }
 
     public static String objectLookupAsString(final JsonValue value, final Object key) {
-        return asString(asJsonObject(value).get(key));
+        return asString(asJsonObjectMap(value).get(key));
     }
 
     public static String objectLookupAsString(final JsonValue value, final Object key, final String defaultValue) {
-        return asString(asJsonObject(value).get(key), defaultValue);
+        return asString(asJsonObjectMap(value).get(key), defaultValue);
     }
 
     public static long objectLookupAsLong(final JsonValue value, final Object key) {
-        return asLong(asJsonObject(value).get(key));
+        return asLong(asJsonObjectMap(value).get(key));
     }
 
     public static long objectLookupAsLong(final JsonValue value, final Object key, final long defaultValue) {
-        return asLong(asJsonObject(value).get(key), defaultValue);
+        return asLong(asJsonObjectMap(value).get(key), defaultValue);
     }
 
     public static int objectLookupAsInt(final JsonValue value, final Object key) {
-        return asInt(asJsonObject(value).get(key));
+        return asInt(asJsonObjectMap(value).get(key));
     }
 
     public static int objectLookupAsInt(final JsonValue value, final Object key, final int defaultValue) {
-        return asInt(asJsonObject(value).get(key), defaultValue);
+        return asInt(asJsonObjectMap(value).get(key), defaultValue);
     }
 
     public static double objectLookupAsDouble(final JsonValue value, final Object key) {
-        return asDouble(asJsonObject(value).get(key));
+        return asDouble(asJsonObjectMap(value).get(key));
     }
 
     public static double objectLookupAsDouble(final JsonValue value, final Object key, final double defaultValue) {
-        return asDouble(asJsonObject(value).get(key), defaultValue);
+        return asDouble(asJsonObjectMap(value).get(key), defaultValue);
     }
 
     public static boolean objectLookupAsBoolean(final JsonValue value, final Object key) {
-        return asBoolean(asJsonObject(value).get(key));
+        return asBoolean(asJsonObjectMap(value).get(key));
     }
 
     public static boolean objectLookupAsBoolean(final JsonValue value, final Object key, final boolean defaultValue) {
-        return asBoolean(asJsonObject(value).get(key), defaultValue);
+        return asBoolean(asJsonObjectMap(value).get(key), defaultValue);
     }
 
     public static JsonArray objectLookupAsJsonArray(final JsonValue value, final Object key) {
-        return asJsonArray(asJsonObject(value).get(key));
+        return asJsonArray(asJsonObjectMap(value).get(key));
     }
 
     public static JsonObject objectLookupAsJsonObject(final JsonValue value, final Object key) {
-        return asJsonObject(asJsonObject(value).get(key));
+        return asJsonObject(asJsonObjectMap(value).get(key));
+    }
+
+    /**
+     * Like <code>objectLookupAsJsonArray</code>, but without copying arrays that are not
+     * <code>JsonArray</code>s.
+     */
+    public static List<JsonValue> objectLookupAsJsonArrayList(final JsonValue value, final Object key) {
+        return asJsonArrayList(asJsonObjectMap(value).get(key));
+    }
+
+    /**
+     * Like <code>objectLookupAsJsonObject</code>, but without copying objects that are not
+     * <code>JsonObject</code>s.
+     */
+    public static Map<String, JsonValue> objectLookupAsJsonObjectMap(final JsonValue value, final Object key) {
+        return asJsonObjectMap(asJsonObjectMap(value).get(key));
     }
 
     private static String asString(final JsonValue value, final boolean required, final String defaultValue) {
@@ -0,0 +1,109 @@
+package no.shhsoft.json;
+
+import no.shhsoft.json.impl.generator.JsonGeneratorImpl;
+import no.shhsoft.json.impl.parser.JsonParserImpl;
+import no.shhsoft.json.model.*;
+import no.shhsoft.json.utils.JsonUtils;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class CompactJsonTest {
+
+    private static final String JSON = "{ \"a\": [ \"a\", 1, -3.25, true, false, null ],"
+                                       + " \"b\": null, \"c\": 123456789, \"d\": \"f\\u00f8o\\n\","
+                                       + " \"e\": { \"foo\" : \"bar\", \"gazonk\": -123 }, \"f\": [], \"g\": {} }";
+
+    private static JsonParser compactParser() {
+        final JsonParser parser = new JsonParserImpl();
+        parser.setCompact(true);
+        return parser;
+    }
+
+    private static String largeObject(final int numMembers, final boolean withDuplicate) {
+        final StringBuilder sb = new StringBuilder("{");
+        for (int q = 0; q < numMembers; q++) {
+            sb.append("\"k").append(q).append("\":").append(q).append(',');
+        }
+        if (withDuplicate) {
+            sb.append("\"k0\":\"last\",");
+        }
+        sb.append("\"end\":true}");
+        return sb.toString();
+    }
+
+    @Test
+    public void shouldBeEqualToRegularTree() {
+        final JsonContainer expected = new JsonParserImpl().parse(JSON);
+        final JsonParser parser = compactParser();
+        for (final JsonContainer compact : new JsonContainer[] {
+            parser.parse(JSON), parser.parse(new StringReader(JSON)), parser.parse(JSON.getBytes(StandardCharsets.UTF_8)) }) {
+            assertTrue(compact instanceof CompactJsonObject);
+            assertTrue(((CompactJsonObject) compact).get("a") instanceof CompactJsonArray);
+            assertEquals(expected, compact);
+            assertEquals(compact, expected);
+            assertEquals(expected.hashCode(), compact.hashCode());
+        }
+        assertEquals(expected, JsonUtils.toCompact(expected));
+    }
+
+    @Test
+    public void shouldSupportNestedLookups() {
+        final JsonContainer regular = new JsonParserImpl().parse(JSON);
+        for (final JsonValue compact : new JsonValue[] { compactParser().parse(JSON), JsonUtils.toCompact(regular) }) {
+            final JsonObject e = JsonUtils.objectLookupAsJsonObject(compact, "e");
+            assertEquals("bar", JsonUtils.objectLookupAsString(e, "foo"));
+            assertEquals(-123, JsonUtils.objectLookupAsInt(e, "gazonk"));
+            final JsonArray a = JsonUtils.objectLookupAsJsonArray(compact, "a");
+            assertEquals(JsonUtils.objectLookupAsJsonArray(regular, "a"), a);
+            assertTrue(JsonUtils.objectLookupAsJsonObjectMap(compact, "e") instanceof CompactJsonObject);
+            assertTrue(JsonUtils.objectLookupAsJsonArrayList(compact, "f") instanceof CompactJsonArray);
+            assertNull(JsonUtils.objectLookupAsJsonArray(compact, "b"));
+        }
+    }
+
+    @Test
+    public void shouldGenerateSameTextAsRegularTree() {
+        final JsonGenerator generator = new JsonGeneratorImpl();
+        final JsonContainer expected = new JsonParserImpl().parse(JSON);
+        assertEquals(generator.generate(expected), generator.generate(compactParser().parse(JSON)));
+    }
+
+    @Test
+    public void shouldLookUpMembersOfLargeObjects() {
+        final CompactJsonObject object = (CompactJsonObject) compactParser().parse(largeObject(100, false));
+        assertEquals(101, object.size());
+        for (int q = 0; q < 100; q++) {
+            assertEquals(JsonLong.get(q), object.get("k" + q));
+        }
+        assertNull(object.get("k100"));
+        assertEquals("end", object.getKey(100));
+        assertEquals(JsonUtils.asJsonObjectMap(new JsonParserImpl().parse(largeObject(100, false))), object);
+        assertEquals(99L, JsonUtils.objectLookupAsLong(object, "k99"));
+    }
+
+    @Test
+    public void shouldLetLastDuplicateWinLikeRegularTree() {
+        for (final int numMembers : new int[] { 3, 100 }) {
+            final String json = largeObject(numMembers, true);
+            final JsonContainer expected = new JsonParserImpl().parse(json);
+            final CompactJsonObject object = (CompactJsonObject) compactParser().parse(json);
+            assertEquals(expected, object);
+            assertEquals(numMembers + 1, object.size());
+            assertEquals(new JsonString("last"), object.get("k0"));
+            assertEquals("k0", object.getKey(0));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldBeImmutable() {
+        ((CompactJsonObject) compactParser().parse(JSON)).put("x", JsonNull.NULL);
+    }
+
+}
@@ -0,0 +1,104 @@
+package no.shhsoft.json;
+
+import no.shhsoft.json.impl.parser.JsonParserImpl;
+import no.shhsoft.json.impl.parser.ReaderJsonEventReader;
+import no.shhsoft.json.model.JsonContainer;
+import no.shhsoft.json.model.JsonDouble;
+import no.shhsoft.json.model.JsonLong;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class JsonEventReaderTest {
+
+    private static final String JSON = "{ \"a\": [ \"a\", 1, -3.25, true, false, null ],"
+                                       + " \"b\": null, \"c\": 123456789, \"d\": \"f\\u00f8o\\n\","
+                                       + " \"e\": { \"foo\" : \"bar\", \"gazonk\": -123 }, \"f\": [] }";
+
+    private static JsonEventReader reader(final String json, final int bufferSize) {
+        return new ReaderJsonEventReader(new StringReader(json), bufferSize);
+    }
+
+    @Test
+    public void shouldReportEventsInOrder() {
+        final JsonEventReader reader = reader("{\"k\":[1,\"s\",true,null],\"o\":{}}", 8192);
+        assertEquals(JsonEvent.BEGIN_OBJECT, reader.next());
+        assertEquals(JsonEvent.FIELD_NAME, reader.next());
+        assertEquals("k", reader.getString());
+        assertEquals(JsonEvent.BEGIN_ARRAY, reader.next());
+        assertEquals(2, reader.getDepth());
+        assertEquals(JsonEvent.VALUE_NUMBER, reader.next());
+        assertEquals(1L, reader.getLong());
+        assertEquals(JsonEvent.VALUE_STRING, reader.next());
+        assertEquals("s", reader.getString());
+        assertEquals(JsonEvent.VALUE_TRUE, reader.next());
+        assertEquals(JsonEvent.VALUE_NULL, reader.next());
+        assertEquals(JsonEvent.END_ARRAY, reader.next());
+        assertEquals(JsonEvent.FIELD_NAME, reader.next());
+        assertEquals("o", reader.getString());
+        assertEquals(JsonEvent.BEGIN_OBJECT, reader.next());
+        assertEquals(JsonEvent.END_OBJECT, reader.next());
+        assertEquals(JsonEvent.END_OBJECT, reader.next());
+        assertEquals(0, reader.getDepth());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void shouldBuildSameTreeAsStringParserRegardlessOfBufferSize() {
+        final JsonContainer expected = new JsonParserImpl().parse(JSON);
+        for (int bufferSize = 1; bufferSize < 20; bufferSize++) {
+            final JsonEventReader reader = reader(JSON, bufferSize);
+            reader.next();
+            assertEquals(expected, reader.readValue());
+        }
+        final JsonContainer fromStream = new JsonParserImpl().parse(new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(expected, fromStream);
+    }
+
+    @Test
+    public void shouldKeepLargeIntegersAsLongs() {
+        final JsonEventReader reader = reader("[12345678901234,-9223372036854775808,1e2]", 8192);
+        reader.next();
+        assertEquals(JsonEvent.VALUE_NUMBER, reader.next());
+        assertEquals(JsonLong.get(12345678901234L), reader.getNumber());
+        reader.next();
+        assertEquals(Long.MIN_VALUE, reader.getLong());
+        reader.next();
+        assertEquals(JsonDouble.get(100.0), reader.getNumber());
+    }
+
+    @Test
+    public void shouldSkipValues() {
+        final JsonEventReader reader = reader(JSON, 3);
+        assertEquals(JsonEvent.BEGIN_OBJECT, reader.next());
+        assertEquals(JsonEvent.FIELD_NAME, reader.next());
+        assertEquals(JsonEvent.BEGIN_ARRAY, reader.next());
+        reader.skipValue();
+        assertEquals(JsonEvent.END_ARRAY, reader.getCurrentEvent());
+        assertEquals(JsonEvent.FIELD_NAME, reader.next());
+        assertEquals("b", reader.getString());
+    }
+
+    @Test
+    public void shouldReturnNullForEmptyInput() {
+        assertNull(reader("  \n ", 8192).next());
+    }
+
+    @Test(expected = JsonException.class)
+    public void shouldFailOnUnterminatedObject() {
+        new JsonParserImpl().parse(new StringReader("{\"a\":1"));
+    }
+
+    @Test(expected = JsonException.class)
+    public void shouldFailOnMissingComma() {
+        new JsonParserImpl().parse(new StringReader("[1 2]"));
+    }
+
+}
@@ -0,0 +1,142 @@
+package no.shhsoft.json;
+
+import no.shhsoft.json.impl.JsonNumberCodec;
+import no.shhsoft.json.impl.parser.JsonParserImpl;
+import no.shhsoft.json.model.JsonArray;
+import no.shhsoft.json.model.JsonDouble;
+import no.shhsoft.json.model.JsonLong;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class JsonNumberCodecTest {
+
+    private final JsonNumberCodec codec = new JsonNumberCodec();
+
+    private void parse(final String s) {
+        final byte[] bytes = s.getBytes(StandardCharsets.US_ASCII);
+        codec.parse(bytes, 0, bytes.length);
+        final boolean isLong = codec.isLong();
+        final long l = codec.getLong();
+        final double d = codec.getDouble();
+        codec.parse(s.toCharArray(), 0, s.length());
+        assertEquals(isLong, codec.isLong());
+        assertEquals(l, codec.getLong());
+        assertEquals(Double.doubleToRawLongBits(d), Double.doubleToRawLongBits(codec.getDouble()));
+    }
+
+    private void assertParsesAsLong(final long expected, final String s) {
+        parse(s);
+        assertTrue(s, codec.isLong());
+        assertEquals(s, expected, codec.getLong());
+    }
+
+    private void assertParsesAsDouble(final String s) {
+        parse(s);
+        assertFalse(s, codec.isLong());
+        assertEquals(s, Double.doubleToRawLongBits(Double.parseDouble(s)), Double.doubleToRawLongBits(codec.getDouble()));
+    }
+
+    private static String formatDouble(final double d) {
+        final byte[] buff = new byte[JsonNumberCodec.MAX_DOUBLE_LENGTH];
+        final String s = new String(buff, 0, JsonNumberCodec.formatDouble(d, buff, 0), StandardCharsets.US_ASCII);
+        final StringBuilder sb = new StringBuilder();
+        JsonNumberCodec.appendDouble(sb, d);
+        assertEquals(s, sb.toString());
+        return s;
+    }
+
+    private static String formatLong(final long l) {
+        final byte[] buff = new byte[JsonNumberCodec.MAX_LONG_LENGTH];
+        return new String(buff, 0, JsonNumberCodec.formatLong(l, buff, 0), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void shouldParseIntegersExactly() {
+        assertParsesAsLong(0L, "0");
+        assertParsesAsLong(0L, "-0");
+        assertParsesAsLong(-123L, "-123");
+        assertParsesAsLong(2147483648L, "2147483648");
+        assertParsesAsLong(123456789012345678L, "123456789012345678");
+        assertParsesAsLong(1234567890123456789L, "1234567890123456789");
+        assertParsesAsLong(Long.MAX_VALUE, "9223372036854775807");
+        assertParsesAsLong(Long.MIN_VALUE, "-9223372036854775808");
+        assertParsesAsDouble("9223372036854775808");
+        assertParsesAsDouble("-9223372036854775809");
+        assertParsesAsDouble("123456789012345678901234567890");
+    }
+
+    @Test
+    public void shouldParseDecimalsWithCorrectRounding() {
+        for (final String s : new String[] { "3.14", "-31.4e-1", "1e2", "1E+2", "0.1", ".5", "1.", "-0.0", "0e10",
+                                             "1.7976931348623157e308", "4.9e-324", "2.2250738585072014E-308",
+                                             "9007199254740993.0", "9007199254740993e0", "0.30000000000000004",
+                                             "123456789012345678901234567890.5", "1e400", "1e-400" }) {
+            assertParsesAsDouble(s);
+        }
+        final Random random = new Random(42L);
+        for (int q = 0; q < 100000; q++) {
+            final double d = Double.longBitsToDouble(random.nextLong());
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                continue;
+            }
+            assertParsesAsDouble(Double.toString(d));
+            assertParsesAsDouble(Double.toString(random.nextInt(100000) / 100.0));
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldFailOnMissingDigits() {
+        parse("-");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldFailOnMissingExponent() {
+        parse("1e");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldFailOnGarbage() {
+        parse("1-2");
+    }
+
+    @Test
+    public void shouldFormatLongs() {
+        for (final long l : new long[] { 0L, 1L, -1L, 9L, 10L, -1234567890L, Long.MAX_VALUE, Long.MIN_VALUE }) {
+            assertEquals(Long.toString(l), formatLong(l));
+        }
+    }
+
+    @Test
+    public void shouldFormatDoublesLikeDoubleToString() {
+        for (final double d : new double[] { 0.0, -0.0, 3.14, -2.5, 100.0, 0.001, 0.1, 1234567.125, 9999999.0, 1e7, 1e-4,
+                                             0.30000000000000004, Double.MAX_VALUE, Double.MIN_VALUE, Double.NaN }) {
+            assertEquals(Double.toString(d), formatDouble(d));
+        }
+    }
+
+    @Test
+    public void shouldFormatDoublesThatReadBackExactly() {
+        final Random random = new Random(42L);
+        for (int q = 0; q < 100000; q++) {
+            final double d = q % 2 == 0 ? random.nextDouble() * 1000.0 : random.nextInt(10000000) / 1000.0;
+            assertEquals(d, Double.parseDouble(formatDouble(d)), 0.0);
+        }
+    }
+
+    @Test
+    public void shouldParseNumbersInDocuments() {
+        final JsonArray array = (JsonArray) new JsonParserImpl().parse("[2147483648, -9223372036854775808, 1.5e3, 9223372036854775808]");
+        assertEquals(JsonLong.get(2147483648L), array.get(0));
+        assertEquals(JsonLong.get(Long.MIN_VALUE), array.get(1));
+        assertEquals(JsonDouble.get(1500.0), array.get(2));
+        assertEquals(JsonDouble.get(9223372036854775808.0), array.get(3));
+    }
+
+}
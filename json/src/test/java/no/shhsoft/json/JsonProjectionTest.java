@@ -0,0 +1,109 @@
+package no.shhsoft.json;
+
+import no.shhsoft.json.impl.parser.JsonParserImpl;
+import no.shhsoft.json.impl.parser.Utf8JsonEventReader;
+import no.shhsoft.json.model.*;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class JsonProjectionTest {
+
+    private static final String JSON = "{ \"meta\": { \"total\": 3, \"page\": 1, \"odd key\": true },"
+                                       + " \"items\": [ { \"id\": 1, \"name\": \"a\", \"tags\": [ \"x\", \"y\" ] },"
+                                       + " { \"id\": 2, \"name\": \"b\\u00f8\", \"tags\": [] },"
+                                       + " { \"name\": \"c\" }, 17 ],"
+                                       + " \"other\": { \"deep\": [ [ [ { \"total\": 1 } ] ] ] } }";
+
+    private static JsonContainer project(final String json, final String... paths) {
+        final JsonParser parser = new JsonParserImpl();
+        parser.setProjection(JsonProjection.compile(paths));
+        return parser.parse(json);
+    }
+
+    private static void assertProjection(final String expected, final String... paths) {
+        final JsonContainer expectedValue = new JsonParserImpl().parse(expected);
+        final JsonParser parser = new JsonParserImpl();
+        parser.setProjection(JsonProjection.compile(paths));
+        assertEquals(expectedValue, parser.parse(JSON));
+        assertEquals(expectedValue, parser.parse(new StringReader(JSON)));
+        assertEquals(expectedValue, parser.parse(JSON.getBytes(StandardCharsets.UTF_8)));
+        parser.setCompact(true);
+        final JsonContainer compact = parser.parse(JSON.getBytes(StandardCharsets.UTF_8));
+        assertTrue(compact instanceof CompactJsonObject || compact instanceof CompactJsonArray);
+        assertEquals(expectedValue, compact);
+    }
+
+    @Test
+    public void shouldSelectMembersOfAllElements() {
+        assertProjection("{ \"items\": [ { \"id\": 1 }, { \"id\": 2 }, {} ] }", "$.items[*].id");
+    }
+
+    @Test
+    public void shouldCombinePaths() {
+        assertProjection("{ \"meta\": { \"total\": 3 }, \"items\": [ { \"id\": 1 }, { \"id\": 2 }, {} ] }",
+                         "$.items[*].id", "$.meta.total");
+    }
+
+    @Test
+    public void shouldSelectWholeSubtrees() {
+        assertProjection("{ \"items\": [ { \"id\": 1, \"name\": \"a\", \"tags\": [ \"x\", \"y\" ] } ] }",
+                         "$.items[0]", "$.items[0].name");
+    }
+
+    @Test
+    public void shouldSelectByIndexAndWildcardTogether() {
+        assertProjection("{ \"items\": [ { \"id\": 1, \"tags\": [ \"x\", \"y\" ] }, { \"id\": 2, \"tags\": [] }, {} ] }",
+                         "$.items[*].id", "$.items[0].tags", "$.items[1].tags");
+    }
+
+    @Test
+    public void shouldSelectQuotedAndWildcardMembers() {
+        assertProjection("{ \"meta\": { \"odd key\": true }, \"items\": [ { \"name\": \"a\" }, { \"name\": \"b\\u00f8\" }, { \"name\": \"c\" } ] }",
+                         "$['meta']['odd key']", "$.items[*].name");
+        assertProjection("{ \"meta\": { \"total\": 3, \"page\": 1, \"odd key\": true } }", "$.meta.*");
+    }
+
+    @Test
+    public void shouldReturnEverythingForRootPath() {
+        assertProjection(JSON, "$");
+    }
+
+    @Test
+    public void shouldReturnEmptyContainerWhenNothingMatches() {
+        assertProjection("{}", "$.nonexistent.x");
+        assertEquals(new JsonArray(), project("[ 1, 2, 3 ]", "$.x"));
+    }
+
+    @Test
+    public void shouldProjectFromEventReaderPosition() {
+        final JsonProjection projection = JsonProjection.compile("$.id");
+        try (final JsonEventReader reader = new Utf8JsonEventReader("[ { \"id\": 1, \"x\": 2 }, { \"id\": 2 } ]".getBytes(StandardCharsets.UTF_8))) {
+            assertEquals(JsonEvent.BEGIN_ARRAY, reader.next());
+            final JsonArray ids = new JsonArray();
+            while (reader.next() != JsonEvent.END_ARRAY) {
+                ids.add(projection.read(reader));
+            }
+            assertEquals(new JsonParserImpl().parse("[ { \"id\": 1 }, { \"id\": 2 } ]"), ids);
+        }
+    }
+
+    @Test
+    public void shouldRejectInvalidPaths() {
+        for (final String path : new String[] { "", "items", "$.", "$..a", "$[", "$[x]", "$['a'", "$['a'x]", "$a" }) {
+            try {
+                JsonProjection.compile(path);
+                fail("Expected exception for " + path);
+            } catch (final JsonException e) {
+                assertTrue(e.getMessage().contains("Invalid path"));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package no.shhsoft.json;
+
+import no.shhsoft.json.impl.parser.JsonParserImpl;
+import no.shhsoft.json.model.JsonArray;
+import no.shhsoft.json.model.JsonContainer;
+import no.shhsoft.json.model.JsonObject;
+import no.shhsoft.json.model.JsonString;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class JsonStringInternerTest {
+
+    private static final String JSON = "[{\"id\":1,\"state\":\"ok\",\"text\":\"some longer text\",\"n\\u00e6me\":\"\\u00e6\"},"
+                                       + "{\"id\":2,\"state\":\"ok\",\"text\":\"some longer text\",\"n\\u00e6me\":\"\\u00e6\"}]";
+
+    private static String getKey(final JsonObject object, final String key) {
+        for (final Map.Entry<String, ?> entry : object.entrySet()) {
+            if (entry.getKey().equals(key)) {
+                return entry.getKey();
+            }
+        }
+        throw new AssertionError("Key " + key + " not found");
+    }
+
+    private static void assertDeduplicated(final JsonContainer container) {
+        final JsonObject first = (JsonObject) ((JsonArray) container).get(0);
+        final JsonObject second = (JsonObject) ((JsonArray) container).get(1);
+        for (final String key : new String[] { "id", "state", "text", "n\u00e6me" }) {
+            assertSame(getKey(first, key), getKey(second, key));
+        }
+        assertSame(((JsonString) first.get("state")).getValue(), ((JsonString) second.get("state")).getValue());
+        assertSame(((JsonString) first.get("n\u00e6me")).getValue(), ((JsonString) second.get("n\u00e6me")).getValue());
+        assertNotSame(((JsonString) first.get("text")).getValue(), ((JsonString) second.get("text")).getValue());
+    }
+
+    private static JsonParser createParser(final JsonStringInterner keyInterner) {
+        final JsonParser parser = new JsonParserImpl();
+        parser.setKeyInterner(keyInterner);
+        parser.setValueInterner(new JsonStringInterner(64, 8));
+        return parser;
+    }
+
+    @Test
+    public void shouldShareKeysAndShortValuesForAllInputTypes() {
+        final JsonStringInterner keyInterner = new JsonStringInterner(256, 32);
+        final JsonContainer expected = new JsonParserImpl().parse(JSON);
+        final JsonContainer fromString = createParser(keyInterner).parse(JSON);
+        assertEquals(expected, fromString);
+        assertDeduplicated(fromString);
+        final JsonContainer fromReader = createParser(keyInterner).parse(new StringReader(JSON));
+        assertEquals(expected, fromReader);
+        assertDeduplicated(fromReader);
+        final JsonContainer fromBytes = createParser(keyInterner).parse(JSON.getBytes(StandardCharsets.UTF_8));
+        assertEquals(expected, fromBytes);
+        assertDeduplicated(fromBytes);
+    }
+
+    @Test
+    public void shouldCountHitsAndMisses() {
+        final JsonStringInterner interner = new JsonStringInterner(16, 10);
+        final String a = interner.intern(new StringBuilder("abc"));
+        assertSame(a, interner.intern("abc"));
+        assertSame(a, interner.intern("xabcx".toCharArray(), 1, 3));
+        assertSame(a, interner.internAscii("xxabc".getBytes(StandardCharsets.US_ASCII), 2, 3));
+        assertEquals("much too long", interner.intern("much too long"));
+        assertEquals(1L, interner.getMisses());
+        assertEquals(3L, interner.getHits());
+        assertTrue(interner.getEstimatedBytesSaved() > 0L);
+        interner.clear();
+        assertEquals(0L, interner.getHits());
+        assertNotSame(a, interner.intern(new String("abc")));
+    }
+
+}
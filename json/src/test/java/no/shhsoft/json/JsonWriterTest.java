@@ -0,0 +1,109 @@
+package no.shhsoft.json;
+
+import no.shhsoft.json.impl.generator.JsonGeneratorImpl;
+import no.shhsoft.json.impl.generator.JsonWriterImpl;
+import no.shhsoft.json.impl.parser.JsonParserImpl;
+import no.shhsoft.json.model.JsonContainer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class JsonWriterTest {
+
+    private static final String JSON = "{ \"a\": [ \"a\", 1, -3.25, true, false, null ],"
+                                       + " \"b\": null, \"c\": 123456789, \"d\": \"f\\u00f8o\\n\\\"\\\\/\\u0001\","
+                                       + " \"e\": { \"foo\" : \"bar\", \"gazonk\": -123 }, \"f\": [], \"g\": {} }";
+    private final JsonGenerator jsonGenerator = new JsonGeneratorImpl();
+
+    @Test
+    public void shouldWriteSameAsStringGeneratorRegardlessOfBufferSize() {
+        final JsonContainer container = new JsonParserImpl().parse(JSON);
+        final String expected = jsonGenerator.generate(container);
+        for (int bufferSize = 6; bufferSize < 30; bufferSize++) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final JsonWriter writer = new JsonWriterImpl(out, bufferSize);
+            writer.value(container);
+            writer.flush();
+            assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+            final StringWriter stringWriter = new StringWriter();
+            new JsonWriterImpl(stringWriter, bufferSize).value(container).flush();
+            assertEquals(expected, stringWriter.toString());
+        }
+    }
+
+    @Test
+    public void shouldGenerateToStreamAndWriter() {
+        final JsonContainer container = new JsonParserImpl().parse(JSON);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        jsonGenerator.generate(container, out);
+        assertEquals(container, new JsonParserImpl().parse(out.toByteArray()));
+        final StringWriter writer = new StringWriter();
+        jsonGenerator.generate(container, writer);
+        assertEquals(jsonGenerator.generate(container), writer.toString());
+    }
+
+    @Test
+    public void shouldWriteEvents() {
+        final StringWriter stringWriter = new StringWriter();
+        final JsonWriter writer = new JsonWriterImpl(stringWriter);
+        writer.beginObject()
+              .name("k").beginArray().value(1L).value("s").value(true).nullValue().value(2.5).endArray()
+              .name("o").beginObject().endObject()
+              .endObject();
+        writer.close();
+        assertEquals("{\"k\":[1,\"s\",true,null,2.5],\"o\":{}}", stringWriter.toString());
+    }
+
+    @Test
+    public void shouldWriteToNewTargetAfterReset() {
+        final StringWriter first = new StringWriter();
+        final JsonWriterImpl writer = new JsonWriterImpl(first);
+        writer.beginArray().value(1L).endArray().flush();
+        final ByteArrayOutputStream second = new ByteArrayOutputStream();
+        writer.reset(second);
+        writer.beginObject().name("a").value(2L).endObject().flush();
+        assertEquals("[1]", first.toString());
+        assertEquals("{\"a\":2}", new String(second.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldAllowNewTopLevelValueAfterNewLine() {
+        final StringWriter stringWriter = new StringWriter();
+        final JsonWriterImpl writer = new JsonWriterImpl(stringWriter);
+        writer.beginArray().endArray();
+        writer.newLine();
+        writer.beginObject().endObject();
+        writer.newLine().flush();
+        assertEquals("[]\n{}\n", stringWriter.toString());
+    }
+
+    @Test(expected = JsonException.class)
+    public void shouldFailOnNewLineInsideValue() {
+        final JsonWriterImpl writer = new JsonWriterImpl(new StringWriter());
+        writer.beginArray();
+        writer.newLine();
+    }
+
+    @Test(expected = JsonException.class)
+    public void shouldFailOnValueWithoutName() {
+        new JsonWriterImpl(new StringWriter()).beginObject().value(1L);
+    }
+
+    @Test(expected = JsonException.class)
+    public void shouldFailOnMismatchedEnd() {
+        new JsonWriterImpl(new StringWriter()).beginArray().endObject();
+    }
+
+    @Test(expected = JsonException.class)
+    public void shouldFailOnSecondTopLevelValue() {
+        new JsonWriterImpl(new StringWriter()).beginArray().endArray().beginArray();
+    }
+
+}
@@ -0,0 +1,138 @@
+package no.shhsoft.json;
+
+import no.shhsoft.json.impl.generator.JsonGeneratorImpl;
+import no.shhsoft.json.impl.parser.JsonParserImpl;
+import no.shhsoft.json.impl.parser.LazyJsonArray;
+import no.shhsoft.json.impl.parser.LazyJsonObject;
+import no.shhsoft.json.model.*;
+import no.shhsoft.json.utils.JsonUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class LazyJsonTest {
+
+    private static final String JSON = "{ \"a\": [ \"a\", 1, -3.25, true, false, null, [ {}, [] ] ],"
+                                       + " \"b\": null, \"c\": 123456789, \"d\": \"f\\u00f8o\\n\\\"]}\","
+                                       + " \"e\": { \"foo\" : \"bar\", \"gazonk\": -123, \"x\": { \"y\": [ 1, 2 ] } },"
+                                       + " \"f\": [], \"g\": {}, \"h\": \"bl\u00e5b\u00e6r\" }";
+
+    private static JsonParser lazyParser() {
+        final JsonParser parser = new JsonParserImpl();
+        parser.setLazy(true);
+        return parser;
+    }
+
+    @Test
+    public void shouldBeEqualToRegularTree() {
+        final JsonContainer expected = new JsonParserImpl().parse(JSON);
+        final JsonParser parser = lazyParser();
+        final byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+        for (final JsonContainer lazy : new JsonContainer[] {
+            parser.parse(JSON), parser.parse(new StringReader(JSON)), parser.parse(bytes),
+            parser.parse(new ByteArrayInputStream(bytes)), parser.parse(ByteBuffer.wrap(bytes)) }) {
+            assertTrue(lazy instanceof LazyJsonObject);
+            assertEquals(expected, lazy);
+            assertEquals(lazy, expected);
+            assertEquals(expected.hashCode(), lazy.hashCode());
+        }
+    }
+
+    @Test
+    public void shouldGenerateSameTextAsRegularTree() {
+        final JsonGenerator generator = new JsonGeneratorImpl();
+        assertEquals(generator.generate(new JsonParserImpl().parse(JSON)), generator.generate(lazyParser().parse(JSON)));
+    }
+
+    @Test
+    public void shouldOnlyMaterializeWhatIsAccessed() {
+        final LazyJsonObject object = (LazyJsonObject) lazyParser().parse(JSON);
+        assertFalse(object.isMaterialized());
+        assertEquals(123456789L, JsonUtils.objectLookupAsLong(object, "c"));
+        assertTrue(object.isMaterialized());
+        final LazyJsonArray array = (LazyJsonArray) object.get("a");
+        final LazyJsonObject e = (LazyJsonObject) object.get("e");
+        assertFalse(array.isMaterialized());
+        assertEquals("bar", JsonUtils.objectLookupAsString(e, "foo"));
+        assertFalse(array.isMaterialized());
+        assertFalse(((LazyJsonObject) e.get("x")).isMaterialized());
+        assertEquals(7, array.size());
+        assertEquals(new JsonString("f\u00f8o\n\"]}"), object.get("d"));
+        assertEquals(new JsonString("bl\u00e5b\u00e6r"), object.get("h"));
+    }
+
+    @Test
+    public void shouldSupportNestedLookups() {
+        final JsonContainer lazy = lazyParser().parse(JSON);
+        final JsonObject e = JsonUtils.objectLookupAsJsonObject(lazy, "e");
+        assertEquals("bar", JsonUtils.objectLookupAsString(e, "foo"));
+        assertEquals(-123, JsonUtils.objectLookupAsInt(e, "gazonk"));
+        final JsonArray y = JsonUtils.objectLookupAsJsonArray(JsonUtils.objectLookupAsJsonObject(e, "x"), "y");
+        assertEquals(2L, JsonUtils.asLong(y.get(1)));
+        assertEquals(7, JsonUtils.objectLookupAsJsonArray(lazy, "a").size());
+        assertNull(JsonUtils.objectLookupAsJsonObject(lazy, "b"));
+        final Map<String, JsonValue> eMap = JsonUtils.objectLookupAsJsonObjectMap(lazy, "e");
+        assertTrue(eMap instanceof LazyJsonObject);
+        assertTrue(JsonUtils.objectLookupAsJsonArrayList(eMap.get("x"), "y") instanceof LazyJsonArray);
+    }
+
+    @Test
+    public void shouldHandleArrayAtTopLevel() {
+        final String json = " [ [ 1 ], { \"a\": [ 2 ] }, [ 3 ] ] ";
+        assertEquals(new JsonParserImpl().parse(json), lazyParser().parse(json));
+    }
+
+    @Test
+    public void shouldInternKeysAndValues() {
+        final JsonParser parser = lazyParser();
+        final JsonStringInterner interner = new JsonStringInterner(64, 16);
+        parser.setKeyInterner(interner);
+        parser.setValueInterner(interner);
+        final JsonContainer first = parser.parse("[{\"key\":\"value\"}]");
+        final JsonContainer second = parser.parse("[{\"key\":\"value\"}]");
+        final JsonValue firstValue = JsonUtils.asJsonObjectMap(JsonUtils.asJsonArrayList(first).get(0)).get("key");
+        final JsonValue secondValue = JsonUtils.asJsonObjectMap(JsonUtils.asJsonArrayList(second).get(0)).get("key");
+        assertSame(((JsonString) firstValue).getValue(), ((JsonString) secondValue).getValue());
+    }
+
+    @Test(expected = JsonException.class)
+    public void shouldFailOnMismatchedBrackets() {
+        lazyParser().parse("{ \"a\": [ 1, 2 } ]");
+    }
+
+    @Test(expected = JsonException.class)
+    public void shouldFailOnUnterminatedDocument() {
+        lazyParser().parse("{ \"a\": [ 1, 2 ]");
+    }
+
+    @Test(expected = JsonException.class)
+    public void shouldFailOnTrailingGarbage() {
+        lazyParser().parse("{} x");
+    }
+
+    @Test(expected = JsonException.class)
+    public void shouldFailOnScalarAtTopLevel() {
+        lazyParser().parse("\"foo\"");
+    }
+
+    @Test(expected = JsonException.class)
+    public void shouldFailOnSyntaxErrorWhenAccessed() {
+        final JsonContainer object = lazyParser().parse("{ \"a\": { \"b\" 1 } }");
+        JsonUtils.asJsonObjectMap(JsonUtils.asJsonObjectMap(object).get("a")).get("b");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldBeImmutable() {
+        ((LazyJsonObject) lazyParser().parse(JSON)).put("x", JsonNull.NULL);
+    }
+
+}
@@ -0,0 +1,81 @@
+package no.shhsoft.json;
+
+import no.shhsoft.json.impl.parser.JsonParserImpl;
+import no.shhsoft.json.impl.parser.Utf8JsonEventReader;
+import no.shhsoft.json.model.JsonContainer;
+import no.shhsoft.json.model.JsonDouble;
+import no.shhsoft.json.model.JsonLong;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class Utf8JsonEventReaderTest {
+
+    private static final String JSON = "{ \"a\": [ \"a\", 1, -3.25, true, false, null ],"
+                                       + " \"b\u00e6\": null, \"c\": -9223372036854775808, \"d\": \"f\u00f8o\\n\\\"\\u00e5\","
+                                       + " \"e\": { \"emoji \ud83d\ude00\" : \"bar\\\\\", \"gazonk\": -123 }, \"f\": [] }";
+    private static final byte[] UTF8 = JSON.getBytes(StandardCharsets.UTF_8);
+
+    private static JsonContainer expected() {
+        return new JsonParserImpl().parse(new StringReader(JSON));
+    }
+
+    @Test
+    public void shouldParseByteArraySameAsCharacters() {
+        assertEquals(expected(), new JsonParserImpl().parse(UTF8));
+    }
+
+    @Test
+    public void shouldParseStreamRegardlessOfBufferSize() {
+        final JsonContainer expected = expected();
+        for (int bufferSize = 1; bufferSize < 20; bufferSize++) {
+            final JsonEventReader reader = new Utf8JsonEventReader(new ByteArrayInputStream(UTF8), bufferSize);
+            reader.next();
+            assertEquals(expected, reader.readValue());
+        }
+    }
+
+    @Test
+    public void shouldParseHeapAndDirectByteBuffers() {
+        final JsonContainer expected = expected();
+        assertEquals(expected, new JsonParserImpl().parse(ByteBuffer.wrap(UTF8)));
+        final ByteBuffer direct = ByteBuffer.allocateDirect(UTF8.length);
+        direct.put(UTF8);
+        direct.flip();
+        assertEquals(expected, new JsonParserImpl().parse(direct));
+    }
+
+    @Test
+    public void shouldKeepFieldNameWhenBufferIsRefilled() {
+        final byte[] bytes = "{\"longFieldName\"   :   \"value\"}".getBytes(StandardCharsets.UTF_8);
+        final JsonEventReader reader = new Utf8JsonEventReader(new ByteArrayInputStream(bytes), 4);
+        reader.next();
+        assertEquals(JsonEvent.FIELD_NAME, reader.next());
+        assertEquals("longFieldName", reader.getString());
+    }
+
+    @Test
+    public void shouldParseNumbers() {
+        final JsonEventReader reader = new Utf8JsonEventReader("[0,-0,9223372036854775807,9223372036854775808,-1.5e3]".getBytes(StandardCharsets.UTF_8));
+        reader.next();
+        reader.next();
+        assertEquals(JsonLong.ZERO, reader.getNumber());
+        reader.next();
+        assertEquals(JsonLong.ZERO, reader.getNumber());
+        reader.next();
+        assertEquals(JsonLong.get(Long.MAX_VALUE), reader.getNumber());
+        reader.next();
+        assertEquals(JsonDouble.get(9223372036854775808.0), reader.getNumber());
+        reader.next();
+        assertEquals(JsonDouble.get(-1500.0), reader.getNumber());
+    }
+
+}
@@ -0,0 +1,60 @@
+package no.shhsoft.json.manualtest;
+
+import no.shhsoft.json.JsonParser;
+import no.shhsoft.json.JsonStringInterner;
+import no.shhsoft.json.impl.parser.JsonParserImpl;
+import no.shhsoft.json.model.JsonContainer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Shows the heap retained by parsed records with identical schemas, with and without
+ * key and value interning, and with compact trees.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class JsonInternMemoryTest {
+
+    private static final int NUM_RECORDS = 200000;
+
+    private JsonInternMemoryTest() {
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int q = 0; q < 3; q++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void measure(final String what, final byte[][] records, final JsonParser parser) {
+        final JsonContainer[] parsed = new JsonContainer[records.length];
+        final long before = usedHeap();
+        for (int q = 0; q < records.length; q++) {
+            parsed[q] = parser.parse(records[q]);
+        }
+        final long after = usedHeap();
+        System.out.println(what + ": " + (after - before) / 1024L + " KiB retained for " + parsed.length + " records");
+    }
+
+    public static void main(final String[] args) {
+        final byte[][] records = new byte[NUM_RECORDS][];
+        for (int q = 0; q < NUM_RECORDS; q++) {
+            records[q] = ("{\"id\":" + q + ",\"timestamp\":\"2024-01-01T00:00:00Z\",\"status\":\"" + (q % 3 == 0 ? "OK" : "FAILED")
+                          + "\",\"sensorName\":\"sensor-" + (q % 10) + "\",\"value\":" + (q / 10.0) + "}").getBytes(StandardCharsets.UTF_8);
+        }
+        measure("No interning", records, new JsonParserImpl());
+        final JsonStringInterner keyInterner = new JsonStringInterner(1024, 64);
+        final JsonStringInterner valueInterner = new JsonStringInterner(1024, 16);
+        final JsonParser parser = new JsonParserImpl();
+        parser.setKeyInterner(keyInterner);
+        parser.setValueInterner(valueInterner);
+        measure("Interning", records, parser);
+        parser.setCompact(true);
+        measure("Interning, compact trees", records, parser);
+        System.out.println("Keys: " + keyInterner);
+        System.out.println("Values: " + valueInterner);
+    }
+
+}
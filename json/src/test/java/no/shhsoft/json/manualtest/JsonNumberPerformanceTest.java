@@ -0,0 +1,117 @@
+package no.shhsoft.json.manualtest;
+
+import no.shhsoft.json.JsonGenerator;
+import no.shhsoft.json.impl.JsonNumberCodec;
+import no.shhsoft.json.impl.generator.JsonGeneratorImpl;
+import no.shhsoft.json.impl.parser.JsonParserImpl;
+import no.shhsoft.json.model.JsonContainer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Compares <code>JsonNumberCodec</code> with the <code>String</code> based JDK methods on
+ * the numbers of a telemetry-like document, and times parsing and generating the document.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class JsonNumberPerformanceTest {
+
+    private static final int NUM_RECORDS = 10000;
+    private static final int NUM_ROUNDS = 50;
+
+    private JsonNumberPerformanceTest() {
+    }
+
+    private static String[] createNumbers(final Random random) {
+        final String[] numbers = new String[NUM_RECORDS * 4];
+        for (int q = 0; q < NUM_RECORDS; q++) {
+            numbers[4 * q] = Long.toString(1500000000000L + q * 1000L + random.nextInt(1000));
+            numbers[4 * q + 1] = Double.toString(random.nextInt(100000) / 100.0);
+            numbers[4 * q + 2] = Double.toString(-40.0 + random.nextInt(1200) / 10.0);
+            numbers[4 * q + 3] = Double.toString(random.nextDouble());
+        }
+        return numbers;
+    }
+
+    private static byte[] createDocument(final String[] numbers) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (int q = 0; q < NUM_RECORDS; q++) {
+            if (q > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"ts\":").append(numbers[4 * q]).append(",\"load\":").append(numbers[4 * q + 1])
+              .append(",\"temp\":").append(numbers[4 * q + 2]).append(",\"ratio\":").append(numbers[4 * q + 3]).append('}');
+        }
+        sb.append(']');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void report(final String what, final long startNanos) {
+        System.out.println(what + ": " + (System.nanoTime() - startNanos) / 1000000L + " ms");
+    }
+
+    public static void main(final String[] args) {
+        final String[] numbers = createNumbers(new Random(42L));
+        final byte[][] numberBytes = new byte[numbers.length][];
+        final double[] doubles = new double[numbers.length];
+        for (int q = 0; q < numbers.length; q++) {
+            numberBytes[q] = numbers[q].getBytes(StandardCharsets.US_ASCII);
+            doubles[q] = Double.parseDouble(numbers[q]);
+        }
+        final byte[] document = createDocument(numbers);
+        final JsonNumberCodec codec = new JsonNumberCodec();
+        final byte[] buff = new byte[JsonNumberCodec.MAX_DOUBLE_LENGTH];
+        final JsonGenerator generator = new JsonGeneratorImpl();
+        double sum = 0.0;
+        for (int warmup = 2; warmup >= 0; warmup--) {
+            long t = System.nanoTime();
+            for (int round = 0; round < NUM_ROUNDS; round++) {
+                for (final String number : numbers) {
+                    sum += Double.parseDouble(number);
+                }
+            }
+            report("Double.parseDouble", t);
+            t = System.nanoTime();
+            for (int round = 0; round < NUM_ROUNDS; round++) {
+                for (final byte[] number : numberBytes) {
+                    codec.parse(number, 0, number.length);
+                    sum += codec.getDouble();
+                }
+            }
+            report("JsonNumberCodec.parse", t);
+            t = System.nanoTime();
+            for (int round = 0; round < NUM_ROUNDS; round++) {
+                for (final double d : doubles) {
+                    sum += Double.toString(d).length();
+                }
+            }
+            report("Double.toString", t);
+            t = System.nanoTime();
+            for (int round = 0; round < NUM_ROUNDS; round++) {
+                for (final double d : doubles) {
+                    sum += JsonNumberCodec.formatDouble(d, buff, 0);
+                }
+            }
+            report("JsonNumberCodec.formatDouble", t);
+            t = System.nanoTime();
+            JsonContainer container = null;
+            for (int round = 0; round < NUM_ROUNDS; round++) {
+                container = new JsonParserImpl().parse(document);
+            }
+            report("Parse document", t);
+            t = System.nanoTime();
+            for (int round = 0; round < NUM_ROUNDS; round++) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream(document.length);
+                generator.generate(container, out);
+                sum += out.size();
+            }
+            report("Generate document", t);
+            System.out.println();
+        }
+        System.out.println("(Checksum " + sum + ")");
+    }
+
+}
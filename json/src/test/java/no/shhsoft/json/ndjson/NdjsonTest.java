@@ -0,0 +1,159 @@
+package no.shhsoft.json.ndjson;
+
+import no.shhsoft.json.JsonException;
+import no.shhsoft.json.model.JsonContainer;
+import no.shhsoft.json.model.JsonLong;
+import no.shhsoft.json.model.JsonObject;
+import no.shhsoft.json.model.JsonString;
+import no.shhsoft.json.utils.JsonUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class NdjsonTest {
+
+    private static final int NUM_RECORDS = 2000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<JsonContainer> records() {
+        final List<JsonContainer> records = new ArrayList<>();
+        for (int q = 0; q < NUM_RECORDS; q++) {
+            final JsonObject record = new JsonObject();
+            record.put("id", JsonLong.get(q));
+            record.put("text", new JsonString(q % 7 == 0 ? "line\nbreak \u00e6\u00f8\u00e5" : "record " + q));
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static byte[] write(final List<JsonContainer> records) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final NdjsonWriter writer = new NdjsonWriter(out, 100)) {
+            for (final JsonContainer record : records) {
+                writer.write(record);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static List<JsonContainer> readSequentially(final InputStream in) {
+        final List<JsonContainer> records = new ArrayList<>();
+        try (final NdjsonReader reader = new NdjsonReader(in)) {
+            JsonContainer record;
+            while ((record = reader.read()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private File writeFile(final byte[] bytes) throws IOException {
+        final File file = folder.newFile();
+        try (final FileOutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+        return file;
+    }
+
+    @Test
+    public void shouldWriteOneRecordPerLine() {
+        final byte[] bytes = write(records());
+        int numLines = 0;
+        for (final byte b : bytes) {
+            if (b == '\n') {
+                ++numLines;
+            }
+        }
+        assertEquals(NUM_RECORDS, numLines);
+    }
+
+    @Test
+    public void shouldReadWhatWasWritten() {
+        final List<JsonContainer> records = records();
+        assertEquals(records, readSequentially(new ByteArrayInputStream(write(records))));
+    }
+
+    @Test
+    public void shouldSkipBlankLinesAndAcceptMissingFinalNewline() {
+        final String ndjson = "{\"a\":1}\r\n\n   \n[2]\r\n{\"b\":3}";
+        final List<JsonContainer> records = readSequentially(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(3, records.size());
+        assertEquals(3L, JsonUtils.objectLookupAsLong(records.get(2), "b"));
+    }
+
+    @Test
+    public void shouldReportLineNumberOfBadRecord() {
+        try {
+            readSequentially(new ByteArrayInputStream("{}\n\n{\"a\":}\n".getBytes(StandardCharsets.UTF_8)));
+            fail("Expected exception");
+        } catch (final JsonException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("line 3"));
+        }
+    }
+
+    @Test
+    public void shouldReadInParallelPreservingOrder() throws IOException {
+        final List<JsonContainer> records = records();
+        final byte[] bytes = write(records);
+        final File file = writeFile(bytes);
+        for (final boolean memoryMapped : new boolean[] { false, true }) {
+            final ParallelNdjsonReader reader = new ParallelNdjsonReader();
+            reader.setNumThreads(4);
+            reader.setChunkSize(1000);
+            reader.setMemoryMapped(memoryMapped);
+            final List<JsonContainer> read = new ArrayList<>();
+            reader.read(file, read::add);
+            assertEquals(records, read);
+        }
+        final ParallelNdjsonReader reader = new ParallelNdjsonReader();
+        reader.setChunkSize(10);
+        final List<JsonContainer> read = new ArrayList<>();
+        reader.read(new ByteArrayInputStream(bytes), read::add);
+        assertEquals(records, read);
+    }
+
+    @Test
+    public void shouldReadInParallelWithoutOrder() throws IOException {
+        final File file = writeFile(write(records()));
+        final ParallelNdjsonReader reader = new ParallelNdjsonReader();
+        reader.setOrdered(false);
+        reader.setMemoryMapped(true);
+        reader.setChunkSize(500);
+        final List<JsonContainer> read = Collections.synchronizedList(new ArrayList<>());
+        reader.read(file, read::add);
+        final List<Long> ids = new ArrayList<>();
+        for (final JsonContainer record : read) {
+            ids.add(JsonUtils.objectLookupAsLong(record, "id"));
+        }
+        Collections.sort(ids);
+        for (int q = 0; q < NUM_RECORDS; q++) {
+            assertEquals(Long.valueOf(q), ids.get(q));
+        }
+    }
+
+    @Test(expected = JsonException.class)
+    public void shouldPassOnParseErrorsFromParallelReading() {
+        final ParallelNdjsonReader reader = new ParallelNdjsonReader();
+        reader.setChunkSize(4);
+        reader.read(new ByteArrayInputStream("{}\n{}\n[}\n{}\n".getBytes(StandardCharsets.UTF_8)), record -> { });
+    }
+
+}
@@ -0,0 +1,157 @@
+package no.shhsoft.json.utils;
+
+import no.shhsoft.json.JsonWriter;
+import no.shhsoft.json.impl.generator.JsonGeneratorImpl;
+import no.shhsoft.json.impl.generator.JsonWriterImpl;
+import no.shhsoft.json.impl.parser.JsonParserImpl;
+import no.shhsoft.json.model.*;
+import org.junit.Test;
+
+import java.beans.Transient;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class JsonSerializerTest {
+
+    public enum Color {
+        RED, GREEN
+    }
+
+    public static final class Item {
+
+        private final String name;
+        private final int count;
+
+        public Item(final String name, final int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+    }
+
+    public static final class Bean {
+
+        public long getId() {
+            return 42L;
+        }
+
+        public double getRatio() {
+            return 0.5;
+        }
+
+        public float getFloatValue() {
+            return 1.25f;
+        }
+
+        public boolean isActive() {
+            return true;
+        }
+
+        public Boolean getMaybe() {
+            return null;
+        }
+
+        public Color getColor() {
+            return Color.GREEN;
+        }
+
+        public Date getCreated() {
+            return new Date(0L);
+        }
+
+        public int[] getNumbers() {
+            return new int[] { 1, 2, 3 };
+        }
+
+        public List<Item> getItems() {
+            return Arrays.asList(new Item("a", 1), new Item("b", 2));
+        }
+
+        public Map<String, Object> getAttributes() {
+            final Map<String, Object> attributes = new LinkedHashMap<>();
+            attributes.put("x", 1);
+            attributes.put("y", Collections.singletonList("z"));
+            return attributes;
+        }
+
+        public Item[] getItemArray() {
+            return new Item[] { new Item("c", 3) };
+        }
+
+        @Transient
+        public String getSecret() {
+            return "secret";
+        }
+
+    }
+
+    private static final class PrivateBean {
+
+        public String getValue() {
+            return "private";
+        }
+
+    }
+
+    private static final String EXPECTED = "{ \"id\": 42, \"ratio\": 0.5, \"floatValue\": 1.25, \"active\": true, \"maybe\": null,"
+                                           + " \"color\": \"GREEN\", \"created\": \"" + JsonUtils.toTimestamp(new Date(0L)) + "\","
+                                           + " \"numbers\": [ 1, 2, 3 ],"
+                                           + " \"items\": [ { \"name\": \"a\", \"count\": 1 }, { \"name\": \"b\", \"count\": 2 } ],"
+                                           + " \"attributes\": { \"x\": 1, \"y\": [ \"z\" ] },"
+                                           + " \"itemArray\": [ { \"name\": \"c\", \"count\": 3 } ] }";
+
+    private static String stream(final Object value) {
+        final StringWriter stringWriter = new StringWriter();
+        final JsonWriter writer = new JsonWriterImpl(stringWriter);
+        JsonSerializer.write(value, writer);
+        writer.flush();
+        return stringWriter.toString();
+    }
+
+    @Test
+    public void shouldSerializeBeanWithNestedValues() {
+        final JsonContainer json = JsonSerializer.toJsonContainer(new Bean());
+        assertEquals(new JsonParserImpl().parse(EXPECTED), json);
+        assertNull(JsonUtils.asJsonObjectMap(json).get("secret"));
+    }
+
+    @Test
+    public void shouldStreamSameAsTree() {
+        final Bean bean = new Bean();
+        assertEquals(new JsonGeneratorImpl().generate(JsonSerializer.toJsonContainer(bean)), stream(bean));
+        assertEquals(new JsonParserImpl().parse(EXPECTED), new JsonParserImpl().parse(stream(bean)));
+    }
+
+    @Test
+    public void shouldSerializeCollectionsAndPrimitiveArrays() {
+        assertEquals(new JsonParserImpl().parse("[ 1, 2 ]"), JsonSerializer.toJsonContainer(Arrays.asList(1, 2L)));
+        assertEquals(new JsonParserImpl().parse("[ true, false ]"), JsonSerializer.toJsonContainer(new boolean[] { true, false }));
+        assertEquals(new JsonParserImpl().parse("[ 1.5 ]"), JsonSerializer.toJsonContainer(new double[] { 1.5 }));
+        assertEquals("[1,2]", stream(new byte[] { 1, 2 }));
+        assertEquals("{\"1\":\"a\"}", stream(Collections.singletonMap(1, 'a')));
+    }
+
+    @Test
+    public void shouldSerializeNonPublicClasses() {
+        assertEquals(new JsonString("private"), JsonUtils.asJsonObjectMap(JsonSerializer.toJsonContainer(new PrivateBean())).get("value"));
+    }
+
+}
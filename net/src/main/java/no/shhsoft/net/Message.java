@@ -1,5 +1,6 @@
 package no.shhsoft.net;
 
+import no.shhsoft.utils.Leb128Utils;
 import no.shhsoft.utils.StringUtils;
 import no.shhsoft.utils.UncheckedIoException;
 
@@ -7,6 +8,10 @@ import java.io.*;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -21,6 +26,11 @@ import java.util.List;
  * Please note that an instance of this class should be used <i>either</i> for reading a message,
  * <i>or</i> for writing a message. If you mix the use of put- and get-methods, the result is
  * undefined (unless you use the <code>clear</code> method).
+ * </p>
+ * <p>
+ * The buffer is kept when the message is cleared or refilled, so a <code>Message</code>
+ * may be reused for many messages.  <code>MessagePool</code> keeps messages for reuse.
+ * </p>
  *
  * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
  */
@@ -45,9 +55,15 @@ implements Cloneable {
      */
     private int port;
 
-    /** Number of bytes to add for each resizing of the buffer. */
+    /** Initial size of the buffer. */
     private static final int BUFFER_CHUNK_SIZE = 64;
 
+    /** Largest number of bytes of a LEB128 encoded long. */
+    private static final int MAX_VAR_LONG_SIZE = 10;
+
+    /** Largest possible UDP payload. */
+    private static final int MAX_DATAGRAM_SIZE = 65507;
+
     /** The message contents buffer. */
     private byte[] buff;
 
@@ -63,9 +79,9 @@ implements Cloneable {
      * is not updated.
      * </p>
      * <p>
-     * Bytes are allocated in chunks to avoid having to resize the array every time. This method
-     * checks if there are enough preallocated entries to match the number of new entries. If there
-     * is, this method does nothing. If there is not, this method reallocates the buffer.
+     * The buffer is at least doubled on each resize, so that building a message of
+     * <code>n</code> bytes copies no more than about <code>2n</code> bytes in total. If there
+     * is room already, this method does nothing.
      * </p>
      *
      * @param numNew
@@ -75,12 +91,19 @@ implements Cloneable {
         if (buffLen + numNew <= buff.length) {
             return;
         }
-        final int newLen = ((buffLen + numNew - 1) / BUFFER_CHUNK_SIZE + 1) * BUFFER_CHUNK_SIZE;
-        final byte[] tmp = new byte[newLen];
-        if (buff.length > 0) {
-            System.arraycopy(buff, 0, tmp, 0, buff.length);
+        final int needed = buffLen + numNew;
+        if (needed < 0) {
+            throw new RuntimeException("Message too large");
+        }
+        final int doubled = buff.length > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : buff.length * 2;
+        buff = Arrays.copyOf(buff, Math.max(Math.max(needed, doubled), BUFFER_CHUNK_SIZE));
+    }
+
+    /* Makes room for n bytes, discarding the current contents. */
+    private void ensureCapacity(final int n) {
+        if (buff.length < n) {
+            buff = new byte[Math.max(n, BUFFER_CHUNK_SIZE)];
         }
-        buff = tmp;
     }
 
     /**
@@ -123,9 +146,27 @@ implements Cloneable {
         return numBytesReadFromDatagrams;
     }
 
+    /**
+     * Creates a message that uses the given array as its buffer, without copying it. The
+     * caller must not touch the array afterwards.
+     */
+    public static Message wrap(final byte[] b, final int n) {
+        final Message m = new Message((byte[]) null);
+        m.buff = b;
+        m.buffLen = n;
+        m.idx = NUM_RESERVED_BYTES;
+        return m;
+    }
+
+    /* For wrap, to avoid allocating a buffer that is immediately discarded. */
+    private Message(final byte[] b) {
+        buff = b;
+        port = -1;
+    }
+
     @Override
     public Object clone() {
-        final Message m = new Message();
+        final Message m = new Message((byte[]) null);
         m.addr = addr;
         m.port = port;
         m.buff = getBuffer();
@@ -146,9 +187,14 @@ implements Cloneable {
      * @return a copy of the byte buffer in this <code>Message</code>.
      */
     public byte[] getBuffer() {
-        final byte[] ret = new byte[buffLen];
-        System.arraycopy(buff, 0, ret, 0, buffLen);
-        return ret;
+        return Arrays.copyOf(buff, buffLen);
+    }
+
+    /**
+     * @return the number of bytes the buffer can hold without being resized.
+     */
+    public int getCapacity() {
+        return buff.length;
     }
 
     /**
@@ -162,9 +208,7 @@ implements Cloneable {
      * </p>
      */
     public void setBuffer(final byte[] b, final int n) {
-        buff = new byte[BUFFER_CHUNK_SIZE];
-        buffLen = 0;
-        ensureAvailable(n);
+        ensureCapacity(n);
         System.arraycopy(b, 0, buff, 0, n);
         buffLen = n;
         idx = NUM_RESERVED_BYTES;
@@ -516,6 +560,207 @@ implements Cloneable {
         return Arrays.asList(array);
     }
 
+    /**
+     * Adds an unsigned LEB128 encoded integer to the byte buffer: 1 byte for values below
+     * 128, up to 5 bytes.  Negative values always take 5 bytes; use
+     * <code>putZigZagInt</code> for those.
+     */
+    public void putVarInt(final int i) {
+        putVarLong(i & 0xffffffffL);
+    }
+
+    public int getVarInt() {
+        return (int) getVarLong();
+    }
+
+    /**
+     * Adds an unsigned LEB128 encoded long to the byte buffer, using 1 to 10 bytes.
+     */
+    public void putVarLong(final long l) {
+        ensureAvailable(MAX_VAR_LONG_SIZE);
+        buffLen = Leb128Utils.encodeUnsigned(l, buff, buffLen);
+    }
+
+    public long getVarLong() {
+        final long ret = Leb128Utils.decodeUnsigned(buff, idx);
+        idx = Leb128Utils.skip(buff, idx);
+        return ret;
+    }
+
+    /**
+     * Adds a zig-zag and LEB128 encoded integer, for values that may be small negative
+     * numbers.
+     */
+    public void putZigZagInt(final int i) {
+        putVarLong(Leb128Utils.zigZagEncode(i));
+    }
+
+    public int getZigZagInt() {
+        return (int) Leb128Utils.zigZagDecode(getVarLong());
+    }
+
+    public void putZigZagLong(final long l) {
+        putVarLong(Leb128Utils.zigZagEncode(l));
+    }
+
+    public long getZigZagLong() {
+        return Leb128Utils.zigZagDecode(getVarLong());
+    }
+
+    /* Length prefix of strings and arrays: 0 for null, otherwise length + 1. */
+    private void putLengthPrefix(final int length) {
+        putVarLong(length + 1L);
+    }
+
+    /* Returns -1 for null.  Rejects lengths that would read past the end of the message,
+     * before anything is allocated for them. */
+    private int getLengthPrefix(final int elementSize) {
+        final long prefix = getVarLong();
+        if (prefix == 0L) {
+            return -1;
+        }
+        final long n = prefix - 1L;
+        final int remaining = buffLen - idx;
+        if (n < 0L || n > remaining / elementSize) {
+            throw new RuntimeException("Length " + Long.toUnsignedString(n) + " of " + elementSize
+                                       + " byte elements exceeds the " + remaining + " bytes left in message");
+        }
+        return (int) n;
+    }
+
+    /**
+     * Adds an UTF-8 encoded string with a varint length prefix, so unlike
+     * <code>putString</code> there is no 32 KB limit, and short strings have a 1 byte
+     * prefix.  Pure ASCII strings are copied straight into the buffer.
+     */
+    public void putCompactString(final String s) {
+        if (s == null) {
+            putLengthPrefix(-1);
+            return;
+        }
+        final int n = s.length();
+        final int start = buffLen;
+        putLengthPrefix(n);
+        ensureAvailable(n);
+        for (int q = 0; q < n; q++) {
+            final char c = s.charAt(q);
+            if (c >= 0x80) {
+                buffLen = start;
+                final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                putLengthPrefix(b.length);
+                putBytes(b);
+                return;
+            }
+            buff[buffLen + q] = (byte) c;
+        }
+        buffLen += n;
+    }
+
+    public String getCompactString() {
+        final int n = getLengthPrefix(1);
+        if (n < 0) {
+            return null;
+        }
+        final String ret = new String(buff, idx, n, StandardCharsets.UTF_8);
+        idx += n;
+        return ret;
+    }
+
+    /**
+     * Adds an array of bytes with a varint length prefix.  Unlike <code>putBytes</code>,
+     * the length and <code>null</code> are part of the message.
+     */
+    public void putByteArray(final byte[] array) {
+        if (array == null) {
+            putLengthPrefix(-1);
+            return;
+        }
+        putLengthPrefix(array.length);
+        putBytes(array);
+    }
+
+    public byte[] getByteArray() {
+        final int n = getLengthPrefix(1);
+        if (n < 0) {
+            return null;
+        }
+        return getBytes(n);
+    }
+
+    /**
+     * Adds an array of 32 bit integers, copied in bulk, with a varint length prefix.
+     */
+    public void putIntArray(final int[] array) {
+        if (array == null) {
+            putLengthPrefix(-1);
+            return;
+        }
+        putLengthPrefix(array.length);
+        ensureAvailable(4 * array.length);
+        ByteBuffer.wrap(buff, buffLen, 4 * array.length).asIntBuffer().put(array);
+        buffLen += 4 * array.length;
+    }
+
+    public int[] getIntArray() {
+        final int n = getLengthPrefix(4);
+        if (n < 0) {
+            return null;
+        }
+        final int[] ret = new int[n];
+        ByteBuffer.wrap(buff, idx, 4 * n).asIntBuffer().get(ret);
+        idx += 4 * n;
+        return ret;
+    }
+
+    public void putLongArray(final long[] array) {
+        if (array == null) {
+            putLengthPrefix(-1);
+            return;
+        }
+        putLengthPrefix(array.length);
+        ensureAvailable(8 * array.length);
+        ByteBuffer.wrap(buff, buffLen, 8 * array.length).asLongBuffer().put(array);
+        buffLen += 8 * array.length;
+    }
+
+    public long[] getLongArray() {
+        final int n = getLengthPrefix(8);
+        if (n < 0) {
+            return null;
+        }
+        final long[] ret = new long[n];
+        ByteBuffer.wrap(buff, idx, 8 * n).asLongBuffer().get(ret);
+        idx += 8 * n;
+        return ret;
+    }
+
+    public void putDoubleArray(final double[] array) {
+        if (array == null) {
+            putLengthPrefix(-1);
+            return;
+        }
+        putLengthPrefix(array.length);
+        ensureAvailable(8 * array.length);
+        ByteBuffer.wrap(buff, buffLen, 8 * array.length).asDoubleBuffer().put(array);
+        buffLen += 8 * array.length;
+    }
+
+    public double[] getDoubleArray() {
+        final int n = getLengthPrefix(8);
+        if (n < 0) {
+            return null;
+        }
+        final double[] ret = new double[n];
+        ByteBuffer.wrap(buff, idx, 8 * n).asDoubleBuffer().get(ret);
+        idx += 8 * n;
+        return ret;
+    }
+
+    /**
+     * Adds an object using Java serialization.  Slow and bulky; prefer
+     * <code>putObject(Object, MessageCodec)</code> or <code>putObject(Object, Class)</code>
+     * for new code.
+     */
     public void putObject(final Object object) {
         try {
             if (object == null) {
@@ -552,18 +797,48 @@ implements Cloneable {
         }
     }
 
+    /**
+     * Adds a possibly <code>null</code> object using the given codec.
+     */
+    public <T> void putObject(final T object, final MessageCodec<T> codec) {
+        putBoolean(object != null);
+        if (object != null) {
+            codec.encode(object, this);
+        }
+    }
+
+    public <T> T getObject(final MessageCodec<T> codec) {
+        if (!getBoolean()) {
+            return null;
+        }
+        return codec.decode(this);
+    }
+
+    /**
+     * Adds a possibly <code>null</code> object using the codec that
+     * <code>MessageCodecs</code> has for the given type.
+     */
+    public <T> void putObject(final T object, final Class<T> type) {
+        putObject(object, MessageCodecs.get(type));
+    }
+
+    public <T> T getObject(final Class<T> type) {
+        return getObject(MessageCodecs.get(type));
+    }
+
     public void readFromStream(final DataInputStream in) {
         readFromStream(in, 1024 * 1024 * 1024);
     }
 
     public void readFromStream(final DataInputStream in, final int maxBytes) {
         try {
-            buffLen = in.readInt();
-            if (buffLen < 0 || buffLen > maxBytes) {
-                throw new UncheckedIoException("Cannot read " + buffLen + " bytes.  It is too much (or too little).  Max is " + maxBytes);
+            final int n = in.readInt();
+            if (n < 0 || n > maxBytes) {
+                throw new UncheckedIoException("Cannot read " + n + " bytes.  It is too much (or too little).  Max is " + maxBytes);
             }
-            buff = new byte[buffLen];
-            in.readFully(buff);
+            ensureCapacity(n);
+            in.readFully(buff, 0, n);
+            buffLen = n;
             idx = NUM_RESERVED_BYTES;
             numBytesReadFromStreams += 2 + buffLen;
         } catch (final IOException e) {
@@ -581,13 +856,67 @@ implements Cloneable {
         }
     }
 
+    /**
+     * Writes the message, framed as by <code>writeToStream</code>, to the given channel
+     * without copying the buffer. Intended for blocking channels: returns when everything
+     * is written.
+     */
+    public void writeTo(final WritableByteChannel channel) {
+        final ByteBuffer header = ByteBuffer.allocate(4).putInt(0, buffLen);
+        final ByteBuffer body = ByteBuffer.wrap(buff, 0, buffLen);
+        try {
+            if (channel instanceof GatheringByteChannel) {
+                final ByteBuffer[] buffers = new ByteBuffer[] { header, body };
+                while (body.hasRemaining()) {
+                    ((GatheringByteChannel) channel).write(buffers);
+                }
+            } else {
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                while (body.hasRemaining()) {
+                    channel.write(body);
+                }
+            }
+            numBytesWrittenToStreams += buffLen;
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        }
+    }
+
+    /**
+     * Puts the message, framed as by <code>writeToStream</code>, into the given buffer, which
+     * may be direct. The buffer must have room for <code>getSize() + 4</code> bytes.
+     */
+    public void writeTo(final ByteBuffer buffer) {
+        buffer.putInt(buffLen);
+        buffer.put(buff, 0, buffLen);
+    }
+
+    /**
+     * Adds the remaining bytes of the given buffer, which may be direct, to this message.
+     */
+    public void putBytes(final ByteBuffer src) {
+        final int n = src.remaining();
+        ensureAvailable(n);
+        src.get(buff, buffLen, n);
+        buffLen += n;
+    }
+
+    /**
+     * Receives directly into the buffer of this message, which is grown to the maximum
+     * datagram size, 65507 bytes, the first time, and keeps that capacity afterwards.  A
+     * <code>MessagePool</code> with the default <code>maxRetainedCapacity</code> retains
+     * such messages, so they may be reused for receiving without growing again.
+     */
     public void readFromDatagram(final DatagramSocket sock) {
-        final byte[] b = new byte[65507];
-        final DatagramPacket dp = new DatagramPacket(b, b.length);
+        ensureCapacity(MAX_DATAGRAM_SIZE);
+        final DatagramPacket dp = new DatagramPacket(buff, MAX_DATAGRAM_SIZE);
 
         try {
             sock.receive(dp);
-            setBuffer(dp.getData(), dp.getLength());
+            buffLen = dp.getLength();
+            idx = NUM_RESERVED_BYTES;
             setAddress(dp.getAddress());
             setPort(dp.getPort());
             numBytesReadFromDatagrams += 2 + buffLen;
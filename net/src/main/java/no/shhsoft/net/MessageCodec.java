@@ -0,0 +1,17 @@
+package no.shhsoft.net;
+
+/**
+ * Writes objects of a given type to, and reads them from, a <code>Message</code> using the
+ * plain put- and get-methods.  Codecs are registered with, or derived by,
+ * <code>MessageCodecs</code>, and never see <code>null</code>: that is handled by
+ * <code>Message.putObject(Object, MessageCodec)</code>.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public interface MessageCodec<T> {
+
+    void encode(T value, Message message);
+
+    T decode(Message message);
+
+}
@@ -0,0 +1,163 @@
+package no.shhsoft.net;
+
+import no.shhsoft.validation.Validate;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of <code>MessageCodec</code>s.  Codecs for the boxed primitives,
+ * <code>String</code> and <code>Date</code> are predefined.  For other classes without a
+ * registered codec, one is derived from the fields of the class the first time it is asked
+ * for, and kept for later use.  See <code>ReflectionMessageCodec</code> for what such
+ * classes must look like.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class MessageCodecs {
+
+    private static final Map<Class<?>, MessageCodec<?>> CODECS = new ConcurrentHashMap<>();
+
+    static {
+        register(Boolean.class, new MessageCodec<Boolean>() {
+            @Override
+            public void encode(final Boolean value, final Message message) {
+                message.putBoolean(value);
+            }
+
+            @Override
+            public Boolean decode(final Message message) {
+                return message.getBoolean();
+            }
+        });
+        register(Byte.class, new MessageCodec<Byte>() {
+            @Override
+            public void encode(final Byte value, final Message message) {
+                message.putByte(value);
+            }
+
+            @Override
+            public Byte decode(final Message message) {
+                return message.getByte();
+            }
+        });
+        register(Short.class, new MessageCodec<Short>() {
+            @Override
+            public void encode(final Short value, final Message message) {
+                message.putZigZagInt(value);
+            }
+
+            @Override
+            public Short decode(final Message message) {
+                return (short) message.getZigZagInt();
+            }
+        });
+        register(Character.class, new MessageCodec<Character>() {
+            @Override
+            public void encode(final Character value, final Message message) {
+                message.putVarInt(value);
+            }
+
+            @Override
+            public Character decode(final Message message) {
+                return (char) message.getVarInt();
+            }
+        });
+        register(Integer.class, new MessageCodec<Integer>() {
+            @Override
+            public void encode(final Integer value, final Message message) {
+                message.putZigZagInt(value);
+            }
+
+            @Override
+            public Integer decode(final Message message) {
+                return message.getZigZagInt();
+            }
+        });
+        register(Long.class, new MessageCodec<Long>() {
+            @Override
+            public void encode(final Long value, final Message message) {
+                message.putZigZagLong(value);
+            }
+
+            @Override
+            public Long decode(final Message message) {
+                return message.getZigZagLong();
+            }
+        });
+        register(Float.class, new MessageCodec<Float>() {
+            @Override
+            public void encode(final Float value, final Message message) {
+                message.putInt(Float.floatToRawIntBits(value));
+            }
+
+            @Override
+            public Float decode(final Message message) {
+                return Float.intBitsToFloat(message.getInt());
+            }
+        });
+        register(Double.class, new MessageCodec<Double>() {
+            @Override
+            public void encode(final Double value, final Message message) {
+                message.putLong(Double.doubleToRawLongBits(value));
+            }
+
+            @Override
+            public Double decode(final Message message) {
+                return Double.longBitsToDouble(message.getLong());
+            }
+        });
+        register(String.class, new MessageCodec<String>() {
+            @Override
+            public void encode(final String value, final Message message) {
+                message.putCompactString(value);
+            }
+
+            @Override
+            public String decode(final Message message) {
+                return message.getCompactString();
+            }
+        });
+        register(Date.class, new MessageCodec<Date>() {
+            @Override
+            public void encode(final Date value, final Message message) {
+                message.putZigZagLong(value.getTime());
+            }
+
+            @Override
+            public Date decode(final Message message) {
+                return new Date(message.getZigZagLong());
+            }
+        });
+    }
+
+    private MessageCodecs() {
+    }
+
+    /**
+     * Registers a codec for the given type, replacing any registered or derived codec.
+     * Codecs derived before the call, for classes having fields of the given type, will
+     * still use the old codec.
+     */
+    public static <T> void register(final Class<T> type, final MessageCodec<T> codec) {
+        Validate.notNull(type);
+        Validate.notNull(codec);
+        CODECS.put(type, codec);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> MessageCodec<T> get(final Class<T> type) {
+        MessageCodec<?> codec = CODECS.get(type);
+        if (codec == null) {
+            /* Fields of other types are resolved lazily, so recursive types are fine. */
+            final MessageCodec<?> derived = new ReflectionMessageCodec<>(type);
+            codec = CODECS.putIfAbsent(type, derived);
+            if (codec == null) {
+                codec = derived;
+            }
+        }
+        return (MessageCodec<T>) codec;
+    }
+
+}
@@ -0,0 +1,53 @@
+package no.shhsoft.net;
+
+import no.shhsoft.utils.AbstractConcurrentPool;
+
+/**
+ * A pool of <code>Message</code>s, to avoid allocating a new message and buffer for every
+ * message sent or received.  Allocated messages are cleared.  Messages whose buffer has
+ * grown beyond <code>maxRetainedCapacity</code> are dropped on release rather than kept,
+ * so a single huge message does not tie up memory for good.  The default of 64 KB keeps
+ * messages used with <code>readFromDatagram</code>, which hold a buffer of the maximum
+ * datagram size.  Each idle one ties up that much memory; set a lower
+ * <code>maxRetainedCapacity</code> to drop them instead.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class MessagePool
+extends AbstractConcurrentPool<Message> {
+
+    private volatile int maxRetainedCapacity = 64 * 1024;
+
+    public MessagePool() {
+        setCheckValidityOnAllocate(false);
+        setCheckValidityOnRelease(true);
+    }
+
+    @Override
+    protected Message create() {
+        return new Message();
+    }
+
+    @Override
+    protected void destroy(final Message message) {
+    }
+
+    @Override
+    protected boolean isValid(final Message message) {
+        return message.getCapacity() <= maxRetainedCapacity;
+    }
+
+    @Override
+    protected void prepareForAllocate(final Message message) {
+        message.clear();
+    }
+
+    public void setMaxRetainedCapacity(final int maxRetainedCapacity) {
+        this.maxRetainedCapacity = maxRetainedCapacity;
+    }
+
+    public int getMaxRetainedCapacity() {
+        return maxRetainedCapacity;
+    }
+
+}
@@ -0,0 +1,315 @@
+package no.shhsoft.net;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A <code>MessageCodec</code> derived from the non-static, non-transient fields of a class,
+ * including inherited ones.  The class needs a constructor without arguments, which need
+ * not be public.  Fields are written in a fixed order, superclass fields first, and within
+ * each class sorted by name, with no names or type information on the wire.  Both ends
+ * must thus have the same version of the class.
+ * <p>
+ * Integral fields are zig-zag encoded varints.  Strings and <code>int</code>,
+ * <code>long</code>, <code>double</code> and <code>byte</code> arrays use the compact
+ * encodings of <code>Message</code>, and enums are written as ordinals.  Fields of other
+ * types use the codec of the declared type from <code>MessageCodecs</code>, and must hold
+ * exactly that type, not a subclass.
+ * </p>
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+final class ReflectionMessageCodec<T>
+implements MessageCodec<T> {
+
+    private static final int KIND_BOOLEAN = 0;
+    private static final int KIND_BYTE = 1;
+    private static final int KIND_SHORT = 2;
+    private static final int KIND_CHAR = 3;
+    private static final int KIND_INT = 4;
+    private static final int KIND_LONG = 5;
+    private static final int KIND_FLOAT = 6;
+    private static final int KIND_DOUBLE = 7;
+    private static final int KIND_STRING = 8;
+    private static final int KIND_INT_ARRAY = 9;
+    private static final int KIND_LONG_ARRAY = 10;
+    private static final int KIND_DOUBLE_ARRAY = 11;
+    private static final int KIND_BYTE_ARRAY = 12;
+    private static final int KIND_ENUM = 13;
+    private static final int KIND_OBJECT = 14;
+    private final Class<T> type;
+    /* Typed ()Object. */
+    private final MethodHandle constructor;
+    private final Property[] properties;
+
+    private static final class Property {
+
+        private final String name;
+        private final int kind;
+        private final Class<?> type;
+        /* Typed (Object)X and (Object,X)void, where X is the field type for primitives, and Object otherwise. */
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final Object[] enumConstants;
+        private volatile MessageCodec<Object> codec;
+
+        Property(final String name, final int kind, final Class<?> type, final MethodHandle getter, final MethodHandle setter) {
+            this.name = name;
+            this.kind = kind;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+            this.enumConstants = kind == KIND_ENUM ? type.getEnumConstants() : null;
+        }
+
+        @SuppressWarnings("unchecked")
+        MessageCodec<Object> getCodec() {
+            MessageCodec<Object> ret = codec;
+            if (ret == null) {
+                ret = (MessageCodec<Object>) MessageCodecs.get(type);
+                codec = ret;
+            }
+            return ret;
+        }
+
+    }
+
+    ReflectionMessageCodec(final Class<T> type) {
+        this.type = type;
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isArray() || type.isPrimitive()) {
+            throw new RuntimeException("Unhandled type: " + type.getName());
+        }
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            final Constructor<T> c = type.getDeclaredConstructor();
+            c.setAccessible(true);
+            constructor = lookup.unreflectConstructor(c).asType(MethodType.methodType(Object.class));
+        } catch (final NoSuchMethodException e) {
+            throw new RuntimeException("Class " + type.getName() + " has no constructor without arguments", e);
+        } catch (final IllegalAccessException | RuntimeException e) {
+            throw new RuntimeException("Unable to access constructor of " + type.getName(), e);
+        }
+        final List<Property> list = new ArrayList<>();
+        for (final Field field : findFields(type)) {
+            list.add(createProperty(lookup, field));
+        }
+        properties = list.toArray(new Property[0]);
+    }
+
+    private static List<Field> findFields(final Class<?> type) {
+        final List<Field> fields = new ArrayList<>();
+        if (type.getSuperclass() != null && type.getSuperclass() != Object.class) {
+            fields.addAll(findFields(type.getSuperclass()));
+        }
+        final Field[] declared = type.getDeclaredFields();
+        Arrays.sort(declared, Comparator.comparing(Field::getName));
+        for (final Field field : declared) {
+            final int modifiers = field.getModifiers();
+            if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    private static int getKind(final Class<?> type) {
+        if (type == boolean.class) {
+            return KIND_BOOLEAN;
+        } else if (type == byte.class) {
+            return KIND_BYTE;
+        } else if (type == short.class) {
+            return KIND_SHORT;
+        } else if (type == char.class) {
+            return KIND_CHAR;
+        } else if (type == int.class) {
+            return KIND_INT;
+        } else if (type == long.class) {
+            return KIND_LONG;
+        } else if (type == float.class) {
+            return KIND_FLOAT;
+        } else if (type == double.class) {
+            return KIND_DOUBLE;
+        } else if (type == String.class) {
+            return KIND_STRING;
+        } else if (type == int[].class) {
+            return KIND_INT_ARRAY;
+        } else if (type == long[].class) {
+            return KIND_LONG_ARRAY;
+        } else if (type == double[].class) {
+            return KIND_DOUBLE_ARRAY;
+        } else if (type == byte[].class) {
+            return KIND_BYTE_ARRAY;
+        } else if (type.isEnum()) {
+            return KIND_ENUM;
+        }
+        return KIND_OBJECT;
+    }
+
+    private static Property createProperty(final MethodHandles.Lookup lookup, final Field field) {
+        final MethodHandle getter;
+        final MethodHandle setter;
+        try {
+            field.setAccessible(true);
+            getter = lookup.unreflectGetter(field);
+            setter = lookup.unreflectSetter(field);
+        } catch (final IllegalAccessException | RuntimeException e) {
+            throw new RuntimeException("Unable to access field " + field, e);
+        }
+        final Class<?> fieldType = field.getType();
+        final Class<?> handleType = fieldType.isPrimitive() ? fieldType : Object.class;
+        return new Property(field.getName(), getKind(fieldType), fieldType,
+                            getter.asType(MethodType.methodType(handleType, Object.class)),
+                            setter.asType(MethodType.methodType(void.class, Object.class, handleType)));
+    }
+
+    private static RuntimeException accessFailed(final Property property, final Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new RuntimeException("Access to field `" + property.name + "' failed", t);
+    }
+
+    private static void encodeObject(final Property property, final Object value, final Message message) {
+        if (value != null && value.getClass() != property.type) {
+            throw new RuntimeException("Field `" + property.name + "' holds a " + value.getClass().getName()
+                                       + ", not a " + property.type.getName());
+        }
+        message.putObject(value, property.getCodec());
+    }
+
+    @Override
+    public void encode(final T value, final Message message) {
+        for (final Property property : properties) {
+            try {
+                switch (property.kind) {
+                    case KIND_BOOLEAN:
+                        message.putBoolean((boolean) property.getter.invokeExact((Object) value));
+                        break;
+                    case KIND_BYTE:
+                        message.putByte((byte) property.getter.invokeExact((Object) value));
+                        break;
+                    case KIND_SHORT:
+                        message.putZigZagInt((short) property.getter.invokeExact((Object) value));
+                        break;
+                    case KIND_CHAR:
+                        message.putVarInt((char) property.getter.invokeExact((Object) value));
+                        break;
+                    case KIND_INT:
+                        message.putZigZagInt((int) property.getter.invokeExact((Object) value));
+                        break;
+                    case KIND_LONG:
+                        message.putZigZagLong((long) property.getter.invokeExact((Object) value));
+                        break;
+                    case KIND_FLOAT:
+                        message.putInt(Float.floatToRawIntBits((float) property.getter.invokeExact((Object) value)));
+                        break;
+                    case KIND_DOUBLE:
+                        message.putLong(Double.doubleToRawLongBits((double) property.getter.invokeExact((Object) value)));
+                        break;
+                    case KIND_STRING:
+                        message.putCompactString((String) (Object) property.getter.invokeExact((Object) value));
+                        break;
+                    case KIND_INT_ARRAY:
+                        message.putIntArray((int[]) (Object) property.getter.invokeExact((Object) value));
+                        break;
+                    case KIND_LONG_ARRAY:
+                        message.putLongArray((long[]) (Object) property.getter.invokeExact((Object) value));
+                        break;
+                    case KIND_DOUBLE_ARRAY:
+                        message.putDoubleArray((double[]) (Object) property.getter.invokeExact((Object) value));
+                        break;
+                    case KIND_BYTE_ARRAY:
+                        message.putByteArray((byte[]) (Object) property.getter.invokeExact((Object) value));
+                        break;
+                    case KIND_ENUM:
+                        final Enum<?> e = (Enum<?>) (Object) property.getter.invokeExact((Object) value);
+                        message.putVarInt(e == null ? 0 : e.ordinal() + 1);
+                        break;
+                    default:
+                        encodeObject(property, (Object) property.getter.invokeExact((Object) value), message);
+                }
+            } catch (final Throwable t) {
+                throw accessFailed(property, t);
+            }
+        }
+    }
+
+    @Override
+    public T decode(final Message message) {
+        final Object value;
+        try {
+            value = (Object) constructor.invokeExact();
+        } catch (final Throwable t) {
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw new RuntimeException("Unable to create a " + type.getName(), t);
+        }
+        for (final Property property : properties) {
+            try {
+                switch (property.kind) {
+                    case KIND_BOOLEAN:
+                        property.setter.invokeExact(value, message.getBoolean());
+                        break;
+                    case KIND_BYTE:
+                        property.setter.invokeExact(value, message.getByte());
+                        break;
+                    case KIND_SHORT:
+                        property.setter.invokeExact(value, (short) message.getZigZagInt());
+                        break;
+                    case KIND_CHAR:
+                        property.setter.invokeExact(value, (char) message.getVarInt());
+                        break;
+                    case KIND_INT:
+                        property.setter.invokeExact(value, message.getZigZagInt());
+                        break;
+                    case KIND_LONG:
+                        property.setter.invokeExact(value, message.getZigZagLong());
+                        break;
+                    case KIND_FLOAT:
+                        property.setter.invokeExact(value, Float.intBitsToFloat(message.getInt()));
+                        break;
+                    case KIND_DOUBLE:
+                        property.setter.invokeExact(value, Double.longBitsToDouble(message.getLong()));
+                        break;
+                    case KIND_STRING:
+                        property.setter.invokeExact(value, (Object) message.getCompactString());
+                        break;
+                    case KIND_INT_ARRAY:
+                        property.setter.invokeExact(value, (Object) message.getIntArray());
+                        break;
+                    case KIND_LONG_ARRAY:
+                        property.setter.invokeExact(value, (Object) message.getLongArray());
+                        break;
+                    case KIND_DOUBLE_ARRAY:
+                        property.setter.invokeExact(value, (Object) message.getDoubleArray());
+                        break;
+                    case KIND_BYTE_ARRAY:
+                        property.setter.invokeExact(value, (Object) message.getByteArray());
+                        break;
+                    case KIND_ENUM:
+                        final int ordinal = message.getVarInt();
+                        property.setter.invokeExact(value, ordinal == 0 ? null : property.enumConstants[ordinal - 1]);
+                        break;
+                    default:
+                        property.setter.invokeExact(value, message.getObject(property.getCodec()));
+                }
+            } catch (final Throwable t) {
+                throw accessFailed(property, t);
+            }
+        }
+        return type.cast(value);
+    }
+
+}
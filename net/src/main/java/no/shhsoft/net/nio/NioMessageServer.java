@@ -0,0 +1,526 @@
+package no.shhsoft.net.nio;
+
+import no.shhsoft.net.Message;
+import no.shhsoft.net.MessageHandler;
+import no.shhsoft.thread.DaemonThread;
+import no.shhsoft.utils.IoUtils;
+import no.shhsoft.utils.UncheckedIoException;
+import no.shhsoft.validation.Validate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Alternative to <code>SimpleMessageServer</code> for many, mostly idle, clients.  Instead
+ * of a thread per client, a few I/O threads multiplex all connections using selectors,
+ * and complete messages are passed to the <code>MessageHandler</code> on a pool of worker
+ * threads.  The wire format is the one of <code>Message.writeToStream</code>, so
+ * <code>SimpleMessageClient</code> may be used with this server.  Requests from a single
+ * connection are handled one at a time, in order, unless <code>respondInOrder</code> is
+ * turned off, in which case they are handled concurrently and answered as they complete.
+ * A response whose id is not set, that is, is <code>-1</code>, is sent with the id of its
+ * request, so that clients like <code>PipelinedMessageClient</code> can match them up.
+ * The id is written to the outgoing bytes only, so handlers may return shared messages.
+ * <p>
+ * A connection is not read from while it has <code>maxBacklog</code> requests that are
+ * not yet handled, or whose responses are not yet written, so a client sending faster
+ * than it is served is slowed down by TCP flow control instead of filling the heap.
+ * Message bodies are buffered as they arrive, so memory use follows the bytes actually
+ * received, not the length announced.
+ * </p>
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class NioMessageServer {
+
+    private static final Logger LOG = Logger.getLogger(NioMessageServer.class.getName());
+    private static final int LENGTH_SIZE = 4;
+    private static final int MIN_MESSAGE_SIZE = 3;
+    private static final int ID_OFFSET = 1;
+    private static final short UNSET_ID = -1;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_BUFFERS_PER_WRITE = 64;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private final InetSocketAddress address;
+    private final MessageHandler messageHandler;
+    private int numIoThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private int numWorkerThreads = Runtime.getRuntime().availableProcessors();
+    private int maxMessageSize = 16 * 1024 * 1024;
+    private int maxBacklog = 1024;
+    private volatile boolean respondInOrder = true;
+    private final AtomicInteger numConnections = new AtomicInteger();
+    private final AtomicInteger nextIoThread = new AtomicInteger();
+    private ServerSocketChannel serverChannel;
+    private IoThread[] ioThreads;
+    private ExecutorService workers;
+
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final IoThread ioThread;
+        private final ByteBuffer header = ByteBuffer.allocate(LENGTH_SIZE);
+        private byte[] body;
+        private int bodyLength;
+        private int bodyPos;
+        /* Requests received, but not yet handled, or with responses not yet written. */
+        private final AtomicInteger backlog = new AtomicInteger();
+        private final Queue<Message> requests = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean processing = new AtomicBoolean();
+        private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean flushRequested = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private SelectionKey key;
+
+        Connection(final SocketChannel channel, final IoThread ioThread) {
+            this.channel = channel;
+            this.ioThread = ioThread;
+        }
+
+        /* Called by the I/O thread with newly read bytes. */
+        void consume(final ByteBuffer buffer) {
+            while (buffer.hasRemaining() && !closed.get()) {
+                if (body == null) {
+                    while (header.hasRemaining() && buffer.hasRemaining()) {
+                        header.put(buffer.get());
+                    }
+                    if (header.hasRemaining()) {
+                        return;
+                    }
+                    final int length = header.getInt(0);
+                    header.clear();
+                    if (length < MIN_MESSAGE_SIZE || length > maxMessageSize) {
+                        LOG.warning("Closing connection sending message of " + length + " bytes.  Max is " + maxMessageSize);
+                        close();
+                        return;
+                    }
+                    bodyLength = length;
+                    body = new byte[Math.min(length, READ_BUFFER_SIZE)];
+                    bodyPos = 0;
+                } else if (bodyPos == body.length) {
+                    body = Arrays.copyOf(body, (int) Math.min(2L * body.length, bodyLength));
+                }
+                final int n = Math.min(buffer.remaining(), body.length - bodyPos);
+                buffer.get(body, bodyPos, n);
+                bodyPos += n;
+                if (bodyPos == bodyLength) {
+                    final Message message = Message.wrap(body, bodyLength);
+                    body = null;
+                    dispatch(message);
+                }
+            }
+            if (backlog.get() >= maxBacklog && !closed.get()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        }
+
+        private void dispatch(final Message message) {
+            backlog.incrementAndGet();
+            if (!respondInOrder) {
+                workers.execute(() -> handle(message));
+                return;
+            }
+            requests.add(message);
+            if (processing.compareAndSet(false, true)) {
+                workers.execute(this::processRequests);
+            }
+        }
+
+        /* Runs on a worker thread.  Only one at a time per connection. */
+        private void processRequests() {
+            for (;;) {
+                Message request;
+                while ((request = requests.poll()) != null) {
+                    if (!handle(request)) {
+                        requests.clear();
+                        break;
+                    }
+                }
+                processing.set(false);
+                if (requests.isEmpty() || !processing.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        /* Returns false if the connection is, or has been, closed. */
+        private boolean handle(final Message request) {
+            if (closed.get()) {
+                return false;
+            }
+            final short id = request.getId();
+            final Message response;
+            try {
+                response = messageHandler.handleMessage(request);
+            } catch (final RuntimeException e) {
+                LOG.log(Level.WARNING, "Message handler failed.  Closing connection.", e);
+                close();
+                return false;
+            }
+            if (response != null) {
+                queueResponse(response, response.getId() == UNSET_ID ? id : response.getId());
+            } else {
+                decrementBacklog();
+            }
+            return true;
+        }
+
+        private void decrementBacklog() {
+            if (backlog.decrementAndGet() == maxBacklog - 1) {
+                /* Let the I/O thread resume reading. */
+                requestFlush();
+            }
+        }
+
+        private void requestFlush() {
+            if (flushRequested.compareAndSet(false, true)) {
+                ioThread.requestFlush(this);
+            }
+        }
+
+        private void queueResponse(final Message response, final short id) {
+            final ByteBuffer buffer = ByteBuffer.allocate(LENGTH_SIZE + response.getSize());
+            response.writeTo(buffer);
+            buffer.putShort(LENGTH_SIZE + ID_OFFSET, id);
+            buffer.flip();
+            responses.add(buffer);
+            requestFlush();
+        }
+
+        /* Called by the I/O thread. */
+        private void setInterestOps(final boolean writing) {
+            key.interestOps((backlog.get() < maxBacklog ? SelectionKey.OP_READ : 0) | (writing ? SelectionKey.OP_WRITE : 0));
+        }
+
+        /* Called by the I/O thread. */
+        void flush()
+        throws IOException {
+            flushRequested.set(false);
+            final ByteBuffer[] buffers = new ByteBuffer[MAX_BUFFERS_PER_WRITE];
+            for (;;) {
+                int numBuffers = 0;
+                for (final ByteBuffer buffer : responses) {
+                    buffers[numBuffers++] = buffer;
+                    if (numBuffers == buffers.length) {
+                        break;
+                    }
+                }
+                if (numBuffers == 0) {
+                    break;
+                }
+                channel.write(buffers, 0, numBuffers);
+                for (int q = 0; q < numBuffers; q++) {
+                    if (buffers[q].hasRemaining()) {
+                        setInterestOps(true);
+                        return;
+                    }
+                    responses.poll();
+                    buffers[q] = null;
+                    backlog.decrementAndGet();
+                }
+            }
+            setInterestOps(false);
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            numConnections.decrementAndGet();
+            IoUtils.closeSilently(channel);
+        }
+
+    }
+
+    private final class IoThread
+    extends DaemonThread {
+
+        private final Selector selector;
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        private final Queue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+        private final Queue<Connection> toFlush = new ConcurrentLinkedQueue<>();
+
+        IoThread(final int index) {
+            try {
+                selector = Selector.open();
+            } catch (final IOException e) {
+                throw new UncheckedIoException("Unable to open selector", e);
+            }
+            setName("nio-message-server-io-" + index);
+        }
+
+        void addChannel(final SocketChannel channel) {
+            newChannels.add(channel);
+            if (shouldStop()) {
+                /* May have missed the final cleanup. */
+                closeNewChannels();
+                return;
+            }
+            selector.wakeup();
+        }
+
+        private void closeNewChannels() {
+            SocketChannel channel;
+            while ((channel = newChannels.poll()) != null) {
+                numConnections.decrementAndGet();
+                IoUtils.closeSilently(channel);
+            }
+        }
+
+        void requestFlush(final Connection connection) {
+            toFlush.add(connection);
+            selector.wakeup();
+        }
+
+        void registerAcceptor(final ServerSocketChannel channel)
+        throws IOException {
+            channel.register(selector, SelectionKey.OP_ACCEPT);
+        }
+
+        private void registerNewChannels() {
+            SocketChannel channel;
+            while ((channel = newChannels.poll()) != null) {
+                final Connection connection = new Connection(channel, this);
+                try {
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                } catch (final IOException e) {
+                    connection.close();
+                }
+            }
+        }
+
+        private void flushRequested() {
+            Connection connection;
+            while ((connection = toFlush.poll()) != null) {
+                if (connection.closed.get()) {
+                    continue;
+                }
+                try {
+                    connection.flush();
+                } catch (final IOException | RuntimeException e) {
+                    connection.close();
+                }
+            }
+        }
+
+        private void accept() {
+            try {
+                final SocketChannel channel = serverChannel.accept();
+                if (channel == null) {
+                    return;
+                }
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
+                numConnections.incrementAndGet();
+                ioThreads[Math.floorMod(nextIoThread.getAndIncrement(), ioThreads.length)].addChannel(channel);
+            } catch (final IOException e) {
+                if (!shouldStop()) {
+                    LOG.warning("Server: accept failed: " + e.getMessage());
+                }
+            }
+        }
+
+        private void read(final Connection connection)
+        throws IOException {
+            readBuffer.clear();
+            final int n = connection.channel.read(readBuffer);
+            if (n < 0) {
+                connection.close();
+                return;
+            }
+            readBuffer.flip();
+            connection.consume(readBuffer);
+        }
+
+        private void handleKey(final SelectionKey key) {
+            if (key.isAcceptable()) {
+                accept();
+                return;
+            }
+            final Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    read(connection);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    connection.flush();
+                }
+            } catch (final IOException | RuntimeException e) {
+                connection.close();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!shouldStop()) {
+                    selector.select();
+                    registerNewChannels();
+                    flushRequested();
+                    final Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                    while (iterator.hasNext()) {
+                        final SelectionKey key = iterator.next();
+                        iterator.remove();
+                        if (key.isValid()) {
+                            handleKey(key);
+                        }
+                    }
+                }
+            } catch (final IOException | ClosedSelectorException e) {
+                if (!shouldStop()) {
+                    LOG.log(Level.WARNING, "I/O thread failed", e);
+                }
+            } finally {
+                closeAll();
+            }
+        }
+
+        private void closeAll() {
+            closeNewChannels();
+            try {
+                for (final SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof Connection) {
+                        ((Connection) key.attachment()).close();
+                    }
+                }
+                selector.close();
+            } catch (final IOException | ClosedSelectorException e) {
+                LOG.fine("Ignoring error closing selector: " + e.getMessage());
+            }
+        }
+
+    }
+
+    public NioMessageServer(final InetSocketAddress address, final MessageHandler messageHandler) {
+        this.address = address;
+        this.messageHandler = messageHandler;
+    }
+
+    public synchronized void start() {
+        if (serverChannel != null) {
+            return;
+        }
+        workers = Executors.newFixedThreadPool(numWorkerThreads, runnable -> {
+            final Thread thread = new Thread(runnable, "nio-message-server-worker-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ioThreads = new IoThread[numIoThreads];
+        for (int q = 0; q < ioThreads.length; q++) {
+            ioThreads[q] = new IoThread(q);
+        }
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, Boolean.TRUE);
+            serverChannel.bind(address);
+            serverChannel.configureBlocking(false);
+            ioThreads[0].registerAcceptor(serverChannel);
+        } catch (final IOException e) {
+            IoUtils.closeSilently(serverChannel);
+            serverChannel = null;
+            workers.shutdown();
+            throw new UncheckedIoException("Unable to initiate listening socket: " + e.getMessage(), e);
+        }
+        for (final IoThread ioThread : ioThreads) {
+            ioThread.start();
+        }
+    }
+
+    public synchronized void stop() {
+        if (serverChannel == null) {
+            return;
+        }
+        IoUtils.closeSilently(serverChannel);
+        serverChannel = null;
+        for (final IoThread ioThread : ioThreads) {
+            ioThread.stop();
+        }
+        ioThreads = null;
+        workers.shutdown();
+        workers = null;
+    }
+
+    /**
+     * @return the address the server listens to, useful when binding to port 0.
+     */
+    public synchronized InetSocketAddress getLocalAddress() {
+        if (serverChannel == null) {
+            return null;
+        }
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (final IOException e) {
+            throw new UncheckedIoException(e);
+        }
+    }
+
+    public int getNumConnections() {
+        return numConnections.get();
+    }
+
+    public void setNumIoThreads(final int numIoThreads) {
+        Validate.isTrue(numIoThreads > 0, "numIoThreads must be positive");
+        this.numIoThreads = numIoThreads;
+    }
+
+    public void setNumWorkerThreads(final int numWorkerThreads) {
+        Validate.isTrue(numWorkerThreads > 0, "numWorkerThreads must be positive");
+        this.numWorkerThreads = numWorkerThreads;
+    }
+
+    /**
+     * @param respondInOrder <code>false</code> to let requests from the same connection be
+     *                       handled concurrently, and answered in the order they complete.
+     */
+    public void setRespondInOrder(final boolean respondInOrder) {
+        this.respondInOrder = respondInOrder;
+    }
+
+    public boolean isRespondInOrder() {
+        return respondInOrder;
+    }
+
+    /**
+     * @param maxMessageSize the largest message accepted.  Connections announcing larger
+     *                       messages are closed.  Defaults to 16 MB.
+     */
+    public void setMaxMessageSize(final int maxMessageSize) {
+        Validate.isTrue(maxMessageSize >= MIN_MESSAGE_SIZE, "maxMessageSize too small");
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    public int getMaxMessageSize() {
+        return maxMessageSize;
+    }
+
+    /**
+     * @param maxBacklog the number of requests per connection that may be waiting to be
+     *                   handled or to have their responses written before the server stops
+     *                   reading from the connection.  Defaults to 1024.
+     */
+    public void setMaxBacklog(final int maxBacklog) {
+        Validate.isTrue(maxBacklog > 0, "maxBacklog must be positive");
+        this.maxBacklog = maxBacklog;
+    }
+
+    public int getMaxBacklog() {
+        return maxBacklog;
+    }
+
+}
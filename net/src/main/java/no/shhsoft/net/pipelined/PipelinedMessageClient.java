@@ -0,0 +1,231 @@
+package no.shhsoft.net.pipelined;
+
+import no.shhsoft.net.Message;
+import no.shhsoft.net.MessageClient;
+import no.shhsoft.thread.DaemonThread;
+import no.shhsoft.utils.IoUtils;
+import no.shhsoft.utils.UncheckedInterruptedException;
+import no.shhsoft.utils.UncheckedIoException;
+import no.shhsoft.validation.Validate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * A <code>MessageClient</code> that keeps many requests in flight on a single connection.
+ * Each request is given a free message id, and responses are matched to requests by id,
+ * so the server may answer in any order.  The server must copy the id of each request to
+ * its response, as <code>NioMessageServer</code> does for responses without an id of
+ * their own.  Any id set by the caller is replaced in the bytes sent, while the caller's
+ * message is left unchanged.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class PipelinedMessageClient
+implements MessageClient {
+
+    private static final Logger LOG = Logger.getLogger(PipelinedMessageClient.class.getName());
+    private static final int MAX_IDS = 65536;
+    private static final int ID_OFFSET = 1;
+    private final Map<Short, CompletableFuture<Message>> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<byte[]> outgoing = new LinkedBlockingQueue<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private int maxInFlight = 1024;
+    private Semaphore inFlight;
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private ReaderThread readerThread;
+    private WriterThread writerThread;
+    private volatile RuntimeException failure = new UncheckedIoException("Not connected");
+
+    private final class ReaderThread
+    extends DaemonThread {
+
+        @Override
+        public void run() {
+            try {
+                while (!shouldStop()) {
+                    final Message response = new Message();
+                    response.readFromStream(in);
+                    final CompletableFuture<Message> future = pending.remove(response.getId());
+                    if (future == null) {
+                        LOG.warning("Ignoring response with unknown id " + response.getId());
+                        continue;
+                    }
+                    inFlight.release();
+                    future.complete(response);
+                }
+            } catch (final RuntimeException e) {
+                if (!shouldStop()) {
+                    fail(e);
+                }
+            }
+        }
+
+    }
+
+    private final class WriterThread
+    extends DaemonThread {
+
+        @Override
+        public void run() {
+            try {
+                while (!shouldStop()) {
+                    byte[] bytes = outgoing.take();
+                    /* Write everything that is queued before flushing, to fill the packets. */
+                    do {
+                        out.writeInt(bytes.length);
+                        out.write(bytes);
+                    } while ((bytes = outgoing.poll()) != null);
+                    out.flush();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final IOException e) {
+                if (!shouldStop()) {
+                    fail(new UncheckedIoException(e));
+                }
+            }
+        }
+
+    }
+
+    private void fail(final RuntimeException e) {
+        synchronized (this) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        for (final Short id : pending.keySet()) {
+            final CompletableFuture<Message> future = pending.remove(id);
+            if (future != null) {
+                inFlight.release();
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private short allocateId(final CompletableFuture<Message> future) {
+        for (;;) {
+            final short id = (short) nextId.getAndIncrement();
+            if (pending.putIfAbsent(id, future) == null) {
+                return id;
+            }
+        }
+    }
+
+    public synchronized void connect(final InetSocketAddress address) {
+        disconnect();
+        try {
+            socket = new Socket(address.getAddress(), address.getPort());
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        } catch (final IOException e) {
+            IoUtils.closeSilently(socket);
+            throw new UncheckedIoException("Unable to open connection to " + address, e);
+        }
+        inFlight = new Semaphore(maxInFlight);
+        outgoing.clear();
+        failure = null;
+        readerThread = new ReaderThread();
+        readerThread.setName("pipelined-message-client-reader");
+        readerThread.start();
+        writerThread = new WriterThread();
+        writerThread.setName("pipelined-message-client-writer");
+        writerThread.start();
+    }
+
+    public synchronized void disconnect() {
+        if (socket == null) {
+            return;
+        }
+        readerThread.stop();
+        writerThread.stop();
+        IoUtils.closeSilently(socket);
+        socket = null;
+        fail(new UncheckedIoException("Disconnected"));
+    }
+
+    /**
+     * Sends a message without waiting for the response.  Blocks only if
+     * <code>maxInFlight</code> requests are already waiting for responses.  The message is
+     * serialized before this method returns, so it may be reused by the caller.
+     *
+     * @return a future that is completed with the response, or exceptionally if the
+     *         connection fails before the response arrives.
+     */
+    public CompletableFuture<Message> sendMessageAsync(final Message message) {
+        final Semaphore semaphore;
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+            semaphore = inFlight;
+        }
+        try {
+            semaphore.acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedInterruptedException(e);
+        }
+        final CompletableFuture<Message> future = new CompletableFuture<>();
+        final short id = allocateId(future);
+        /* getBuffer returns a copy, so the id goes into the outgoing bytes only. */
+        final byte[] bytes = message.getBuffer();
+        bytes[ID_OFFSET] = (byte) (id >> 8);
+        bytes[ID_OFFSET + 1] = (byte) id;
+        outgoing.add(bytes);
+        final RuntimeException e = failure;
+        if (e != null && pending.remove(id, future)) {
+            semaphore.release();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public Message sendMessage(final Message message) {
+        try {
+            return sendMessageAsync(message).join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public int getNumInFlight() {
+        return pending.size();
+    }
+
+    /**
+     * @param maxInFlight the maximum number of requests waiting for responses.  Takes
+     *                    effect on the next <code>connect</code>.
+     */
+    public synchronized void setMaxInFlight(final int maxInFlight) {
+        Validate.isTrue(maxInFlight > 0 && maxInFlight < MAX_IDS, "maxInFlight must be between 1 and " + (MAX_IDS - 1));
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+}
@@ -0,0 +1,191 @@
+package no.shhsoft.net;
+
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class MessageCodecsTest {
+
+    enum Status {
+        NEW, SHIPPED
+    }
+
+    static class Base {
+
+        private long id;
+
+    }
+
+    static final class Order
+    extends Base
+    implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private boolean paid;
+        private byte priority;
+        private short shortValue;
+        private char code;
+        private int quantity;
+        private float discount;
+        private double amount;
+        private String customer;
+        private int[] lines;
+        private long[] timestamps;
+        private double[] prices;
+        private byte[] signature;
+        private Status status;
+        private Date created;
+        private Integer boxed;
+        private Order parent;
+        private transient String ignored;
+
+        private Order() {
+        }
+
+    }
+
+    static final class Immutable {
+
+        private final String name;
+
+        Immutable() {
+            this(null);
+        }
+
+        Immutable(final String name) {
+            this.name = name;
+        }
+
+    }
+
+    static final class NoDefaultConstructor {
+
+        NoDefaultConstructor(final int x) {
+        }
+
+    }
+
+    private static Order createOrder() {
+        final Order order = new Order();
+        order.paid = true;
+        order.priority = -3;
+        order.shortValue = Short.MIN_VALUE;
+        order.code = '\u00e6';
+        order.quantity = -42;
+        order.discount = 0.25f;
+        order.amount = 1234.5;
+        order.customer = "Bl\u00e5b\u00e6r AS";
+        order.lines = new int[] { 1, 2, 3 };
+        order.timestamps = new long[] { Long.MAX_VALUE };
+        order.prices = new double[] { 9.99 };
+        order.signature = new byte[] { 1, 2 };
+        order.status = Status.SHIPPED;
+        order.created = new Date(1000L);
+        order.boxed = 7;
+        order.ignored = "ignored";
+        final Order parent = new Order();
+        ((Base) parent).id = 99L;
+        parent.customer = "parent";
+        order.parent = parent;
+        return order;
+    }
+
+    private static Message roundTrip(final Message message) {
+        final byte[] bytes = message.getBuffer();
+        return Message.wrap(bytes, bytes.length);
+    }
+
+    @Test
+    public void shouldRoundTripAllFieldKinds() {
+        final Order order = createOrder();
+        final Message message = new Message();
+        message.putObject(order, Order.class);
+        message.putObject(null, Order.class);
+        final Message read = roundTrip(message);
+        final Order copy = read.getObject(Order.class);
+        assertNull(read.getObject(Order.class));
+        assertTrue(copy.paid);
+        assertEquals(-3, copy.priority);
+        assertEquals(Short.MIN_VALUE, copy.shortValue);
+        assertEquals('\u00e6', copy.code);
+        assertEquals(-42, copy.quantity);
+        assertEquals(0.25f, copy.discount, 0.0f);
+        assertEquals(1234.5, copy.amount, 0.0);
+        assertEquals(order.customer, copy.customer);
+        assertArrayEquals(order.lines, copy.lines);
+        assertArrayEquals(order.timestamps, copy.timestamps);
+        assertTrue(Arrays.equals(order.prices, copy.prices));
+        assertArrayEquals(order.signature, copy.signature);
+        assertEquals(Status.SHIPPED, copy.status);
+        assertEquals(order.created, copy.created);
+        assertEquals(Integer.valueOf(7), copy.boxed);
+        assertNull(copy.ignored);
+        assertEquals(99L, ((Base) copy.parent).id);
+        assertEquals("parent", copy.parent.customer);
+        assertNull(copy.parent.parent);
+        assertNull(copy.parent.lines);
+        assertNull(copy.parent.status);
+    }
+
+    @Test
+    public void shouldBeMuchSmallerThanJavaSerialization() {
+        final Message codec = new Message();
+        codec.putObject(createOrder(), Order.class);
+        final Message serialized = new Message();
+        serialized.putObject(createOrder());
+        assertTrue(codec.getSize() * 5 < serialized.getSize());
+    }
+
+    @Test
+    public void shouldSetFinalFields() {
+        final Message message = new Message();
+        message.putObject(new Immutable("name"), Immutable.class);
+        assertEquals("name", roundTrip(message).getObject(Immutable.class).name);
+    }
+
+    @Test
+    public void shouldUseRegisteredCodec() {
+        final class Point {
+
+            private final int x;
+
+            Point(final int x) {
+                this.x = x;
+            }
+
+        }
+        MessageCodecs.register(Point.class, new MessageCodec<Point>() {
+            @Override
+            public void encode(final Point value, final Message message) {
+                message.putInt(value.x);
+            }
+
+            @Override
+            public Point decode(final Message message) {
+                return new Point(message.getInt());
+            }
+        });
+        final Message message = new Message();
+        message.putObject(new Point(5), Point.class);
+        assertEquals(3 + 1 + 4, message.getSize());
+        assertEquals(5, roundTrip(message).getObject(Point.class).x);
+    }
+
+    @Test
+    public void shouldRejectClassesWithoutDefaultConstructor() {
+        try {
+            MessageCodecs.get(NoDefaultConstructor.class);
+            fail("Expected exception was not thrown.");
+        } catch (final RuntimeException e) {
+            assertTrue(e.getMessage().contains("constructor"));
+        }
+    }
+
+}
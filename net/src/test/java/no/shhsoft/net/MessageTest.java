@@ -2,7 +2,14 @@ package no.shhsoft.net;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -54,4 +61,157 @@ extends TestCase {
         assertEquals("bar", array2[1]);
     }
 
+    private static Message createMessage(final int numBytes) {
+        final Message m = new Message((byte) 1, (short) 2);
+        for (int q = 0; q < numBytes; q++) {
+            m.putByte(q);
+        }
+        return m;
+    }
+
+    public void testGrowsGeometrically() {
+        final Message m = new Message();
+        int numResizes = 0;
+        int capacity = m.getCapacity();
+        for (int q = 0; q < 100000; q++) {
+            m.putByte(q);
+            if (m.getCapacity() != capacity) {
+                assertTrue(m.getCapacity() >= 2 * capacity);
+                capacity = m.getCapacity();
+                ++numResizes;
+            }
+        }
+        assertTrue(numResizes < 20);
+        assertEquals(100003, m.getSize());
+    }
+
+    public void testWriteToChannelAndBufferMatchStream() {
+        final Message m = createMessage(1000);
+        final ByteArrayOutputStream streamOut = new ByteArrayOutputStream();
+        m.writeToStream(new DataOutputStream(streamOut));
+        final ByteArrayOutputStream channelOut = new ByteArrayOutputStream();
+        m.writeTo(Channels.newChannel(channelOut));
+        assertTrue(Arrays.equals(streamOut.toByteArray(), channelOut.toByteArray()));
+        final ByteBuffer direct = ByteBuffer.allocateDirect(m.getSize() + 4);
+        m.writeTo(direct);
+        direct.flip();
+        final byte[] bytes = new byte[direct.remaining()];
+        direct.get(bytes);
+        assertTrue(Arrays.equals(streamOut.toByteArray(), bytes));
+    }
+
+    public void testReusesBufferWhenReading() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        createMessage(1000).writeToStream(new DataOutputStream(out));
+        createMessage(10).writeToStream(new DataOutputStream(out));
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        final Message m = new Message();
+        m.readFromStream(in);
+        final int capacity = m.getCapacity();
+        assertEquals(1003, m.getSize());
+        m.readFromStream(in);
+        assertEquals(capacity, m.getCapacity());
+        assertEquals(13, m.getSize());
+        assertEquals(2, m.getId());
+        assertEquals(9, m.getBytes(10)[9]);
+    }
+
+    public void testWrapAndPutByteBuffer() {
+        final Message source = createMessage(5);
+        final Message m = Message.wrap(source.getBuffer(), source.getSize());
+        assertEquals(1, m.getType());
+        assertEquals(2, m.getId());
+        assertEquals(0, m.getByte());
+        final Message m2 = new Message();
+        m2.putBytes(ByteBuffer.wrap(new byte[] { 7, 8 }));
+        assertEquals(7, m2.getByte());
+        assertEquals(8, m2.getByte());
+    }
+
+    public void testPoolRecyclesAndDropsOversized() {
+        final MessagePool pool = new MessagePool();
+        pool.setMaxRetainedCapacity(1024);
+        final Message m = pool.allocate();
+        m.putString("foo");
+        pool.release(m);
+        final Message m2 = pool.allocate();
+        assertSame(m, m2);
+        assertEquals(3, m2.getSize());
+        m2.putBytes(new byte[2000]);
+        pool.release(m2);
+        assertEquals(0, pool.getNumIdle());
+        assertNotSame(m, pool.allocate());
+    }
+
+    public void testCompactEncodings() {
+        final StringBuilder longString = new StringBuilder();
+        for (int q = 0; q < 40000; q++) {
+            longString.append('x');
+        }
+        final Message m = new Message();
+        m.putVarInt(127);
+        m.putVarInt(-1);
+        m.putVarLong(Long.MIN_VALUE);
+        m.putZigZagInt(-1);
+        m.putZigZagLong(Long.MIN_VALUE);
+        final int sizeBeforeStrings = m.getSize();
+        m.putCompactString("ascii");
+        assertEquals(sizeBeforeStrings + 6, m.getSize());
+        m.putCompactString(null);
+        m.putCompactString("bl\u00e5b\u00e6r \u20ac");
+        m.putCompactString(longString.toString());
+        m.putIntArray(new int[] { 1, -2, Integer.MAX_VALUE });
+        m.putLongArray(new long[] { Long.MIN_VALUE, 0L });
+        m.putDoubleArray(new double[] { 0.5, Double.NaN });
+        m.putIntArray(null);
+        m.putLongArray(new long[0]);
+
+        assertEquals(127, m.getVarInt());
+        assertEquals(-1, m.getVarInt());
+        assertEquals(Long.MIN_VALUE, m.getVarLong());
+        assertEquals(-1, m.getZigZagInt());
+        assertEquals(Long.MIN_VALUE, m.getZigZagLong());
+        assertEquals("ascii", m.getCompactString());
+        assertNull(m.getCompactString());
+        assertEquals("bl\u00e5b\u00e6r \u20ac", m.getCompactString());
+        assertEquals(longString.toString(), m.getCompactString());
+        assertTrue(Arrays.equals(new int[] { 1, -2, Integer.MAX_VALUE }, m.getIntArray()));
+        assertTrue(Arrays.equals(new long[] { Long.MIN_VALUE, 0L }, m.getLongArray()));
+        assertTrue(Arrays.equals(new double[] { 0.5, Double.NaN }, m.getDoubleArray()));
+        assertNull(m.getIntArray());
+        assertEquals(0, m.getLongArray().length);
+        assertEquals(0, m.getBytesLeftToRead());
+    }
+
+    private static void assertRejected(final Message m, final Runnable get) {
+        m.rewind();
+        try {
+            get.run();
+            fail("Expected exception was not thrown.");
+        } catch (final RuntimeException e) {
+            assertTrue(e.getMessage().contains("exceeds"));
+        }
+    }
+
+    public void testRejectLengthPrefixBeyondMessage() {
+        final Message m = new Message();
+        m.putByteArray(new byte[] { 1, 2 });
+        m.putByteArray(null);
+        assertTrue(Arrays.equals(new byte[] { 1, 2 }, m.getByteArray()));
+        assertNull(m.getByteArray());
+        m.clear();
+        m.putVarInt(3);
+        m.putBytes(new byte[12]);
+        assertEquals(2, m.getIntArray().length);
+        assertRejected(m, m::getLongArray);
+        m.clear();
+        m.putVarLong(Integer.MAX_VALUE + 1L);
+        m.putBytes(new byte[16]);
+        assertRejected(m, m::getIntArray);
+        assertRejected(m, m::getByteArray);
+        m.clear();
+        m.putVarLong(-1L);
+        assertRejected(m, m::getDoubleArray);
+    }
+
 }
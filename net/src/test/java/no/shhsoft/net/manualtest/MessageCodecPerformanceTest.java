@@ -0,0 +1,82 @@
+package no.shhsoft.net.manualtest;
+
+import no.shhsoft.net.Message;
+import no.shhsoft.net.MessageCodec;
+import no.shhsoft.net.MessageCodecs;
+
+import java.io.Serializable;
+
+/**
+ * Compares <code>Message.putObject</code>/<code>getObject</code> using Java serialization
+ * with the same using a <code>MessageCodec</code> derived by <code>MessageCodecs</code>.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class MessageCodecPerformanceTest {
+
+    private static final int NUM_OBJECTS = 200000;
+
+    private MessageCodecPerformanceTest() {
+    }
+
+    static final class Quote
+    implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private long id;
+        private String symbol;
+        private double bid;
+        private double ask;
+        private int volume;
+        private long timestamp;
+
+    }
+
+    private static Quote createQuote(final int n) {
+        final Quote quote = new Quote();
+        quote.id = n;
+        quote.symbol = "SYM" + (n % 100);
+        quote.bid = 100.0 + n % 7;
+        quote.ask = quote.bid + 0.05;
+        quote.volume = n % 1000;
+        quote.timestamp = 1700000000000L + n;
+        return quote;
+    }
+
+    private static void report(final String what, final long startNanos, final int size) {
+        final long ms = (System.nanoTime() - startNanos) / 1000000L;
+        System.out.println(what + ": " + ms + " ms, " + (NUM_OBJECTS * 1000L / Math.max(1L, ms)) + " objects/s, "
+                           + size + " bytes per object");
+    }
+
+    public static void main(final String[] args) {
+        final Quote[] quotes = new Quote[NUM_OBJECTS];
+        for (int q = 0; q < NUM_OBJECTS; q++) {
+            quotes[q] = createQuote(q);
+        }
+        final MessageCodec<Quote> codec = MessageCodecs.get(Quote.class);
+        final Message message = new Message();
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            long checksum = 0L;
+            int size = 0;
+            for (final Quote quote : quotes) {
+                message.clear();
+                message.putObject(quote);
+                size = message.getNumAddedBytes();
+                checksum += ((Quote) message.getObject()).volume;
+            }
+            report("Java serialization", start, size);
+            start = System.nanoTime();
+            for (final Quote quote : quotes) {
+                message.clear();
+                message.putObject(quote, codec);
+                size = message.getNumAddedBytes();
+                checksum -= message.getObject(codec).volume;
+            }
+            report("MessageCodec", start, size);
+            System.out.println(checksum == 0L ? "" : "Checksum mismatch");
+        }
+    }
+
+}
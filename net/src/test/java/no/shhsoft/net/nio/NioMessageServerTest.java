@@ -0,0 +1,235 @@
+package no.shhsoft.net.nio;
+
+import no.shhsoft.net.Message;
+import no.shhsoft.net.MessageHandler;
+import no.shhsoft.net.simple.SimpleMessageClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class NioMessageServerTest {
+
+    private NioMessageServer server;
+    private InetSocketAddress address;
+
+    private static final class EchoMessageHandler
+    implements MessageHandler {
+
+        @Override
+        public Message handleMessage(final Message request) {
+            if ("fail".equals(request.getString())) {
+                throw new RuntimeException("Failing as requested");
+            }
+            request.rewind();
+            return request;
+        }
+
+    }
+
+    private static String sendAndReceive(final SimpleMessageClient client, final String txt) {
+        final Message request = new Message();
+        request.putString(txt);
+        return client.sendMessage(request).getString();
+    }
+
+    @Before
+    public void before() {
+        server = new NioMessageServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new EchoMessageHandler());
+        server.setNumIoThreads(2);
+        server.setNumWorkerThreads(4);
+        server.start();
+        address = server.getLocalAddress();
+    }
+
+    @After
+    public void after() {
+        server.stop();
+    }
+
+    @Test
+    public void shouldEchoToSimpleMessageClient() {
+        final SimpleMessageClient client = new SimpleMessageClient();
+        client.connect(address);
+        try {
+            assertEquals("hello", sendAndReceive(client, "hello"));
+            assertEquals("again", sendAndReceive(client, "again"));
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test
+    public void shouldHandleMessagesLargerThanReadBuffer() {
+        final byte[] bytes = new byte[300000];
+        for (int q = 0; q < bytes.length; q++) {
+            bytes[q] = (byte) q;
+        }
+        final SimpleMessageClient client = new SimpleMessageClient();
+        client.connect(address);
+        try {
+            final Message request = new Message();
+            request.putString("bytes");
+            request.putBytes(bytes);
+            final Message response = client.sendMessage(request);
+            assertEquals("bytes", response.getString());
+            assertArrayEquals(bytes, response.getBytes(bytes.length));
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test
+    public void shouldServeManyClientsConcurrently()
+    throws InterruptedException {
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int q = 0; q < 20; q++) {
+            final int clientNumber = q;
+            final Thread thread = new Thread(() -> {
+                final SimpleMessageClient client = new SimpleMessageClient();
+                client.connect(address);
+                try {
+                    for (int i = 0; i < 200; i++) {
+                        final String txt = clientNumber + ":" + i;
+                        assertEquals(txt, sendAndReceive(client, txt));
+                    }
+                } catch (final Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    client.disconnect();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void shouldCopyRequestIdWithoutModifyingResponse() {
+        final Message shared = new Message();
+        shared.putString("shared");
+        final Message own = new Message((byte) 0, (short) 42);
+        final NioMessageServer idServer = new NioMessageServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                                                               request -> "own".equals(request.getString()) ? own : shared);
+        idServer.start();
+        final SimpleMessageClient client = new SimpleMessageClient();
+        client.connect(idServer.getLocalAddress());
+        try {
+            final Message request = new Message();
+            request.setId((short) 7);
+            request.putString("any");
+            assertEquals(7, client.sendMessage(request).getId());
+            assertEquals(-1, shared.getId());
+            request.clear();
+            request.setId((short) 8);
+            request.putString("own");
+            assertEquals(42, client.sendMessage(request).getId());
+        } finally {
+            client.disconnect();
+            idServer.stop();
+        }
+    }
+
+    @Test
+    public void shouldStopReadingWhenBacklogIsFull()
+    throws IOException, InterruptedException {
+        final AtomicInteger numHandled = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final NioMessageServer blockingServer = new NioMessageServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), request -> {
+            numHandled.incrementAndGet();
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return request;
+        });
+        blockingServer.setRespondInOrder(false);
+        blockingServer.setNumWorkerThreads(10);
+        blockingServer.setMaxBacklog(2);
+        blockingServer.start();
+        try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), blockingServer.getLocalAddress().getPort())) {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            for (int q = 0; q < 10; q++) {
+                final Message request = new Message();
+                request.setId((short) q);
+                request.writeToStream(out);
+                /* Separate writes, so the server does not get them all in a single read. */
+                out.flush();
+                Thread.sleep(20L);
+            }
+            for (int q = 0; q < 500 && numHandled.get() < 2; q++) {
+                Thread.sleep(10L);
+            }
+            assertEquals(2, numHandled.get());
+            /* Give a server that does not respect the backlog a chance to read more. */
+            Thread.sleep(100L);
+            assertEquals(2, numHandled.get());
+            release.countDown();
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            for (int q = 0; q < 10; q++) {
+                new Message().readFromStream(in);
+            }
+            assertEquals(10, numHandled.get());
+        } finally {
+            release.countDown();
+            blockingServer.stop();
+        }
+    }
+
+    @Test
+    public void shouldCloseConnectionsOnStop()
+    throws IOException, InterruptedException {
+        try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), address.getPort())) {
+            assertNotNull(socket);
+            for (int q = 0; q < 100 && server.getNumConnections() == 0; q++) {
+                Thread.sleep(10L);
+            }
+            assertEquals(1, server.getNumConnections());
+            server.stop();
+            for (int q = 0; q < 100 && server.getNumConnections() > 0; q++) {
+                Thread.sleep(10L);
+            }
+            assertEquals(0, server.getNumConnections());
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    public void shouldCloseConnectionWhenHandlerFails() {
+        final SimpleMessageClient client = new SimpleMessageClient();
+        client.connect(address);
+        try {
+            sendAndReceive(client, "fail");
+            fail("Expected exception was not thrown.");
+        } catch (final RuntimeException e) {
+            /* expected */
+        } finally {
+            client.disconnect();
+        }
+    }
+
+}
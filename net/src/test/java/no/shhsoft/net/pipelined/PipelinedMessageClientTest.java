@@ -0,0 +1,141 @@
+package no.shhsoft.net.pipelined;
+
+import no.shhsoft.net.Message;
+import no.shhsoft.net.MessageHandler;
+import no.shhsoft.net.nio.NioMessageServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class PipelinedMessageClientTest {
+
+    private final CountDownLatch slowLatch = new CountDownLatch(1);
+    private NioMessageServer server;
+    private PipelinedMessageClient client;
+
+    /* Answers with a new message, echoing the text.  "slow" waits for slowLatch. */
+    private final class SlowEchoMessageHandler
+    implements MessageHandler {
+
+        @Override
+        public Message handleMessage(final Message request) {
+            final String txt = request.getString();
+            if ("slow".equals(txt)) {
+                try {
+                    slowLatch.await(5L, TimeUnit.SECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            final Message response = new Message();
+            response.putString(txt);
+            return response;
+        }
+
+    }
+
+    private static Message createMessage(final String txt) {
+        final Message message = new Message();
+        message.putString(txt);
+        return message;
+    }
+
+    private void start(final boolean respondInOrder) {
+        server = new NioMessageServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new SlowEchoMessageHandler());
+        server.setNumWorkerThreads(4);
+        server.setRespondInOrder(respondInOrder);
+        server.start();
+        client = new PipelinedMessageClient();
+        client.connect(server.getLocalAddress());
+    }
+
+    @Before
+    public void before() {
+        server = null;
+        client = null;
+    }
+
+    @After
+    public void after() {
+        slowLatch.countDown();
+        if (client != null) {
+            client.disconnect();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void shouldMatchManyResponsesInFlight() {
+        start(false);
+        final List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (int q = 0; q < 5000; q++) {
+            futures.add(client.sendMessageAsync(createMessage("msg" + q)));
+        }
+        for (int q = 0; q < futures.size(); q++) {
+            assertEquals("msg" + q, futures.get(q).join().getString());
+        }
+        assertEquals(0, client.getNumInFlight());
+        assertEquals("sync", client.sendMessage(createMessage("sync")).getString());
+    }
+
+    @Test
+    public void shouldNotModifyCallersMessage() {
+        start(false);
+        final Message request = createMessage("shared");
+        request.setId((short) 1234);
+        assertEquals("shared", client.sendMessage(request).getString());
+        assertEquals("shared", client.sendMessage(request).getString());
+        assertEquals(1234, request.getId());
+    }
+
+    @Test
+    public void shouldNotLetSlowRequestStallOthers() {
+        start(false);
+        final CompletableFuture<Message> slow = client.sendMessageAsync(createMessage("slow"));
+        final CompletableFuture<Message> fast = client.sendMessageAsync(createMessage("fast"));
+        assertEquals("fast", fast.join().getString());
+        assertFalse(slow.isDone());
+        slowLatch.countDown();
+        assertEquals("slow", slow.join().getString());
+    }
+
+    @Test
+    public void shouldWorkWithServerRespondingInOrder() {
+        start(true);
+        final CompletableFuture<Message> slow = client.sendMessageAsync(createMessage("slow"));
+        final CompletableFuture<Message> fast = client.sendMessageAsync(createMessage("fast"));
+        slowLatch.countDown();
+        assertEquals("fast", fast.join().getString());
+        assertEquals("slow", slow.join().getString());
+    }
+
+    @Test
+    public void shouldFailPendingRequestsOnDisconnect() {
+        start(false);
+        final CompletableFuture<Message> slow = client.sendMessageAsync(createMessage("slow"));
+        client.disconnect();
+        assertTrue(slow.isCompletedExceptionally());
+        try {
+            client.sendMessage(createMessage("after"));
+            fail("Expected exception was not thrown.");
+        } catch (final RuntimeException e) {
+            /* expected */
+        }
+    }
+
+}
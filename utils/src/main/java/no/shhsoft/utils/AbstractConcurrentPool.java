@@ -0,0 +1,681 @@
+package no.shhsoft.utils;
+
+import no.shhsoft.thread.DaemonThread;
+import no.shhsoft.time.SystemTimeProvider;
+import no.shhsoft.time.TimeProvider;
+import no.shhsoft.validation.Validate;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Alternative to <code>AbstractPool</code> for pools used by many threads at once.
+ * Objects are created, validated and destroyed without holding any lock, so a slow
+ * <code>create</code> or <code>isValid</code> only delays the thread that needs it.  Idle
+ * objects are kept on a lock-free stack, so the most recently used object is handed out
+ * first.  When <code>maxActive</code> objects are lent out, waiting threads are served in
+ * the order they arrived.
+ * <p>
+ * Optionally, a background thread started by <code>startMaintenance</code> keeps
+ * <code>minIdle</code> objects ready, destroys objects that have been idle or alive for
+ * too long, and checks the validity of idle objects, so that
+ * <code>checkValidityOnAllocate</code> may be turned off.  Objects that are lent out are
+ * never touched by the maintenance, but objects older than <code>maxLifetimeMs</code> are
+ * destroyed when released.
+ * <p>
+ * The pool counts what it does, and records how long <code>allocate</code> takes and how
+ * long objects are lent out.  The numbers are available through the getters, through
+ * <code>PoolListener</code>s, and through JMX after <code>registerMBean</code>.  When a
+ * leak detection threshold is set, the maintenance reports objects that have been lent
+ * out for longer, along with the stack trace of the code that allocated them.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public abstract class AbstractConcurrentPool<T>
+implements PoolMXBean {
+
+    private static final Logger LOG = Logger.getLogger(AbstractConcurrentPool.class.getName());
+    private final TimeProvider timeProvider;
+    private volatile int maxActive = 0;
+    private volatile long maxWaitTimeMs = 0L;
+    private volatile boolean checkValidityOnAllocate = true;
+    private volatile boolean checkValidityOnRelease = false;
+    private volatile boolean checkValidityWhenIdle = false;
+    private volatile int minIdle = 0;
+    private volatile long maxIdleTimeMs = 0L;
+    private volatile long maxLifetimeMs = 0L;
+    private volatile long maintenanceIntervalMs = 30L * 1000L;
+    /* One permit per object that may be lent out.  Practically unlimited when maxActive is 0. */
+    private final ResizableSemaphore permits = new ResizableSemaphore(effectiveMaxActive(0));
+    private final ConcurrentLinkedDeque<Entry<T>> available = new ConcurrentLinkedDeque<>();
+    private final Map<T, Entry<T>> lended = new ConcurrentHashMap<>();
+    private final AtomicInteger numLive = new AtomicInteger();
+    private volatile long leakDetectionThresholdMs = 0L;
+    private final LongAdder numCreated = new LongAdder();
+    private final LongAdder numDestroyed = new LongAdder();
+    private final LongAdder numValidationFailures = new LongAdder();
+    private final LongAdder numLeaksSuspected = new LongAdder();
+    private final DurationHistogram allocateWaitTimes = new DurationHistogram();
+    private final DurationHistogram leaseTimes = new DurationHistogram();
+    private final List<PoolListener<? super T>> listeners = new CopyOnWriteArrayList<>();
+    private MaintenanceThread maintenanceThread;
+    private ObjectName mbeanName;
+
+    private static final class Entry<T> {
+
+        private final T thing;
+        private final long createdMs;
+        private long releasedMs;
+        private volatile long lentNanos;
+        private volatile long lentMs;
+        private volatile Throwable allocation;
+        private volatile boolean leakReported;
+
+        Entry(final T thing, final long createdMs) {
+            this.thing = thing;
+            this.createdMs = createdMs;
+            this.releasedMs = createdMs;
+        }
+
+    }
+
+    private final class MaintenanceThread
+    extends DaemonThread {
+
+        @Override
+        public void run() {
+            while (!shouldStop()) {
+                try {
+                    maintain();
+                } catch (final RuntimeException e) {
+                    LOG.log(Level.WARNING, "Pool maintenance failed", e);
+                }
+                try {
+                    Thread.sleep(maintenanceIntervalMs);
+                } catch (final InterruptedException e) {
+                    /* Probably stopped.  Checked by the loop. */
+                }
+            }
+        }
+
+    }
+
+    private static final class ResizableSemaphore
+    extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        ResizableSemaphore(final int permits) {
+            super(permits, true);
+        }
+
+        void resize(final int delta) {
+            if (delta > 0) {
+                release(delta);
+            } else if (delta < 0) {
+                reducePermits(-delta);
+            }
+        }
+
+    }
+
+    protected AbstractConcurrentPool() {
+        this(SystemTimeProvider.getInstance());
+    }
+
+    /**
+     * @param timeProvider the clock for idle times, lifetimes and leak detection.  The
+     *                     durations recorded for the metrics always use the system clock.
+     */
+    protected AbstractConcurrentPool(final TimeProvider timeProvider) {
+        this.timeProvider = timeProvider;
+    }
+
+    private static int effectiveMaxActive(final int maxActive) {
+        return maxActive > 0 ? maxActive : Integer.MAX_VALUE;
+    }
+
+    protected abstract T create();
+
+    protected abstract void destroy(T thing);
+
+    protected abstract boolean isValid(T thing);
+
+    protected abstract void prepareForAllocate(T thing);
+
+    private void acquirePermit() {
+        final long waitTimeMs = maxWaitTimeMs;
+        try {
+            if (waitTimeMs > 0L) {
+                if (!permits.tryAcquire(waitTimeMs, TimeUnit.MILLISECONDS)) {
+                    throw new NoSuchElementException("Timeout waiting for free object");
+                }
+            } else {
+                permits.acquire();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedInterruptedException(e);
+        }
+    }
+
+    private static double nanosToMs(final double nanos) {
+        return nanos / 1000000.0;
+    }
+
+    private void notifyListeners(final Consumer<PoolListener<? super T>> notification) {
+        for (final PoolListener<? super T> listener : listeners) {
+            try {
+                notification.accept(listener);
+            } catch (final RuntimeException e) {
+                LOG.log(Level.WARNING, "Ignoring exception from pool listener", e);
+            }
+        }
+    }
+
+    private void destroyLive(final T thing) {
+        numLive.decrementAndGet();
+        numDestroyed.increment();
+        try {
+            destroy(thing);
+        } finally {
+            if (!listeners.isEmpty()) {
+                notifyListeners(listener -> listener.destroyed(thing));
+            }
+        }
+    }
+
+    private boolean checkValidity(final T thing) {
+        if (isValid(thing)) {
+            return true;
+        }
+        numValidationFailures.increment();
+        if (!listeners.isEmpty()) {
+            notifyListeners(listener -> listener.validationFailed(thing));
+        }
+        return false;
+    }
+
+    private Entry<T> createEntry() {
+        final Entry<T> entry = new Entry<>(create(), timeProvider.currentTimeMillis());
+        numLive.incrementAndGet();
+        numCreated.increment();
+        if (!listeners.isEmpty()) {
+            notifyListeners(listener -> listener.created(entry.thing));
+        }
+        return entry;
+    }
+
+    private long endLease(final Entry<T> entry) {
+        final long leaseNanos = System.nanoTime() - entry.lentNanos;
+        leaseTimes.record(leaseNanos);
+        entry.allocation = null;
+        return leaseNanos;
+    }
+
+    private boolean hasExceededLifetime(final Entry<T> entry, final long now) {
+        final long lifetimeMs = maxLifetimeMs;
+        return lifetimeMs > 0L && now - entry.createdMs >= lifetimeMs;
+    }
+
+    private T lend(final Entry<T> entry) {
+        final T thing = entry.thing;
+        entry.lentNanos = System.nanoTime();
+        entry.lentMs = timeProvider.currentTimeMillis();
+        entry.leakReported = false;
+        if (leakDetectionThresholdMs > 0L) {
+            entry.allocation = new Throwable("Allocation of pooled object");
+        }
+        lended.put(thing, entry);
+        try {
+            prepareForAllocate(thing);
+        } catch (final RuntimeException | Error e) {
+            lended.remove(thing);
+            destroyLive(thing);
+            throw e;
+        }
+        return thing;
+    }
+
+    private Entry<T> takeOrCreate() {
+        for (;;) {
+            final Entry<T> entry = available.pollFirst();
+            if (entry == null) {
+                return createEntry();
+            }
+            if (!checkValidityOnAllocate || checkValidity(entry.thing)) {
+                return entry;
+            }
+            destroyLive(entry.thing);
+        }
+    }
+
+    public final T allocate() {
+        final long startNanos = System.nanoTime();
+        acquirePermit();
+        final T thing;
+        try {
+            thing = lend(takeOrCreate());
+        } catch (final RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+        final long waitNanos = System.nanoTime() - startNanos;
+        allocateWaitTimes.record(waitNanos);
+        if (!listeners.isEmpty()) {
+            notifyListeners(listener -> listener.allocated(thing, waitNanos));
+        }
+        return thing;
+    }
+
+    public final void release(final T thing) {
+        final Entry<T> entry = lended.remove(thing);
+        if (entry == null) {
+            return;
+        }
+        final long leaseNanos = endLease(entry);
+        if (!listeners.isEmpty()) {
+            notifyListeners(listener -> listener.released(thing, leaseNanos));
+        }
+        try {
+            final long now = timeProvider.currentTimeMillis();
+            if (hasExceededLifetime(entry, now) || (checkValidityOnRelease && !checkValidity(thing))) {
+                destroyLive(thing);
+            } else {
+                entry.releasedMs = now;
+                available.offerFirst(entry);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    public final void discard(final T thing) {
+        final Entry<T> entry = lended.remove(thing);
+        if (entry == null) {
+            return;
+        }
+        final long leaseNanos = endLease(entry);
+        if (!listeners.isEmpty()) {
+            notifyListeners(listener -> listener.released(thing, leaseNanos));
+        }
+        try {
+            destroyLive(thing);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Does one round of the work done periodically after <code>startMaintenance</code>:
+     * Destroys idle objects that have exceeded <code>maxLifetimeMs</code>, or, while more
+     * than <code>minIdle</code> are idle, <code>maxIdleTimeMs</code>.  Then, if
+     * <code>checkValidityWhenIdle</code> is set, checks the remaining idle objects.
+     * Finally creates objects until <code>minIdle</code> are idle, without exceeding
+     * <code>maxActive</code> live objects.  Also reports suspected leaks.  Checking and
+     * creating is skipped while all objects are lent out.
+     */
+    public final void maintain() {
+        detectLeaks();
+        final long now = timeProvider.currentTimeMillis();
+        final long idleTimeMs = maxIdleTimeMs;
+        final List<Entry<T>> toCheck = new ArrayList<>();
+        for (final Entry<T> entry : available) {
+            final boolean idleTooLong = idleTimeMs > 0L && now - entry.releasedMs >= idleTimeMs && available.size() > minIdle;
+            if (hasExceededLifetime(entry, now) || idleTooLong) {
+                /* Only destroy if not taken by another thread in the meantime. */
+                if (available.removeFirstOccurrence(entry)) {
+                    destroyLive(entry.thing);
+                }
+            } else if (checkValidityWhenIdle) {
+                toCheck.add(entry);
+            }
+        }
+        /* Holding a permit while an object is taken out for checking, or being created,
+         * keeps a concurrent allocate from creating one more than maxActive allows. */
+        if (!permits.tryAcquire()) {
+            return;
+        }
+        try {
+            for (final Entry<T> entry : toCheck) {
+                if (!available.removeFirstOccurrence(entry)) {
+                    continue;
+                }
+                if (checkValidity(entry.thing)) {
+                    available.offerLast(entry);
+                } else {
+                    destroyLive(entry.thing);
+                }
+            }
+            while (available.size() < minIdle && numLive.get() < effectiveMaxActive(maxActive)) {
+                available.offerLast(createEntry());
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Checks the validity of one idle object without lending it out, so neither lease
+     * metrics nor listeners see an allocation, and the caller never waits for a free
+     * slot.  An invalid object is destroyed.  If nothing is live, an object is created,
+     * checked and left idle.  If all objects are lent out, nothing is checked.
+     *
+     * @return <code>false</code> if the checked object was invalid, <code>true</code>
+     *         otherwise, including when nothing could be checked.
+     */
+    public final boolean checkIdleValidity() {
+        /* Like maintain, hold a permit while the object is out of the idle deque. */
+        if (!permits.tryAcquire()) {
+            return true;
+        }
+        try {
+            Entry<T> entry = available.pollFirst();
+            if (entry == null) {
+                if (numLive.get() > 0) {
+                    return true;
+                }
+                entry = createEntry();
+            }
+            if (checkValidity(entry.thing)) {
+                available.offerFirst(entry);
+                return true;
+            }
+            destroyLive(entry.thing);
+            return false;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void detectLeaks() {
+        final long thresholdMs = leakDetectionThresholdMs;
+        if (thresholdMs <= 0L) {
+            return;
+        }
+        final long now = timeProvider.currentTimeMillis();
+        for (final Entry<T> entry : lended.values()) {
+            final long heldMs = now - entry.lentMs;
+            final Throwable allocation = entry.allocation;
+            if (heldMs < thresholdMs || entry.leakReported || allocation == null) {
+                continue;
+            }
+            entry.leakReported = true;
+            numLeaksSuspected.increment();
+            LOG.log(Level.WARNING, "Pooled object lent out for " + heldMs + " ms, possibly leaked", allocation);
+            if (!listeners.isEmpty()) {
+                notifyListeners(listener -> listener.leakSuspected(entry.thing, heldMs, allocation));
+            }
+        }
+    }
+
+    /**
+     * Starts a background thread that calls <code>maintain</code> right away, and then
+     * every <code>maintenanceIntervalMs</code>.
+     */
+    public final synchronized void startMaintenance() {
+        if (maintenanceThread != null) {
+            return;
+        }
+        maintenanceThread = new MaintenanceThread();
+        maintenanceThread.setName("pool-maintenance-" + getClass().getSimpleName());
+        maintenanceThread.start();
+    }
+
+    public final synchronized void stopMaintenance() {
+        if (maintenanceThread == null) {
+            return;
+        }
+        maintenanceThread.stop();
+        maintenanceThread = null;
+    }
+
+    public final void addListener(final PoolListener<? super T> listener) {
+        listeners.add(listener);
+    }
+
+    public final void removeListener(final PoolListener<? super T> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Registers this pool with the platform MBean server, as
+     * <code>no.shhsoft:type=Pool,name=</code><em>name</em>.
+     */
+    public final synchronized void registerMBean(final String name) {
+        unregisterMBean();
+        try {
+            mbeanName = new ObjectName("no.shhsoft:type=Pool,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, mbeanName);
+        } catch (final JMException e) {
+            mbeanName = null;
+            throw new RuntimeException("Unable to register pool MBean `" + name + "'", e);
+        }
+    }
+
+    public final synchronized void unregisterMBean() {
+        if (mbeanName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        } catch (final JMException e) {
+            LOG.log(Level.WARNING, "Unable to unregister pool MBean " + mbeanName, e);
+        }
+        mbeanName = null;
+    }
+
+    /**
+     * @param leakDetectionThresholdMs how long an object may be lent out before the
+     *                                 maintenance reports it as a possible leak, or 0 to
+     *                                 turn off leak detection.  When on, every
+     *                                 <code>allocate</code> records a stack trace.
+     */
+    public final void setLeakDetectionThresholdMs(final long leakDetectionThresholdMs) {
+        this.leakDetectionThresholdMs = leakDetectionThresholdMs;
+    }
+
+    public final long getLeakDetectionThresholdMs() {
+        return leakDetectionThresholdMs;
+    }
+
+    public final synchronized void setMaxActive(final int maxActive) {
+        final long delta = (long) effectiveMaxActive(maxActive) - effectiveMaxActive(this.maxActive);
+        permits.resize((int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, delta)));
+        this.maxActive = maxActive;
+    }
+
+    @Override
+    public final synchronized int getMaxActive() {
+        return maxActive;
+    }
+
+    public final void setMaxWaitTimeMs(final long maxWaitTimeMs) {
+        this.maxWaitTimeMs = maxWaitTimeMs;
+    }
+
+    public final long getMaxWaitTimeMs() {
+        return maxWaitTimeMs;
+    }
+
+    public final void setCheckValidityOnAllocate(final boolean checkValidityOnAllocate) {
+        this.checkValidityOnAllocate = checkValidityOnAllocate;
+    }
+
+    public final boolean isCheckValidityOnAllocate() {
+        return checkValidityOnAllocate;
+    }
+
+    public final void setCheckValidityOnRelease(final boolean checkValidityOnRelease) {
+        this.checkValidityOnRelease = checkValidityOnRelease;
+    }
+
+    public final boolean isCheckValidityOnRelease() {
+        return checkValidityOnRelease;
+    }
+
+    /**
+     * Makes the maintenance check the validity of idle objects.  Off by default.
+     */
+    public final void setCheckValidityWhenIdle(final boolean checkValidityWhenIdle) {
+        this.checkValidityWhenIdle = checkValidityWhenIdle;
+    }
+
+    public final boolean isCheckValidityWhenIdle() {
+        return checkValidityWhenIdle;
+    }
+
+    /**
+     * @param minIdle the number of idle objects the maintenance tries to keep ready.
+     */
+    public final void setMinIdle(final int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public final int getMinIdle() {
+        return minIdle;
+    }
+
+    /**
+     * @param maxIdleTimeMs how long an object may stay idle before the maintenance
+     *                      destroys it, or 0 for no limit.
+     */
+    public final void setMaxIdleTimeMs(final long maxIdleTimeMs) {
+        this.maxIdleTimeMs = maxIdleTimeMs;
+    }
+
+    public final long getMaxIdleTimeMs() {
+        return maxIdleTimeMs;
+    }
+
+    /**
+     * @param maxLifetimeMs how long after creation an object is destroyed, or 0 for no
+     *                      limit.
+     */
+    public final void setMaxLifetimeMs(final long maxLifetimeMs) {
+        this.maxLifetimeMs = maxLifetimeMs;
+    }
+
+    public final long getMaxLifetimeMs() {
+        return maxLifetimeMs;
+    }
+
+    public final void setMaintenanceIntervalMs(final long maintenanceIntervalMs) {
+        Validate.isTrue(maintenanceIntervalMs > 0L, "maintenanceIntervalMs must be positive");
+        this.maintenanceIntervalMs = maintenanceIntervalMs;
+    }
+
+    public final long getMaintenanceIntervalMs() {
+        return maintenanceIntervalMs;
+    }
+
+    @Override
+    public final int getNumLive() {
+        return numLive.get();
+    }
+
+    /**
+     * @return the number of objects currently lent out.
+     */
+    @Override
+    public final int getNumActive() {
+        return lended.size();
+    }
+
+    /**
+     * @return the number of objects waiting to be lent out.  Takes time proportional to
+     *         the number.
+     */
+    @Override
+    public final int getNumIdle() {
+        return available.size();
+    }
+
+    /**
+     * @return an estimate of the number of threads waiting in <code>allocate</code>.
+     */
+    @Override
+    public final int getNumWaiting() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public final long getNumCreated() {
+        return numCreated.sum();
+    }
+
+    @Override
+    public final long getNumDestroyed() {
+        return numDestroyed.sum();
+    }
+
+    @Override
+    public final long getNumValidationFailures() {
+        return numValidationFailures.sum();
+    }
+
+    @Override
+    public final long getNumLeaksSuspected() {
+        return numLeaksSuspected.sum();
+    }
+
+    public final DurationHistogram getAllocateWaitTimes() {
+        return allocateWaitTimes;
+    }
+
+    public final DurationHistogram getLeaseTimes() {
+        return leaseTimes;
+    }
+
+    @Override
+    public final double getMeanAllocateWaitMs() {
+        return nanosToMs(allocateWaitTimes.getMeanNanos());
+    }
+
+    @Override
+    public final double getP99AllocateWaitMs() {
+        return nanosToMs(allocateWaitTimes.getPercentileNanos(0.99));
+    }
+
+    @Override
+    public final double getMaxAllocateWaitMs() {
+        return nanosToMs(allocateWaitTimes.getMaxNanos());
+    }
+
+    @Override
+    public final double getMeanLeaseMs() {
+        return nanosToMs(leaseTimes.getMeanNanos());
+    }
+
+    @Override
+    public final double getP99LeaseMs() {
+        return nanosToMs(leaseTimes.getPercentileNanos(0.99));
+    }
+
+    @Override
+    public final double getMaxLeaseMs() {
+        return nanosToMs(leaseTimes.getMaxNanos());
+    }
+
+    @Override
+    public final void resetDurations() {
+        allocateWaitTimes.reset();
+        leaseTimes.reset();
+    }
+
+}
@@ -0,0 +1,106 @@
+package no.shhsoft.utils;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts durations in buckets of powers of two nanoseconds.  Recording is lock-free and
+ * cheap enough for hot paths, at the cost of percentiles being accurate only to within a
+ * factor of two.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class DurationHistogram {
+
+    private static final int NUM_BUCKETS = 64;
+    /* Bucket q holds durations less than 2^q nanoseconds, but not less than 2^(q-1). */
+    private final LongAdder[] buckets = new LongAdder[NUM_BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    public DurationHistogram() {
+        for (int q = 0; q < NUM_BUCKETS; q++) {
+            buckets[q] = new LongAdder();
+        }
+    }
+
+    private static int bucketIndex(final long nanos) {
+        return Math.min(NUM_BUCKETS - 1, NUM_BUCKETS - Long.numberOfLeadingZeros(nanos));
+    }
+
+    public void record(final long nanos) {
+        final long value = Math.max(0L, nanos);
+        buckets[bucketIndex(value)].increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    public long getCount() {
+        long count = 0L;
+        for (final LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        final long count = getCount();
+        return count == 0L ? 0.0 : (double) getTotalNanos() / count;
+    }
+
+    /**
+     * @param fraction a number between 0 and 1, e.g. 0.99 for the 99th percentile.
+     * @return an upper bound for the given fraction of the recorded durations, never
+     *         more than the longest duration recorded.  0 if nothing is recorded.
+     */
+    public long getPercentileNanos(final double fraction) {
+        final long[] counts = getBucketCounts();
+        long count = 0L;
+        for (final long bucketCount : counts) {
+            count += bucketCount;
+        }
+        if (count == 0L) {
+            return 0L;
+        }
+        final long wanted = Math.max(1L, (long) Math.ceil(fraction * count));
+        long seen = 0L;
+        for (int q = 0; q < NUM_BUCKETS; q++) {
+            seen += counts[q];
+            if (seen >= wanted) {
+                final long upperBound = q >= NUM_BUCKETS - 1 ? Long.MAX_VALUE : (1L << q) - 1L;
+                return Math.min(upperBound, getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * @return the number of durations in each bucket.  Element <code>q</code> counts
+     *         durations of at least 2<sup>q-1</sup> and less than 2<sup>q</sup>
+     *         nanoseconds.
+     */
+    public long[] getBucketCounts() {
+        final long[] counts = new long[NUM_BUCKETS];
+        for (int q = 0; q < NUM_BUCKETS; q++) {
+            counts[q] = buckets[q].sum();
+        }
+        return counts;
+    }
+
+    public void reset() {
+        for (final LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+}
@@ -109,7 +109,7 @@ public final class IoUtils {
     }
 
     public static byte[] read(final InputStream in) {
-        byte[] ret = new byte[0];
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
         final byte[] buff = new byte[bufferSize];
         for (;;) {
             final int numRead;
@@ -121,12 +121,9 @@ public final class IoUtils {
             if (numRead < 0) {
                 break;
             }
-            final byte[] newRet = new byte[ret.length + numRead];
-            System.arraycopy(ret, 0, newRet, 0, ret.length);
-            System.arraycopy(buff, 0, newRet, ret.length, numRead);
-            ret = newRet;
+            out.write(buff, 0, numRead);
         }
-        return ret;
+        return out.toByteArray();
     }
 
     public static void writeFile(final String filename, final byte[] data, final int off,
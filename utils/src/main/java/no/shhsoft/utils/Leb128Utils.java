@@ -4,6 +4,10 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 
 /**
+ * LEB128 variable length encoding of integers.  The array based methods, and the zig-zag
+ * helpers for encoding signed values compactly as unsigned ones, do not allocate, and are
+ * meant for encoding directly into a message buffer.
+ *
  * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
  */
 public final class Leb128Utils {
@@ -77,4 +81,73 @@ public final class Leb128Utils {
         return value;
     }
 
+    /**
+     * @return the number of bytes <code>encodeUnsigned</code> uses for the given value, 1 to
+     *         10.
+     */
+    public static int getUnsignedSize(final long n) {
+        final int numBits = 64 - Long.numberOfLeadingZeros(n);
+        return numBits == 0 ? 1 : (numBits + 6) / 7;
+    }
+
+    /**
+     * Encodes the value, treated as unsigned, into the array, which must have room for
+     * <code>getUnsignedSize(n)</code> bytes.
+     *
+     * @return the offset following the encoded value.
+     */
+    public static int encodeUnsigned(final long n, final byte[] bytes, final int offset) {
+        int pos = offset;
+        long rest = n;
+        while ((rest & ~0x7fL) != 0) {
+            bytes[pos++] = (byte) ((rest & 0x7f) | 0x80);
+            rest >>>= 7;
+        }
+        bytes[pos++] = (byte) rest;
+        return pos;
+    }
+
+    /**
+     * Decodes an unsigned value starting at the given offset.  Unlike
+     * <code>decodeUnsigned(ByteArrayInputStream)</code>, handles all 64 bits.  Use
+     * <code>skip</code> to find the end of the value.
+     */
+    public static long decodeUnsigned(final byte[] bytes, final int offset) {
+        long value = 0;
+        int pos = offset;
+        for (int shift = 0;; shift += 7) {
+            if (shift >= 64) {
+                throw new RuntimeException("Attempt to decode an unsigned value too big to fit in a long");
+            }
+            final int b = bytes[pos++];
+            value |= ((long) (b & 0x7f)) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * @return the offset following the value encoded at the given offset.
+     */
+    public static int skip(final byte[] bytes, final int offset) {
+        int pos = offset;
+        while ((bytes[pos++] & 0x80) != 0) {
+            /* Continuation byte */
+        }
+        return pos;
+    }
+
+    /**
+     * Maps signed values to unsigned ones so that values close to zero, positive or
+     * negative, encode to few bytes: 0, -1, 1, -2, 2 become 0, 1, 2, 3, 4.
+     */
+    public static long zigZagEncode(final long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    public static long zigZagDecode(final long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
 }
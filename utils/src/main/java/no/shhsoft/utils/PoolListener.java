@@ -0,0 +1,41 @@
+package no.shhsoft.utils;
+
+/**
+ * Notified of what happens in an <code>AbstractConcurrentPool</code>.  Methods are called
+ * on the thread doing the work, so they should return quickly.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public interface PoolListener<T> {
+
+    default void created(final T thing) {
+    }
+
+    default void destroyed(final T thing) {
+    }
+
+    default void validationFailed(final T thing) {
+    }
+
+    /**
+     * @param waitNanos how long <code>allocate</code> took, including waiting for a free
+     *                  object and creating a new one.
+     */
+    default void allocated(final T thing, final long waitNanos) {
+    }
+
+    /**
+     * @param leaseNanos how long the object was lent out.
+     */
+    default void released(final T thing, final long leaseNanos) {
+    }
+
+    /**
+     * Called once for each object lent out for longer than the leak detection threshold.
+     *
+     * @param allocation holds the stack trace of the code that allocated the object.
+     */
+    default void leakSuspected(final T thing, final long heldMs, final Throwable allocation) {
+    }
+
+}
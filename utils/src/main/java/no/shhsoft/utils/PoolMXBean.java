@@ -0,0 +1,43 @@
+package no.shhsoft.utils;
+
+/**
+ * Management view of an <code>AbstractConcurrentPool</code>.  Durations are in
+ * milliseconds.
+ *
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public interface PoolMXBean {
+
+    int getMaxActive();
+
+    int getNumLive();
+
+    int getNumActive();
+
+    int getNumIdle();
+
+    int getNumWaiting();
+
+    long getNumCreated();
+
+    long getNumDestroyed();
+
+    long getNumValidationFailures();
+
+    long getNumLeaksSuspected();
+
+    double getMeanAllocateWaitMs();
+
+    double getP99AllocateWaitMs();
+
+    double getMaxAllocateWaitMs();
+
+    double getMeanLeaseMs();
+
+    double getP99LeaseMs();
+
+    double getMaxLeaseMs();
+
+    void resetDurations();
+
+}
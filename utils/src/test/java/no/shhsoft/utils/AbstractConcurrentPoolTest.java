@@ -0,0 +1,463 @@
+package no.shhsoft.utils;
+
+import no.shhsoft.time.TestTimeProvider;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class AbstractConcurrentPoolTest {
+
+    static class MyThing {
+
+        private volatile boolean valid = true;
+
+        public void setValid(final boolean valid) {
+            this.valid = valid;
+        }
+
+        public boolean isValid() {
+            return valid;
+        }
+
+    }
+
+    static class MyPool
+    extends AbstractConcurrentPool<MyThing> {
+
+        private final AtomicInteger numDestroyed = new AtomicInteger();
+
+        MyPool() {
+        }
+
+        MyPool(final TestTimeProvider timeProvider) {
+            super(timeProvider);
+        }
+
+        @Override
+        protected MyThing create() {
+            return new MyThing();
+        }
+
+        @Override
+        protected void destroy(final MyThing thing) {
+            numDestroyed.incrementAndGet();
+        }
+
+        @Override
+        protected boolean isValid(final MyThing thing) {
+            return thing.isValid();
+        }
+
+        @Override
+        protected void prepareForAllocate(final MyThing thing) {
+        }
+
+    }
+
+    @Test
+    public void testPlainStuff() {
+        final MyPool pool = new MyPool();
+        final MyThing thing = pool.allocate();
+        pool.release(thing);
+        assertSame(thing, pool.allocate());
+        pool.allocate();
+        assertEquals(2, pool.getNumLive());
+        assertEquals(2, pool.getNumActive());
+        assertEquals(0, pool.getNumIdle());
+    }
+
+    @Test
+    public void testBlockWhenNoMoreAvailable() {
+        final MyPool pool = new MyPool();
+        pool.setMaxActive(1);
+        pool.setMaxWaitTimeMs(300L);
+        pool.allocate();
+        final long start = System.currentTimeMillis();
+        try {
+            pool.allocate();
+            fail("Expected exception was not thrown.");
+        } catch (final NoSuchElementException e) {
+            assertTrue(e.getMessage().contains("Timeout"));
+        }
+        assertTrue(System.currentTimeMillis() - start >= 250L);
+        assertEquals(1, pool.getNumLive());
+    }
+
+    @Test
+    public void testDontBlockWhenReleased() {
+        final MyPool pool = new MyPool();
+        pool.setMaxActive(1);
+        pool.setMaxWaitTimeMs(300L);
+        final MyThing thing = pool.allocate();
+        pool.release(thing);
+        pool.allocate();
+        assertEquals(1, pool.getNumLive());
+    }
+
+    @Test
+    public void testDontBlockWhenDiscarded() {
+        final MyPool pool = new MyPool();
+        pool.setMaxActive(1);
+        pool.setMaxWaitTimeMs(300L);
+        final MyThing thing = pool.allocate();
+        pool.discard(thing);
+        pool.allocate();
+        assertEquals(1, pool.getNumLive());
+        assertEquals(1, pool.numDestroyed.get());
+    }
+
+    @Test
+    public void testReplaceInvalidOnAllocate() {
+        final MyPool pool = new MyPool();
+        final MyThing thing = pool.allocate();
+        pool.release(thing);
+        thing.setValid(false);
+        assertNotSame(thing, pool.allocate());
+        assertEquals(1, pool.getNumLive());
+        assertEquals(1, pool.numDestroyed.get());
+    }
+
+    @Test
+    public void testIgnoreReleaseOfUnknownObject() {
+        final MyPool pool = new MyPool();
+        pool.setMaxActive(1);
+        pool.release(new MyThing());
+        pool.discard(new MyThing());
+        assertEquals(0, pool.getNumIdle());
+        pool.allocate();
+    }
+
+    @Test
+    public void testResizeWhileLent() {
+        final MyPool pool = new MyPool();
+        pool.setMaxWaitTimeMs(100L);
+        final MyThing thing = pool.allocate();
+        pool.setMaxActive(2);
+        pool.allocate();
+        try {
+            pool.allocate();
+            fail("Expected exception was not thrown.");
+        } catch (final NoSuchElementException e) {
+            assertTrue(e.getMessage().contains("Timeout"));
+        }
+        pool.setMaxActive(3);
+        pool.allocate();
+        pool.release(thing);
+        pool.setMaxActive(0);
+        pool.allocate();
+        pool.allocate();
+    }
+
+    @Test
+    public void testNeverLendMoreThanMaxActive() throws InterruptedException {
+        final int maxActive = 4;
+        final MyPool pool = new MyPool();
+        pool.setMaxActive(maxActive);
+        final AtomicInteger numLent = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int q = 0; q < 16; q++) {
+            final Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        final MyThing thing = pool.allocate();
+                        if (numLent.incrementAndGet() > maxActive) {
+                            throw new AssertionError("Too many lent out");
+                        }
+                        numLent.decrementAndGet();
+                        if (i % 100 == 0) {
+                            pool.discard(thing);
+                        } else {
+                            pool.release(thing);
+                        }
+                    }
+                } catch (final Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertEquals(0, pool.getNumActive());
+        assertTrue(pool.getNumLive() <= maxActive);
+        assertEquals(pool.getNumLive(), pool.getNumIdle());
+    }
+
+    @Test
+    public void testNeverExceedMaxActiveWhileMaintaining() throws InterruptedException {
+        final int maxActive = 3;
+        final MyPool pool = new MyPool();
+        pool.setMaxActive(maxActive);
+        pool.setMinIdle(maxActive);
+        pool.setCheckValidityOnAllocate(false);
+        pool.setCheckValidityWhenIdle(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int q = 0; q < 8; q++) {
+            final boolean maintainer = q == 0;
+            final Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        if (maintainer) {
+                            pool.maintain();
+                        } else {
+                            final MyThing thing = pool.allocate();
+                            if (i % 50 == 0) {
+                                pool.discard(thing);
+                            } else {
+                                pool.release(thing);
+                            }
+                        }
+                        if (pool.getNumLive() > maxActive) {
+                            throw new AssertionError("Too many live objects");
+                        }
+                    }
+                } catch (final Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertTrue(pool.getNumLive() <= maxActive);
+    }
+
+    @Test
+    public void testMaintainCreatesMinIdle() {
+        final MyPool pool = new MyPool();
+        pool.setMaxActive(3);
+        pool.setMinIdle(2);
+        pool.maintain();
+        assertEquals(2, pool.getNumIdle());
+        pool.allocate();
+        pool.allocate();
+        pool.maintain();
+        assertEquals(1, pool.getNumIdle());
+        assertEquals(3, pool.getNumLive());
+    }
+
+    @Test
+    public void testMaintainEvictsIdleDownToMinIdle() {
+        final TestTimeProvider timeProvider = new TestTimeProvider();
+        final MyPool pool = new MyPool(timeProvider);
+        final MyThing thing1 = pool.allocate();
+        final MyThing thing2 = pool.allocate();
+        final MyThing thing3 = pool.allocate();
+        pool.release(thing1);
+        pool.release(thing2);
+        pool.release(thing3);
+        pool.setMinIdle(1);
+        pool.setMaxIdleTimeMs(10L);
+        timeProvider.add(9L);
+        pool.maintain();
+        assertEquals(3, pool.getNumIdle());
+        timeProvider.add(1L);
+        pool.maintain();
+        assertEquals(1, pool.getNumIdle());
+        assertEquals(1, pool.getNumLive());
+        assertEquals(2, pool.numDestroyed.get());
+    }
+
+    @Test
+    public void testRetireAfterMaxLifetime() {
+        final TestTimeProvider timeProvider = new TestTimeProvider();
+        final MyPool pool = new MyPool(timeProvider);
+        pool.setMaxLifetimeMs(10L);
+        final MyThing lent = pool.allocate();
+        final MyThing idle = pool.allocate();
+        pool.release(idle);
+        timeProvider.add(9L);
+        pool.maintain();
+        assertEquals(1, pool.getNumIdle());
+        timeProvider.add(1L);
+        pool.maintain();
+        assertEquals(0, pool.getNumIdle());
+        assertEquals(1, pool.getNumLive());
+        pool.release(lent);
+        assertEquals(0, pool.getNumLive());
+        assertEquals(2, pool.numDestroyed.get());
+    }
+
+    @Test
+    public void testCheckValidityWhenIdle() {
+        final MyPool pool = new MyPool();
+        pool.setCheckValidityOnAllocate(false);
+        pool.setCheckValidityWhenIdle(true);
+        final MyThing thing1 = pool.allocate();
+        final MyThing thing2 = pool.allocate();
+        pool.release(thing1);
+        pool.release(thing2);
+        thing1.setValid(false);
+        pool.maintain();
+        assertEquals(1, pool.getNumIdle());
+        assertSame(thing2, pool.allocate());
+    }
+
+    @Test
+    public void testCheckIdleValidityWithoutAllocating() {
+        final MyPool pool = new MyPool();
+        pool.setMaxActive(1);
+        pool.setMaxWaitTimeMs(10L);
+        assertTrue(pool.checkIdleValidity());
+        assertEquals(1, pool.getNumIdle());
+        final MyThing thing = pool.allocate();
+        assertTrue(pool.checkIdleValidity());
+        assertEquals(1, pool.getNumActive());
+        pool.release(thing);
+        thing.setValid(false);
+        assertFalse(pool.checkIdleValidity());
+        assertEquals(0, pool.getNumLive());
+        assertEquals(1L, pool.getLeaseTimes().getCount());
+    }
+
+    @Test
+    public void testCheckIdleValidityDoesNotCreateBeyondMaxActive() throws InterruptedException {
+        final CountDownLatch creating = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        final MyPool pool = new MyPool() {
+            @Override
+            protected MyThing create() {
+                creating.countDown();
+                try {
+                    proceed.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.create();
+            }
+        };
+        pool.setMaxActive(1);
+        final Thread allocator = new Thread(pool::allocate);
+        allocator.start();
+        creating.await();
+        assertTrue(pool.checkIdleValidity());
+        proceed.countDown();
+        allocator.join();
+        assertEquals(1, pool.getNumLive());
+        assertEquals(1, pool.getNumCreated());
+    }
+
+    @Test
+    public void testMaintenanceThread() throws InterruptedException {
+        final MyPool pool = new MyPool();
+        pool.setMinIdle(2);
+        pool.setMaintenanceIntervalMs(10L);
+        pool.startMaintenance();
+        try {
+            final long start = System.currentTimeMillis();
+            while (pool.getNumIdle() < 2 && System.currentTimeMillis() - start < 5000L) {
+                Thread.sleep(10L);
+            }
+            assertEquals(2, pool.getNumIdle());
+        } finally {
+            pool.stopMaintenance();
+        }
+    }
+
+    @Test
+    public void testRejectNonPositiveMaintenanceInterval() {
+        final MyPool pool = new MyPool();
+        for (final long intervalMs : new long[] { 0L, -1L }) {
+            try {
+                pool.setMaintenanceIntervalMs(intervalMs);
+                fail("Expected exception was not thrown.");
+            } catch (final RuntimeException e) {
+                assertTrue(e.getMessage().contains("maintenanceIntervalMs"));
+            }
+        }
+        assertEquals(30000L, pool.getMaintenanceIntervalMs());
+    }
+
+    @Test
+    public void testCountsAndDurations() throws InterruptedException {
+        final MyPool pool = new MyPool();
+        final MyThing thing = pool.allocate();
+        Thread.sleep(10L);
+        pool.release(thing);
+        thing.setValid(false);
+        pool.discard(pool.allocate());
+        assertEquals(2, pool.getNumCreated());
+        assertEquals(2, pool.getNumDestroyed());
+        assertEquals(1, pool.getNumValidationFailures());
+        assertEquals(2, pool.getAllocateWaitTimes().getCount());
+        assertEquals(2, pool.getLeaseTimes().getCount());
+        assertTrue(pool.getMaxLeaseMs() >= 10.0);
+        assertEquals(0, pool.getNumWaiting());
+    }
+
+    @Test
+    public void testListenerAndLeakDetection() {
+        final TestTimeProvider timeProvider = new TestTimeProvider();
+        final MyPool pool = new MyPool(timeProvider);
+        final List<String> events = new ArrayList<>();
+        final AtomicReference<Throwable> allocation = new AtomicReference<>();
+        pool.addListener(new PoolListener<Object>() {
+            @Override
+            public void created(final Object thing) {
+                events.add("created");
+            }
+
+            @Override
+            public void allocated(final Object thing, final long waitNanos) {
+                events.add("allocated");
+            }
+
+            @Override
+            public void released(final Object thing, final long leaseNanos) {
+                events.add("released");
+            }
+
+            @Override
+            public void leakSuspected(final Object thing, final long heldMs, final Throwable t) {
+                events.add("leak");
+                allocation.set(t);
+            }
+        });
+        pool.setLeakDetectionThresholdMs(10L);
+        final MyThing thing = pool.allocate();
+        timeProvider.add(9L);
+        pool.maintain();
+        timeProvider.add(1L);
+        pool.maintain();
+        pool.maintain();
+        pool.release(thing);
+        assertEquals(Arrays.asList("created", "allocated", "leak", "released"), events);
+        assertEquals(1, pool.getNumLeaksSuspected());
+        assertEquals("testListenerAndLeakDetection", allocation.get().getStackTrace()[2].getMethodName());
+    }
+
+    @Test
+    public void testRegisterMBean() throws Exception {
+        final MyPool pool = new MyPool();
+        pool.allocate();
+        pool.registerMBean("test pool");
+        try {
+            final ObjectName name = new ObjectName("no.shhsoft:type=Pool,name=" + ObjectName.quote("test pool"));
+            assertEquals(1, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "NumActive"));
+        } finally {
+            pool.unregisterMBean();
+        }
+    }
+
+}
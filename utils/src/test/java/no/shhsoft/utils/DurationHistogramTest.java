@@ -0,0 +1,40 @@
+package no.shhsoft.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:shh@thathost.com">Sverre H. Huseby</a>
+ */
+public final class DurationHistogramTest {
+
+    @Test
+    public void shouldBeEmptyInitially() {
+        final DurationHistogram histogram = new DurationHistogram();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getPercentileNanos(0.99));
+        assertEquals(0.0, histogram.getMeanNanos(), 0.0);
+    }
+
+    @Test
+    public void shouldBoundPercentilesWithinFactorOfTwo() {
+        final DurationHistogram histogram = new DurationHistogram();
+        for (int q = 1; q <= 100; q++) {
+            histogram.record(q * 1000L);
+        }
+        assertEquals(100L, histogram.getCount());
+        assertEquals(100000L, histogram.getMaxNanos());
+        assertEquals(50500.0, histogram.getMeanNanos(), 0.001);
+        final long median = histogram.getPercentileNanos(0.5);
+        assertTrue(median >= 50000L && median < 100000L);
+        assertEquals(100000L, histogram.getPercentileNanos(1.0));
+        histogram.record(0L);
+        histogram.record(-5L);
+        assertEquals(2L, histogram.getBucketCounts()[0]);
+        histogram.reset();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getMaxNanos());
+    }
+
+}
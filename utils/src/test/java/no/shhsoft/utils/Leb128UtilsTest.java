@@ -3,6 +3,7 @@ package no.shhsoft.utils;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.util.Arrays;
 import java.util.Random;
 
 import static org.junit.Assert.assertArrayEquals;
@@ -87,4 +88,38 @@ public final class Leb128UtilsTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void shouldEncodeIntoArrayAsStreamVersionDoes() {
+        final Random random = new Random(1L);
+        final byte[] bytes = new byte[10];
+        for (int q = 0; q < 1000; q++) {
+            final long n = random.nextLong() >>> random.nextInt(64);
+            final int end = Leb128Utils.encodeUnsigned(n, bytes, 0);
+            assertEquals(Leb128Utils.getUnsignedSize(n), end);
+            assertArrayEquals(Leb128Utils.encodeUnsigned(n), Arrays.copyOf(bytes, end));
+            assertEquals(n, Leb128Utils.decodeUnsigned(bytes, 0));
+            assertEquals(end, Leb128Utils.skip(bytes, 0));
+        }
+    }
+
+    @Test
+    public void shouldHandleAll64BitsInArrayVersion() {
+        final byte[] bytes = new byte[11];
+        assertEquals(11, Leb128Utils.encodeUnsigned(-1L, bytes, 1));
+        assertEquals(-1L, Leb128Utils.decodeUnsigned(bytes, 1));
+        assertEquals(1, Leb128Utils.getUnsignedSize(0L));
+        assertEquals(10, Leb128Utils.getUnsignedSize(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void shouldZigZagSmallValuesToSmallValues() {
+        assertEquals(0L, Leb128Utils.zigZagEncode(0L));
+        assertEquals(1L, Leb128Utils.zigZagEncode(-1L));
+        assertEquals(2L, Leb128Utils.zigZagEncode(1L));
+        assertEquals(3L, Leb128Utils.zigZagEncode(-2L));
+        for (final long n : new long[] { 0L, 1L, -1L, Long.MAX_VALUE, Long.MIN_VALUE, 123456789L }) {
+            assertEquals(n, Leb128Utils.zigZagDecode(Leb128Utils.zigZagEncode(n)));
+        }
+    }
+
 }